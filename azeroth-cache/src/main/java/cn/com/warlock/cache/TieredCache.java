@@ -0,0 +1,448 @@
+package cn.com.warlock.cache;
+
+import static cn.com.warlock.cache.redis.JedisProviderFactory.getBinaryJedisClusterCommands;
+import static cn.com.warlock.cache.redis.JedisProviderFactory.getBinaryJedisCommands;
+import static cn.com.warlock.cache.redis.JedisProviderFactory.getJedisProvider;
+import static cn.com.warlock.cache.redis.JedisProviderFactory.isCluster;
+
+import java.io.Serializable;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import cn.com.warlock.cache.codec.ValueCodec;
+import cn.com.warlock.cache.local.Level1CacheSupport;
+import cn.com.warlock.common.util.ResourceUtils;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * ClassName: TieredCache <br/>
+ * Function: 本地缓存 → redis → 加载器 的读穿透两级缓存. <br/>
+ * Reason:  <br/>
+ * <ul>
+ * <li>同一key并发加载合并为一次（进程内）</li>
+ * <li>过期前按概率提前异步刷新（XFetch，加载越慢、越接近过期越容易触发）</li>
+ * <li>逻辑过期后staleSeconds内仍返回旧值并异步刷新</li>
+ * <li>加载结果为null时缓存空值negativeTtlSeconds</li>
+ * <li>本地缓存/redis命中、加载次数及耗时统计</li>
+ * </ul>
+ *
+ * <pre>
+ * TieredCache cache = new TieredCache(CacheExpires.IN_1HOUR);
+ * cache.setStaleSeconds(CacheExpires.IN_5MINS);
+ * User user = cache.get("User.id:1001", () -&gt; userMapper.getByKey(1001));
+ * </pre>
+ *
+ * redis中存储的是带逻辑过期时间的{@link Entry}，本地缓存需在Level1CacheSupport中配置对应cacheName（key中'.'之前的部分）。<br/>
+ * 刷新线程数：cache.tiered.refreshPoolSize
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class TieredCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TieredCache.class);
+
+    private static final int REFRESH_POOL_SIZE = ResourceUtils
+            .getInt("cache.tiered.refreshPoolSize", 4);
+
+    //刷新为尽力而为，队列满时放弃本次刷新
+    private static final ExecutorService refreshExecutor = new ThreadPoolExecutor(
+            REFRESH_POOL_SIZE, REFRESH_POOL_SIZE, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>(1000),
+            new ThreadFactoryBuilder().setNameFormat("TieredCacheRefresh-%d").setDaemon(true)
+                    .build(),
+            new ThreadPoolExecutor.AbortPolicy());
+
+    private String groupName;
+
+    private long ttlSeconds;
+
+    private long staleSeconds = 0;
+
+    private long negativeTtlSeconds = CacheExpires.IN_1MIN;
+
+    private double earlyRefreshBeta = 1.0;
+
+    private long loadTimeoutMillis = 10000;
+
+    //在途加载
+    private final ConcurrentMap<String, CompletableFuture<Entry>> inflightLoads = new ConcurrentHashMap<>();
+
+    //已提交的刷新任务
+    private final Set<String> refreshingKeys = ConcurrentHashMap.newKeySet();
+
+    private final Metrics metrics = new Metrics();
+
+    /**
+     * @param ttlSeconds 逻辑过期时间（秒）
+     */
+    public TieredCache(long ttlSeconds) {
+        this(null, ttlSeconds);
+    }
+
+    /**
+     * @param groupName 缓存组
+     * @param ttlSeconds 逻辑过期时间（秒）
+     */
+    public TieredCache(String groupName, long ttlSeconds) {
+        if (ttlSeconds <= 0) { throw new IllegalArgumentException("ttlSeconds must > 0"); }
+        this.groupName = groupName;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * 逻辑过期后仍可返回旧值的时间（秒），0表示不返回旧值
+     */
+    public void setStaleSeconds(long staleSeconds) {
+        this.staleSeconds = staleSeconds;
+    }
+
+    /**
+     * 空值缓存时间（秒），0表示不缓存空值
+     */
+    public void setNegativeTtlSeconds(long negativeTtlSeconds) {
+        this.negativeTtlSeconds = negativeTtlSeconds;
+    }
+
+    /**
+     * 提前刷新系数，越大越早刷新，0表示不提前刷新
+     */
+    public void setEarlyRefreshBeta(double earlyRefreshBeta) {
+        this.earlyRefreshBeta = earlyRefreshBeta;
+    }
+
+    /**
+     * 等待其他线程加载的超时时间（毫秒）
+     */
+    public void setLoadTimeoutMillis(long loadTimeoutMillis) {
+        this.loadTimeoutMillis = loadTimeoutMillis;
+    }
+
+    /**
+     * 读取，未命中时通过loader加载并写入两级缓存
+     * @param key
+     * @param loader 返回null时按空值缓存
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Callable<T> loader) {
+        long now = System.currentTimeMillis();
+        Level1CacheSupport level1 = Level1CacheSupport.getInstance();
+
+        Entry entry = level1.get(key);
+        if (entry != null && !entry.isDead(now)) {
+            metrics.level1Hits.increment();
+            return (T) serve(key, entry, now, loader);
+        }
+
+        long version = level1.currentVersion(key);
+        entry = redisGet(key);
+        if (entry != null && !entry.isDead(now)) {
+            metrics.redisHits.increment();
+            level1.set(key, entry, version);
+            return (T) serve(key, entry, now, loader);
+        }
+
+        metrics.misses.increment();
+        return (T) load(key, loader, false).value;
+    }
+
+    /**
+     * 写入两级缓存（通知其他节点清除本地缓存）
+     * @param key
+     * @param value null时写入空值
+     */
+    public void put(String key, Object value) {
+        write(key, newEntry(value, 0));
+    }
+
+    /**
+     * 删除两级缓存
+     * @param key
+     */
+    public void evict(String key) {
+        try {
+            if (isCluster(groupName)) {
+                getBinaryJedisClusterCommands(groupName).del(SafeEncoder.encode(key));
+            } else {
+                getBinaryJedisCommands(groupName).del(SafeEncoder.encode(key));
+            }
+        } finally {
+            getJedisProvider(groupName).release();
+        }
+        Level1CacheSupport.getInstance().publishSyncEvent(key);
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    private Object serve(String key, Entry entry, long now, Callable<?> loader) {
+        if (entry.negative) { metrics.negativeHits.increment(); }
+        if (now >= entry.expireAt) {
+            //逻辑过期，返回旧值并异步刷新
+            metrics.staleHits.increment();
+            refreshAsync(key, loader);
+        } else if (shouldRefreshEarly(entry, now)) {
+            metrics.earlyRefreshes.increment();
+            refreshAsync(key, loader);
+        }
+        return entry.value;
+    }
+
+    /**
+     * XFetch: now - delta * beta * ln(rand) >= expireAt
+     */
+    private boolean shouldRefreshEarly(Entry entry, long now) {
+        if (earlyRefreshBeta <= 0 || entry.loadMillis <= 0) { return false; }
+        double gap = -entry.loadMillis * earlyRefreshBeta
+                     * Math.log(ThreadLocalRandom.current().nextDouble());
+        return now + gap >= entry.expireAt;
+    }
+
+    private void refreshAsync(String key, Callable<?> loader) {
+        if (inflightLoads.containsKey(key) || !refreshingKeys.add(key)) { return; }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    load(key, loader, true);
+                } catch (Exception e) {
+                    logger.warn("refresh cache[{}] error", key, e);
+                } finally {
+                    refreshingKeys.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshingKeys.remove(key);
+        }
+    }
+
+    private Entry load(String key, Callable<?> loader, boolean refresh) {
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        CompletableFuture<Entry> inflight = inflightLoads.putIfAbsent(key, future);
+        if (inflight != null) {
+            if (refresh) { return null; }
+            metrics.coalescedLoads.increment();
+            try {
+                return inflight.get(loadTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            } catch (TimeoutException e) {
+                throw new RuntimeException("wait for loading cache[" + key + "] timeout", e);
+            }
+        }
+
+        try {
+            long start = System.nanoTime();
+            Object value;
+            try {
+                value = loader.call();
+            } catch (Exception e) {
+                metrics.loadFailures.increment();
+                throw e instanceof RuntimeException ? (RuntimeException) e
+                        : new RuntimeException(e);
+            }
+            long loadNanos = System.nanoTime() - start;
+            metrics.loads.increment();
+            metrics.loadNanos.add(loadNanos);
+
+            Entry entry = newEntry(value, TimeUnit.NANOSECONDS.toMillis(loadNanos));
+            if (value != null || negativeTtlSeconds > 0) {
+                write(key, entry);
+            }
+            future.complete(entry);
+            return entry;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflightLoads.remove(key, future);
+        }
+    }
+
+    private Entry newEntry(Object value, long loadMillis) {
+        return Entry.of(value, value == null ? negativeTtlSeconds : ttlSeconds, staleSeconds,
+                loadMillis);
+    }
+
+    private void write(String key, Entry entry) {
+        //物理过期时间包含可返回旧值的时间
+        long seconds = Math.max(1, (entry.deadAt - entry.createAt) / 1000);
+        byte[] bytes = ValueCodec.of(groupName).encode(entry);
+        try {
+            if (isCluster(groupName)) {
+                getBinaryJedisClusterCommands(groupName).setex(SafeEncoder.encode(key),
+                        (int) seconds, bytes);
+            } else {
+                getBinaryJedisCommands(groupName).setex(SafeEncoder.encode(key), (int) seconds,
+                        bytes);
+            }
+        } finally {
+            getJedisProvider(groupName).release();
+        }
+        Level1CacheSupport level1 = Level1CacheSupport.getInstance();
+        level1.publishSyncEvent(key);
+        level1.set(key, entry);
+    }
+
+    private Entry redisGet(String key) {
+        byte[] bytes;
+        try {
+            if (isCluster(groupName)) {
+                bytes = getBinaryJedisClusterCommands(groupName).get(SafeEncoder.encode(key));
+            } else {
+                bytes = getBinaryJedisCommands(groupName).get(SafeEncoder.encode(key));
+            }
+        } finally {
+            getJedisProvider(groupName).release();
+        }
+        if (bytes == null) { return null; }
+        try {
+            Object value = ValueCodec.decode(bytes);
+            return value instanceof Entry ? (Entry) value : null;
+        } catch (Exception e) {
+            logger.warn("get key[{}] from redis is not null,but Deserialize error,message:{}", key,
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 缓存条目
+     */
+    public static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Object  value;
+        private boolean negative;
+        private long    createAt;
+        //逻辑过期时间（毫秒）
+        private long    expireAt;
+        //本地可用截止时间（毫秒），超过后不再从本地缓存返回
+        private long    deadAt;
+        //加载耗时（毫秒），用于提前刷新
+        private long    loadMillis;
+
+        public Entry() {
+        }
+
+        static Entry of(Object value, long ttlSeconds, long staleSeconds, long loadMillis) {
+            Entry entry = new Entry();
+            entry.value = value;
+            entry.negative = value == null;
+            entry.createAt = System.currentTimeMillis();
+            entry.expireAt = entry.createAt + ttlSeconds * 1000;
+            entry.deadAt = entry.expireAt + (entry.negative ? 0 : staleSeconds * 1000);
+            entry.loadMillis = loadMillis;
+            return entry;
+        }
+
+        boolean isDead(long now) {
+            return now >= deadAt;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        public boolean isNegative() {
+            return negative;
+        }
+
+        public long getExpireAt() {
+            return expireAt;
+        }
+    }
+
+    /**
+     * 统计
+     */
+    public static class Metrics {
+        private final LongAdder level1Hits     = new LongAdder();
+        private final LongAdder redisHits      = new LongAdder();
+        private final LongAdder misses         = new LongAdder();
+        private final LongAdder staleHits      = new LongAdder();
+        private final LongAdder negativeHits   = new LongAdder();
+        private final LongAdder earlyRefreshes = new LongAdder();
+        private final LongAdder coalescedLoads = new LongAdder();
+        private final LongAdder loads          = new LongAdder();
+        private final LongAdder loadFailures   = new LongAdder();
+        private final LongAdder loadNanos      = new LongAdder();
+
+        public long getLevel1Hits() {
+            return level1Hits.sum();
+        }
+
+        public long getRedisHits() {
+            return redisHits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        public long getStaleHits() {
+            return staleHits.sum();
+        }
+
+        public long getNegativeHits() {
+            return negativeHits.sum();
+        }
+
+        public long getEarlyRefreshes() {
+            return earlyRefreshes.sum();
+        }
+
+        public long getCoalescedLoads() {
+            return coalescedLoads.sum();
+        }
+
+        public long getLoads() {
+            return loads.sum();
+        }
+
+        public long getLoadFailures() {
+            return loadFailures.sum();
+        }
+
+        /**
+         * 平均加载耗时（毫秒）
+         */
+        public double getAverageLoadMillis() {
+            long count = loads.sum();
+            return count == 0 ? 0 : loadNanos.sum() / 1000000.0 / count;
+        }
+
+        @Override
+        public String toString() {
+            return "[level1Hits=" + getLevel1Hits() + ", redisHits=" + getRedisHits()
+                   + ", misses=" + getMisses() + ", staleHits=" + getStaleHits()
+                   + ", negativeHits=" + getNegativeHits() + ", earlyRefreshes="
+                   + getEarlyRefreshes() + ", coalescedLoads=" + getCoalescedLoads()
+                   + ", loads=" + getLoads() + ", loadFailures=" + getLoadFailures()
+                   + ", averageLoadMillis=" + getAverageLoadMillis() + "]";
+        }
+    }
+}
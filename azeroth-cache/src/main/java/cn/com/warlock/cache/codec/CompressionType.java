@@ -0,0 +1,140 @@
+package cn.com.warlock.cache.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * ClassName: CompressionType <br/>
+ * Function: 缓存值压缩算法. <br/>
+ * Reason:  lz4、snappy为可选依赖（net.jpountz.lz4:lz4、org.xerial.snappy:snappy-java），使用时需自行引入<br/>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public enum CompressionType {
+
+    NONE(0) {
+        @Override
+        byte[] compress(byte[] bytes) {
+            return bytes;
+        }
+
+        @Override
+        byte[] decompress(byte[] bytes, int offset, int length, int originalLength) {
+            byte[] result = new byte[length];
+            System.arraycopy(bytes, offset, result, 0, length);
+            return result;
+        }
+    },
+    DEFLATE(1) {
+        @Override
+        byte[] compress(byte[] bytes) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(bytes);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+                byte[] buf = new byte[4096];
+                while (!deflater.finished()) {
+                    out.write(buf, 0, deflater.deflate(buf));
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        byte[] decompress(byte[] bytes, int offset, int length,
+                          int originalLength) throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(bytes, offset, length);
+                byte[] result = new byte[originalLength];
+                int read = 0;
+                while (read < originalLength && !inflater.finished()) {
+                    int n = inflater.inflate(result, read, originalLength - read);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    read += n;
+                }
+                if (read != originalLength) { throw new IOException("deflate data corrupted"); }
+                return result;
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            } finally {
+                inflater.end();
+            }
+        }
+    },
+    LZ4(2) {
+        @Override
+        byte[] compress(byte[] bytes) {
+            return Lz4.compress(bytes);
+        }
+
+        @Override
+        byte[] decompress(byte[] bytes, int offset, int length, int originalLength) {
+            return Lz4.decompress(bytes, offset, originalLength);
+        }
+    },
+    SNAPPY(3) {
+        @Override
+        byte[] compress(byte[] bytes) throws IOException {
+            return org.xerial.snappy.Snappy.compress(bytes);
+        }
+
+        @Override
+        byte[] decompress(byte[] bytes, int offset, int length,
+                          int originalLength) throws IOException {
+            byte[] result = new byte[originalLength];
+            org.xerial.snappy.Snappy.uncompress(bytes, offset, length, result, 0);
+            return result;
+        }
+    };
+
+    private final int id;
+
+    private CompressionType(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    abstract byte[] compress(byte[] bytes) throws IOException;
+
+    abstract byte[] decompress(byte[] bytes, int offset, int length,
+                               int originalLength) throws IOException;
+
+    public static CompressionType valueOf(int id) {
+        for (CompressionType type : values()) {
+            if (type.id == id) { return type; }
+        }
+        throw new IllegalArgumentException("unknown compression type:" + id);
+    }
+
+    /**
+     * 延迟加载lz4，未引入依赖时不影响其他算法
+     */
+    private static class Lz4 {
+        private static final net.jpountz.lz4.LZ4Factory factory = net.jpountz.lz4.LZ4Factory
+                .fastestInstance();
+
+        static byte[] compress(byte[] bytes) {
+            return factory.fastCompressor().compress(bytes);
+        }
+
+        static byte[] decompress(byte[] bytes, int offset, int originalLength) {
+            byte[] result = new byte[originalLength];
+            factory.fastDecompressor().decompress(bytes, offset, result, 0, originalLength);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package cn.com.warlock.cache.codec;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+import cn.com.warlock.cache.redis.JedisProviderFactoryBean;
+import cn.com.warlock.common.serializer.FSTSerializer;
+import cn.com.warlock.common.serializer.JsonSerializer;
+import cn.com.warlock.common.serializer.KryoPoolSerializer;
+import cn.com.warlock.common.serializer.SerializeUtils;
+import cn.com.warlock.common.serializer.Serializer;
+
+/**
+ * ClassName: ValueCodec <br/>
+ * Function: 缓存值编解码（序列化 + 超过阈值压缩 + 格式头）. <br/>
+ * Reason:  <br/>
+ *
+ * <pre>
+ * 格式：[0x00][序列化id(高4位)|压缩id(低4位)][原始长度(4字节，仅压缩时)][数据]
+ * </pre>
+ * 旧数据为kryo直接序列化结果，首字节不可能为0x00（仅null对象为0，而null不会被序列化），据此自动识别。<br/>
+ * 未配置编解码的组仍按旧格式写入，保证与旧版本节点兼容。
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class ValueCodec {
+
+    private static final byte MAGIC = 0x00;
+
+    private static final int HEADER_SIZE = 2;
+
+    private static final int LENGTH_SIZE = 4;
+
+    /**
+     * 默认压缩阈值（字节）
+     */
+    public static final int DEFAULT_COMPRESS_THRESHOLD = 4096;
+
+    /**
+     * 旧格式（kryo，无格式头）
+     */
+    public static final ValueCodec LEGACY = new ValueCodec();
+
+    private static final Map<String, ValueCodec> groupCodecs = new ConcurrentHashMap<>();
+
+    public enum SerializerType {
+        KRYO(1),
+        FST(2),
+        JSON(3);
+
+        private final int id;
+
+        private SerializerType(int id) {
+            this.id = id;
+        }
+
+        public static SerializerType valueOf(int id) {
+            for (SerializerType type : values()) {
+                if (type.id == id) { return type; }
+            }
+            throw new IllegalArgumentException("unknown serializer type:" + id);
+        }
+    }
+
+    private final SerializerType  serializerType;
+    private final CompressionType compressionType;
+    private final int             compressThreshold;
+    private final boolean         legacy;
+
+    private ValueCodec() {
+        this.serializerType = SerializerType.KRYO;
+        this.compressionType = CompressionType.NONE;
+        this.compressThreshold = Integer.MAX_VALUE;
+        this.legacy = true;
+    }
+
+    public ValueCodec(SerializerType serializerType, CompressionType compressionType,
+                      int compressThreshold) {
+        this.serializerType = serializerType == null ? SerializerType.KRYO : serializerType;
+        this.compressionType = compressionType == null ? CompressionType.NONE : compressionType;
+        this.compressThreshold = compressThreshold > 0 ? compressThreshold
+                : DEFAULT_COMPRESS_THRESHOLD;
+        this.legacy = false;
+    }
+
+    /**
+     * 注册组的编解码
+     * @param groupName
+     * @param codec
+     */
+    public static void register(String groupName, ValueCodec codec) {
+        groupCodecs.put(groupName, codec);
+    }
+
+    /**
+     * 获取组的编解码，未找到时使用默认组配置（与JedisProviderFactory一致）
+     * @param groupName
+     * @return
+     */
+    public static ValueCodec of(String groupName) {
+        ValueCodec codec = null;
+        if (StringUtils.isNotBlank(groupName)) {
+            codec = groupCodecs.get(groupName);
+        }
+        if (codec == null) {
+            codec = groupCodecs.get(JedisProviderFactoryBean.DEFAULT_GROUP_NAME);
+        }
+        return codec == null ? LEGACY : codec;
+    }
+
+    public byte[] encode(Object value) {
+        if (legacy) { return SerializeUtils.serialize(value); }
+        try {
+            byte[] data = serializer(serializerType).serialize(value);
+            CompressionType compression = CompressionType.NONE;
+            byte[] compressed = null;
+            if (data.length >= compressThreshold && compressionType != CompressionType.NONE) {
+                compressed = compressionType.compress(data);
+                //压缩无收益则不压缩
+                if (compressed.length + LENGTH_SIZE < data.length) {
+                    compression = compressionType;
+                }
+            }
+
+            byte flag = (byte) ((serializerType.id << 4) | compression.getId());
+            if (compression == CompressionType.NONE) {
+                byte[] result = new byte[HEADER_SIZE + data.length];
+                result[0] = MAGIC;
+                result[1] = flag;
+                System.arraycopy(data, 0, result, HEADER_SIZE, data.length);
+                return result;
+            }
+            byte[] result = new byte[HEADER_SIZE + LENGTH_SIZE + compressed.length];
+            result[0] = MAGIC;
+            result[1] = flag;
+            writeInt(result, HEADER_SIZE, data.length);
+            System.arraycopy(compressed, 0, result, HEADER_SIZE + LENGTH_SIZE, compressed.length);
+            return result;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 解码（自动识别格式，与组配置无关）
+     * @param bytes
+     * @return
+     */
+    public static Object decode(byte[] bytes) {
+        if (bytes == null) { return null; }
+        if (bytes.length < HEADER_SIZE || bytes[0] != MAGIC) {
+            return SerializeUtils.deserialize(bytes);
+        }
+        try {
+            SerializerType serializerType = SerializerType.valueOf((bytes[1] >> 4) & 0x0F);
+            CompressionType compression = CompressionType.valueOf(bytes[1] & 0x0F);
+            byte[] data;
+            if (compression == CompressionType.NONE) {
+                data = compression.decompress(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE, 0);
+            } else {
+                int originalLength = readInt(bytes, HEADER_SIZE);
+                int offset = HEADER_SIZE + LENGTH_SIZE;
+                data = compression.decompress(bytes, offset, bytes.length - offset,
+                        originalLength);
+            }
+            return serializer(serializerType).deserialize(data);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Serializer serializer(SerializerType type) {
+        switch (type) {
+            case FST:
+                return SerializerHolder.fst;
+            case JSON:
+                return SerializerHolder.json;
+            default:
+                return SerializerHolder.kryo;
+        }
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+               | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    @Override
+    public String toString() {
+        return legacy ? "legacy"
+                : serializerType + "/" + compressionType + "(>=" + compressThreshold + ")";
+    }
+
+    /**
+     * 延迟创建，fst为可选依赖
+     */
+    private static class SerializerHolder {
+        static final Serializer kryo = new KryoPoolSerializer();
+        static final Serializer fst  = new FSTSerializer();
+        static final Serializer json = new JsonSerializer();
+    }
+}
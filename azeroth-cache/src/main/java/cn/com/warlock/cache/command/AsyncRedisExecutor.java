@@ -0,0 +1,110 @@
+package cn.com.warlock.cache.command;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import cn.com.warlock.common.util.ResourceUtils;
+
+/**
+ * ClassName: AsyncRedisExecutor <br/>
+ * Function: 异步redis命令执行器. <br/>
+ * Reason:  <br/>
+ *
+ * 命令在独立的IO线程池上执行（每个线程按现有provider规则借用/归还连接），
+ * 队列满时由调用线程执行。同一key的读命令合并：同时只有一个在途请求，并发调用方共享结果。<br/>
+ * 线程数：cache.async.poolSize，队列长度：cache.async.queueSize
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public final class AsyncRedisExecutor {
+
+    private static final int POOL_SIZE  = ResourceUtils.getInt("cache.async.poolSize",
+            Math.max(8, Runtime.getRuntime().availableProcessors() * 2));
+    private static final int QUEUE_SIZE = ResourceUtils.getInt("cache.async.queueSize", 10000);
+
+    private static final ExecutorService executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 0L,
+            TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(QUEUE_SIZE),
+            new ThreadFactoryBuilder().setNameFormat("AsyncRedis-%d").setDaemon(true).build(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
+    //在途读请求
+    private static final ConcurrentMap<String, CompletableFuture<?>> inflightReads = new ConcurrentHashMap<>();
+
+    private AsyncRedisExecutor() {
+    }
+
+    /**
+     * 异步执行命令
+     * @param command
+     * @return
+     */
+    public static <T> CompletableFuture<T> submit(Supplier<T> command) {
+        return CompletableFuture.supplyAsync(command, executor);
+    }
+
+    /**
+     * 异步执行写命令，完成后丢弃该key的在途读请求（之后的读取重新请求redis）
+     * @param readKey
+     * @param command
+     * @return
+     */
+    public static <T> CompletableFuture<T> submitWrite(String readKey, Supplier<T> command) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return command.get();
+            } finally {
+                inflightReads.remove(readKey);
+            }
+        }, executor);
+    }
+
+    /**
+     * 异步执行读命令，相同readKey的并发调用合并为一次请求
+     * @param readKey
+     * @param command
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompletableFuture<T> submitRead(String readKey, Supplier<T> command) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<T> inflight = (CompletableFuture<T>) inflightReads.putIfAbsent(readKey,
+                future);
+        if (inflight != null) {
+            //每个调用方独立的future，避免cancel影响其他调用方
+            return inflight.thenApply(Function.<T> identity());
+        }
+        executor.execute(() -> {
+            try {
+                future.complete(command.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                inflightReads.remove(readKey, future);
+            }
+        });
+        return future.thenApply(Function.<T> identity());
+    }
+
+    /**
+     * 当前在途读请求数
+     * @return
+     */
+    public static int inflightReadCount() {
+        return inflightReads.size();
+    }
+
+    static String readKey(String type, String groupName, String key) {
+        return type + "@" + groupName + ":" + key;
+    }
+}
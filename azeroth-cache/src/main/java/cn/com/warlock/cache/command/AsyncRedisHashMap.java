@@ -0,0 +1,90 @@
+package cn.com.warlock.cache.command;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link RedisHashMap}的异步版本，命令在{@link AsyncRedisExecutor}上执行
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class AsyncRedisHashMap {
+
+    private static final String TYPE = "hash";
+
+    private final RedisHashMap redisHashMap;
+
+    private final String readKey;
+
+    public AsyncRedisHashMap(String key) {
+        this.redisHashMap = new RedisHashMap(key);
+        this.readKey = AsyncRedisExecutor.readKey(TYPE, redisHashMap.groupName, key);
+    }
+
+    /**
+     * @param key
+     * @param expireTime 超时时间(秒) 小于等于0 为永久缓存
+     */
+    public AsyncRedisHashMap(String key, long expireTime) {
+        this.redisHashMap = new RedisHashMap(key, expireTime);
+        this.readKey = AsyncRedisExecutor.readKey(TYPE, redisHashMap.groupName, key);
+    }
+
+    /**
+     *
+     * @param key
+     * @param groupName 分组名
+     * @param expireTime 超时时间(秒) 小于等于0 为永久缓存
+     */
+    public AsyncRedisHashMap(String key, String groupName, long expireTime) {
+        this.redisHashMap = new RedisHashMap(key, groupName, expireTime);
+        this.readKey = AsyncRedisExecutor.readKey(TYPE, groupName, key);
+    }
+
+    /**
+     * 获取所有值，并发读取合并为一次请求（结果为共享实例，请勿修改）
+     * @return
+     */
+    public <T> CompletableFuture<Map<String, T>> getAll() {
+        return AsyncRedisExecutor.submitRead(readKey, redisHashMap::<T> getAll);
+    }
+
+    /**
+     * 获取多个key的值
+     * @param fields
+     * @return
+     */
+    public <T> CompletableFuture<Map<String, T>> get(String... fields) {
+        return AsyncRedisExecutor.submit(() -> redisHashMap.<T> get(fields));
+    }
+
+    public <T> CompletableFuture<T> getOne(String field) {
+        return AsyncRedisExecutor.submit(() -> redisHashMap.<T> getOne(field));
+    }
+
+    public <T> CompletableFuture<Boolean> set(Map<String, T> datas) {
+        return AsyncRedisExecutor.submitWrite(readKey, () -> redisHashMap.set(datas));
+    }
+
+    public CompletableFuture<Boolean> set(String field, Object value) {
+        return AsyncRedisExecutor.submitWrite(readKey, () -> redisHashMap.set(field, value));
+    }
+
+    public CompletableFuture<Boolean> remove(String field) {
+        return AsyncRedisExecutor.submitWrite(readKey, () -> redisHashMap.remove(field));
+    }
+
+    public CompletableFuture<Boolean> remove() {
+        return AsyncRedisExecutor.submitWrite(readKey, redisHashMap::remove);
+    }
+
+    public CompletableFuture<Boolean> containsKey(String field) {
+        return AsyncRedisExecutor.submit(() -> redisHashMap.containsKey(field));
+    }
+
+    public CompletableFuture<Long> length() {
+        return AsyncRedisExecutor.submit(redisHashMap::length);
+    }
+}
@@ -0,0 +1,82 @@
+package cn.com.warlock.cache.command;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link RedisObject}的异步版本，命令在{@link AsyncRedisExecutor}上执行
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class AsyncRedisObject {
+
+    private static final String TYPE = "object";
+
+    private final RedisObject redisObject;
+
+    private final String readKey;
+
+    public AsyncRedisObject(String key) {
+        this.redisObject = new RedisObject(key);
+        this.readKey = AsyncRedisExecutor.readKey(TYPE, redisObject.groupName, key);
+    }
+
+    /**
+     * 指定组名
+     * @param key
+     * @param groupName
+     */
+    public AsyncRedisObject(String key, String groupName) {
+        this.redisObject = new RedisObject(key, groupName);
+        this.readKey = AsyncRedisExecutor.readKey(TYPE, groupName, key);
+    }
+
+    /**
+     * 获取缓存，同一key并发读取合并为一次请求（结果对象为共享实例，请勿修改）
+     * @return
+     */
+    public <T> CompletableFuture<T> get() {
+        return AsyncRedisExecutor.submitRead(readKey, redisObject::<T> get);
+    }
+
+    /**
+     * 设置缓存，默认过期时间
+     * @param value
+     * @return
+     */
+    public CompletableFuture<Boolean> set(Object value) {
+        return AsyncRedisExecutor.submitWrite(readKey, () -> redisObject.set(value));
+    }
+
+    /**
+     * 设置缓存指定过期时间间隔
+     * @param value
+     * @param seconds (过期秒数 ，小于等于0时 不设置)
+     * @return
+     */
+    public CompletableFuture<Boolean> set(Object value, long seconds) {
+        return AsyncRedisExecutor.submitWrite(readKey, () -> redisObject.set(value, seconds));
+    }
+
+    public CompletableFuture<Boolean> set(Object value, Date expireAt) {
+        return AsyncRedisExecutor.submitWrite(readKey, () -> redisObject.set(value, expireAt));
+    }
+
+    public CompletableFuture<Boolean> remove() {
+        return AsyncRedisExecutor.submitWrite(readKey, redisObject::remove);
+    }
+
+    public CompletableFuture<Boolean> exists() {
+        return AsyncRedisExecutor.submit(redisObject::exists);
+    }
+
+    public CompletableFuture<Boolean> setExpire(long seconds) {
+        return AsyncRedisExecutor.submit(() -> redisObject.setExpire(seconds));
+    }
+
+    public CompletableFuture<Long> getTtl() {
+        return AsyncRedisExecutor.submit(redisObject::getTtl);
+    }
+}
@@ -0,0 +1,73 @@
+package cn.com.warlock.cache.command;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link RedisSortSet}的异步版本，命令在{@link AsyncRedisExecutor}上执行
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class AsyncRedisSortSet {
+
+    private static final String TYPE = "zset";
+
+    private final RedisSortSet redisSortSet;
+
+    private final String readKey;
+
+    public AsyncRedisSortSet(String key) {
+        this.redisSortSet = new RedisSortSet(key);
+        this.readKey = AsyncRedisExecutor.readKey(TYPE, redisSortSet.groupName, key);
+    }
+
+    /**
+     * @param key
+     * @param expireTime 超时时间(秒) 小于等于0 为永久缓存
+     */
+    public AsyncRedisSortSet(String key, long expireTime) {
+        this.redisSortSet = new RedisSortSet(key, expireTime);
+        this.readKey = AsyncRedisExecutor.readKey(TYPE, redisSortSet.groupName, key);
+    }
+
+    /**
+     *
+     * @param key
+     * @param groupName 分组名
+     * @param expireTime 超时时间(秒) 小于等于0 为永久缓存
+     */
+    public AsyncRedisSortSet(String key, String groupName, long expireTime) {
+        this.redisSortSet = new RedisSortSet(key, groupName, expireTime);
+        this.readKey = AsyncRedisExecutor.readKey(TYPE, groupName, key);
+    }
+
+    /**
+     * 获取全部列表，并发读取合并为一次请求（结果为共享实例，请勿修改）
+     * @return
+     */
+    public <T> CompletableFuture<List<T>> get() {
+        return AsyncRedisExecutor.submitRead(readKey, redisSortSet::<T> get);
+    }
+
+    public <T> CompletableFuture<List<T>> range(int start, int end) {
+        return AsyncRedisExecutor.submit(() -> redisSortSet.<T> range(start, end));
+    }
+
+    public CompletableFuture<Boolean> add(double score, Object value) {
+        return AsyncRedisExecutor.submitWrite(readKey, () -> redisSortSet.add(score, value));
+    }
+
+    public CompletableFuture<Boolean> remove(Object mem) {
+        return AsyncRedisExecutor.submitWrite(readKey, () -> redisSortSet.remove(mem));
+    }
+
+    public CompletableFuture<Long> removeByScore(long min, long max) {
+        return AsyncRedisExecutor.submitWrite(readKey, () -> redisSortSet.removeByScore(min, max));
+    }
+
+    public CompletableFuture<Long> count() {
+        return AsyncRedisExecutor.submit(redisSortSet::count);
+    }
+}
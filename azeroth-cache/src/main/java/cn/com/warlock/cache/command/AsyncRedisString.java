@@ -0,0 +1,82 @@
+package cn.com.warlock.cache.command;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link RedisString}的异步版本，命令在{@link AsyncRedisExecutor}上执行
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class AsyncRedisString {
+
+    private static final String TYPE = "string";
+
+    private final RedisString redisString;
+
+    private final String readKey;
+
+    public AsyncRedisString(String key) {
+        this.redisString = new RedisString(key);
+        this.readKey = AsyncRedisExecutor.readKey(TYPE, redisString.groupName, key);
+    }
+
+    /**
+     *
+     * @param key
+     * @param groupName 组名
+     */
+    public AsyncRedisString(String key, String groupName) {
+        this.redisString = new RedisString(key, groupName);
+        this.readKey = AsyncRedisExecutor.readKey(TYPE, groupName, key);
+    }
+
+    /**
+     * 获取缓存，同一key并发读取合并为一次请求
+     * @return
+     */
+    public CompletableFuture<String> get() {
+        return AsyncRedisExecutor.submitRead(readKey, redisString::get);
+    }
+
+    /**
+     * 设置缓存，默认过期时间
+     * @param value
+     * @return
+     */
+    public CompletableFuture<Boolean> set(String value) {
+        return AsyncRedisExecutor.submitWrite(readKey, () -> redisString.set(value));
+    }
+
+    /**
+     * 设置缓存指定过期时间间隔
+     * @param value
+     * @param seconds (过期秒数 ，小于等于0时 不设置)
+     * @return
+     */
+    public CompletableFuture<Boolean> set(String value, long seconds) {
+        return AsyncRedisExecutor.submitWrite(readKey, () -> redisString.set(value, seconds));
+    }
+
+    public CompletableFuture<Boolean> set(String value, Date expireAt) {
+        return AsyncRedisExecutor.submitWrite(readKey, () -> redisString.set(value, expireAt));
+    }
+
+    public CompletableFuture<Boolean> remove() {
+        return AsyncRedisExecutor.submitWrite(readKey, redisString::remove);
+    }
+
+    public CompletableFuture<Boolean> exists() {
+        return AsyncRedisExecutor.submit(redisString::exists);
+    }
+
+    public CompletableFuture<Boolean> setExpire(long seconds) {
+        return AsyncRedisExecutor.submit(() -> redisString.setExpire(seconds));
+    }
+
+    public CompletableFuture<Long> getTtl() {
+        return AsyncRedisExecutor.submit(redisString::getTtl);
+    }
+}
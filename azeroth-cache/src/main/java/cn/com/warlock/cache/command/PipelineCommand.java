@@ -0,0 +1,21 @@
+package cn.com.warlock.cache.command;
+
+import redis.clients.jedis.PipelineBase;
+import redis.clients.jedis.Response;
+
+/**
+ * pipeline中排队执行的单条命令
+ *
+ * @param <T> redis原始响应类型
+ */
+public interface PipelineCommand<T> {
+
+    /**
+     * 将命令写入pipeline（此时并未发送）
+     * @param pipeline standalone/sentinel模式为{@link redis.clients.jedis.Pipeline}，
+     *                 shard模式为{@link redis.clients.jedis.ShardedJedisPipeline}，
+     *                 cluster模式为该key所在节点的{@link redis.clients.jedis.Pipeline}
+     * @return
+     */
+    Response<T> execute(PipelineBase pipeline);
+}
@@ -0,0 +1,96 @@
+package cn.com.warlock.cache.command;
+
+import java.util.function.Function;
+
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.exceptions.JedisMovedDataException;
+
+/**
+ * pipeline命令的执行结果，{@link RedisPipeline#sync()}之后才可获取
+ *
+ * @param <T> 结果类型
+ */
+public class PipelineResult<T> {
+
+    final String                      key;
+    final byte[]                      rawKey;
+    final PipelineCommand<Object>     command;
+    private final Function<Object, T> converter;
+
+    private Response<Object> response;
+    private JedisException   exception;
+    private volatile boolean done;
+
+    @SuppressWarnings("unchecked")
+    <R> PipelineResult(String key, byte[] rawKey, PipelineCommand<R> command,
+                       Function<? super R, ? extends T> converter) {
+        this.key = key;
+        this.rawKey = rawKey;
+        this.command = (PipelineCommand<Object>) command;
+        this.converter = (Function<Object, T>) converter;
+    }
+
+    void bind(Response<Object> response) {
+        this.response = response;
+        this.done = false;
+    }
+
+    void complete() {
+        this.done = true;
+    }
+
+    void fail(JedisException exception) {
+        this.exception = exception;
+        this.done = true;
+    }
+
+    /**
+     * 是否因slot迁移返回MOVED（cluster模式）
+     * @return
+     */
+    boolean isMoved() {
+        if (exception != null || response == null) { return false; }
+        try {
+            response.get();
+            return false;
+        } catch (JedisMovedDataException e) {
+            return true;
+        } catch (JedisDataException e) {
+            return false;
+        }
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 是否已执行完成（成功或失败）
+     * @return
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * 是否执行失败
+     * @return
+     */
+    public boolean isFailed() {
+        return exception != null;
+    }
+
+    /**
+     * 获取执行结果
+     * @return
+     * @throws IllegalStateException pipeline未sync
+     * @throws JedisException 该命令执行失败
+     */
+    public T get() {
+        if (exception != null) { throw exception; }
+        if (!done) { throw new IllegalStateException("pipeline not synced yet,key:" + key); }
+        return converter.apply(response.get());
+    }
+}
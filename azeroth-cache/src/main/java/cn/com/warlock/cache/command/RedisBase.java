@@ -16,7 +16,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import cn.com.warlock.cache.CacheExpires;
+import cn.com.warlock.cache.codec.ValueCodec;
+import cn.com.warlock.cache.redis.JedisProvider;
 import cn.com.warlock.common.serializer.SerializeUtils;
+import redis.clients.jedis.BinaryJedisCluster;
+import redis.clients.jedis.BinaryScriptingCommands;
+import redis.clients.jedis.BinaryShardedJedis;
 import redis.clients.util.SafeEncoder;
 
 /**
@@ -36,6 +41,11 @@ public abstract class RedisBase {
     protected static final String KEY_SUFFIX_SPLIT = "::";
     //
     protected static final String RESP_OK          = "OK";
+    //没设置过期时间则设置（TTL与EXPIRE一次往返完成）
+    protected static final byte[] SCRIPT_EXPIRE_IF_NOT = SafeEncoder
+            .encode("if tonumber(ARGV[1]) > 0 and redis.call('TTL', KEYS[1]) == -1 then "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[1]) end "
+                    + "return redis.call('TTL', KEYS[1])");
     //
     //
     protected String groupName;
@@ -155,11 +165,9 @@ public abstract class RedisBase {
      * @return
      */
     public boolean setExpireIfNot(long seconds) {
-        Long ttl = getTtl();
-        if (ttl == -1) {
-            return setExpire(seconds);
-        }
-        return ttl >= 0;
+        long ttl = (Long) eval(groupName, SCRIPT_EXPIRE_IF_NOT, key,
+                SafeEncoder.encode(String.valueOf(seconds)));
+        return ttl >= 0 || (ttl == -1 && seconds <= 0);
     }
 
     /**
@@ -242,7 +250,50 @@ public abstract class RedisBase {
         return keys;
     }
 
+    /**
+     * 执行lua脚本（单key），脚本中用KEYS[1]引用该key
+     *
+     * shard模式在key所在分片上执行
+     * @param groupName
+     * @param script
+     * @param key
+     * @param args 对应ARGV
+     * @return
+     */
+    public static Object eval(String groupName, byte[] script, byte[] key, byte[]... args) {
+        byte[][] params = new byte[args.length + 1][];
+        params[0] = key;
+        System.arraycopy(args, 0, params, 1, args.length);
+        JedisProvider<?, ?> provider = getJedisProvider(groupName);
+        try {
+            Object binary = provider.getBinary();
+            if (binary instanceof BinaryJedisCluster) {
+                return ((BinaryJedisCluster) binary).eval(script, 1, params);
+            }
+            if (binary instanceof BinaryShardedJedis) {
+                return ((BinaryShardedJedis) binary).getShard(key).eval(script, 1, params);
+            }
+            return ((BinaryScriptingCommands) binary).eval(script, 1, params);
+        } finally {
+            provider.release();
+        }
+    }
+
+    /**
+     * 值序列化（按组配置编码）
+     */
     protected byte[] valueSerialize(Object value) {
+        try {
+            return ValueCodec.of(groupName).encode(value);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 集合成员序列化，成员内容即身份（zrem/lrem/sismember需按字节匹配），固定使用旧格式
+     */
+    protected byte[] memberSerialize(Object value) {
         try {
             return SerializeUtils.serialize(value);
         } catch (Exception e) {
@@ -266,7 +317,7 @@ public abstract class RedisBase {
     protected <T> T valueDerialize(byte[] bytes) {
         if (bytes == null) { return null; }
         try {
-            return (T) SerializeUtils.deserialize(bytes);
+            return (T) ValueCodec.decode(bytes);
         } catch (Exception e) {
             remove();
             logger.warn("get key[{}] from redis is not null,but Deserialize error,message:{}", origKey, e);
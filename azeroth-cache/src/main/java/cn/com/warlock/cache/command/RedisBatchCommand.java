@@ -1,22 +1,42 @@
 package cn.com.warlock.cache.command;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import cn.com.warlock.cache.codec.ValueCodec;
+import cn.com.warlock.cache.redis.JedisProvider;
 import cn.com.warlock.cache.redis.JedisProviderFactory;
-import cn.com.warlock.common.serializer.SerializeUtils;
+import redis.clients.jedis.BinaryJedisCluster;
+import redis.clients.jedis.BinaryScriptingCommands;
+import redis.clients.jedis.BinaryShardedJedis;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.MultiKeyPipelineBase;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.exceptions.JedisException;
 import redis.clients.util.SafeEncoder;
 
 /**
  * ClassName: RedisBatchCommand <br/>
- * Function: TODO ADD FUNCTION. <br/>
+ * Function: 批量命令，cluster模式按key所在节点分组并行pipeline执行. <br/>
  * Reason:  <br/>
  * date: Jan 17, 2017 8:11:29 PM <br/>
  *
+ * <pre>
+ * cluster模式任意节点失败时抛出{@link RedisBatchException}（不返回部分结果，避免失败的key被当作缓存未命中），
+ * 正常节点的结果及失败的key可从异常中获取
+ * </pre>
+ *
  * @author warlock
  * @version
  * @since JDK 1.8
@@ -27,6 +47,16 @@ public class RedisBatchCommand {
 
     protected static final String RESP_OK = "OK";
 
+    /**
+     * 每批删除/扫描的key数量
+     */
+    public static final int CHUNK_SIZE = 500;
+
+    //redis4.0+使用UNLINK（后台线程释放内存），低版本回退为DEL
+    private static final byte[] SCRIPT_UNLINK = SafeEncoder
+            .encode("local ok, n = pcall(redis.call, 'UNLINK', unpack(KEYS)) "
+                    + "if ok then return n end return redis.call('DEL', unpack(KEYS))");
+
     /**
      * 指定组批量写入字符串
      * @param groupName 缓存组
@@ -35,21 +65,22 @@ public class RedisBatchCommand {
      */
     public static boolean setStringsWithGroup(String groupName, Map<String, Object> keyValueMap) {
         if (keyValueMap == null || keyValueMap.isEmpty()) { return false; }
-        String[] keysValues = new String[keyValueMap.size() * 2];
-        int index = 0;
-        for (String key : keyValueMap.keySet()) {
-            if (keyValueMap.get(key) == null) { continue; }
-            keysValues[index++] = key;
-            keysValues[index++] = keyValueMap.get(key).toString();
+        if (JedisProviderFactory.isCluster(groupName)) {
+            return allTrue(clusterExecute(groupName, notNullValueKeys(keyValueMap), key -> {
+                String value = keyValueMap.get(key).toString();
+                return p -> p.set(key, value);
+            }, RESP_OK::equals));
         }
+        List<String> keysValues = new ArrayList<>(keyValueMap.size() * 2);
+        for (Map.Entry<String, Object> entry : keyValueMap.entrySet()) {
+            if (entry.getValue() == null) { continue; }
+            keysValues.add(entry.getKey());
+            keysValues.add(entry.getValue().toString());
+        }
+        if (keysValues.isEmpty()) { return false; }
         try {
-            if (JedisProviderFactory.isCluster(groupName)) {
-                return JedisProviderFactory.getMultiKeyJedisClusterCommands(groupName)
-                        .mset(keysValues).equals(RESP_OK);
-            } else {
-                return JedisProviderFactory.getMultiKeyCommands(groupName).mset(keysValues)
-                        .equals(RESP_OK);
-            }
+            return JedisProviderFactory.getMultiKeyCommands(groupName)
+                    .mset(keysValues.toArray(new String[keysValues.size()])).equals(RESP_OK);
         } finally {
             JedisProviderFactory.getJedisProvider(groupName).release();
         }
@@ -73,22 +104,24 @@ public class RedisBatchCommand {
      */
     public static boolean setObjectsWithGroup(String groupName, Map<String, Object> keyValueMap) {
         if (keyValueMap == null || keyValueMap.isEmpty()) { return false; }
-        byte[][] keysValues = new byte[keyValueMap.size() * 2][];
-        int index = 0;
-        for (String key : keyValueMap.keySet()) {
-            if (keyValueMap.get(key) == null) { continue; }
-            keysValues[index++] = SafeEncoder.encode(key);
-            keysValues[index++] = SerializeUtils.serialize(keyValueMap.get(key));
+        ValueCodec codec = ValueCodec.of(groupName);
+        if (JedisProviderFactory.isCluster(groupName)) {
+            return allTrue(clusterExecute(groupName, notNullValueKeys(keyValueMap), key -> {
+                byte[] rawKey = SafeEncoder.encode(key);
+                byte[] bytes = codec.encode(keyValueMap.get(key));
+                return p -> p.set(rawKey, bytes);
+            }, RESP_OK::equals));
         }
-
+        List<byte[]> keysValues = new ArrayList<>(keyValueMap.size() * 2);
+        for (Map.Entry<String, Object> entry : keyValueMap.entrySet()) {
+            if (entry.getValue() == null) { continue; }
+            keysValues.add(SafeEncoder.encode(entry.getKey()));
+            keysValues.add(codec.encode(entry.getValue()));
+        }
+        if (keysValues.isEmpty()) { return false; }
         try {
-            if (JedisProviderFactory.isCluster(groupName)) {
-                return JedisProviderFactory.getMultiKeyBinaryJedisClusterCommands(groupName)
-                        .mset(keysValues).equals(RESP_OK);
-            } else {
-                return JedisProviderFactory.getMultiKeyBinaryCommands(groupName).mset(keysValues)
-                        .equals(RESP_OK);
-            }
+            return JedisProviderFactory.getMultiKeyBinaryCommands(groupName)
+                    .mset(keysValues.toArray(new byte[keysValues.size()][])).equals(RESP_OK);
         } finally {
             JedisProviderFactory.getJedisProvider(groupName).release();
         }
@@ -109,14 +142,15 @@ public class RedisBatchCommand {
      * @param groupName
      * @param keys
      * @return list<String>
+     * @throws RedisBatchException cluster模式部分节点失败
      */
     public static List<String> getStringsWithGroup(String groupName, String... keys) {
+        if (JedisProviderFactory.isCluster(groupName)) {
+            return clusterExecute(groupName, Arrays.asList(keys), key -> p -> p.get(key),
+                    Function.<String> identity());
+        }
         try {
-            if (JedisProviderFactory.isCluster(groupName)) {
-                return JedisProviderFactory.getMultiKeyJedisClusterCommands(groupName).mget(keys);
-            } else {
-                return JedisProviderFactory.getMultiKeyCommands(groupName).mget(keys);
-            }
+            return JedisProviderFactory.getMultiKeyCommands(groupName).mget(keys);
         } finally {
             JedisProviderFactory.getJedisProvider(groupName).release();
         }
@@ -127,13 +161,12 @@ public class RedisBatchCommand {
     }
 
     public static boolean removeStringsWithGroup(String groupName, String... keys) {
+        if (JedisProviderFactory.isCluster(groupName)) {
+            return anyTrue(clusterExecute(groupName, Arrays.asList(keys), key -> p -> p.del(key),
+                    r -> r > 0));
+        }
         try {
-            if (JedisProviderFactory.isCluster(groupName)) {
-                return JedisProviderFactory.getMultiKeyJedisClusterCommands(groupName)
-                        .del(keys) == 1;
-            } else {
-                return JedisProviderFactory.getMultiKeyCommands(groupName).del(keys) == 1;
-            }
+            return JedisProviderFactory.getMultiKeyCommands(groupName).del(keys) > 0;
         } finally {
             JedisProviderFactory.getJedisProvider(groupName).release();
         }
@@ -144,14 +177,15 @@ public class RedisBatchCommand {
     }
 
     public static boolean removeObjectsWithGroup(String groupName, String... keys) {
+        if (JedisProviderFactory.isCluster(groupName)) {
+            return anyTrue(clusterExecute(groupName, Arrays.asList(keys), key -> {
+                byte[] rawKey = SafeEncoder.encode(key);
+                return p -> p.del(rawKey);
+            }, r -> r > 0));
+        }
         byte[][] byteKeys = SafeEncoder.encodeMany(keys);
         try {
-            if (JedisProviderFactory.isCluster(groupName)) {
-                return JedisProviderFactory.getMultiKeyBinaryJedisClusterCommands(groupName)
-                        .del(byteKeys) == 1;
-            } else {
-                return JedisProviderFactory.getMultiKeyBinaryCommands(groupName).del(byteKeys) == 1;
-            }
+            return JedisProviderFactory.getMultiKeyBinaryCommands(groupName).del(byteKeys) > 0;
         } finally {
             JedisProviderFactory.getJedisProvider(groupName).release();
         }
@@ -161,19 +195,129 @@ public class RedisBatchCommand {
         return removeObjectsWithGroup(null, keys);
     }
 
-    public static <T> List<T> getObjectsWithGroup(String groupName, String... keys) {
-        byte[][] byteKeys = SafeEncoder.encodeMany(keys);
+    /**
+     * 分批删除对象（UNLINK，redis4.0以下为DEL），避免一次性删除大量key阻塞redis
+     * @param groupName 缓存组
+     * @param keys
+     * @return 删除的key数量
+     */
+    public static long unlinkObjectsWithGroup(String groupName, Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) { return 0; }
+        List<String> keyList = keys instanceof List ? (List<String>) keys : new ArrayList<>(keys);
+        long removed = 0;
+        for (int from = 0; from < keyList.size(); from += CHUNK_SIZE) {
+            List<String> chunk = keyList.subList(from, Math.min(from + CHUNK_SIZE, keyList.size()));
+            removed += unlinkChunk(groupName, chunk);
+        }
+        return removed;
+    }
+
+    public static long unlinkObjects(Collection<String> keys) {
+        return unlinkObjectsWithGroup(null, keys);
+    }
 
+    private static long unlinkChunk(String groupName, List<String> keys) {
+        if (JedisProviderFactory.isCluster(groupName)) {
+            //cluster模式每个key单独执行，按节点pipeline提交（cluster下pipeline为Pipeline实例）
+            long removed = 0;
+            for (Long result : clusterExecute(groupName, keys, key -> {
+                byte[] rawKey = SafeEncoder.encode(key);
+                return p -> ((MultiKeyPipelineBase) p).eval(SCRIPT_UNLINK, 1, rawKey);
+            }, r -> (Long) r)) {
+                if (result != null) { removed += result; }
+            }
+            return removed;
+        }
+        JedisProvider<?, ?> provider = JedisProviderFactory.getJedisProvider(groupName);
         try {
-            if (JedisProviderFactory.isCluster(groupName)) {
-                List<byte[]> bytes = JedisProviderFactory
-                        .getMultiKeyBinaryJedisClusterCommands(groupName).mget(byteKeys);
-                return listDerialize(bytes);
-            } else {
-                List<byte[]> bytes = JedisProviderFactory.getMultiKeyBinaryCommands(groupName)
-                        .mget(byteKeys);
-                return listDerialize(bytes);
+            Object binary = provider.getBinary();
+            byte[][] byteKeys = SafeEncoder.encodeMany(keys.toArray(new String[keys.size()]));
+            if (binary instanceof BinaryScriptingCommands) {
+                return (Long) ((BinaryScriptingCommands) binary).eval(SCRIPT_UNLINK, byteKeys.length,
+                        byteKeys);
+            }
+            //shard模式key分布在不同分片，逐分片DEL
+            return JedisProviderFactory.getMultiKeyBinaryCommands(groupName).del(byteKeys);
+        } finally {
+            provider.release();
+        }
+    }
+
+    /**
+     * 使用SCAN增量遍历匹配的key（代替KEYS，不阻塞redis）
+     *
+     * cluster模式遍历所有master节点，shard模式遍历所有分片
+     * @param groupName 缓存组
+     * @param pattern 匹配模式，如：User.id:*
+     * @param consumer 每批扫描结果回调（可能有重复key，回调中可安全执行其他redis命令）
+     */
+    public static void scanKeysWithGroup(String groupName, String pattern,
+                                         Consumer<List<String>> consumer) {
+        ScanParams params = new ScanParams().match(pattern).count(CHUNK_SIZE);
+        JedisProvider<?, ?> provider = JedisProviderFactory.getJedisProvider(groupName);
+        Object binary;
+        try {
+            binary = provider.getBinary();
+        } finally {
+            provider.release();
+        }
+        if (binary instanceof BinaryJedisCluster) {
+            for (JedisPool pool : ((BinaryJedisCluster) binary).getClusterNodes().values()) {
+                try (Jedis jedis = pool.getResource()) {
+                    if (jedis.info("replication").contains("role:slave")) { continue; }
+                    scan(jedis, params, consumer);
+                }
             }
+        } else if (binary instanceof BinaryShardedJedis) {
+            for (JedisShardInfo shardInfo : ((BinaryShardedJedis) binary).getAllShardInfo()) {
+                try (Jedis jedis = new Jedis(shardInfo)) {
+                    scan(jedis, params, consumer);
+                }
+            }
+        } else {
+            //standalone/sentinel连接与线程绑定，每批扫描后释放，避免回调中的命令提前归还连接
+            String cursor = ScanParams.SCAN_POINTER_START;
+            do {
+                ScanResult<String> result;
+                try {
+                    result = ((Jedis) provider.get()).scan(cursor, params);
+                } finally {
+                    provider.release();
+                }
+                if (!result.getResult().isEmpty()) { consumer.accept(result.getResult()); }
+                cursor = result.getStringCursor();
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+        }
+    }
+
+    private static void scan(Jedis jedis, ScanParams params, Consumer<List<String>> consumer) {
+        String cursor = ScanParams.SCAN_POINTER_START;
+        do {
+            ScanResult<String> result = jedis.scan(cursor, params);
+            if (!result.getResult().isEmpty()) { consumer.accept(result.getResult()); }
+            cursor = result.getStringCursor();
+        } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+    }
+
+    /**
+     * 按key批量从redis获取对象（指定缓存组名）
+     * @param groupName
+     * @param keys
+     * @return 与keys顺序一致，不存在的key对应null
+     * @throws RedisBatchException cluster模式部分节点失败
+     */
+    public static <T> List<T> getObjectsWithGroup(String groupName, String... keys) {
+        if (JedisProviderFactory.isCluster(groupName)) {
+            return clusterExecute(groupName, Arrays.asList(keys), key -> {
+                byte[] rawKey = SafeEncoder.encode(key);
+                return p -> p.get(rawKey);
+            }, RedisBatchCommand::<T> valueDerialize);
+        }
+        byte[][] byteKeys = SafeEncoder.encodeMany(keys);
+        try {
+            List<byte[]> bytes = JedisProviderFactory.getMultiKeyBinaryCommands(groupName)
+                    .mget(byteKeys);
+            return listDerialize(bytes);
         } finally {
             JedisProviderFactory.getJedisProvider(groupName).release();
         }
@@ -183,10 +327,72 @@ public class RedisBatchCommand {
         return getObjectsWithGroup(null, keys);
     }
 
+    /**
+     * cluster模式：按key所在slot/节点分组，每个节点一个pipeline并行执行（避免CROSSSLOT）
+     *
+     * @param keys
+     * @param commandBuilder
+     * @param converter
+     * @return 与keys顺序一致的结果
+     * @throws RedisBatchException 任意节点执行失败（包含失败的key及其他key的结果）
+     */
+    private static <R, T> List<T> clusterExecute(String groupName, Collection<String> keys,
+                                                 Function<String, PipelineCommand<R>> commandBuilder,
+                                                 Function<? super R, ? extends T> converter) {
+        RedisPipeline pipeline = new RedisPipeline(groupName);
+        List<PipelineResult<T>> results = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            results.add(pipeline.queue(key, commandBuilder.apply(key), converter));
+        }
+        JedisException error = null;
+        try {
+            pipeline.sync();
+        } catch (JedisException e) {
+            error = e;
+        }
+
+        List<T> values = new ArrayList<>(results.size());
+        List<String> failedKeys = new ArrayList<>();
+        for (PipelineResult<T> result : results) {
+            //获取连接失败时部分命令未发送
+            if (result.isFailed() || !result.isDone()) {
+                failedKeys.add(result.getKey());
+                values.add(null);
+            } else {
+                values.add(result.get());
+            }
+        }
+        if (error != null) {
+            throw new RedisBatchException("redis cluster batch command failed,group:" + groupName
+                    + ",failed keys:" + failedKeys, error, failedKeys, values);
+        }
+        return values;
+    }
+
+    private static List<String> notNullValueKeys(Map<String, Object> keyValueMap) {
+        List<String> keys = new ArrayList<>(keyValueMap.size());
+        for (Map.Entry<String, Object> entry : keyValueMap.entrySet()) {
+            if (entry.getValue() != null) { keys.add(entry.getKey()); }
+        }
+        return keys;
+    }
+
+    private static boolean allTrue(List<Boolean> results) {
+        if (results.isEmpty()) { return false; }
+        for (Boolean result : results) {
+            if (!Boolean.TRUE.equals(result)) { return false; }
+        }
+        return true;
+    }
+
+    private static boolean anyTrue(List<Boolean> results) {
+        return results.contains(Boolean.TRUE);
+    }
+
     private static <T> T valueDerialize(byte[] bytes) {
         if (bytes == null) { return null; }
         try {
-            return (T) SerializeUtils.deserialize(bytes);
+            return (T) ValueCodec.decode(bytes);
         } catch (Exception e) {
             return null;
         }
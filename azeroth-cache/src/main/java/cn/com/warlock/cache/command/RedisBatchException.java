@@ -0,0 +1,47 @@
+package cn.com.warlock.cache.command;
+
+import java.util.List;
+
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * ClassName: RedisBatchException <br/>
+ * Function: cluster模式批量命令部分节点执行失败. <br/>
+ * Reason:  <br/>
+ *
+ * <pre>
+ * 正常节点的结果不丢弃：getResults()与keys顺序一致，失败的key对应null（通过getFailedKeys()区分）
+ * </pre>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class RedisBatchException extends JedisException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> failedKeys;
+
+    private final List<?> results;
+
+    public RedisBatchException(String message, Throwable cause, List<String> failedKeys,
+                               List<?> results) {
+        super(message, cause);
+        this.failedKeys = failedKeys;
+        this.results = results;
+    }
+
+    public List<String> getFailedKeys() {
+        return failedKeys;
+    }
+
+    /**
+     * 与keys顺序一致的结果，失败的key对应null
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getResults() {
+        return (List<T>) results;
+    }
+}
@@ -5,11 +5,11 @@ import static cn.com.warlock.cache.redis.JedisProviderFactory.getBinaryJedisComm
 import static cn.com.warlock.cache.redis.JedisProviderFactory.getJedisProvider;
 import static cn.com.warlock.cache.redis.JedisProviderFactory.isCluster;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import redis.clients.util.SafeEncoder;
 
@@ -20,6 +20,13 @@ import redis.clients.util.SafeEncoder;
  */
 public class RedisHashMap extends RedisCollection {
 
+    //ARGV[1]:过期时间(秒)，其后为field,value对；没设置过期时间则设置
+    private static final byte[] SCRIPT_HSET_EXPIRE_IF_NOT = SafeEncoder
+            .encode("for i = 2, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end "
+                    + "if tonumber(ARGV[1]) > 0 and redis.call('TTL', KEYS[1]) == -1 then "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[1]) end "
+                    + "return 1");
+
     public RedisHashMap(String key) {
         super(key);
     }
@@ -53,35 +60,24 @@ public class RedisHashMap extends RedisCollection {
     }
 
     /**
-     * 设置hash缓存
+     * 设置hash缓存（lua脚本写入并设置过期时间，一次往返）
      *
      * @param datas
      * @return
      */
     public <T> boolean set(Map<String, T> datas) {
         if (datas == null || datas.isEmpty()) { return false; }
-        Map<byte[], byte[]> newDatas = new HashMap<>();
-        Set<String> keySet = datas.keySet();
-        for (String key : keySet) {
-            if (datas.get(key) == null) { continue; }
-            newDatas.put(SafeEncoder.encode(key), valueSerialize(datas.get(key)));
-        }
-
-        boolean result = false;
-        try {
-            if (isCluster(groupName)) {
-                result = getBinaryJedisClusterCommands(groupName).hmset(key, newDatas)
-                        .equals(RESP_OK);
-            } else {
-                result = getBinaryJedisCommands(groupName).hmset(key, newDatas).equals(RESP_OK);
-            }
-            //设置超时时间
-            if (result) { setExpireIfNot(expireTime); }
-            return result;
-        } finally {
-            getJedisProvider(groupName).release();
+        List<byte[]> args = new ArrayList<>(datas.size() * 2 + 1);
+        args.add(SafeEncoder.encode(String.valueOf(expireTime)));
+        for (Map.Entry<String, T> entry : datas.entrySet()) {
+            if (entry.getValue() == null) { continue; }
+            args.add(SafeEncoder.encode(entry.getKey()));
+            args.add(valueSerialize(entry.getValue()));
         }
+        if (args.size() == 1) { return false; }
 
+        return Long.valueOf(1).equals(eval(groupName, SCRIPT_HSET_EXPIRE_IF_NOT, key,
+                args.toArray(new byte[args.size()][])));
     }
 
     /**
@@ -132,30 +128,17 @@ public class RedisHashMap extends RedisCollection {
     }
 
     /**
-     * 设置ç
+     * 设置值（lua脚本写入并设置过期时间，一次往返）
      *
      * @param field
      * @param value
      * @return
      */
     public boolean set(String field, Object value) {
-        boolean result = false;
         if (value == null) { return false; }
-        //返回值（1:新字段被设置,0:已经存在值被更新）
-        try {
-            if (isCluster(groupName)) {
-                result = getBinaryJedisClusterCommands(groupName).hset(key,
-                        SafeEncoder.encode(field), valueSerialize(value)) >= 0;
-            } else {
-                result = getBinaryJedisCommands(groupName).hset(key, SafeEncoder.encode(field),
-                        valueSerialize(value)) >= 0;
-            }
-            //设置超时时间
-            if (result) { setExpireIfNot(expireTime); }
-            return result;
-        } finally {
-            getJedisProvider(groupName).release();
-        }
+        return Long.valueOf(1).equals(eval(groupName, SCRIPT_HSET_EXPIRE_IF_NOT, key,
+                SafeEncoder.encode(String.valueOf(expireTime)), SafeEncoder.encode(field),
+                valueSerialize(value)));
     }
 
     /**
@@ -156,10 +156,10 @@ public class RedisList extends RedisCollection {
             boolean result = false;
             if (isCluster(groupName)) {
                 result = getBinaryJedisClusterCommands(groupName)
-                        .lset(key, index, valueSerialize(newValue)).equals(RESP_OK);
+                        .lset(key, index, memberSerialize(newValue)).equals(RESP_OK);
             } else {
                 result = getBinaryJedisCommands(groupName)
-                        .lset(key, index, valueSerialize(newValue)).equals(RESP_OK);
+                        .lset(key, index, memberSerialize(newValue)).equals(RESP_OK);
             }
             return result;
         } finally {
@@ -177,9 +177,9 @@ public class RedisList extends RedisCollection {
             boolean result = false;
             if (isCluster(groupName)) {
                 result = getBinaryJedisClusterCommands(groupName).lrem(key, 0,
-                        valueSerialize(value)) >= 1;
+                        memberSerialize(value)) >= 1;
             } else {
-                result = getBinaryJedisCommands(groupName).lrem(key, 0, valueSerialize(value)) >= 1;
+                result = getBinaryJedisCommands(groupName).lrem(key, 0, memberSerialize(value)) >= 1;
             }
             return result;
         } finally {
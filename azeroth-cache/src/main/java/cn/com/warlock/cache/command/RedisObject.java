@@ -12,6 +12,10 @@ import redis.clients.util.SafeEncoder;
 
 public class RedisObject extends RedisBase {
 
+    private static final byte[] SCRIPT_SET_EXPIREAT = SafeEncoder
+            .encode("redis.call('SET', KEYS[1], ARGV[1]) "
+                    + "return redis.call('PEXPIREAT', KEYS[1], ARGV[2])");
+
     /**
      * @param key
      */
@@ -50,7 +54,7 @@ public class RedisObject extends RedisBase {
     }
 
     /**
-     * 设置缓存指定过期时间间隔
+     * 设置缓存指定过期时间间隔（SETEX，值与过期时间一次写入）
      * @param value
      * @param seconds (过期秒数 ，小于等于0时 不设置)
      * @return
@@ -59,16 +63,19 @@ public class RedisObject extends RedisBase {
 
         if (value == null) { return false; }
         try {
-            boolean result = false;
+            byte[] bytes = valueSerialize(value);
+            String resp = null;
             if (isCluster(groupName)) {
-                result = getBinaryJedisClusterCommands(groupName).set(key, valueSerialize(value))
-                        .equals(RESP_OK);
+                resp = seconds > 0
+                        ? getBinaryJedisClusterCommands(groupName).setex(key, (int) seconds, bytes)
+                        : getBinaryJedisClusterCommands(groupName).set(key, bytes);
             } else {
-                result = getBinaryJedisCommands(groupName).set(key, valueSerialize(value))
-                        .equals(RESP_OK);
+                resp = seconds > 0
+                        ? getBinaryJedisCommands(groupName).setex(key, (int) seconds, bytes)
+                        : getBinaryJedisCommands(groupName).set(key, bytes);
             }
+            boolean result = RESP_OK.equals(resp);
             if (result) {
-                result = setExpire(seconds);
                 //set可能是更新缓存，所以统一通知各节点清除本地缓存
                 Level1CacheSupport.getInstance().publishSyncEvent(origKey);
             }
@@ -80,32 +87,22 @@ public class RedisObject extends RedisBase {
     }
 
     /**
-     * 检查给定 key 是否存在。
+     * 设置缓存并指定时间点失效（lua脚本SET+PEXPIREAT原子执行）
      *
-     * @param key
+     * @param value
+     * @param expireAt
      * @return
      */
     public boolean set(Object value, Date expireAt) {
         if (value == null) { return false; }
-        try {
-            boolean result = false;
-            if (isCluster(groupName)) {
-                result = getBinaryJedisClusterCommands(groupName).set(key, valueSerialize(value))
-                        .equals(RESP_OK);
-                ;
-            } else {
-                result = getBinaryJedisCommands(groupName).set(key, valueSerialize(value))
-                        .equals(RESP_OK);
-            }
-            if (result) {
-                result = setExpireAt(expireAt);
-                //set可能是更新缓存，所以统一通知各节点清除本地缓存
-                Level1CacheSupport.getInstance().publishSyncEvent(origKey);
-            }
-            return result;
-        } finally {
-            getJedisProvider(groupName).release();
+        Object resp = eval(groupName, SCRIPT_SET_EXPIREAT, key, valueSerialize(value),
+                SafeEncoder.encode(String.valueOf(expireAt.getTime())));
+        boolean result = Long.valueOf(1).equals(resp);
+        if (result) {
+            //set可能是更新缓存，所以统一通知各节点清除本地缓存
+            Level1CacheSupport.getInstance().publishSyncEvent(origKey);
         }
+        return result;
     }
 
     public <T> T get() {
@@ -113,6 +110,8 @@ public class RedisObject extends RedisBase {
             //本地缓存读取
             T value = Level1CacheSupport.getInstance().get(this.origKey);
             if (value != null) { return value; }
+            //读取redis期间被清除则不写入本地缓存
+            long version = Level1CacheSupport.getInstance().currentVersion(this.origKey);
 
             byte[] bytes = null;
             if (isCluster(groupName)) {
@@ -122,7 +121,7 @@ public class RedisObject extends RedisBase {
             }
             value = valueDerialize(bytes);
             //local
-            Level1CacheSupport.getInstance().set(this.origKey, value);
+            Level1CacheSupport.getInstance().set(this.origKey, value, version);
             return value;
         } finally {
             getJedisProvider(groupName).release();
@@ -0,0 +1,418 @@
+package cn.com.warlock.cache.command;
+
+import static cn.com.warlock.cache.redis.JedisProviderFactory.getJedisProvider;
+import static cn.com.warlock.cache.redis.JedisProviderFactory.isCluster;
+import static cn.com.warlock.cache.redis.JedisProviderFactory.isShard;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import cn.com.warlock.cache.codec.ValueCodec;
+import cn.com.warlock.cache.local.Level1CacheSupport;
+import cn.com.warlock.cache.redis.JedisProvider;
+import cn.com.warlock.cache.redis.cluster.SlotBasedJedisCluster;
+import cn.com.warlock.common.serializer.SerializeUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisClusterInfoCache;
+import redis.clients.jedis.MultiKeyPipelineBase;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.ShardedJedis;
+import redis.clients.jedis.ShardedJedisPipeline;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.JedisClusterCRC16;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * ClassName: RedisPipeline <br/>
+ * Function: 同一缓存组的批量命令，一次网络往返提交. <br/>
+ * Reason:  <br/>
+ *
+ * <pre>
+ * RedisPipeline pipeline = new RedisPipeline();
+ * PipelineResult&lt;User&gt; user = pipeline.get("User.id:1001");
+ * pipeline.set("User.id:1002", user2, CacheExpires.IN_1HOUR);
+ * pipeline.sync();
+ * user.get();
+ * </pre>
+ *
+ * standalone/sentinel/shard模式使用jedis pipeline，cluster模式按key所在节点分组后每个节点一个pipeline并行提交。<br/>
+ * <font color="red">非线程安全，请不要在多线程场景使用</font>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class RedisPipeline {
+
+    protected static final Logger logger = LoggerFactory.getLogger(RedisPipeline.class);
+
+    protected static final String RESP_OK = "OK";
+
+    //cluster模式下各节点pipeline并行提交
+    private static final ExecutorService CLUSTER_SYNC_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(4, Runtime.getRuntime().availableProcessors()),
+            new ThreadFactoryBuilder().setNameFormat("RedisClusterPipeline-%d").setDaemon(true)
+                    .build());
+
+    private String groupName;
+
+    private List<PipelineResult<?>> results = new ArrayList<>();
+
+    //写操作涉及的key，sync后通知各节点清除本地缓存
+    private Set<String> changedKeys = new LinkedHashSet<>();
+
+    public RedisPipeline() {
+    }
+
+    /**
+     * 指定组名
+     * @param groupName
+     */
+    public RedisPipeline(String groupName) {
+        this.groupName = groupName;
+    }
+
+    /**
+     * 添加任意命令
+     * @param key 命令操作的key（cluster模式用于路由）
+     * @param command
+     * @param converter 结果转换
+     * @return
+     */
+    public <R, T> PipelineResult<T> queue(String key, PipelineCommand<R> command,
+                                          Function<? super R, ? extends T> converter) {
+        PipelineResult<T> result = new PipelineResult<>(key, SafeEncoder.encode(key), command,
+                converter);
+        results.add(result);
+        return result;
+    }
+
+    /**
+     * 添加任意命令
+     * @param key 命令操作的key（cluster模式用于路由）
+     * @param command
+     * @return
+     */
+    public <R> PipelineResult<R> queue(String key, PipelineCommand<R> command) {
+        return queue(key, command, Function.<R> identity());
+    }
+
+    /**
+     * 获取对象（不读取本地一级缓存）
+     * @param key
+     * @return
+     */
+    public <T> PipelineResult<T> get(String key) {
+        final byte[] rawKey = SafeEncoder.encode(key);
+        return queue(key, p -> p.get(rawKey), RedisPipeline::<T> valueDerialize);
+    }
+
+    public PipelineResult<String> getString(String key) {
+        return queue(key, p -> p.get(key));
+    }
+
+    /**
+     * 设置对象，默认过期时间
+     * @param key
+     * @param value
+     * @return
+     */
+    public PipelineResult<Boolean> set(String key, Object value) {
+        return set(key, value, RedisBase.getDefaultExpireSeconds());
+    }
+
+    /**
+     * 设置对象指定过期时间间隔
+     * @param key
+     * @param value
+     * @param seconds (过期秒数 ，小于等于0时 不设置)
+     * @return
+     */
+    public PipelineResult<Boolean> set(String key, Object value, long seconds) {
+        final byte[] rawKey = SafeEncoder.encode(key);
+        final byte[] bytes = ValueCodec.of(groupName).encode(value);
+        changedKeys.add(key);
+        return queue(key, p -> seconds > 0 ? p.setex(rawKey, (int) seconds, bytes) : p.set(rawKey, bytes),
+                RESP_OK::equals);
+    }
+
+    /**
+     * 设置字符串指定过期时间间隔
+     * @param key
+     * @param value
+     * @param seconds (过期秒数 ，小于等于0时 不设置)
+     * @return
+     */
+    public PipelineResult<Boolean> setString(String key, String value, long seconds) {
+        changedKeys.add(key);
+        return queue(key, p -> seconds > 0 ? p.setex(key, (int) seconds, value) : p.set(key, value),
+                RESP_OK::equals);
+    }
+
+    public PipelineResult<Boolean> remove(String key) {
+        changedKeys.add(key);
+        return queue(key, p -> p.del(key), r -> r == 1);
+    }
+
+    public PipelineResult<Boolean> setExpire(String key, long seconds) {
+        return queue(key, p -> p.expire(key, (int) seconds), r -> r == 1);
+    }
+
+    public PipelineResult<Long> getTtl(String key) {
+        return queue(key, p -> p.ttl(key));
+    }
+
+    /**
+     * 指定key的值加操作
+     * @param key
+     * @param integer
+     * @return
+     */
+    public PipelineResult<Long> increase(String key, long integer) {
+        return queue(key, p -> p.incrBy(key, integer));
+    }
+
+    /**
+     * 设置hash字段
+     * @param key
+     * @param field
+     * @param value
+     * @return 新增字段为true，覆盖已有字段为false
+     */
+    public PipelineResult<Boolean> hset(String key, String field, Object value) {
+        final byte[] rawKey = SafeEncoder.encode(key);
+        final byte[] bytes = ValueCodec.of(groupName).encode(value);
+        return queue(key, p -> p.hset(rawKey, SafeEncoder.encode(field), bytes), r -> r == 1);
+    }
+
+    public <T> PipelineResult<T> hget(String key, String field) {
+        final byte[] rawKey = SafeEncoder.encode(key);
+        return queue(key, p -> p.hget(rawKey, SafeEncoder.encode(field)),
+                RedisPipeline::<T> valueDerialize);
+    }
+
+    public PipelineResult<Boolean> zadd(String key, double score, Object member) {
+        final byte[] rawKey = SafeEncoder.encode(key);
+        //集合成员固定使用旧格式，与RedisSortSet一致
+        final byte[] bytes = SerializeUtils.serialize(member);
+        return queue(key, p -> p.zadd(rawKey, score, bytes), r -> r >= 1);
+    }
+
+    /**
+     * 执行只操作单个key的lua脚本
+     * @param key 脚本中的KEYS[1]
+     * @param script
+     * @param args 对应ARGV
+     * @return
+     * @throws UnsupportedOperationException shard模式pipeline无法按key路由脚本
+     */
+    public PipelineResult<Object> eval(String key, byte[] script, byte[]... args) {
+        if (isShard(groupName)) {
+            throw new UnsupportedOperationException("pipeline eval not supported in shard mode");
+        }
+        final byte[][] params = new byte[args.length + 1][];
+        params[0] = SafeEncoder.encode(key);
+        System.arraycopy(args, 0, params, 1, args.length);
+        return queue(key, p -> ((MultiKeyPipelineBase) p).eval(script, 1, params));
+    }
+
+    /**
+     * 已排队命令数
+     * @return
+     */
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * 提交所有排队命令并等待响应，完成后可复用
+     *
+     * @throws JedisException 任意节点执行失败时抛出首个异常（cluster模式下其他节点的结果仍可获取）
+     */
+    public void sync() {
+        if (results.isEmpty()) { return; }
+        List<PipelineResult<?>> queued = results;
+        results = new ArrayList<>();
+        try {
+            if (isCluster(groupName)) {
+                syncCluster((SlotBasedJedisCluster) getJedisProvider(groupName).getBinary(), queued);
+            } else {
+                syncStandard(getJedisProvider(groupName), queued);
+            }
+        } finally {
+            publishChangedKeys();
+        }
+    }
+
+    private void syncStandard(JedisProvider<?, ?> provider, List<PipelineResult<?>> queued) {
+        try {
+            Object jedis = provider.get();
+            if (jedis instanceof ShardedJedis) {
+                ShardedJedisPipeline pipeline = ((ShardedJedis) jedis).pipelined();
+                for (PipelineResult<?> result : queued) {
+                    result.bind(result.command.execute(pipeline));
+                }
+                pipeline.sync();
+            } else {
+                Pipeline pipeline = ((Jedis) jedis).pipelined();
+                for (PipelineResult<?> result : queued) {
+                    result.bind(result.command.execute(pipeline));
+                }
+                pipeline.sync();
+            }
+            for (PipelineResult<?> result : queued) {
+                result.complete();
+            }
+        } catch (JedisException e) {
+            for (PipelineResult<?> result : queued) {
+                result.fail(e);
+            }
+            throw e;
+        } finally {
+            provider.release();
+        }
+    }
+
+    private void syncCluster(SlotBasedJedisCluster cluster, List<PipelineResult<?>> queued) {
+        syncClusterNodes(cluster, queued);
+        //slot已迁移（MOVED）的命令刷新slot缓存后重试一次
+        List<PipelineResult<?>> moved = null;
+        for (PipelineResult<?> result : queued) {
+            if (!result.isMoved()) { continue; }
+            if (moved == null) { moved = new ArrayList<>(); }
+            moved.add(result);
+        }
+        if (moved != null) {
+            logger.info("redis cluster slots moved,renew slot cache and retry {} commands", moved.size());
+            cluster.renewSlotCache();
+            syncClusterNodes(cluster, moved);
+        }
+    }
+
+    private void syncClusterNodes(SlotBasedJedisCluster cluster, List<PipelineResult<?>> queued) {
+        Map<Integer, String> slotNodes = new HashMap<>();
+        Map<String, Jedis> connections = new LinkedHashMap<>();
+        Map<String, Pipeline> pipelines = new HashMap<>();
+        Map<String, List<PipelineResult<?>>> nodeResults = new HashMap<>();
+        JedisException error = null;
+        try {
+            for (PipelineResult<?> result : queued) {
+                int slot = JedisClusterCRC16.getSlot(result.rawKey);
+                String node = slotNodes.get(slot);
+                if (node == null) {
+                    Jedis jedis = cluster.getConnectionFromSlot(slot);
+                    node = JedisClusterInfoCache.getNodeKey(jedis.getClient());
+                    if (connections.containsKey(node)) {
+                        jedis.close();
+                    } else {
+                        connections.put(node, jedis);
+                        pipelines.put(node, jedis.pipelined());
+                        nodeResults.put(node, new ArrayList<>());
+                    }
+                    slotNodes.put(slot, node);
+                }
+                result.bind(result.command.execute(pipelines.get(node)));
+                nodeResults.get(node).add(result);
+            }
+
+            if (connections.size() == 1) {
+                String node = connections.keySet().iterator().next();
+                error = syncNode(node, pipelines.get(node), nodeResults.get(node));
+            } else {
+                //各节点并行提交，连接由执行任务归还（等待被中断时任务可能仍在使用连接）
+                Map<String, Future<JedisException>> futures = new LinkedHashMap<>();
+                for (final Map.Entry<String, Jedis> entry : connections.entrySet()) {
+                    final String node = entry.getKey();
+                    final Jedis jedis = entry.getValue();
+                    futures.put(node, CLUSTER_SYNC_EXECUTOR.submit(() -> {
+                        try {
+                            return syncNode(node, pipelines.get(node), nodeResults.get(node));
+                        } finally {
+                            closeQuietly(jedis);
+                        }
+                    }));
+                }
+                connections.clear();
+                for (Map.Entry<String, Future<JedisException>> entry : futures.entrySet()) {
+                    JedisException e = waitNode(entry.getValue(), nodeResults.get(entry.getKey()));
+                    if (error == null) { error = e; }
+                }
+            }
+        } finally {
+            for (Jedis jedis : connections.values()) {
+                closeQuietly(jedis);
+            }
+        }
+        if (error != null) { throw error; }
+    }
+
+    private static JedisException syncNode(String node, Pipeline pipeline,
+                                           List<PipelineResult<?>> results) {
+        try {
+            pipeline.sync();
+            for (PipelineResult<?> result : results) {
+                result.complete();
+            }
+            return null;
+        } catch (JedisException e) {
+            logger.warn("redis cluster pipeline sync error,node:{},keys:{}", node, results.size(), e);
+            for (PipelineResult<?> result : results) {
+                result.fail(e);
+            }
+            return e;
+        }
+    }
+
+    private static JedisException waitNode(Future<JedisException> future,
+                                           List<PipelineResult<?>> results) {
+        try {
+            return future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            if (e instanceof InterruptedException) { Thread.currentThread().interrupt(); }
+            JedisException error = new JedisException("redis cluster pipeline sync interrupted", e);
+            for (PipelineResult<?> result : results) {
+                if (!result.isDone()) { result.fail(error); }
+            }
+            return error;
+        }
+    }
+
+    private static void closeQuietly(Jedis jedis) {
+        try {jedis.close();} catch (Exception e) {}
+    }
+
+    private void publishChangedKeys() {
+        if (changedKeys.isEmpty()) { return; }
+        //set可能是更新缓存，所以统一通知各节点清除本地缓存
+        for (String key : changedKeys) {
+            Level1CacheSupport.getInstance().publishSyncEvent(key);
+        }
+        changedKeys.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T valueDerialize(byte[] bytes) {
+        if (bytes == null) { return null; }
+        try {
+            return (T) ValueCodec.decode(bytes);
+        } catch (Exception e) {
+            logger.warn("pipeline result is not null,but Deserialize error,message:{}", e.getMessage());
+            return null;
+        }
+    }
+}
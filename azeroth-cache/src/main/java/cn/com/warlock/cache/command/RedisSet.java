@@ -105,9 +105,9 @@ public class RedisSet extends RedisCollection {
         try {
             if (isCluster(groupName)) {
                 return getBinaryJedisClusterCommands(groupName).sismember(key,
-                        valueSerialize(object));
+                        memberSerialize(object));
             } else {
-                return getBinaryJedisCommands(groupName).sismember(key, valueSerialize(object));
+                return getBinaryJedisCommands(groupName).sismember(key, memberSerialize(object));
             }
         } finally {
             getJedisProvider(groupName).release();
@@ -52,10 +52,10 @@ public class RedisSortSet extends RedisCollection {
             boolean result = false;
             if (isCluster(groupName)) {
                 result = getBinaryJedisClusterCommands(groupName).zadd(key, score,
-                        valueSerialize(value)) >= 1;
+                        memberSerialize(value)) >= 1;
             } else {
                 result = getBinaryJedisCommands(groupName).zadd(key, score,
-                        valueSerialize(value)) >= 1;
+                        memberSerialize(value)) >= 1;
             }
             //设置超时时间
             if (result) { setExpireIfNot(expireTime); }
@@ -75,9 +75,9 @@ public class RedisSortSet extends RedisCollection {
             boolean result = false;
             if (isCluster(groupName)) {
                 result = getBinaryJedisClusterCommands(groupName).zrem(key,
-                        valueSerialize(mem)) >= 1;
+                        memberSerialize(mem)) >= 1;
             } else {
-                result = getBinaryJedisCommands(groupName).zrem(key, valueSerialize(mem)) >= 1;
+                result = getBinaryJedisCommands(groupName).zrem(key, memberSerialize(mem)) >= 1;
             }
             return result;
         } finally {
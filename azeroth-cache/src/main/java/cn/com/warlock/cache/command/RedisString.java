@@ -54,7 +54,7 @@ public class RedisString {
     }
 
     /**
-     * 设置缓存指定过期时间间隔
+     * 设置缓存指定过期时间间隔（SETEX，值与过期时间一次写入）
      * @param value
      * @param seconds (过期秒数 ，小于等于0时 不设置)
      * @return
@@ -63,9 +63,10 @@ public class RedisString {
 
         if (value == null) { return false; }
         try {
-            boolean result = getJedisCommands(groupName).set(key, value).equals(RESP_OK);
-            if (result && seconds > 0) {
-                result = setExpire(seconds);
+            String resp = seconds > 0 ? getJedisCommands(groupName).setex(key, (int) seconds, value)
+                    : getJedisCommands(groupName).set(key, value);
+            boolean result = RESP_OK.equals(resp);
+            if (result) {
                 //set可能是更新缓存，所以统一通知各节点清除本地缓存
                 Level1CacheSupport.getInstance().publishSyncEvent(key);
             }
@@ -77,17 +78,24 @@ public class RedisString {
     }
 
     /**
-     * 检查给定 key 是否存在。
+     * 设置缓存并指定时间点失效（PSETEX，值与过期时间一次写入）
      *
-     * @param key
+     * @param value
+     * @param expireAt
      * @return
      */
     public boolean set(String value, Date expireAt) {
         if (value == null) { return false; }
+        long milliseconds = expireAt.getTime() - System.currentTimeMillis();
+        //已过期
+        if (milliseconds <= 0) {
+            remove();
+            return true;
+        }
         try {
-            boolean result = getJedisCommands(groupName).set(key, value).equals(RESP_OK);
+            boolean result = RESP_OK
+                    .equals(getJedisCommands(groupName).psetex(key, milliseconds, value));
             if (result) {
-                result = setExpireAt(expireAt);
                 //set可能是更新缓存，所以统一通知各节点清除本地缓存
                 Level1CacheSupport.getInstance().publishSyncEvent(key);
             }
@@ -100,13 +108,14 @@ public class RedisString {
     public String get() {
         String value = Level1CacheSupport.getInstance().get(key);
         if (value != null) { return value; }
+        long version = Level1CacheSupport.getInstance().currentVersion(key);
         try {
             value = getJedisCommands(groupName).get(key);
             return value;
         } finally {
             getJedisProvider(groupName).release();
             //
-            Level1CacheSupport.getInstance().set(key, value);
+            Level1CacheSupport.getInstance().set(key, value, version);
         }
 
     }
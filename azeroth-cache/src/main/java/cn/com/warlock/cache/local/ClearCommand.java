@@ -1,7 +1,15 @@
 package cn.com.warlock.cache.local;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import org.apache.commons.lang3.RandomStringUtils;
@@ -75,4 +83,76 @@ public class ClearCommand implements Serializable {
     public static ClearCommand deserialize(String json) {
         return JsonUtils.toObject(json, ClearCommand.class);
     }
+
+    private static final byte FRAME_MAGIC = 0x4E;
+
+    /**
+     * 批量命令编码为二进制帧（同一节点发出）
+     * <pre>
+     * [magic][origin][count]{[type][cacheName][key]}...
+     * </pre>
+     * type为{@link #DELETE_KEY}或{@link #CLEAR}（清除整个cacheName）
+     * @param commands
+     * @return
+     */
+    public static byte[] encodeBatch(List<ClearCommand> commands) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + commands.size() * 32);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(FRAME_MAGIC);
+            writeString(out, CURRENT_NODE_ID);
+            out.writeInt(commands.size());
+            for (ClearCommand command : commands) {
+                out.writeByte(command.key == null ? CLEAR : DELETE_KEY);
+                writeString(out, command.cacheName);
+                if (command.key != null) { writeString(out, command.key); }
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 解码二进制帧
+     * @param frame
+     * @param offset
+     * @param length
+     * @return
+     */
+    public static List<ClearCommand> decodeBatch(byte[] frame, int offset, int length) {
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(frame, offset, length))) {
+            if (in.readByte() != FRAME_MAGIC) {
+                throw new IllegalArgumentException("not a clear command frame");
+            }
+            String origin = readString(in);
+            int count = in.readInt();
+            List<ClearCommand> commands = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte type = in.readByte();
+                ClearCommand command = new ClearCommand();
+                command.origin = origin;
+                command.cacheName = readString(in);
+                command.key = type == DELETE_KEY ? readString(in) : null;
+                commands.add(command);
+            }
+            return commands;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
 }
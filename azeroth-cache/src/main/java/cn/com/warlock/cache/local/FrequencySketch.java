@@ -0,0 +1,99 @@
+package cn.com.warlock.cache.local;
+
+/**
+ * ClassName: FrequencySketch <br/>
+ * Function: TinyLFU 访问频率估算（4bit Count-Min Sketch）. <br/>
+ * Reason:  每个long存放16个4bit计数器，元素按4个哈希分别累加；累加次数达到样本数时所有计数减半（老化）。<br/>
+ * <font color="red">非线程安全，由LocalCache在淘汰锁内调用</font>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+final class FrequencySketch {
+
+    private static final long[] SEED       = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+                                               0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long   RESET_MASK = 0x7777777777777777L;
+    private static final long   ONE_MASK   = 0x1111111111111111L;
+
+    private final long[] table;
+    private final int    tableMask;
+    private final int    sampleSize;
+    private int          size;
+
+    /**
+     * @param maximumSize 预计最大元素数
+     */
+    FrequencySketch(long maximumSize) {
+        int capacity = (int) Math.min(Math.max(maximumSize, 16), 1 << 22);
+        table = new long[ceilingPowerOfTwo(capacity)];
+        tableMask = table.length - 1;
+        sampleSize = 10 * capacity;
+    }
+
+    /**
+     * 估算访问频率（0~15）
+     */
+    int frequency(Object e) {
+        int hash = spread(e.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * 访问频率加1
+     */
+    void increment(Object e) {
+        int hash = spread(e.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && (++size == sampleSize)) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = (0xfL << offset);
+        if ((table[i] & mask) != mask) {
+            table[i] += (1L << offset);
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        int count = 0;
+        for (int i = 0; i < table.length; i++) {
+            count += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (count >>> 2);
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += (hash >>> 32);
+        return ((int) hash) & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+    static int ceilingPowerOfTwo(int x) {
+        return 1 << -Integer.numberOfLeadingZeros(x - 1);
+    }
+}
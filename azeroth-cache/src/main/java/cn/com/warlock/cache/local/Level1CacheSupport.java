@@ -2,10 +2,17 @@ package cn.com.warlock.cache.local;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
@@ -15,25 +22,60 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.util.StringUtils;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import cn.com.warlock.spring.InstanceFactory;
+import redis.clients.jedis.BinaryJedisPubSub;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.JedisPubSub;
+import redis.clients.util.SafeEncoder;
 
 /**
  * 本地缓存同步处理器
+ *
+ * <pre>
+ * 近端缓存模式（nearCacheMode=true）：
+ * 1. 清除命令在本地队列合并，每batchIntervalMillis毫秒打包为一个二进制帧广播
+ * 2. 每帧分配递增序号并写入有序集合日志（保留最近journalMaxSize帧）
+ * 3. 订阅断开重连后按序号从日志补齐期间丢失的帧，日志不足时清空本地缓存
+ * 4. 本地缓存按key版本号写入，读取redis期间发生清除则放弃写入本地缓存
+ * </pre>
+ * <font color="red">同一bcastScope下所有节点需使用相同模式</font>
  */
 public class Level1CacheSupport implements InitializingBean, DisposableBean {
 
     private static final Logger logger = LoggerFactory
             .getLogger(Level1CacheSupport.class);
 
+    //合并广播：分配序号、写日志、发布一次完成
+    private static final byte[] SCRIPT_PUBLISH_FRAME = SafeEncoder
+            .encode("local seq = redis.call('INCR', KEYS[1]) "
+                    + "local payload = seq .. ':' .. ARGV[1] "
+                    + "redis.call('ZADD', KEYS[2], seq, payload) "
+                    + "redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', seq - tonumber(ARGV[2])) "
+                    + "redis.call('PUBLISH', ARGV[3], payload) "
+                    + "return seq");
+
+    private static final int VERSION_STRIPES = 1024;
+
+    //单帧最大命令数
+    private static final int MAX_FRAME_COMMANDS = 500;
+
+    //发送失败积压上限，超过后丢弃（远端依赖TTL）
+    private static final int MAX_PENDING_COMMANDS = 100000;
+
     private String channelName = "clearLevel1_";
 
     private String bcastServer;
     private boolean distributedMode = true;          //是否启用分布式模式
 
+    private boolean nearCacheMode       = false;     //是否启用近端缓存模式
+    private long    batchIntervalMillis = 5;         //近端缓存模式合并广播间隔
+    private int     journalMaxSize      = 10000;     //近端缓存模式日志保留帧数
+    private int     reconnectIntervalSeconds = 30;   //订阅断开重连检查间隔
+
     private String password;
 
     private List<String> cacheNames;                      //
@@ -42,10 +84,22 @@ public class Level1CacheSupport implements InitializingBean, DisposableBean {
 
     private ScheduledExecutorService redisCheckTimer;
 
+    private ScheduledExecutorService batchPublishTimer;
+
     private Level1CacheProvider cacheProvider;
 
     private LocalCacheSyncListener listener;
 
+    private NearCacheSyncListener nearListener;
+
+    //待广播的清除命令
+    private final ConcurrentLinkedQueue<ClearCommand> pendingCommands = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger                       pendingCount    = new AtomicInteger();
+
+    //本地缓存版本号：全局纪元 + key分段版本
+    private final AtomicLong      epoch       = new AtomicLong();
+    private final AtomicLongArray keyVersions = new AtomicLongArray(VERSION_STRIPES);
+
     private static Level1CacheSupport instance;
 
     public static Level1CacheSupport getInstance() {
@@ -63,9 +117,13 @@ public class Level1CacheSupport implements InitializingBean, DisposableBean {
         String cacheName = key.split("\\.")[0];
         if (!cacheNames.contains(cacheName)) { return true; }
         //删除本地
-        cacheProvider.remove(cacheName, key);
+        invalidate(cacheName, key);
         logger.debug("remove local LEVEL1 cache: cacheName:[{}], key:[{}]", cacheName, key);
         if (!distributedMode) { return true; }
+        if (nearCacheMode) {
+            enqueue(new ClearCommand(cacheName, key));
+            return true;
+        }
         boolean publish = publish(channelName, new ClearCommand(cacheName, key).serialize());
         if (publish) {
             logger.debug("broadcast <clear-cache> command for key:[{}] by channelName:[{}]", key,
@@ -85,6 +143,15 @@ public class Level1CacheSupport implements InitializingBean, DisposableBean {
 
     }
 
+    /**
+     * 当前版本号，读取redis前获取，写入本地缓存时校验
+     * @param key
+     * @return
+     */
+    public long currentVersion(String key) {
+        return epoch.get() + keyVersions.get(versionIndex(key));
+    }
+
     public boolean set(String key, Object value) {
         if (cacheNames == null) { return true; }
         String cacheName = key.split("\\.")[0];
@@ -94,6 +161,28 @@ public class Level1CacheSupport implements InitializingBean, DisposableBean {
         return result;
     }
 
+    /**
+     * 按版本写入，版本已变化（期间被清除）则不写入
+     * @param key
+     * @param value
+     * @param version {@link #currentVersion(String)}
+     * @return
+     */
+    public boolean set(String key, Object value, long version) {
+        if (cacheNames == null) { return true; }
+        String cacheName = key.split("\\.")[0];
+        if (!cacheNames.contains(cacheName)) { return true; }
+        if (currentVersion(key) != version) { return false; }
+        boolean result = cacheProvider.set(cacheName, key, value);
+        //写入过程中被清除
+        if (currentVersion(key) != version) {
+            cacheProvider.remove(cacheName, key);
+            return false;
+        }
+        if (logger.isDebugEnabled()) { logger.debug("set LEVEL1 cache:{}", key); }
+        return result;
+    }
+
     public <T> T get(String key) {
         if (cacheNames == null) { return null; }
         String cacheName = key.split("\\.")[0];
@@ -107,10 +196,94 @@ public class Level1CacheSupport implements InitializingBean, DisposableBean {
         if (cacheNames == null) { return; }
         String cacheName = key.split("\\.")[0];
         if (!cacheNames.contains(cacheName)) { return; }
-        cacheProvider.remove(cacheName, key);
+        invalidate(cacheName, key);
         logger.debug("remove LEVEL1 cache,cacheName:{},key:{}", cacheName, key);
     }
 
+    private void invalidate(String cacheName, String key) {
+        if (key == null) {
+            epoch.incrementAndGet();
+            cacheProvider.remove(cacheName);
+        } else {
+            keyVersions.incrementAndGet(versionIndex(key));
+            cacheProvider.remove(cacheName, key);
+        }
+    }
+
+    private void invalidateAll() {
+        epoch.incrementAndGet();
+        cacheProvider.clearAll();
+    }
+
+    private static int versionIndex(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (VERSION_STRIPES - 1);
+    }
+
+    private void enqueue(ClearCommand command) {
+        if (pendingCount.incrementAndGet() > MAX_PENDING_COMMANDS) {
+            pendingCount.decrementAndGet();
+            logger.warn("LEVEL1 cache pending clear commands over limit,discard key:{}",
+                    command.getKey());
+            return;
+        }
+        pendingCommands.offer(command);
+    }
+
+    /**
+     * 合并待发送命令为帧广播
+     */
+    private void flushPendingCommands() {
+        while (!pendingCommands.isEmpty()) {
+            //同一key合并
+            Map<String, ClearCommand> batch = new LinkedHashMap<>();
+            ClearCommand command;
+            while (batch.size() < MAX_FRAME_COMMANDS && (command = pendingCommands.poll()) != null) {
+                pendingCount.decrementAndGet();
+                batch.put(command.getCacheName() + "\0" + command.getKey(), command);
+            }
+            if (batch.isEmpty()) { return; }
+            List<ClearCommand> commands = new ArrayList<>(batch.values());
+            try {
+                long seq = publishFrame(ClearCommand.encodeBatch(commands));
+                logger.debug("broadcast <clear-cache> frame seq:{},size:{}", seq, commands.size());
+            } catch (Exception e) {
+                logger.warn("broadcast <clear-cache> frame error,size:{}", commands.size(), e);
+                //下次重试
+                for (ClearCommand c : commands) {
+                    enqueue(c);
+                }
+                return;
+            }
+        }
+    }
+
+    private long publishFrame(byte[] frame) {
+        Jedis jedis = null;
+        try {
+            jedis = pupJedisPool.getResource();
+            Object seq = jedis.eval(SCRIPT_PUBLISH_FRAME, 2, SafeEncoder.encode(seqKey()),
+                    SafeEncoder.encode(journalKey()), frame,
+                    SafeEncoder.encode(String.valueOf(journalMaxSize)),
+                    SafeEncoder.encode(nearChannelName()));
+            return (Long) seq;
+        } finally {
+            if (jedis != null) { jedis.close(); }
+        }
+    }
+
+    private String nearChannelName() {
+        return channelName + "_near";
+    }
+
+    private String seqKey() {
+        return nearChannelName() + ":seq";
+    }
+
+    private String journalKey() {
+        return nearChannelName() + ":journal";
+    }
+
     @Override
     public void afterPropertiesSet() throws Exception {
 
@@ -129,7 +302,16 @@ public class Level1CacheSupport implements InitializingBean, DisposableBean {
         final String host = serverInfos[0];
         final int port = Integer.parseInt(serverInfos[1]);
 
+        //近端缓存模式订阅时需要使用，先于订阅创建
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxIdle(1);
+        poolConfig.setMinEvictableIdleTimeMillis(60 * 1000);
+        poolConfig.setMaxTotal(10);
+        poolConfig.setMaxWaitMillis(30 * 1000);
+        pupJedisPool = new JedisPool(poolConfig, host, port, 3000, password);
+
         listener = new LocalCacheSyncListener();
+        nearListener = new NearCacheSyncListener();
 
         redisCheckTimer = Executors.newScheduledThreadPool(1);
         redisCheckTimer.scheduleWithFixedDelay(new Runnable() {
@@ -139,13 +321,23 @@ public class Level1CacheSupport implements InitializingBean, DisposableBean {
                 if (subJedisClient == null) {
                     try {
                         subJedisClient = new Jedis(host, port);
+                        if (password != null) { subJedisClient.auth(password); }
                         if ("PONG".equals(subJedisClient.ping())) {
                             logger.info("subscribe localCache sync channel.....");
-                            subJedisClient.subscribe(listener, new String[] {channelName});
+                            if (nearCacheMode) {
+                                subJedisClient.subscribe(nearListener,
+                                        SafeEncoder.encode(nearChannelName()));
+                            } else {
+                                subJedisClient.subscribe(listener, new String[] {channelName});
+                            }
                         }
                     } catch (Exception e) {
                         try {
-                            listener.unsubscribe();
+                            if (nearCacheMode) {
+                                nearListener.unsubscribe();
+                            } else {
+                                listener.unsubscribe();
+                            }
                         } catch (Exception ex) {
                         }
                         try {
@@ -157,25 +349,45 @@ public class Level1CacheSupport implements InitializingBean, DisposableBean {
                     }
                 }
             }
-        }, 0, 30, TimeUnit.SECONDS);
-
-        //
-        JedisPoolConfig poolConfig = new JedisPoolConfig();
-        poolConfig.setMaxIdle(1);
-        poolConfig.setMinEvictableIdleTimeMillis(60 * 1000);
-        poolConfig.setMaxTotal(10);
-        poolConfig.setMaxWaitMillis(30 * 1000);
-        pupJedisPool = new JedisPool(poolConfig, host, port, 3000, password);
+        }, 0, reconnectIntervalSeconds, TimeUnit.SECONDS);
+
+        if (nearCacheMode) {
+            batchPublishTimer = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("Level1CacheBroadcast")
+                            .setDaemon(true).build());
+            batchPublishTimer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        flushPendingCommands();
+                    } catch (Exception e) {
+                        logger.warn("flush LEVEL1 clear commands error", e);
+                    }
+                }
+            }, batchIntervalMillis, batchIntervalMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
     public void destroy() throws Exception {
+        if (batchPublishTimer != null) {
+            batchPublishTimer.shutdown();
+            try {
+                batchPublishTimer.awaitTermination(1, TimeUnit.SECONDS);
+                flushPendingCommands();
+            } catch (Exception e) {
+            }
+        }
         if (cacheProvider != null) { cacheProvider.close(); }
         if (redisCheckTimer != null) { redisCheckTimer.shutdown(); }
         try {
             listener.unsubscribe();
         } catch (Exception e) {
         }
+        try {
+            nearListener.unsubscribe();
+        } catch (Exception e) {
+        }
         if (subJedisClient != null) {
             subJedisClient.close();
         }
@@ -201,6 +413,22 @@ public class Level1CacheSupport implements InitializingBean, DisposableBean {
         this.distributedMode = distributedMode;
     }
 
+    public void setNearCacheMode(boolean nearCacheMode) {
+        this.nearCacheMode = nearCacheMode;
+    }
+
+    public void setBatchIntervalMillis(long batchIntervalMillis) {
+        this.batchIntervalMillis = batchIntervalMillis;
+    }
+
+    public void setJournalMaxSize(int journalMaxSize) {
+        this.journalMaxSize = journalMaxSize;
+    }
+
+    public void setReconnectIntervalSeconds(int reconnectIntervalSeconds) {
+        this.reconnectIntervalSeconds = reconnectIntervalSeconds;
+    }
+
     public void setBcastScope(String bcastScope) {
         this.channelName = "clearLevel1_" + bcastScope;
     }
@@ -223,7 +451,7 @@ public class Level1CacheSupport implements InitializingBean, DisposableBean {
             super.onMessage(channel, message);
             if (channel.equals(channelName)) {
                 if (CLEAR_ALL.equals(message)) {
-                    cacheProvider.clearAll();
+                    invalidateAll();
                     logger.info("receive command {} and clear local cache finish!", CLEAR_ALL);
                 } else {
                     try {
@@ -231,7 +459,7 @@ public class Level1CacheSupport implements InitializingBean, DisposableBean {
                         if (command.isLocalCommand()) {
                             return;
                         }
-                        cacheProvider.remove(command.getCacheName(), command.getKey());
+                        invalidate(command.getCacheName(), command.getKey());
                     } catch (Exception e) {
                     }
                 }
@@ -239,4 +467,111 @@ public class Level1CacheSupport implements InitializingBean, DisposableBean {
         }
     }
 
+    /**
+     * 近端缓存模式订阅：按序号应用，发现断档（含重连）从日志补齐
+     */
+    private class NearCacheSyncListener extends BinaryJedisPubSub {
+
+        //已应用的最大序号，-1表示未初始化
+        private volatile long lastSeq = -1;
+
+        @Override
+        public void onSubscribe(byte[] channel, int subscribedChannels) {
+            //首次订阅从当前序号开始；重连则补齐断开期间的帧
+            if (lastSeq < 0) {
+                lastSeq = currentSeq();
+                logger.info("near cache sync start from seq:{}", lastSeq);
+            } else {
+                resync();
+            }
+        }
+
+        @Override
+        public void onMessage(byte[] channel, byte[] message) {
+            try {
+                int split = indexOf(message, (byte) ':');
+                long seq = Long.parseLong(SafeEncoder.encode(Arrays.copyOf(message, split)));
+                if (seq <= lastSeq) { return; }
+                if (seq > lastSeq + 1) {
+                    resync();
+                    if (seq <= lastSeq) { return; }
+                }
+                apply(message, split);
+                lastSeq = seq;
+            } catch (Exception e) {
+                logger.warn("apply LEVEL1 clear frame error", e);
+            }
+        }
+
+        private void resync() {
+            Jedis jedis = null;
+            try {
+                jedis = pupJedisPool.getResource();
+                Set<byte[]> frames = jedis.zrangeByScore(SafeEncoder.encode(journalKey()),
+                        SafeEncoder.encode("(" + lastSeq), SafeEncoder.encode("+inf"));
+                long expectSeq = lastSeq + 1;
+                for (byte[] frame : frames) {
+                    int split = indexOf(frame, (byte) ':');
+                    long seq = Long.parseLong(SafeEncoder.encode(Arrays.copyOf(frame, split)));
+                    if (seq > expectSeq) {
+                        //日志已被裁剪，无法确定丢失内容
+                        clearForGap(expectSeq, seq);
+                    }
+                    apply(frame, split);
+                    expectSeq = seq + 1;
+                }
+                long current = currentSeq(jedis);
+                if (current >= expectSeq) {
+                    clearForGap(expectSeq, current + 1);
+                    expectSeq = current + 1;
+                }
+                logger.info("near cache resync from seq:{} to seq:{},frames:{}", lastSeq,
+                        expectSeq - 1, frames.size());
+                lastSeq = expectSeq - 1;
+            } catch (Exception e) {
+                //无法补齐时保守处理
+                logger.warn("near cache resync error,clear all LEVEL1 cache", e);
+                invalidateAll();
+            } finally {
+                if (jedis != null) { jedis.close(); }
+            }
+        }
+
+        private void clearForGap(long fromSeq, long toSeq) {
+            logger.warn("near cache journal gap [{},{}),clear all LEVEL1 cache", fromSeq, toSeq);
+            invalidateAll();
+        }
+
+        private void apply(byte[] payload, int split) {
+            List<ClearCommand> commands = ClearCommand.decodeBatch(payload, split + 1,
+                    payload.length - split - 1);
+            if (commands.isEmpty() || commands.get(0).isLocalCommand()) { return; }
+            for (ClearCommand command : commands) {
+                invalidate(command.getCacheName(), command.getKey());
+            }
+        }
+
+        private long currentSeq() {
+            Jedis jedis = null;
+            try {
+                jedis = pupJedisPool.getResource();
+                return currentSeq(jedis);
+            } finally {
+                if (jedis != null) { jedis.close(); }
+            }
+        }
+
+        private long currentSeq(Jedis jedis) {
+            String seq = jedis.get(seqKey());
+            return seq == null ? 0 : Long.parseLong(seq);
+        }
+
+        private int indexOf(byte[] bytes, byte b) {
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] == b) { return i; }
+            }
+            throw new IllegalArgumentException("invalid clear frame");
+        }
+    }
+
 }
@@ -0,0 +1,550 @@
+package cn.com.warlock.cache.local;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * ClassName: LocalCache <br/>
+ * Function: 进程内缓存引擎（容量/权重有界，支持过期）. <br/>
+ * Reason:  <br/>
+ * <ul>
+ * <li>读：ConcurrentHashMap无锁读取，访问记录写入分段环形缓冲区（满则丢弃），批量回放</li>
+ * <li>淘汰：W-TinyLFU，新元素先进入窗口LRU(1%)，溢出后进入分段LRU（试用区/保护区80%），
+ * 与试用区队首比较访问频率决定淘汰谁</li>
+ * <li>过期：分层时间轮，调度/取消O(1)</li>
+ * <li>写：ConcurrentHashMap写入后在淘汰锁内维护队列</li>
+ * </ul>
+ *
+ * <pre>
+ * LocalCache&lt;String, Object&gt; cache = new LocalCache&lt;&gt;(10000, 600, TimeUnit.SECONDS);
+ * cache.put("key", value);
+ * cache.put("key2", value, 30, TimeUnit.SECONDS);
+ * cache.get("key");
+ * </pre>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class LocalCache<K, V> {
+
+    /**
+     * 元素权重计算
+     */
+    @FunctionalInterface
+    public interface Weigher<K, V> {
+        int weigh(K key, V value);
+    }
+
+    private static final int WINDOW    = 1;
+    private static final int PROBATION = 2;
+    private static final int PROTECTED = 3;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final long                          maximumWeight;
+    private final long                          windowMaximum;
+    private final long                          protectedMaximum;
+    private final long                          expireAfterWriteNanos;
+    private final Weigher<? super K, ? super V> weigher;
+    //纳秒时钟
+    private final LongSupplier                  ticker;
+    private final long                          origin;
+
+    //以下由evictionLock保护
+    private final AccessDeque<K, V>   window         = new AccessDeque<>();
+    private final AccessDeque<K, V>   probation      = new AccessDeque<>();
+    private final AccessDeque<K, V>   protectedQueue = new AccessDeque<>();
+    private final FrequencySketch     sketch;
+    private final TimerWheel<K, V>    timerWheel;
+    private long                      windowWeight;
+    private long                      protectedWeight;
+    private long                      totalWeight;
+
+    private final ReadBuffer<K, V> readBuffer = new ReadBuffer<>();
+
+    private final LongAdder hitCount        = new LongAdder();
+    private final LongAdder missCount       = new LongAdder();
+    private final LongAdder evictionCount   = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+
+    /**
+     * @param maximumSize 最大元素数（小于等于0不限制）
+     * @param expireAfterWrite 写入后过期时间（小于等于0不过期）
+     * @param unit
+     */
+    public LocalCache(long maximumSize, long expireAfterWrite, TimeUnit unit) {
+        this(maximumSize, expireAfterWrite, unit, null);
+    }
+
+    /**
+     * @param maximumWeight 最大总权重（小于等于0不限制）
+     * @param expireAfterWrite 写入后过期时间（小于等于0不过期）
+     * @param unit
+     * @param weigher 权重计算，为空时每个元素权重为1
+     */
+    public LocalCache(long maximumWeight, long expireAfterWrite, TimeUnit unit,
+                      Weigher<? super K, ? super V> weigher) {
+        this(maximumWeight, expireAfterWrite, unit, weigher, System::nanoTime);
+    }
+
+    /**
+     * 指定时钟（测试用）
+     */
+    LocalCache(long maximumWeight, long expireAfterWrite, TimeUnit unit,
+               Weigher<? super K, ? super V> weigher, LongSupplier ticker) {
+        this.ticker = ticker;
+        this.origin = ticker.getAsLong();
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        this.expireAfterWriteNanos = expireAfterWrite > 0 ? unit.toNanos(expireAfterWrite) : 0;
+        if (maximumWeight > 0) {
+            windowMaximum = Math.max(1, maximumWeight / 100);
+            protectedMaximum = (long) ((maximumWeight - windowMaximum) * 0.8);
+        } else {
+            windowMaximum = Long.MAX_VALUE;
+            protectedMaximum = Long.MAX_VALUE;
+        }
+        this.sketch = new FrequencySketch(maximumWeight > 0 ? maximumWeight : 16);
+        this.timerWheel = new TimerWheel<>(now());
+    }
+
+    public V get(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            missCount.increment();
+            return null;
+        }
+        if (node.expireAt != 0 && node.expireAt - now() <= 0) {
+            missCount.increment();
+            tryMaintenance();
+            return null;
+        }
+        hitCount.increment();
+        if (readBuffer.offer(node)) {
+            tryMaintenance();
+        }
+        return node.value;
+    }
+
+    public boolean containsKey(K key) {
+        Node<K, V> node = data.get(key);
+        return node != null && (node.expireAt == 0 || node.expireAt - now() > 0);
+    }
+
+    /**
+     * 写入，使用默认过期时间
+     */
+    public void put(K key, V value) {
+        put(key, value, expireAfterWriteNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 写入，指定过期时间
+     * @param duration 小于等于0不过期
+     */
+    public void put(K key, V value, long duration, TimeUnit unit) {
+        if (key == null || value == null) { throw new NullPointerException(); }
+        int weight = weigher == null ? 1 : weigher.weigh(key, value);
+        if (weight < 0) { throw new IllegalArgumentException("weight can not be negative"); }
+        long expireAt = duration > 0 ? now() + unit.toNanos(duration) : 0;
+        Node<K, V> node = new Node<>(key, value, weight, expireAt);
+        Node<K, V> old = data.put(key, node);
+        evictionLock.lock();
+        try {
+            if (old != null) { retire(old); }
+            add(node);
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public V remove(K key) {
+        Node<K, V> node = data.remove(key);
+        if (node == null) { return null; }
+        evictionLock.lock();
+        try {
+            retire(node);
+        } finally {
+            evictionLock.unlock();
+        }
+        return node.value;
+    }
+
+    public void clear() {
+        evictionLock.lock();
+        try {
+            for (Node<K, V> node : data.values()) {
+                if (data.remove(node.key, node)) {
+                    retire(node);
+                }
+            }
+            readBuffer.drain(n -> {
+            });
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 执行过期清理、回放访问记录（后台定时调用）
+     */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 当前元素数（可能包含已过期未清理的）
+     */
+    public long size() {
+        return data.size();
+    }
+
+    public long weightedSize() {
+        evictionLock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hitCount.sum(), missCount.sum(), evictionCount.sum(),
+                expirationCount.sum());
+    }
+
+    private long now() {
+        //相对时间，保证时间轮计算始终为正
+        return ticker.getAsLong() - origin + 1;
+    }
+
+    private void tryMaintenance() {
+        if (evictionLock.tryLock()) {
+            try {
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void maintenance() {
+        readBuffer.drain(this::onAccess);
+        timerWheel.advance(now(), this::expire);
+        evictEntries();
+    }
+
+    private void add(Node<K, V> node) {
+        if (node.retired) { return; }
+        sketch.increment(node.key);
+        node.queue = WINDOW;
+        window.addLast(node);
+        windowWeight += node.weight;
+        totalWeight += node.weight;
+        if (node.expireAt != 0) {
+            timerWheel.schedule(node);
+        }
+    }
+
+    private void retire(Node<K, V> node) {
+        if (node.retired) { return; }
+        node.retired = true;
+        switch (node.queue) {
+            case WINDOW:
+                window.remove(node);
+                windowWeight -= node.weight;
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protectedQueue.remove(node);
+                protectedWeight -= node.weight;
+                break;
+            default:
+                return;
+        }
+        node.queue = 0;
+        totalWeight -= node.weight;
+        timerWheel.deschedule(node);
+    }
+
+    private void onAccess(Node<K, V> node) {
+        if (node.retired || node.queue == 0) { return; }
+        sketch.increment(node.key);
+        if (node.queue == WINDOW) {
+            window.moveToLast(node);
+        } else if (node.queue == PROBATION) {
+            probation.remove(node);
+            protectedQueue.addLast(node);
+            node.queue = PROTECTED;
+            protectedWeight += node.weight;
+            //保护区溢出降级到试用区
+            while (protectedWeight > protectedMaximum) {
+                Node<K, V> demoted = protectedQueue.pollFirst();
+                if (demoted == null) { break; }
+                protectedWeight -= demoted.weight;
+                probation.addLast(demoted);
+                demoted.queue = PROBATION;
+            }
+        } else {
+            protectedQueue.moveToLast(node);
+        }
+    }
+
+    private boolean expire(Node<K, V> node) {
+        if (node.retired) { return true; }
+        data.remove(node.key, node);
+        retire(node);
+        expirationCount.increment();
+        return true;
+    }
+
+    private void evict(Node<K, V> node) {
+        data.remove(node.key, node);
+        retire(node);
+        evictionCount.increment();
+    }
+
+    private void evictEntries() {
+        if (maximumWeight <= 0) { return; }
+        //窗口溢出的元素作为候选进入试用区队尾
+        int candidates = 0;
+        while (windowWeight > windowMaximum) {
+            Node<K, V> node = window.pollFirst();
+            if (node == null) { break; }
+            windowWeight -= node.weight;
+            probation.addLast(node);
+            node.queue = PROBATION;
+            candidates++;
+        }
+
+        while (totalWeight > maximumWeight) {
+            Node<K, V> victim = probation.peekFirst();
+            if (victim == null) {
+                victim = protectedQueue.peekFirst();
+                if (victim == null) { victim = window.peekFirst(); }
+                if (victim == null) { break; }
+                evict(victim);
+                continue;
+            }
+            candidates = Math.min(candidates, probation.size);
+            Node<K, V> candidate = candidates > 0 ? probation.peekLast() : null;
+            if (candidate == null || candidate == victim) {
+                evict(victim);
+                if (candidate != null) { candidates--; }
+                continue;
+            }
+            //TinyLFU准入：候选访问频率高于淘汰者才替换
+            if (candidate.weight > maximumWeight
+                    || sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                evict(candidate);
+                candidates--;
+            } else {
+                evict(victim);
+            }
+        }
+    }
+
+    /**
+     * 缓存统计
+     */
+    public static class Stats {
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+        private final long expirationCount;
+
+        Stats(long hitCount, long missCount, long evictionCount, long expirationCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.expirationCount = expirationCount;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        public long getExpirationCount() {
+            return expirationCount;
+        }
+
+        public double getHitRate() {
+            long requestCount = hitCount + missCount;
+            return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+        }
+
+        @Override
+        public String toString() {
+            return "[hitCount=" + hitCount + ", missCount=" + missCount + ", evictionCount="
+                   + evictionCount + ", expirationCount=" + expirationCount + "]";
+        }
+    }
+
+    static final class Node<K, V> {
+        final K    key;
+        final V    value;
+        final int  weight;
+        final long expireAt;
+
+        //以下由evictionLock保护
+        int        queue;
+        boolean    retired;
+        Node<K, V> prev;
+        Node<K, V> next;
+        Node<K, V> timerPrev;
+        Node<K, V> timerNext;
+
+        /**
+         * 哨兵
+         */
+        Node() {
+            this(null, null, 0, 0);
+        }
+
+        Node(K key, V value, int weight, long expireAt) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 访问顺序双向链表
+     */
+    private static final class AccessDeque<K, V> {
+        private final Node<K, V> head = new Node<>();
+        private int              size;
+
+        AccessDeque() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.prev = head.prev;
+            node.next = head;
+            head.prev.next = node;
+            head.prev = node;
+            size++;
+        }
+
+        void remove(Node<K, V> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+            size--;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if (head.prev == node) { return; }
+            remove(node);
+            addLast(node);
+        }
+
+        Node<K, V> peekFirst() {
+            return head.next == head ? null : head.next;
+        }
+
+        Node<K, V> peekLast() {
+            return head.prev == head ? null : head.prev;
+        }
+
+        Node<K, V> pollFirst() {
+            Node<K, V> node = peekFirst();
+            if (node != null) { remove(node); }
+            return node;
+        }
+    }
+
+    /**
+     * 分段环形访问缓冲区，写入无锁，满或竞争时丢弃（访问记录允许有损）
+     */
+    private static final class ReadBuffer<K, V> {
+        private static final int STRIPES         = FrequencySketch
+                .ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors());
+        private static final int SIZE            = 64;
+        private static final int MASK            = SIZE - 1;
+        private static final int DRAIN_THRESHOLD = SIZE / 2;
+
+        private final AtomicReferenceArray<Node<K, V>>[] buffers;
+        private final AtomicLong[]                       writeCounts;
+        private final AtomicLong[]                       readCounts;
+
+        @SuppressWarnings("unchecked")
+        ReadBuffer() {
+            buffers = new AtomicReferenceArray[STRIPES];
+            writeCounts = new AtomicLong[STRIPES];
+            readCounts = new AtomicLong[STRIPES];
+            for (int i = 0; i < STRIPES; i++) {
+                buffers[i] = new AtomicReferenceArray<>(SIZE);
+                writeCounts[i] = new AtomicLong();
+                readCounts[i] = new AtomicLong();
+            }
+        }
+
+        /**
+         * @return 是否需要回放
+         */
+        boolean offer(Node<K, V> node) {
+            int stripe = probe() & (STRIPES - 1);
+            long head = readCounts[stripe].get();
+            long tail = writeCounts[stripe].get();
+            long size = tail - head;
+            if (size >= SIZE) { return true; }
+            if (writeCounts[stripe].compareAndSet(tail, tail + 1)) {
+                buffers[stripe].lazySet((int) (tail & MASK), node);
+                return size + 1 >= DRAIN_THRESHOLD;
+            }
+            return false;
+        }
+
+        void drain(Consumer<Node<K, V>> consumer) {
+            for (int i = 0; i < STRIPES; i++) {
+                long head = readCounts[i].get();
+                long tail = writeCounts[i].get();
+                AtomicReferenceArray<Node<K, V>> buffer = buffers[i];
+                for (; head < tail; head++) {
+                    int index = (int) (head & MASK);
+                    Node<K, V> node = buffer.get(index);
+                    //写入者已占位但未发布
+                    if (node == null) { break; }
+                    buffer.lazySet(index, null);
+                    consumer.accept(node);
+                }
+                readCounts[i].lazySet(head);
+            }
+        }
+
+        private static int probe() {
+            int h = (int) Thread.currentThread().getId() * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package cn.com.warlock.cache.local;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * ClassName: LocalLevel1CacheProvider <br/>
+ * Function: 基于LocalCache的一级缓存实现. <br/>
+ * Reason:  <br/>
+ *
+ * <pre>
+ * &lt;bean class="cn.com.warlock.cache.local.Level1CacheSupport"&gt;
+ *     &lt;property name="cacheProvider"&gt;
+ *         &lt;bean class="cn.com.warlock.cache.local.LocalLevel1CacheProvider"&gt;
+ *             &lt;property name="maxSize" value="10000" /&gt;
+ *             &lt;property name="timeToLiveSeconds" value="600" /&gt;
+ *         &lt;/bean&gt;
+ *     &lt;/property&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class LocalLevel1CacheProvider implements Level1CacheProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalLevel1CacheProvider.class);
+
+    private Map<String, LocalCache<String, Object>> caches            = new ConcurrentHashMap<>();
+    private int                                     maxSize           = 10000;
+    private int                                     timeToLiveSeconds = 600;
+    //按权重限制时的最大权重（大于0时生效，需配合weigher）
+    private long                                    maxWeight;
+    private LocalCache.Weigher<String, Object>      weigher;
+
+    private ScheduledExecutorService cleanScheduledExecutor;
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+        this.timeToLiveSeconds = timeToLiveSeconds;
+    }
+
+    public void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    public void setWeigher(LocalCache.Weigher<String, Object> weigher) {
+        this.weigher = weigher;
+    }
+
+    @Override
+    public void start() {
+        cleanScheduledExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("Level1CacheCleaner").setDaemon(true)
+                        .build());
+        cleanScheduledExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (LocalCache<String, Object> cache : caches.values()) {
+                    try {
+                        cache.cleanUp();
+                    } catch (Exception e) {
+                        logger.warn("clean LEVEL1 cache error", e);
+                    }
+                }
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public boolean set(String cacheName, String key, Object value) {
+        if (value == null) { return true; }
+        getCacheHolder(cacheName).put(key, value);
+        return true;
+    }
+
+    @Override
+    public <T> T get(String cacheName, String key) {
+        LocalCache<String, Object> cache = caches.get(cacheName);
+        if (cache == null) { return null; }
+        @SuppressWarnings("unchecked")
+        T value = (T) cache.get(key);
+        return value;
+    }
+
+    @Override
+    public void remove(String cacheName, String key) {
+        LocalCache<String, Object> cache = caches.get(cacheName);
+        if (cache != null) {
+            cache.remove(key);
+        }
+    }
+
+    @Override
+    public void remove(String cacheName) {
+        LocalCache<String, Object> cache = caches.get(cacheName);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    @Override
+    public void clearAll() {
+        for (LocalCache<String, Object> cache : caches.values()) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 获取缓存统计
+     * @param cacheName
+     * @return
+     */
+    public LocalCache.Stats getStats(String cacheName) {
+        LocalCache<String, Object> cache = caches.get(cacheName);
+        return cache == null ? null : cache.stats();
+    }
+
+    private LocalCache<String, Object> getCacheHolder(String cacheName) {
+        LocalCache<String, Object> cache = caches.get(cacheName);
+        if (cache != null) { return cache; }
+        return caches.computeIfAbsent(cacheName, name -> {
+            if (maxWeight > 0 && weigher != null) {
+                return new LocalCache<>(maxWeight, timeToLiveSeconds, TimeUnit.SECONDS, weigher);
+            }
+            return new LocalCache<>(maxSize, timeToLiveSeconds, TimeUnit.SECONDS);
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (cleanScheduledExecutor != null) {
+            cleanScheduledExecutor.shutdown();
+        }
+        clearAll();
+    }
+
+}
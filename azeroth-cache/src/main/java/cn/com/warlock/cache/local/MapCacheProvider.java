@@ -1,21 +1,16 @@
 package cn.com.warlock.cache.local;
 
 import java.io.Closeable;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.lang3.RandomUtils;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * ClassName: MapCacheProvider <br/>
  * Function: 缓存本地map实现. <br/>
- * Reason:  <br/>
+ * Reason:  基于LocalCache，超过最大数量时按访问频率淘汰，过期由时间轮处理<br/>
  * date: Jan 20, 2017 10:42:09 AM <br/>
  *
  * @author warlock
@@ -24,22 +19,24 @@ import org.apache.commons.lang3.RandomUtils;
  */
 public class MapCacheProvider implements Closeable {
 
-    private Map<String, Object>             cache     = new ConcurrentHashMap<>();
-    private PriorityBlockingQueue<CacheKey> cacheKeys = new PriorityBlockingQueue<>();
+    private final LocalCache<String, Object> cache;
 
-    private ScheduledExecutorService cleanScheduledExecutor = Executors.newScheduledThreadPool(1);
-
-    private int maxSize = 5000;
-
-    private AtomicInteger currentCacheSize = new AtomicInteger(0);
+    private ScheduledExecutorService cleanScheduledExecutor = Executors
+            .newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("MapCacheCleaner").setDaemon(true).build());
 
     public MapCacheProvider() {
         this(1000);
     }
 
     public MapCacheProvider(final long period, int maxSize) {
-        this(period);
-        this.maxSize = maxSize;
+        cache = new LocalCache<>(maxSize, 0, TimeUnit.SECONDS);
+        cleanScheduledExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                cache.cleanUp();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -47,29 +44,7 @@ public class MapCacheProvider implements Closeable {
      *            检查过期间隔（毫秒）
      */
     public MapCacheProvider(final long period) {
-
-        cleanScheduledExecutor.scheduleAtFixedRate(new Runnable() {
-            @Override
-            public void run() {
-                CacheKey cacheKey = cacheKeys.poll();
-                if (cacheKey == null) {
-                    return;
-                }
-
-                long currentTimeMils = System.currentTimeMillis();
-                if (cacheKey.expireAt > currentTimeMils) {
-                    //放回去
-                    cacheKeys.add(cacheKey);
-                    return;
-                }
-                // 过期的移除
-                cache.remove(cacheKey.key);
-                currentCacheSize.decrementAndGet();
-                System.out.println("remove:" + cacheKey + ",currentTimeMils:" + currentTimeMils + ",cacheSize:" + cache.size());
-
-            }
-        }, period, period, TimeUnit.MILLISECONDS);
-
+        this(period, 5000);
     }
 
     /**
@@ -77,19 +52,12 @@ public class MapCacheProvider implements Closeable {
      * @param key
      * @param value
      * @param timeout
-     *            单位：秒
+     *            单位：秒（小于等于0不过期）
      * @return
      */
     public boolean set(String key, Object value, int timeout) {
-
-        if (currentCacheSize.incrementAndGet() > maxSize) { throw new RuntimeException("CacheSize over the max size"); }
-
-        cache.put(key, value);
-        if (timeout > 0) {
-            cacheKeys.add(new CacheKey(key, System.currentTimeMillis() + timeout * 1000));
-        }
+        cache.put(key, value, timeout, TimeUnit.SECONDS);
         return true;
-
     }
 
     @SuppressWarnings("unchecked")
@@ -98,11 +66,7 @@ public class MapCacheProvider implements Closeable {
     }
 
     public boolean remove(String key) {
-        Object removeObj = cache.remove(key);
-        if (removeObj != null) {
-            cacheKeys.remove(new CacheKey(key, 0));
-            currentCacheSize.decrementAndGet();
-        }
+        cache.remove(key);
         return true;
     }
 
@@ -110,91 +74,16 @@ public class MapCacheProvider implements Closeable {
         return cache.containsKey(key);
     }
 
-    public void close() {
-        cleanScheduledExecutor.shutdown();
-    }
-
-    private class CacheKey implements Comparable<CacheKey> {
-        String key;
-        long   expireAt;
-
-        public CacheKey(String key, long expireAt) {
-            super();
-            this.key = key;
-            this.expireAt = expireAt;
-        }
-
-        @Override
-        public int hashCode() {
-            final int prime = 31;
-            int result = 1;
-            result = prime * result + getOuterType().hashCode();
-            result = prime * result + ((key == null) ? 0 : key.hashCode());
-            return result;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) { return true; }
-            if (obj == null) { return false; }
-            if (getClass() != obj.getClass()) { return false; }
-            CacheKey other = (CacheKey) obj;
-            if (!getOuterType().equals(other.getOuterType())) { return false; }
-            if (key == null) {
-                if (other.key != null) { return false; }
-            } else if (!key.equals(other.key)) { return false; }
-            return true;
-        }
-
-        private MapCacheProvider getOuterType() {
-            return MapCacheProvider.this;
-        }
-
-        @Override
-        public int compareTo(CacheKey o) {
-            return Long.compare(this.expireAt, o.expireAt);
-        }
-
-        @Override
-        public String toString() {
-            return "[key=" + key + ", expireAt=" + expireAt + "]";
-        }
-
+    /**
+     * 缓存统计
+     * @return
+     */
+    public LocalCache.Stats getStats() {
+        return cache.stats();
     }
 
-    public static void main(String[] args) {
-        final MapCacheProvider provider = new MapCacheProvider(100);
-
-        provider.set("aa", "aa", 50);
-        provider.set("bb", "bb", 30);
-        System.out.println("cache size:" + provider.cache.size() + "-" + provider.currentCacheSize.get());
-        provider.remove("aa");
-        System.out.println("cache size:" + provider.cache.size() + "-" + provider.currentCacheSize.get());
-
-        ExecutorService executorService = Executors.newFixedThreadPool(5);
-
-        for (int i = 0; i < 500; i++) {
-            int expire = RandomUtils.nextInt(1, 30);
-            final String key = "key" + i + "_" + expire;
-            executorService.submit(new Runnable() {
-                @Override
-                public void run() {
-                    provider.set(key, key, expire);
-                    try {
-                        Thread.sleep(TimeUnit.MILLISECONDS.toMillis(10));
-                    } catch (Exception e) {
-                    }
-                }
-            });
-
-        }
-
-        while (true) {
-            if (provider.cache.isEmpty()) { break; }
-        }
-
-        provider.close();
-        executorService.shutdown();
+    public void close() {
+        cleanScheduledExecutor.shutdown();
     }
 
 }
@@ -0,0 +1,118 @@
+package cn.com.warlock.cache.local;
+
+import java.util.function.Predicate;
+
+import cn.com.warlock.cache.local.LocalCache.Node;
+
+/**
+ * ClassName: TimerWheel <br/>
+ * Function: 分层时间轮，O(1)调度/取消过期. <br/>
+ * Reason:  各层桶跨度约为1秒、1分钟、1小时、1天、6.5天，过期时间越远所在层越粗；
+ * 时间推进时只处理经过的桶，未到期的元素重新调度到更精细的层。<br/>
+ * <font color="red">非线程安全，由LocalCache在淘汰锁内调用</font>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+final class TimerWheel<K, V> {
+
+    private static final int[]  BUCKETS = { 64, 64, 32, 4, 1 };
+    private static final long[] SPANS   = { 1L << 30, // 1.07s
+                                            1L << 36, // 1.14m
+                                            1L << 42, // 1.22h
+                                            1L << 47, // 1.63d
+                                            1L << 49, // 6.5d
+                                            1L << 49 };
+    private static final long[] SHIFT   = { 30, 36, 42, 47, 49 };
+
+    private final Node<K, V>[][] wheel;
+
+    private long nanos;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(long nanos) {
+        this.nanos = nanos;
+        wheel = new Node[BUCKETS.length][];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Node[BUCKETS[i]];
+            for (int j = 0; j < wheel[i].length; j++) {
+                Node<K, V> sentinel = new Node<>();
+                sentinel.timerPrev = sentinel;
+                sentinel.timerNext = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * 推进时间，处理经过的桶
+     * @param currentNanos 当前时间
+     * @param expirer 到期处理，返回false表示未移除（重新调度）
+     */
+    void advance(long currentNanos, Predicate<Node<K, V>> expirer) {
+        long previousNanos = nanos;
+        nanos = currentNanos;
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previousNanos >>> SHIFT[i];
+            long currentTicks = currentNanos >>> SHIFT[i];
+            if ((currentTicks - previousTicks) <= 0L) {
+                break;
+            }
+            expire(i, previousTicks, currentTicks - previousTicks, expirer);
+        }
+    }
+
+    private void expire(int index, long previousTicks, long delta,
+                        Predicate<Node<K, V>> expirer) {
+        Node<K, V>[] timerWheel = wheel[index];
+        int mask = timerWheel.length - 1;
+        int steps = (int) Math.min(1 + delta, timerWheel.length);
+        int start = (int) (previousTicks & mask);
+        int end = start + steps;
+        for (int i = start; i < end; i++) {
+            Node<K, V> sentinel = timerWheel[i & mask];
+            Node<K, V> node = sentinel.timerNext;
+            sentinel.timerPrev = sentinel;
+            sentinel.timerNext = sentinel;
+            while (node != sentinel) {
+                Node<K, V> next = node.timerNext;
+                node.timerPrev = null;
+                node.timerNext = null;
+                if ((node.expireAt - nanos) > 0 || !expirer.test(node)) {
+                    schedule(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    void schedule(Node<K, V> node) {
+        Node<K, V> sentinel = findBucket(node.expireAt);
+        node.timerPrev = sentinel.timerPrev;
+        node.timerNext = sentinel;
+        sentinel.timerPrev.timerNext = node;
+        sentinel.timerPrev = node;
+    }
+
+    void deschedule(Node<K, V> node) {
+        if (node.timerNext == null) { return; }
+        node.timerNext.timerPrev = node.timerPrev;
+        node.timerPrev.timerNext = node.timerNext;
+        node.timerNext = null;
+        node.timerPrev = null;
+    }
+
+    private Node<K, V> findBucket(long time) {
+        long duration = time - nanos;
+        int length = wheel.length - 1;
+        for (int i = 0; i < length; i++) {
+            if (duration < SPANS[i + 1]) {
+                long ticks = (time >>> SHIFT[i]);
+                int index = (int) (ticks & (wheel[i].length - 1));
+                return wheel[i][index];
+            }
+        }
+        return wheel[length][0];
+    }
+}
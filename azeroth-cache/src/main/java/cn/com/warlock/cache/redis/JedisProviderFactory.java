@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 
 import cn.com.warlock.cache.redis.cluster.JedisClusterProvider;
+import cn.com.warlock.cache.redis.shard.JedisShardProvider;
 import cn.com.warlock.cache.redis.standalone.JedisStandaloneProvider;
 import cn.com.warlock.spring.InstanceFactory;
 import redis.clients.jedis.BinaryJedisClusterCommands;
@@ -115,4 +116,8 @@ public class JedisProviderFactory {
     public static boolean isCluster(String groupName) {
         return JedisClusterProvider.MODE.equals(currentMode(groupName));
     }
+
+    public static boolean isShard(String groupName) {
+        return JedisShardProvider.MODE.equals(currentMode(groupName));
+    }
 }
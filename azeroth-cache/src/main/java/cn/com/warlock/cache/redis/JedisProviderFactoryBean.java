@@ -14,6 +14,8 @@ import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.util.StringUtils;
 
+import cn.com.warlock.cache.codec.CompressionType;
+import cn.com.warlock.cache.codec.ValueCodec;
 import cn.com.warlock.cache.redis.cluster.JedisClusterProvider;
 import cn.com.warlock.cache.redis.sentinel.JedisSentinelProvider;
 import cn.com.warlock.cache.redis.standalone.JedisStandaloneProvider;
@@ -51,6 +53,12 @@ public class JedisProviderFactoryBean implements ApplicationContextAware, Initia
     private String masterName;
     private String clientName;
 
+    //值编解码：序列化方式(kryo/fst/json)、压缩方式(none/deflate/lz4/snappy)、压缩阈值（字节）
+    //均未配置时按旧格式写入
+    private String  serializer;
+    private String  compression;
+    private Integer compressThreshold;
+
     private ApplicationContext context;
 
     public void setGroup(String group) {
@@ -94,6 +102,18 @@ public class JedisProviderFactoryBean implements ApplicationContextAware, Initia
         this.clientName = clientName;
     }
 
+    public void setSerializer(String serializer) {
+        this.serializer = serializer;
+    }
+
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    public void setCompressThreshold(Integer compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
     @Override
     public void setApplicationContext(ApplicationContext context) throws BeansException {
         this.context = context;
@@ -108,6 +128,19 @@ public class JedisProviderFactoryBean implements ApplicationContextAware, Initia
             throw new Exception("type or servers is empty??");
         }
         registerRedisProvier();
+        registerValueCodec();
+    }
+
+    private void registerValueCodec() {
+        if (serializer == null && compression == null && compressThreshold == null) { return; }
+        ValueCodec.SerializerType serializerType = serializer == null ? null
+                : ValueCodec.SerializerType.valueOf(serializer.trim().toUpperCase());
+        CompressionType compressionType = compression == null ? null
+                : CompressionType.valueOf(compression.trim().toUpperCase());
+        ValueCodec codec = new ValueCodec(serializerType, compressionType,
+                compressThreshold == null ? 0 : compressThreshold);
+        ValueCodec.register(getGroup(), codec);
+        logger.info("register ValueCodec OK,group:{},codec:{}", getGroup(), codec);
     }
 
     /**
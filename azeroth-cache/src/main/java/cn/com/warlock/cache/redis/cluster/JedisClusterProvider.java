@@ -18,8 +18,8 @@ public class JedisClusterProvider implements JedisProvider<JedisCluster, BinaryJ
 
     private Integer maxRedirections = 3;        //重试3次
 
-    private JedisCluster       jedisCluster;
-    private BinaryJedisCluster binaryJedisCluster;
+    private JedisCluster          jedisCluster;
+    private SlotBasedJedisCluster binaryJedisCluster;
 
     private String groupName;
 
@@ -31,7 +31,7 @@ public class JedisClusterProvider implements JedisProvider<JedisCluster, BinaryJ
         this.groupName = groupName;
         Set<HostAndPort> nodes = this.parseHostAndPort(servers);
         jedisCluster = new JedisCluster(nodes, timeout, maxRedirections, jedisPoolConfig);
-        binaryJedisCluster = new BinaryJedisCluster(nodes, timeout, maxRedirections,
+        binaryJedisCluster = new SlotBasedJedisCluster(nodes, timeout, maxRedirections,
                 jedisPoolConfig);
     }
 
@@ -57,7 +57,7 @@ public class JedisClusterProvider implements JedisProvider<JedisCluster, BinaryJ
     }
 
     @Override
-    public BinaryJedisCluster getBinary() {
+    public SlotBasedJedisCluster getBinary() {
         return binaryJedisCluster;
     }
 
@@ -68,6 +68,7 @@ public class JedisClusterProvider implements JedisProvider<JedisCluster, BinaryJ
     @Override
     public void destroy() throws Exception {
         jedisCluster.close();
+        binaryJedisCluster.close();
     }
 
     @Override
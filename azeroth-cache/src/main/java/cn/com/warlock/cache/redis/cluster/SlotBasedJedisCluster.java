@@ -0,0 +1,37 @@
+package cn.com.warlock.cache.redis.cluster;
+
+import java.util.Set;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+
+import redis.clients.jedis.BinaryJedisCluster;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisSlotBasedConnectionHandler;
+
+/**
+ * 暴露按slot获取节点连接的集群客户端（用于pipeline按节点分组执行）
+ */
+public class SlotBasedJedisCluster extends BinaryJedisCluster {
+
+    public SlotBasedJedisCluster(Set<HostAndPort> nodes, int timeout, int maxRedirections,
+                                 GenericObjectPoolConfig poolConfig) {
+        super(nodes, timeout, maxRedirections, poolConfig);
+    }
+
+    /**
+     * 获取slot所在节点的连接，使用完必须close归还连接池
+     * @param slot
+     * @return
+     */
+    public Jedis getConnectionFromSlot(int slot) {
+        return ((JedisSlotBasedConnectionHandler) connectionHandler).getConnectionFromSlot(slot);
+    }
+
+    /**
+     * 刷新slot与节点映射（出现MOVED时调用）
+     */
+    public void renewSlotCache() {
+        connectionHandler.renewSlotCache();
+    }
+}
@@ -0,0 +1,128 @@
+package cn.com.warlock.cache.local;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class LocalCacheTest {
+
+    private static void advance(AtomicLong ticker, long duration, TimeUnit unit) {
+        ticker.addAndGet(unit.toNanos(duration));
+    }
+
+    @Test
+    public void testSizeEviction() {
+        LocalCache<Integer, Integer> cache = new LocalCache<>(100, 0, TimeUnit.SECONDS);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i);
+        }
+        cache.cleanUp();
+        assertEquals(100, cache.size());
+        assertEquals(100, cache.weightedSize());
+        assertEquals(900, cache.stats().getEvictionCount());
+    }
+
+    @Test
+    public void testFrequentKeySurvivesScan() {
+        LocalCache<String, Integer> cache = new LocalCache<>(100, 0, TimeUnit.SECONDS);
+        cache.put("hot", 1);
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(cache.get("hot"));
+            cache.cleanUp();
+        }
+        //大量只访问一次的key不应把高频key挤出
+        for (int i = 0; i < 1000; i++) {
+            cache.put("cold" + i, i);
+        }
+        assertNotNull(cache.get("hot"));
+    }
+
+    @Test
+    public void testWeightEviction() {
+        LocalCache<String, String> cache = new LocalCache<>(100, 0, TimeUnit.SECONDS,
+            (key, value) -> value.length());
+        for (int i = 0; i < 20; i++) {
+            cache.put("key" + i, "0123456789");
+        }
+        cache.cleanUp();
+        assertTrue(cache.weightedSize() <= 100);
+        assertEquals(cache.size() * 10, cache.weightedSize());
+    }
+
+    @Test
+    public void testExpireAfterWrite() {
+        AtomicLong ticker = new AtomicLong();
+        LocalCache<String, String> cache = new LocalCache<>(100, 50, TimeUnit.MILLISECONDS, null,
+            ticker::get);
+        cache.put("key", "value");
+        advance(ticker, 49, TimeUnit.MILLISECONDS);
+        assertEquals("value", cache.get("key"));
+
+        advance(ticker, 1, TimeUnit.MILLISECONDS);
+        //过期后立即不可读
+        assertNull(cache.get("key"));
+        assertFalse(cache.containsKey("key"));
+        //时间轮最细一层桶跨度约1秒，经过后清理移除
+        advance(ticker, 2, TimeUnit.SECONDS);
+        cache.cleanUp();
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.stats().getExpirationCount());
+    }
+
+    @Test
+    public void testPerEntryExpire() {
+        AtomicLong ticker = new AtomicLong();
+        LocalCache<String, String> cache = new LocalCache<>(100, 0, TimeUnit.SECONDS, null,
+            ticker::get);
+        cache.put("short", "value", 50, TimeUnit.MILLISECONDS);
+        cache.put("forever", "value");
+        //覆盖写入后使用新的过期时间
+        cache.put("renewed", "value", 50, TimeUnit.MILLISECONDS);
+        cache.put("renewed", "value", 10, TimeUnit.SECONDS);
+
+        advance(ticker, 60, TimeUnit.MILLISECONDS);
+        assertNull(cache.get("short"));
+        assertEquals("value", cache.get("forever"));
+        assertEquals("value", cache.get("renewed"));
+    }
+
+    @Test
+    public void testRemoveAndClear() {
+        LocalCache<String, String> cache = new LocalCache<>(100, 10, TimeUnit.SECONDS);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        assertEquals("1", cache.remove("a"));
+        assertNull(cache.remove("a"));
+        assertEquals(1, cache.weightedSize());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    public void testFrequencySketch() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        assertEquals(0, sketch.frequency("a"));
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("a");
+        }
+        assertEquals(5, sketch.frequency("a"));
+        //4bit计数上限15
+        for (int i = 0; i < 20; i++) {
+            sketch.increment("a");
+        }
+        assertEquals(15, sketch.frequency("a"));
+        //累加次数达到样本数（10倍容量）后计数减半
+        for (int i = 0; i < 160; i++) {
+            sketch.increment("b" + i);
+        }
+        assertTrue(sketch.frequency("a") <= 8);
+    }
+}
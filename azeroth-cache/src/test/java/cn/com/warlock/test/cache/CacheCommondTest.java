@@ -2,6 +2,7 @@ package cn.com.warlock.test.cache;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -13,9 +14,13 @@ import org.springframework.context.ApplicationContextAware;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import cn.com.warlock.cache.TieredCache;
 import cn.com.warlock.cache.command.RedisHashMap;
 import cn.com.warlock.cache.command.RedisNumber;
+import cn.com.warlock.cache.command.AsyncRedisObject;
+import cn.com.warlock.cache.command.PipelineResult;
 import cn.com.warlock.cache.command.RedisObject;
+import cn.com.warlock.cache.command.RedisPipeline;
 import cn.com.warlock.cache.command.RedisSet;
 import cn.com.warlock.cache.command.RedisSortSet;
 import cn.com.warlock.cache.command.RedisString;
@@ -92,6 +97,51 @@ public class CacheCommondTest implements ApplicationContextAware {
         System.out.println(new RedisNumber("ins_test").increase(5));
     }
 
+    @Test
+    public void testPipeline() {
+        RedisPipeline pipeline = new RedisPipeline();
+        pipeline.set("User.id:1001", new User(1001, "jack"), 60);
+        pipeline.setString("User.name:1001", "jack", 60);
+        PipelineResult<Long> increase = pipeline.increase("ins_test", 5);
+        pipeline.sync();
+
+        PipelineResult<User> user = pipeline.get("User.id:1001");
+        PipelineResult<String> name = pipeline.getString("User.name:1001");
+        PipelineResult<Long> ttl = pipeline.getTtl("User.id:1001");
+        pipeline.remove("User.id:1001");
+        pipeline.remove("User.name:1001");
+        pipeline.sync();
+
+        System.out.println(increase.get());
+        System.out.println(user.get());
+        System.out.println(name.get());
+        System.out.println(ttl.get());
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        AsyncRedisObject redisObject = new AsyncRedisObject("User.id:1001");
+        redisObject.set(new User(1001, "jack"), 60).get();
+
+        CompletableFuture<User> user1 = redisObject.get();
+        CompletableFuture<User> user2 = new AsyncRedisObject("User.id:1001").get();
+        System.out.println(user1.get() + "," + user2.get());
+
+        redisObject.remove().get();
+    }
+
+    @Test
+    public void testTieredCache() {
+        TieredCache cache = new TieredCache(60);
+        cache.setStaleSeconds(30);
+        User user = cache.get("User.id:1002", () -> new User(1002, "tom"));
+        user = cache.get("User.id:1002", () -> new User(1002, "tom"));
+        Object none = cache.get("User.id:-1", () -> null);
+        System.out.println(user + "," + none + "," + cache.getMetrics());
+        cache.evict("User.id:1002");
+        cache.evict("User.id:-1");
+    }
+
     @Test
     public void testLocalRedis() throws InterruptedException {
         //字符串
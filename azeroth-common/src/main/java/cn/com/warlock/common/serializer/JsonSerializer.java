@@ -0,0 +1,46 @@
+package cn.com.warlock.common.serializer;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * 使用 jackson 实现序列化（写入类型信息，可读性好，体积比kryo大）<br>
+ * 注意：根对象为基本数值类型时按json数值还原（如Long可能还原为Integer）
+ */
+public class JsonSerializer implements Serializer {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final ObjectWriter writer;
+
+    static {
+        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL,
+                JsonTypeInfo.As.PROPERTY);
+        //按Object写入，根对象也带上类型信息
+        writer = mapper.writerFor(Object.class);
+    }
+
+    @Override
+    public String name() {
+        return "json";
+    }
+
+    @Override
+    public byte[] serialize(Object obj) throws IOException {
+        if (obj == null) { throw new RuntimeException("obj can not be null"); }
+        return writer.writeValueAsBytes(obj);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws IOException {
+        if (bytes == null || bytes.length == 0) { return null; }
+        return mapper.readValue(bytes, Object.class);
+    }
+}
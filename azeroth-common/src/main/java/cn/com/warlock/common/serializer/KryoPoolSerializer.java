@@ -1,31 +1,93 @@
 package cn.com.warlock.common.serializer;
 
 import java.io.IOException;
-import java.util.Deque;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.lang3.StringUtils;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
+import cn.com.warlock.common.util.ResourceUtils;
+
 /**
  * 使用 KryoPool 实现序列化
  */
 public class KryoPoolSerializer implements Serializer {
 
+    /**
+     * 注册类最小ID（小于该值为kryo内置类型保留）
+     */
+    public static final int MIN_REGISTRATION_ID = 100;
+
+    /**
+     * 注册类配置，格式：id:className,id:className
+     */
+    public static final String REGISTRATION_PROP_KEY = "serializer.kryo.registrations";
+
+    /**
+     * 注册的类（写入ID代替类全名），各节点必须保持一致
+     */
+    private static final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    static {
+        loadRegistrationsFromConfig();
+    }
+
     /**
      * Kryo 的包装
      */
     private static class KryoHolder {
         private Kryo kryo;
-        static final int    BUFFER_SIZE = 1024;
-        private      Output output      = new Output(BUFFER_SIZE, -1); //reuse
-        private      Input  input       = new Input();
+        static final int    BUFFER_SIZE     = 1024;
+        //超过该大小的缓冲区不保留，避免大对象长期占用内存
+        static final int    MAX_RETAIN_SIZE = 64 * 1024;
+        private      Output output          = new Output(BUFFER_SIZE, -1); //reuse
+        private      Input  input           = new Input();
+        private      Input  streamInput     = new Input(BUFFER_SIZE);
+        //已应用的注册数
+        private      int    registered;
+        private      boolean inUse;
 
         KryoHolder(Kryo kryo) {
             this.kryo = kryo;
         }
 
+        void applyRegistrations() {
+            while (registered < registrations.size()) {
+                Registration registration = registrations.get(registered++);
+                kryo.register(registration.clazz, registration.id);
+            }
+        }
+
+        void reset() {
+            if (output.getBuffer().length > MAX_RETAIN_SIZE) {
+                output = new Output(BUFFER_SIZE, -1);
+            }
+            output.setOutputStream(null);
+            input.setBuffer(EMPTY_BYTES);
+            streamInput.setInputStream(null);
+        }
+    }
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
+    private static class Registration {
+        final Class<?> clazz;
+        final int      id;
+
+        Registration(Class<?> clazz, int id) {
+            this.clazz = clazz;
+            this.id = id;
+        }
     }
 
     interface KryoPool {
@@ -45,18 +107,22 @@ public class KryoPoolSerializer implements Serializer {
 
     /**
      * 由于kryo创建的代价相对较高 ，这里使用空间换时间
-     * 对KryoHolder对象进行重用
+     * 对KryoHolder对象进行重用：优先使用当前线程绑定的实例，
+     * 重入（序列化过程中再次序列化）时从有界共享池获取
      */
     public static class KryoPoolImpl implements KryoPool {
+
         /**
-         * default is 1500
-         * online server limit 3K
+         * 共享池最大数量
          */
+        private static final int MAX_SHARED_SIZE = 64;
+
+        private final ThreadLocal<KryoHolder> threadHolder = new ThreadLocal<>();
 
         /**
-         * thread safe list
+         * thread safe bounded queue
          */
-        private final Deque<KryoHolder> kryoHolderDeque = new ConcurrentLinkedDeque<KryoHolder>();
+        private final BlockingQueue<KryoHolder> sharedHolders = new ArrayBlockingQueue<>(MAX_SHARED_SIZE);
 
         private KryoPoolImpl() {
 
@@ -76,8 +142,17 @@ public class KryoPoolSerializer implements Serializer {
          */
         @Override
         public KryoHolder get() {
-            KryoHolder kryoHolder = kryoHolderDeque.pollFirst(); // Retrieves and removes the head of the queue represented by this table
-            return kryoHolder == null ? creatInstnce() : kryoHolder;
+            KryoHolder kryoHolder = threadHolder.get();
+            if (kryoHolder == null) {
+                kryoHolder = creatInstnce();
+                threadHolder.set(kryoHolder);
+            } else if (kryoHolder.inUse) {
+                kryoHolder = sharedHolders.poll();
+                if (kryoHolder == null) { kryoHolder = creatInstnce(); }
+            }
+            kryoHolder.inUse = true;
+            kryoHolder.applyRegistrations();
+            return kryoHolder;
         }
 
         /**
@@ -92,13 +167,17 @@ public class KryoPoolSerializer implements Serializer {
 
         /**
          * return object
-         * Inserts the specified element at the tail of this queue.
+         * 当前线程绑定的实例直接释放，其他放回共享池（池满丢弃）
          *
          * @param kryoHolder ...
          */
         @Override
         public void offer(KryoHolder kryoHolder) {
-            kryoHolderDeque.addLast(kryoHolder);
+            kryoHolder.reset();
+            kryoHolder.inUse = false;
+            if (kryoHolder != threadHolder.get()) {
+                sharedHolders.offer(kryoHolder);
+            }
         }
 
         /**
@@ -109,6 +188,44 @@ public class KryoPoolSerializer implements Serializer {
         }
     }
 
+    /**
+     * 注册类，注册后写入ID代替类全名（已注册的类仍可读取按类全名写入的旧数据）<br>
+     * <font color="red">读写双方必须使用相同的注册，否则无法反序列化</font>
+     *
+     * @param clazz
+     * @param id 不小于{@link #MIN_REGISTRATION_ID}
+     */
+    public static synchronized void register(Class<?> clazz, int id) {
+        if (id < MIN_REGISTRATION_ID) {
+            throw new IllegalArgumentException("registration id must >= " + MIN_REGISTRATION_ID);
+        }
+        for (Registration registration : registrations) {
+            if (registration.id == id || registration.clazz == clazz) {
+                if (registration.id == id && registration.clazz == clazz) { return; }
+                throw new IllegalArgumentException("registration conflict:" + clazz.getName() + ":" + id);
+            }
+        }
+        registrations.add(new Registration(clazz, id));
+    }
+
+    private static void loadRegistrationsFromConfig() {
+        String config = null;
+        try {
+            config = ResourceUtils.getProperty(REGISTRATION_PROP_KEY);
+        } catch (Exception e) {
+            return;
+        }
+        if (StringUtils.isBlank(config)) { return; }
+        for (String item : StringUtils.split(config, ",;")) {
+            String[] idAndClass = StringUtils.split(item.trim(), ":");
+            try {
+                register(Class.forName(idAndClass[1].trim()), Integer.parseInt(idAndClass[0].trim()));
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException("kryo registration class not found:" + item, e);
+            }
+        }
+    }
+
     @Override
     public String name() {
         return "kryo_pool_ser";
@@ -127,14 +244,55 @@ public class KryoPoolSerializer implements Serializer {
             kryoHolder = KryoPoolImpl.getInstance().get();
             kryoHolder.output.clear(); // clear Output -->每次调用的时候 重置
             kryoHolder.kryo.writeClassAndObject(kryoHolder.output, obj);
-            return kryoHolder.output.toBytes();// 无法避免拷贝 ~~~
+            return kryoHolder.output.toBytes();// 返回byte[]无法避免拷贝，可使用OutputStream/ByteBuffer版本
+        } catch (RuntimeException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (kryoHolder != null) {
+                KryoPoolImpl.getInstance().offer(kryoHolder);
+            }
+        }
+    }
+
+    /**
+     * 序列化直接写入输出流（复用缓冲区，不产生中间byte[]）
+     */
+    @Override
+    public void serialize(Object obj, OutputStream out) throws IOException {
+        KryoHolder kryoHolder = null;
+        if (obj == null) { throw new RuntimeException("obj can not be null"); }
+        try {
+            kryoHolder = KryoPoolImpl.getInstance().get();
+            kryoHolder.output.setOutputStream(out);
+            kryoHolder.kryo.writeClassAndObject(kryoHolder.output, obj);
+            kryoHolder.output.flush();
+        } catch (RuntimeException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (kryoHolder != null) {
+                KryoPoolImpl.getInstance().offer(kryoHolder);
+            }
+        }
+    }
+
+    /**
+     * 序列化写入buffer当前位置（复用缓冲区，不产生中间byte[]）
+     */
+    @Override
+    public void serialize(Object obj, ByteBuffer buffer) throws IOException {
+        KryoHolder kryoHolder = null;
+        if (obj == null) { throw new RuntimeException("obj can not be null"); }
+        try {
+            kryoHolder = KryoPoolImpl.getInstance().get();
+            kryoHolder.output.clear();
+            kryoHolder.kryo.writeClassAndObject(kryoHolder.output, obj);
+            buffer.put(kryoHolder.output.getBuffer(), 0, kryoHolder.output.position());
         } catch (RuntimeException e) {
             throw new RuntimeException(e);
         } finally {
             if (kryoHolder != null) {
                 KryoPoolImpl.getInstance().offer(kryoHolder);
             }
-            // obj = null; //GC
         }
     }
 
@@ -157,7 +315,60 @@ public class KryoPoolSerializer implements Serializer {
             if (kryoHolder != null) {
                 KryoPoolImpl.getInstance().offer(kryoHolder);
             }
-            // bytes = null; // for gc
+        }
+    }
+
+    /**
+     * 从输入流读取一个对象（输入流可能被预读，流中只应包含该对象）
+     */
+    @Override
+    public Object deserialize(InputStream in) throws IOException {
+        KryoHolder kryoHolder = null;
+        if (in == null) { throw new RuntimeException("inputStream can not be null"); }
+        try {
+            kryoHolder = KryoPoolImpl.getInstance().get();
+            kryoHolder.streamInput.setInputStream(in);
+            return kryoHolder.kryo.readClassAndObject(kryoHolder.streamInput);
+        } catch (RuntimeException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (kryoHolder != null) {
+                KryoPoolImpl.getInstance().offer(kryoHolder);
+            }
+        }
+    }
+
+    /**
+     * 从buffer当前位置读取一个对象，读取后position移动到对象末尾（heap buffer不拷贝）
+     */
+    @Override
+    public Object deserialize(ByteBuffer buffer) throws IOException {
+        KryoHolder kryoHolder = null;
+        if (buffer == null) { throw new RuntimeException("buffer can not be null"); }
+        if (!buffer.hasArray()) {
+            ByteBufferInput input = new ByteBufferInput(buffer);
+            kryoHolder = KryoPoolImpl.getInstance().get();
+            try {
+                return kryoHolder.kryo.readClassAndObject(input);
+            } catch (RuntimeException e) {
+                throw new RuntimeException(e);
+            } finally {
+                KryoPoolImpl.getInstance().offer(kryoHolder);
+            }
+        }
+        try {
+            kryoHolder = KryoPoolImpl.getInstance().get();
+            int offset = buffer.arrayOffset() + buffer.position();
+            kryoHolder.input.setBuffer(buffer.array(), offset, buffer.remaining());
+            Object object = kryoHolder.kryo.readClassAndObject(kryoHolder.input);
+            buffer.position(buffer.position() + kryoHolder.input.position() - offset);
+            return object;
+        } catch (RuntimeException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (kryoHolder != null) {
+                KryoPoolImpl.getInstance().offer(kryoHolder);
+            }
         }
     }
 }
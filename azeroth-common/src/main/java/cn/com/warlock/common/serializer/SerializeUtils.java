@@ -1,6 +1,9 @@
 package cn.com.warlock.common.serializer;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * 对象序列化工具
@@ -36,4 +39,70 @@ public class SerializeUtils {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * 序列化写入输出流（不产生中间byte[]）
+     *
+     * @param object 需要序列化的对象
+     * @param out
+     */
+    public static void serialize(Object object, OutputStream out) {
+        try {
+            serializer.serialize(object, out);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 序列化写入buffer当前位置
+     *
+     * @param object 需要序列化的对象
+     * @param buffer
+     */
+    public static void serialize(Object object, ByteBuffer buffer) {
+        try {
+            serializer.serialize(object, buffer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 从输入流反序列化
+     *
+     * @param in
+     * @return
+     */
+    public static Object deserialize(InputStream in) {
+        try {
+            return serializer.deserialize(in);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 从buffer当前位置反序列化（heap buffer不拷贝）
+     *
+     * @param buffer
+     * @return
+     */
+    public static Object deserialize(ByteBuffer buffer) {
+        try {
+            return serializer.deserialize(buffer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 注册类以ID代替类全名写入，减小序列化体积，各节点注册必须一致
+     *
+     * @param clazz
+     * @param id
+     */
+    public static void register(Class<?> clazz, int id) {
+        KryoPoolSerializer.register(clazz, id);
+    }
 }
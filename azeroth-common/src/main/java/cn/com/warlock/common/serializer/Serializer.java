@@ -1,6 +1,10 @@
 package cn.com.warlock.common.serializer;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * 对象序列化接口
@@ -13,4 +17,40 @@ public interface Serializer {
 
     public Object deserialize(byte[] bytes) throws IOException;
 
+    /**
+     * 序列化写入输出流（默认经过byte[]中转，实现类可覆盖以避免拷贝）
+     */
+    default void serialize(Object obj, OutputStream out) throws IOException {
+        out.write(serialize(obj));
+    }
+
+    /**
+     * 序列化写入buffer当前位置
+     */
+    default void serialize(Object obj, ByteBuffer buffer) throws IOException {
+        buffer.put(serialize(obj));
+    }
+
+    /**
+     * 从输入流读取（读取到流结束）
+     */
+    default Object deserialize(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int len;
+        while ((len = in.read(buf)) != -1) {
+            out.write(buf, 0, len);
+        }
+        return deserialize(out.toByteArray());
+    }
+
+    /**
+     * 从buffer当前位置读取剩余全部字节
+     */
+    default Object deserialize(ByteBuffer buffer) throws IOException {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return deserialize(bytes);
+    }
+
 }
@@ -1,6 +1,7 @@
 package test.serlalize;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -23,5 +24,10 @@ public class SerliazePerfTest {
         System.out.println(SerializeUtils.serialize(users).length);
         System.out.println(JsonUtils.toJson(users).getBytes().length);
 
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        SerializeUtils.serialize(users, buffer);
+        buffer.flip();
+        System.out.println(buffer.remaining() + ":" + SerializeUtils.deserialize(buffer));
+
     }
 }
@@ -41,6 +41,27 @@ public class ConsumerContext {
 
     private int                         maxProcessThreads;
 
+    //每个分区的处理通道数（按partitionFactor分配，同一通道内顺序处理）
+    private int                         partitionLanes         = 1;
+
+    //单个分区最大积压消息数，超过后暂停该分区拉取
+    private int                         maxPendingPerPartition = 1000;
+
+    //批量处理（BatchMessageHandler）每批最大消息数
+    private int                         batchMaxSize           = 500;
+
+    //批量处理每批最大字节数
+    private int                         batchMaxBytes          = 1024 * 1024;
+
+    //批量处理未凑满一批时的最长等待时间（毫秒）
+    private long                        batchLingerMs          = 50;
+
+    //是否使用延迟重试主题处理失败消息（否则使用内存重试队列）
+    private boolean                     retryTopicEnabled      = false;
+
+    //延迟重试主题级别，逗号分隔
+    private String                      retryTiers             = "15s,1m,10m";
+
     public ConsumerContext(Properties configs, String groupId, String consumerId,
                            Map<String, MessageHandler> messageHandlers, int maxProcessThreads) {
         super();
@@ -71,6 +92,62 @@ public class ConsumerContext {
         return maxProcessThreads;
     }
 
+    public int getPartitionLanes() {
+        return partitionLanes;
+    }
+
+    public void setPartitionLanes(int partitionLanes) {
+        this.partitionLanes = partitionLanes;
+    }
+
+    public int getMaxPendingPerPartition() {
+        return maxPendingPerPartition;
+    }
+
+    public void setMaxPendingPerPartition(int maxPendingPerPartition) {
+        this.maxPendingPerPartition = maxPendingPerPartition;
+    }
+
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    public void setBatchMaxSize(int batchMaxSize) {
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    public int getBatchMaxBytes() {
+        return batchMaxBytes;
+    }
+
+    public void setBatchMaxBytes(int batchMaxBytes) {
+        this.batchMaxBytes = batchMaxBytes;
+    }
+
+    public long getBatchLingerMs() {
+        return batchLingerMs;
+    }
+
+    public void setBatchLingerMs(long batchLingerMs) {
+        this.batchLingerMs = batchLingerMs;
+    }
+
+    public boolean isRetryTopicEnabled() {
+        return retryTopicEnabled;
+    }
+
+    public void setRetryTopicEnabled(boolean retryTopicEnabled) {
+        this.retryTopicEnabled = retryTopicEnabled;
+    }
+
+    public String getRetryTiers() {
+        return retryTiers;
+    }
+
+    public void setRetryTiers(String retryTiers) {
+        this.retryTiers = retryTiers;
+    }
+
     public void setOffsetLogHanlder(OffsetLogHanlder offsetLogHanlder) {
         this.offsetLogHanlder = offsetLogHanlder;
     }
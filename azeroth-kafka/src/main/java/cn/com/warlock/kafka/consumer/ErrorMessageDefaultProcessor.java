@@ -1,9 +1,10 @@
 package cn.com.warlock.kafka.consumer;
 
 import java.io.Closeable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -12,25 +13,29 @@ import org.slf4j.LoggerFactory;
 
 import cn.com.warlock.kafka.handler.MessageHandler;
 import cn.com.warlock.kafka.message.DefaultMessage;
+import cn.com.warlock.kafka.thread.HashedWheelTimer;
+import cn.com.warlock.kafka.thread.HashedWheelTimer.Timeout;
 import cn.com.warlock.kafka.thread.StandardThreadExecutor.StandardThreadFactory;
 
 /**
- * 消费者端处理错误消息重试处理器
+ * 消费者端处理错误消息重试处理器（到期由共用时间轮触发，重试在独立线程池执行）
  */
 public class ErrorMessageDefaultProcessor implements Closeable {
 
-    private static final Logger                       logger            = LoggerFactory
+    private static final Logger    logger            = LoggerFactory
         .getLogger(ErrorMessageDefaultProcessor.class);
 
     //重试时间间隔单元（毫秒）
-    private static final long                         RETRY_PERIOD_UNIT = 15 * 1000;
+    private static final long      RETRY_PERIOD_UNIT = 15 * 1000;
 
-    private final PriorityBlockingQueue<PriorityTask> taskQueue         = new PriorityBlockingQueue<PriorityTask>(
-        1000);
+    private final HashedWheelTimer timer             = HashedWheelTimer.getDefault();
 
-    private ExecutorService                           executor;
+    //等待重试的任务
+    private final Set<RetryTask>   pendingTasks      = ConcurrentHashMap.newKeySet();
 
-    private AtomicBoolean                             closed            = new AtomicBoolean(false);
+    private ExecutorService        executor;
+
+    private AtomicBoolean          closed            = new AtomicBoolean(false);
 
     public ErrorMessageDefaultProcessor() {
         this(1);
@@ -39,63 +44,62 @@ public class ErrorMessageDefaultProcessor implements Closeable {
     public ErrorMessageDefaultProcessor(int poolSize) {
         executor = Executors.newFixedThreadPool(poolSize,
             new StandardThreadFactory("ErrorMessageProcessor"));
-        executor.submit(new Runnable() {
-            @Override
-            public void run() {
-                while (!closed.get()) {
-                    try {
-                        PriorityTask task = taskQueue.take();
-                        //空任务跳出循环
-                        if (task.getMessage() == null)
-                            break;
-                        if (task.nextFireTime - System.currentTimeMillis() > 0) {
-                            TimeUnit.MILLISECONDS.sleep(1000);
-                            taskQueue.put(task);
-                            continue;
-                        }
-                        task.run();
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-        });
     }
 
     public void submit(final DefaultMessage message, final MessageHandler messageHandler) {
         int taskCount;
-        if ((taskCount = taskQueue.size()) > 1000) {
+        if ((taskCount = pendingTasks.size()) > 1000) {
             logger.warn("ErrorMessageProcessor queue task count over:{}", taskCount);
         }
-        taskQueue.add(new PriorityTask(message, messageHandler));
+        schedule(new RetryTask(message, messageHandler));
+    }
+
+    /**
+     * @return 等待重试的消息数
+     */
+    public int getPendingCount() {
+        return pendingTasks.size();
+    }
+
+    private void schedule(final RetryTask task) {
+        if (closed.get())
+            return;
+        pendingTasks.add(task);
+        task.timeout = timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                if (pendingTasks.remove(task) && !closed.get())
+                    executor.execute(task);
+            }
+        }, task.nextFireTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
     }
 
     public void close() {
         closed.set(true);
-        //taskQueue里面没有任务会一直阻塞，所以先add一个新任务保证执行
-        taskQueue.add(new PriorityTask(null, null));
-        try {
-            Thread.sleep(1000);
-        } catch (Exception e) {
+        for (RetryTask task : pendingTasks) {
+            if (task.timeout != null)
+                task.timeout.cancel();
         }
+        pendingTasks.clear();
         executor.shutdown();
         logger.info("ErrorMessageDefaultProcessor closed");
     }
 
-    class PriorityTask implements Runnable, Comparable<PriorityTask> {
+    class RetryTask implements Runnable {
 
         final DefaultMessage message;
         final MessageHandler messageHandler;
 
         int                  retryCount = 0;
         long                 nextFireTime;
+        volatile Timeout     timeout;
 
-        public PriorityTask(DefaultMessage message, MessageHandler messageHandler) {
+        public RetryTask(DefaultMessage message, MessageHandler messageHandler) {
             this(message, messageHandler, System.currentTimeMillis() + RETRY_PERIOD_UNIT);
         }
 
-        public PriorityTask(DefaultMessage message, MessageHandler messageHandler,
-                            long nextFireTime) {
+        public RetryTask(DefaultMessage message, MessageHandler messageHandler,
+                         long nextFireTime) {
             super();
             this.message = message;
             this.messageHandler = messageHandler;
@@ -120,24 +124,20 @@ public class ErrorMessageDefaultProcessor implements Closeable {
 
         private void retry() {
             if (retryCount == 3) {
-                logger.warn("retry_skip mssageId[{}] retry over {} time error ,skip!!!");
+                logger.warn("retry_skip mssageId[{}] retry over {} time error ,skip!!!",
+                    message.getMsgId(), retryCount);
                 return;
             }
             nextFireTime = nextFireTime + retryCount * RETRY_PERIOD_UNIT;
-            //重新放入任务队列
-            taskQueue.add(this);
+            //重新加入定时器
+            schedule(this);
             logger.debug("re-submit mssageId[{}] task to queue,next fireTime:{}",
                 this.message.getMsgId(), nextFireTime);
         }
 
-        @Override
-        public int compareTo(PriorityTask o) {
-            return (int) (this.nextFireTime - o.nextFireTime);
-        }
-
         @Override
         public String toString() {
-            return "PriorityTask [message=" + message.getMsgId() + ", messageHandler="
+            return "RetryTask [message=" + message.getMsgId() + ", messageHandler="
                    + messageHandler.getClass().getSimpleName() + ", retryCount=" + retryCount
                    + ", nextFireTime=" + nextFireTime + "]";
         }
@@ -4,155 +4,167 @@ import java.io.Closeable;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CancellationException;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
-import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import cn.com.warlock.kafka.handler.BatchMessageHandler;
 import cn.com.warlock.kafka.handler.MessageHandler;
 import cn.com.warlock.kafka.message.DefaultMessage;
+import cn.com.warlock.kafka.thread.HashedWheelTimer;
 import cn.com.warlock.kafka.thread.StandardThreadExecutor;
+import cn.com.warlock.kafka.thread.StandardThreadExecutor.StandardThreadFactory;
 
 /**
  * 默认消费者实现（new consumer api）
+ *
+ * <pre>
+ * 1. 单个拉取线程独占KafkaConsumer（KafkaConsumer非线程安全），offset提交、暂停/恢复都在拉取线程执行
+ * 2. 消息按分区分配到处理通道（partitionLanes>1时按partitionFactor再细分），同一通道内按顺序执行p1Process、p2Process
+ * 3. 不同通道并行处理，并行度为maxProcessThreads
+ * 4. 分区积压超过maxPendingPerPartition时只暂停该分区拉取，积压降到一半后恢复
+ * 5. 强制关闭enable.auto.commit（自动提交会提交已拉取未处理的消息，崩溃时丢失），
+ *    按分区跟踪消息处理完成情况（OffsetTracker），定时异步提交连续处理完成的低水位，分区回收及关闭时同步提交
+ * 6. BatchMessageHandler按通道聚合消息批量处理，批次由batchMaxSize、batchMaxBytes、batchLingerMs决定
+ * 7. 开启retryTopicEnabled时失败消息发送到延迟重试主题（见RetryTopicProcessor），
+ *    重试主题分区在队首消息到期前暂停拉取
+ * </pre>
  */
 public class NewApiTopicConsumer implements TopicConsumer, Closeable {
 
-    private static final Logger                 logger                          = LoggerFactory
-        .getLogger(ConsumerWorker.class);
+    private static final Logger                 logger                = LoggerFactory
+        .getLogger(NewApiTopicConsumer.class);
+
+    private static final long                   POLL_TIMEOUT_MS       = 100;
+    //手动提交offset间隔
+    private static final long                   COMMIT_INTERVAL_MS    = 1000;
+    //分区被回收或关闭时等待积压消息处理完成的最长时间
+    private static final long                   DRAIN_TIMEOUT_MS      = 10000;
+    //通道每次调度最多连续处理的消息数，避免长期占用线程
+    private static final int                    LANE_BATCH_SIZE       = 100;
 
     private Map<String, MessageHandler>         topicHandlers;
 
-    private ExecutorService                     fetcheExecutor;
+    private ExecutorService                     pollExecutor;
     private StandardThreadExecutor              processExecutor;
-    private List<ConsumerWorker>                consumerWorks                   = new ArrayList<>();
+    //批量处理未凑满时延迟调度
+    private final HashedWheelTimer              timer                 = HashedWheelTimer
+        .getDefault();
 
     private KafkaConsumer<String, Serializable> consumer;
 
-    private ErrorMessageDefaultProcessor        errorMessageProcessor           = new ErrorMessageDefaultProcessor(
+    private ErrorMessageDefaultProcessor        errorMessageProcessor = new ErrorMessageDefaultProcessor(
         1);
 
-    private final Map<TopicPartition, Long>     partitionToUncommittedOffsetMap = new ConcurrentHashMap<>();
-    private final List<Future<Boolean>>         committedOffsetFutures          = new ArrayList<>();
+    //延迟重试主题处理（未开启时为null）
+    private RetryTopicProcessor                 retryTopicProcessor;
+
+    //分区 -> 处理通道（只在拉取线程内增删）
+    private final Map<TopicPartition, PartitionLanes> partitionLanes = new HashMap<>();
+
+    private final AtomicBoolean                 closed                = new AtomicBoolean();
 
-    private boolean                             offsetAutoCommit;
     private ConsumerContext                     consumerContext;
 
+    private long                                lastCommitTime;
+
+    //异步提交失败时只记录日志，下次提交会覆盖
+    private final OffsetCommitCallback          commitCallback        = new OffsetCommitCallback() {
+        @Override
+        public void onComplete(Map<TopicPartition, OffsetAndMetadata> offsets,
+                               Exception exception) {
+            if (exception != null)
+                logger.warn("commit offsets {} error:{}", offsets, exception.getMessage());
+        }
+    };
+
     public NewApiTopicConsumer(ConsumerContext context) {
         super();
         this.consumerContext = context;
         this.topicHandlers = context.getMessageHandlers();
         //
-        fetcheExecutor = Executors.newFixedThreadPool(topicHandlers.size());
-        //
-        processExecutor = new StandardThreadExecutor(1, context.getMaxProcessThreads(), 1000);
-        //enable.auto.commit 默认为true
-        offsetAutoCommit = context.getProperties().containsKey("enable.auto.commit") == false
-                           || Boolean.parseBoolean(
-                               context.getProperties().getProperty("enable.auto.commit"));
+        pollExecutor = Executors.newSingleThreadExecutor(new StandardThreadFactory("KafkaPoller"));
+        //每个通道同时最多只有一个任务在队列中
+        processExecutor = new StandardThreadExecutor(1, context.getMaxProcessThreads(),
+            Integer.MAX_VALUE / 2, new StandardThreadFactory("KafkaProcessor"));
+        if (context.isRetryTopicEnabled()) {
+            retryTopicProcessor = new RetryTopicProcessor(context, topicHandlers.keySet());
+        }
     }
 
     @Override
     public void start() {
         createKafkaConsumer();
-        //按主题数创建ConsumerWorker线程
-        for (int i = 0; i < topicHandlers.size(); i++) {
-            ConsumerWorker consumer = new ConsumerWorker();
-            consumerWorks.add(consumer);
-            fetcheExecutor.submit(consumer);
-        }
-        //重置offset
-        if (offsetAutoCommit && consumerContext.getOffsetLogHanlder() != null) {
-            resetCorrectOffsets();
-        }
-    }
-
-    /**
-     * 按上次记录重置offsets
-     */
-    private void resetCorrectOffsets() {
-        consumer.pause(consumer.assignment());
-        Map<String, List<PartitionInfo>> topicInfos = consumer.listTopics();
-        Set<String> topics = topicInfos.keySet();
-
-        List<String> expectTopics = new ArrayList<>(topicHandlers.keySet());
-
-        List<PartitionInfo> patitions = null;
-        for (String topic : topics) {
-            if (!expectTopics.contains(topic))
-                continue;
-
-            patitions = topicInfos.get(topic);
-            for (PartitionInfo partition : patitions) {
-                try {
-                    //期望的偏移
-                    long expectOffsets = consumerContext.getLatestProcessedOffsets(topic,
-                        partition.partition());
-                    //
-                    TopicPartition topicPartition = new TopicPartition(topic,
-                        partition.partition());
-                    OffsetAndMetadata metadata = consumer
-                        .committed(new TopicPartition(partition.topic(), partition.partition()));
-                    if (expectOffsets >= 0) {
-                        if (expectOffsets < metadata.offset()) {
-                            consumer.seek(topicPartition, expectOffsets);
-                            logger.info("seek Topic[{}] partition[{}] from {} to {}", topic,
-                                partition.partition(), metadata.offset(), expectOffsets);
-                        }
-                    }
-                } catch (Exception e) {
-                    logger.warn("try seek topic[" + topic + "] partition[" + partition.partition()
-                                + "] offsets error");
-                }
+        pollExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                pollLoop();
             }
-        }
-        consumer.resume(consumer.assignment());
+        });
     }
 
     @Override
     public void close() {
-        for (int i = 0; i < consumerWorks.size(); i++) {
-            consumerWorks.get(i).close();
-            consumerWorks.remove(i);
-            i--;
+        if (!closed.compareAndSet(false, true))
+            return;
+        consumer.wakeup();
+        pollExecutor.shutdown();
+        try {
+            pollExecutor.awaitTermination(DRAIN_TIMEOUT_MS + 5000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        fetcheExecutor.shutdown();
         processExecutor.shutdown();
         errorMessageProcessor.close();
-        consumer.close();
+        if (retryTopicProcessor != null)
+            retryTopicProcessor.close();
     }
 
     private <K extends Serializable, V extends Serializable> void createKafkaConsumer() {
-        consumer = new KafkaConsumer<>(consumerContext.getProperties());
+        Properties configs = new Properties();
+        configs.putAll(consumerContext.getProperties());
+        //消息异步处理，只能由OffsetTracker提交已处理完成的offset
+        if (Boolean.parseBoolean(configs.getProperty("enable.auto.commit", "true"))) {
+            logger.info(
+                "enable.auto.commit is forced to false,offsets are committed after processed");
+        }
+        configs.put("enable.auto.commit", "false");
+        consumer = new KafkaConsumer<>(configs);
         ConsumerRebalanceListener listener = new ConsumerRebalanceListener() {
 
             @Override
             public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
-                if (!committedOffsetFutures.isEmpty())
-                    committedOffsetFutures.get(0).cancel(true);
-
-                commitOffsets(partitionToUncommittedOffsetMap);
+                List<PartitionLanes> revoked = new ArrayList<>();
+                for (TopicPartition tp : partitions) {
+                    PartitionLanes lanes = partitionLanes.remove(tp);
+                    if (lanes != null)
+                        revoked.add(lanes);
+                }
+                //等待已拉取的消息处理完成，超时未处理的丢弃（由新的消费者重新消费）
+                awaitDrained(revoked);
+                for (PartitionLanes lanes : revoked) {
+                    lanes.revoked = true;
+                }
+                commitOffsets(revoked, true);
             }
 
             @Override
@@ -185,162 +197,404 @@ public class NewApiTopicConsumer implements TopicConsumer, Closeable {
         };
 
         List<String> topics = new ArrayList<>(topicHandlers.keySet());
+        if (retryTopicProcessor != null)
+            topics.addAll(retryTopicProcessor.getRetryTopics());
+        consumer.subscribe(topics, listener);
+    }
 
-        if (offsetAutoCommit) {
-            consumer.subscribe(topics);
-        } else {
-            consumer.subscribe(topics, listener);
+    /**
+     * 拉取线程：拉取、分发、暂停/恢复分区、提交offset
+     */
+    private void pollLoop() {
+        try {
+            while (!closed.get()) {
+                ConsumerRecords<String, Serializable> records = consumer.poll(POLL_TIMEOUT_MS);
+                for (ConsumerRecord<String, Serializable> record : records) {
+                    dispatch(record);
+                }
+                applyBackpressure();
+                if (System.currentTimeMillis() - lastCommitTime >= COMMIT_INTERVAL_MS) {
+                    commitOffsets(partitionLanes.values(), false);
+                }
+            }
+        } catch (WakeupException e) {
+            if (!closed.get())
+                logger.error("consumer wakeup unexpected", e);
+        } catch (Exception e) {
+            logger.error("Error while consuming records", e);
+        } finally {
+            List<PartitionLanes> all = new ArrayList<>(partitionLanes.values());
+            awaitDrained(all);
+            try {
+                commitOffsets(all, true);
+            } catch (Exception e) {
+                logger.warn("commit offsets on close error", e);
+            }
+            consumer.close();
+            logger.info("consumer exited");
         }
     }
 
-    private void commitOffsets(Map<TopicPartition, Long> partitionToOffsetMap) {
+    private void dispatch(ConsumerRecord<String, Serializable> record) {
+        TopicPartition tp = new TopicPartition(record.topic(), record.partition());
+        PartitionLanes lanes = partitionLanes.get(tp);
+        if (lanes == null) {
+            lanes = new PartitionLanes(tp, consumerContext.getPartitionLanes());
+            partitionLanes.put(tp, lanes);
+        }
+        //分区等待重试消息到期中，本次拉取的后续消息在seek后重新拉取
+        if (lanes.delayedUntil > 0)
+            return;
+        //兼容没有包装的情况
+        DefaultMessage message = record.value() instanceof DefaultMessage
+            ? (DefaultMessage) record.value() : new DefaultMessage(record.value());
+        if (lanes.originTopic != null) {
+            long dueTime = RetryTopicProcessor.getDueTime(message);
+            if (dueTime > System.currentTimeMillis()) {
+                lanes.delayedUntil = dueTime;
+                consumer.seek(tp, record.offset());
+                if (!lanes.paused) {
+                    consumer.pause(Collections.singletonList(tp));
+                    lanes.paused = true;
+                }
+                return;
+            }
+        }
+        long seq = lanes.offsetTracker.track(record.offset());
+        lanes.pending.incrementAndGet();
+        lanes.lane(message, record.key())
+            .offer(new PendingRecord(record, message, seq, lanes.handlerTopic));
+    }
 
-        if (!partitionToOffsetMap.isEmpty()) {
-            Map<TopicPartition, OffsetAndMetadata> partitionToMetadataMap = new HashMap<>();
-            for (Entry<TopicPartition, Long> e : partitionToOffsetMap.entrySet()) {
-                partitionToMetadataMap.put(e.getKey(), new OffsetAndMetadata(e.getValue() + 1));
+    /**
+     * 只暂停积压过多或重试消息未到期的分区，积压降到一半且重试消息到期后恢复
+     */
+    private void applyBackpressure() {
+        int maxPending = consumerContext.getMaxPendingPerPartition();
+        long now = System.currentTimeMillis();
+        List<TopicPartition> toPause = null;
+        List<TopicPartition> toResume = null;
+        for (PartitionLanes lanes : partitionLanes.values()) {
+            int pending = lanes.pending.get();
+            if (pending >= maxPending) {
+                lanes.overloaded = true;
+            } else if (pending <= maxPending / 2) {
+                lanes.overloaded = false;
             }
+            if (lanes.delayedUntil > 0 && lanes.delayedUntil <= now) {
+                lanes.delayedUntil = 0;
+            }
+            boolean pause = lanes.overloaded || lanes.delayedUntil > 0;
+            if (pause == lanes.paused)
+                continue;
+            if (pause) {
+                if (toPause == null)
+                    toPause = new ArrayList<>();
+                toPause.add(lanes.tp);
+            } else {
+                if (toResume == null)
+                    toResume = new ArrayList<>();
+                toResume.add(lanes.tp);
+            }
+            lanes.paused = pause;
+        }
+        if (toPause != null) {
+            consumer.pause(toPause);
+            logger.debug("pause partitions:{}", toPause);
+        }
+        if (toResume != null) {
+            consumer.resume(toResume);
+            logger.debug("resume partitions:{}", toResume);
+        }
+    }
 
-            logger.debug("committing the offsets : {}", partitionToMetadataMap);
+    /**
+     * 提交各分区连续处理完成的低水位
+     * @param lanesList
+     * @param sync 是否同步提交（分区回收、关闭时）
+     */
+    private void commitOffsets(Collection<PartitionLanes> lanesList, boolean sync) {
+        lastCommitTime = System.currentTimeMillis();
+        Map<TopicPartition, OffsetAndMetadata> partitionToMetadataMap = new HashMap<>();
+        for (PartitionLanes lanes : lanesList) {
+            long offset = lanes.offsetTracker.getCommittableOffset();
+            if (offset <= lanes.committedOffset)
+                continue;
+            partitionToMetadataMap.put(lanes.tp, new OffsetAndMetadata(offset));
+            lanes.committedOffset = offset;
+        }
+        if (partitionToMetadataMap.isEmpty())
+            return;
+        logger.debug("committing the offsets : {}", partitionToMetadataMap);
+        if (sync) {
             consumer.commitSync(partitionToMetadataMap);
-            partitionToOffsetMap.clear();
+        } else {
+            consumer.commitAsync(partitionToMetadataMap, commitCallback);
         }
     }
 
-    private class ConsumerWorker implements Runnable {
-
-        private AtomicBoolean closed = new AtomicBoolean();
-
-        @Override
-        public void run() {
-
-            ExecutorService executor = Executors.newFixedThreadPool(1);
-
-            while (!closed.get()) {
-                ConsumerRecords<String, Serializable> records = consumer.poll(1500);
-                // no record found
-                if (records.isEmpty()) {
-                    continue;
-                }
-
-                if (offsetAutoCommit) {
-                    for (final ConsumerRecord<String, Serializable> record : records) {
-
-                        processConsumerRecords(record);
-                    }
-                    continue;
-                }
-
-                //由于处理消息可能产生延时，收到消息后，暂停所有分区并手动发送心跳，以避免consumer group被踢掉
-                consumer.pause(consumer.assignment());
-                Future<Boolean> future = executor
-                    .submit(new ConsumeRecords(records, partitionToUncommittedOffsetMap));
-                committedOffsetFutures.add(future);
-
-                Boolean isCompleted = false;
-                while (!isCompleted && !closed.get()) {
-                    try {
-                        //等待 heart-beat 间隔时间
-                        isCompleted = future.get(3, TimeUnit.SECONDS);
-                    } catch (TimeoutException e) {
-                        logger.debug("heartbeats the coordinator");
-                        consumer.poll(0); // does heart-beat
-                        commitOffsets(partitionToUncommittedOffsetMap);
-                    } catch (CancellationException e) {
-                        logger.debug("ConsumeRecords Job got cancelled");
-                        break;
-                    } catch (ExecutionException | InterruptedException e) {
-                        logger.error("Error while consuming records", e);
-                        break;
-                    }
+    private void awaitDrained(Collection<PartitionLanes> lanesList) {
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        for (PartitionLanes lanes : lanesList) {
+            while (lanes.pending.get() > 0 && System.currentTimeMillis() < deadline) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
                 }
-                committedOffsetFutures.remove(future);
-                consumer.resume(consumer.assignment());
-                commitOffsets(partitionToUncommittedOffsetMap);
             }
-
-            try {
-                executor.shutdownNow();
-                while (!executor.awaitTermination(5, TimeUnit.SECONDS))
-                    ;
-            } catch (InterruptedException e) {
-                logger.error("Error while exiting the consumer");
+            if (lanes.pending.get() > 0) {
+                logger.warn("partition[{}] still has {} messages unprocessed", lanes.tp,
+                    lanes.pending.get());
             }
-            consumer.close();
-            logger.info("consumer exited");
         }
+    }
 
-        /**
-         * @param record
-         */
-        private void processConsumerRecords(final ConsumerRecord<String, Serializable> record) {
-            final MessageHandler messageHandler = topicHandlers.get(record.topic());
-
+    private void process(PendingRecord pendingRecord) {
+        ConsumerRecord<String, Serializable> record = pendingRecord.record;
+        DefaultMessage message = pendingRecord.message;
+        String topic = pendingRecord.originTopic;
+        MessageHandler messageHandler = topicHandlers.get(topic);
+        try {
             consumerContext.saveOffsetsBeforeProcessed(record.topic(), record.partition(),
                 record.offset());
-            //兼容没有包装的情况
-            final DefaultMessage message = record.value() instanceof DefaultMessage
-                ? (DefaultMessage) record.value()
-                : new DefaultMessage((Serializable) record.value());
             //第一阶段处理
             messageHandler.p1Process(message);
             //第二阶段处理
-            processExecutor.submit(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        messageHandler.p2Process(message);
-                        //
-                        consumerContext.saveOffsetsAfterProcessed(record.topic(),
-                            record.partition(), record.offset());
-                    } catch (Exception e) {
-                        boolean processed = messageHandler.onProcessError(message);
-                        if (processed == false) {
-                            errorMessageProcessor.submit(message, messageHandler);
-                        }
-                        logger.error("[" + messageHandler.getClass().getSimpleName()
-                                     + "] process Topic[" + record.topic() + "] error",
-                            e);
-                    }
+            messageHandler.p2Process(message);
+            //
+            consumerContext.saveOffsetsAfterProcessed(record.topic(), record.partition(),
+                record.offset());
+        } catch (Exception e) {
+            logger.error("[" + messageHandler.getClass().getSimpleName() + "] process Topic["
+                         + record.topic() + "] error",
+                e);
+            //错误处理本身失败也不能抛出，否则通道无法标记完成
+            try {
+                boolean processed = messageHandler.onProcessError(message);
+                if (processed == false) {
+                    //重试主题发送失败时使用内存重试
+                    if (retryTopicProcessor == null || !retryTopicProcessor.submit(topic, message))
+                        errorMessageProcessor.submit(message, messageHandler);
                 }
-            });
+            } catch (Exception ex) {
+                logger.error("messageId[" + message.getMsgId() + "] handle process error failed",
+                    ex);
+            }
         }
+    }
 
-        public void close() {
-            closed.set(true);
+    /**
+     * 批量处理，失败时对半拆分重试，直到定位到出错的单条消息
+     */
+    private void processBatch(BatchMessageHandler messageHandler, List<PendingRecord> batch) {
+        if (batch.size() == 1) {
+            process(batch.get(0));
+            return;
         }
+        List<DefaultMessage> messages = new ArrayList<>(batch.size());
+        try {
+            for (PendingRecord pendingRecord : batch) {
+                messages.add(pendingRecord.message);
+                consumerContext.saveOffsetsBeforeProcessed(pendingRecord.record.topic(),
+                    pendingRecord.record.partition(), pendingRecord.record.offset());
+            }
+            messageHandler.processBatch(messages);
+        } catch (Exception e) {
+            logger.warn("[{}] process batch size[{}] error,split and retry:{}",
+                messageHandler.getClass().getSimpleName(), batch.size(), e.getMessage());
+            int middle = batch.size() / 2;
+            processBatch(messageHandler, batch.subList(0, middle));
+            processBatch(messageHandler, batch.subList(middle, batch.size()));
+            return;
+        }
+        //已处理成功，记录失败不再拆分重试
+        try {
+            for (PendingRecord pendingRecord : batch) {
+                consumerContext.saveOffsetsAfterProcessed(pendingRecord.record.topic(),
+                    pendingRecord.record.partition(), pendingRecord.record.offset());
+            }
+        } catch (Exception e) {
+            logger.warn("save processed offsets error", e);
+        }
+    }
 
-        private class ConsumeRecords implements Callable<Boolean> {
-
-            ConsumerRecords<String, Serializable> records;
-            Map<TopicPartition, Long>             partitionToUncommittedOffsetMap;
+    private static class PendingRecord {
+        final ConsumerRecord<String, Serializable> record;
+        final DefaultMessage                       message;
+        final int                                  size;
+        final long                                 enqueueTime;
+        //OffsetTracker序号
+        final long                                 seq;
+        //消息处理器对应的主题（重试主题为原主题）
+        final String                               originTopic;
+
+        PendingRecord(ConsumerRecord<String, Serializable> record, DefaultMessage message,
+                      long seq, String originTopic) {
+            this.record = record;
+            this.message = message;
+            this.seq = seq;
+            this.originTopic = originTopic;
+            this.size = Math.max(0, record.serializedValueSize());
+            this.enqueueTime = System.currentTimeMillis();
+        }
+    }
 
-            public ConsumeRecords(ConsumerRecords<String, Serializable> records,
-                                  Map<TopicPartition, Long> partitionToUncommittedOffsetMap) {
-                this.records = records;
-                this.partitionToUncommittedOffsetMap = partitionToUncommittedOffsetMap;
+    /**
+     * 单个分区的处理通道
+     */
+    private class PartitionLanes {
+        final TopicPartition tp;
+        final Lane[]         lanes;
+        //重试主题对应的原主题，非重试主题为null
+        final String         originTopic;
+        //消息处理器对应的主题
+        final String         handlerTopic;
+        //已分发未处理完成的消息数
+        final AtomicInteger  pending         = new AtomicInteger();
+        final OffsetTracker  offsetTracker   = new OffsetTracker();
+        //以下只在拉取线程读写
+        long                 committedOffset = -1;
+        boolean              paused;
+        boolean              overloaded;
+        //重试消息到期时间，0表示未等待
+        long                 delayedUntil;
+        volatile boolean     revoked;
+
+        PartitionLanes(TopicPartition tp, int laneCount) {
+            this.tp = tp;
+            this.originTopic = retryTopicProcessor == null ? null
+                : retryTopicProcessor.getOriginTopic(tp.topic());
+            this.handlerTopic = originTopic == null ? tp.topic() : originTopic;
+            this.lanes = new Lane[Math.max(1, laneCount)];
+            for (int i = 0; i < lanes.length; i++) {
+                lanes[i] = new Lane(this);
             }
+        }
 
-            @Override
-            public Boolean call() {
+        /**
+         * 相同partitionFactor（无则按消息key）的消息分配到同一通道
+         */
+        Lane lane(DefaultMessage message, String key) {
+            if (lanes.length == 1)
+                return lanes[0];
+            long hash = message.getPartitionFactor() != null ? message.getPartitionHash()
+                : (key == null ? 0 : key.hashCode());
+            return lanes[(int) ((hash & Long.MAX_VALUE) % lanes.length)];
+        }
+    }
 
-                logger.debug("Number of records received : {}", records.count());
-                try {
-                    for (final ConsumerRecord<String, Serializable> record : records) {
-                        TopicPartition tp = new TopicPartition(record.topic(), record.partition());
-                        logger.info("Record received topicPartition : {}, offset : {}", tp,
-                            record.offset());
-                        partitionToUncommittedOffsetMap.put(tp, record.offset());
+    /**
+     * 处理通道：同一时刻最多一个线程执行，保证通道内顺序
+     */
+    private class Lane implements Runnable {
+        final PartitionLanes                      owner;
+        final ConcurrentLinkedQueue<PendingRecord> queue       = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean                       scheduled   = new AtomicBoolean();
+        final BatchMessageHandler                 batchHandler;
+        //队列中的消息数及字节数（批量处理时使用）
+        final AtomicInteger                       queued      = new AtomicInteger();
+        final AtomicInteger                       queuedBytes = new AtomicInteger();
+
+        Lane(PartitionLanes owner) {
+            this.owner = owner;
+            MessageHandler handler = topicHandlers.get(owner.handlerTopic);
+            this.batchHandler = handler instanceof BatchMessageHandler
+                ? (BatchMessageHandler) handler : null;
+        }
+
+        void offer(PendingRecord record) {
+            queue.offer(record);
+            if (batchHandler != null) {
+                queued.incrementAndGet();
+                queuedBytes.addAndGet(record.size);
+            }
+            schedule();
+        }
+
+        void schedule() {
+            if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+                processExecutor.execute(this);
+            }
+        }
 
-                        processConsumerRecords(record);
+        @Override
+        public void run() {
+            if (batchHandler != null) {
+                runBatch();
+                return;
+            }
+            try {
+                for (int i = 0; i < LANE_BATCH_SIZE; i++) {
+                    PendingRecord record = queue.poll();
+                    if (record == null)
+                        break;
+                    try {
+                        //分区已被回收，剩余消息由新的消费者处理
+                        if (!owner.revoked)
+                            process(record);
+                    } finally {
+                        owner.offsetTracker.complete(record.seq);
+                        owner.pending.decrementAndGet();
                     }
-                } catch (Exception e) {
-                    logger.error("Error while consuming", e);
                 }
-                return true;
+            } finally {
+                scheduled.set(false);
+                schedule();
             }
         }
 
+        private void runBatch() {
+            int maxSize = consumerContext.getBatchMaxSize();
+            int maxBytes = consumerContext.getBatchMaxBytes();
+            boolean lingering = false;
+            try {
+                PendingRecord head = queue.peek();
+                if (head == null)
+                    return;
+                //未凑满一批且未超过等待时间，延迟处理（保持scheduled状态，期间不重复调度）
+                long lingerMs = head.enqueueTime + consumerContext.getBatchLingerMs()
+                                - System.currentTimeMillis();
+                if (lingerMs > 0 && queued.get() < maxSize && queuedBytes.get() < maxBytes
+                    && !owner.revoked && !closed.get()) {
+                    timer.newTimeout(new Runnable() {
+                        @Override
+                        public void run() {
+                            processExecutor.execute(Lane.this);
+                        }
+                    }, lingerMs, TimeUnit.MILLISECONDS);
+                    lingering = true;
+                    return;
+                }
+                List<PendingRecord> batch = new ArrayList<>(Math.min(maxSize, queued.get()));
+                int bytes = 0;
+                PendingRecord record;
+                while (batch.size() < maxSize && (batch.isEmpty() || bytes < maxBytes)
+                       && (record = queue.poll()) != null) {
+                    batch.add(record);
+                    bytes += record.size;
+                }
+                queued.addAndGet(-batch.size());
+                queuedBytes.addAndGet(-bytes);
+                try {
+                    //分区已被回收，剩余消息由新的消费者处理
+                    if (!owner.revoked)
+                        processBatch(batchHandler, batch);
+                } finally {
+                    for (PendingRecord pendingRecord : batch) {
+                        owner.offsetTracker.complete(pendingRecord.seq);
+                    }
+                    owner.pending.addAndGet(-batch.size());
+                }
+            } catch (Exception e) {
+                logger.error("process batch error", e);
+            } finally {
+                if (!lingering) {
+                    scheduled.set(false);
+                    schedule();
+                }
+            }
+        }
     }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,99 @@
+package cn.com.warlock.kafka.consumer;
+
+/**
+ * ClassName: OffsetTracker <br/>
+ * Function: 单个分区已分发消息的处理完成情况跟踪. <br/>
+ * Reason:  <br/>
+ *
+ * <pre>
+ * 按分发顺序记录offset到环形数组，消息处理完成后标记；
+ * 低水位只在之前所有消息都处理完成时前移，提交低水位保证不会跳过仍在处理中的消息
+ * </pre>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class OffsetTracker {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[]           offsets;
+    private boolean[]        completed;
+
+    //环形数组中最早未完成消息的序号、下一个分发序号
+    private long             headSeq;
+    private long             tailSeq;
+
+    //已连续处理完成的最大offset，-1表示尚无
+    private long             lastCompletedOffset = -1;
+
+    public OffsetTracker() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public OffsetTracker(int initialCapacity) {
+        offsets = new long[Math.max(16, initialCapacity)];
+        completed = new boolean[offsets.length];
+    }
+
+    /**
+     * 记录分发的消息（按offset递增顺序调用）
+     * @param offset
+     * @return 序号，处理完成后调用{@link #complete(long)}
+     */
+    public synchronized long track(long offset) {
+        if (tailSeq - headSeq == offsets.length) {
+            grow();
+        }
+        int slot = slot(tailSeq);
+        offsets[slot] = offset;
+        completed[slot] = false;
+        return tailSeq++;
+    }
+
+    /**
+     * 标记消息处理完成，并前移低水位
+     * @param seq {@link #track(long)}返回的序号
+     */
+    public synchronized void complete(long seq) {
+        if (seq < headSeq || seq >= tailSeq)
+            return;
+        completed[slot(seq)] = true;
+        while (headSeq < tailSeq && completed[slot(headSeq)]) {
+            lastCompletedOffset = offsets[slot(headSeq)];
+            headSeq++;
+        }
+    }
+
+    /**
+     * @return 可提交的offset（下一条待消费消息的offset），没有可提交时返回-1
+     */
+    public synchronized long getCommittableOffset() {
+        return lastCompletedOffset < 0 ? -1 : lastCompletedOffset + 1;
+    }
+
+    /**
+     * @return 已分发未完成（含已完成但之前有未完成）的消息数
+     */
+    public synchronized int getInflightCount() {
+        return (int) (tailSeq - headSeq);
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % offsets.length);
+    }
+
+    private void grow() {
+        int size = offsets.length;
+        long[] newOffsets = new long[size << 1];
+        boolean[] newCompleted = new boolean[size << 1];
+        for (long seq = headSeq; seq < tailSeq; seq++) {
+            int newSlot = (int) (seq % newOffsets.length);
+            newOffsets[newSlot] = offsets[slot(seq)];
+            newCompleted[newSlot] = completed[slot(seq)];
+        }
+        offsets = newOffsets;
+        completed = newCompleted;
+    }
+}
@@ -0,0 +1,191 @@
+package cn.com.warlock.kafka.consumer;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cn.com.warlock.kafka.message.DefaultMessage;
+import cn.com.warlock.kafka.serializer.KyroMessageSerializer;
+import cn.com.warlock.kafka.utils.KafkaConst;
+
+/**
+ * ClassName: RetryTopicProcessor <br/>
+ * Function: 基于延迟重试主题的消费失败消息处理. <br/>
+ * Reason:  <br/>
+ *
+ * <pre>
+ * 处理失败的消息按重试次数依次发送到延迟主题：topic.retry.15s、topic.retry.1m、topic.retry.10m，
+ * 超过重试次数发送到死信主题topic.dlq（主题需预先创建或开启自动创建）
+ * 重试次数、到期时间记录在消息头，消费者按到期时间暂停/恢复延迟主题分区，重启后不丢失
+ * </pre>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class RetryTopicProcessor implements Closeable {
+
+    private static final Logger                 logger               = LoggerFactory
+        .getLogger(RetryTopicProcessor.class);
+
+    public static final String                  RETRY_TOPIC_INFIX    = ".retry.";
+
+    public static final String                  DLQ_TOPIC_SUFFIX     = ".dlq";
+
+    private static final long                   SEND_TIMEOUT_SECONDS = 10;
+
+    private final String[]                      tierNames;
+    private final long[]                        tierDelays;
+
+    //重试主题 -> 原主题
+    private final Map<String, String>           originTopics         = new HashMap<>();
+
+    private final KafkaProducer<String, Object> producer;
+
+    /**
+     * @param context
+     * @param topics 原主题
+     */
+    public RetryTopicProcessor(ConsumerContext context, Collection<String> topics) {
+        tierNames = StringUtils.split(context.getRetryTiers(), ",");
+        tierDelays = new long[tierNames.length];
+        for (int i = 0; i < tierNames.length; i++) {
+            tierNames[i] = tierNames[i].trim();
+            tierDelays[i] = parseDelay(tierNames[i]);
+        }
+        for (String topic : topics) {
+            for (String tierName : tierNames) {
+                originTopics.put(topic + RETRY_TOPIC_INFIX + tierName, topic);
+            }
+        }
+        producer = new KafkaProducer<>(buildProducerConfigs(context.getProperties()));
+    }
+
+    /**
+     * @return 需要订阅的全部重试主题
+     */
+    public List<String> getRetryTopics() {
+        return new ArrayList<>(originTopics.keySet());
+    }
+
+    /**
+     * @param topic
+     * @return 重试主题对应的原主题，非重试主题返回null
+     */
+    public String getOriginTopic(String topic) {
+        return originTopics.get(topic);
+    }
+
+    /**
+     * @param message
+     * @return 重试消息到期时间，非重试消息返回0
+     */
+    public static long getDueTime(DefaultMessage message) {
+        Object dueTime = message.getHeaders() == null ? null
+            : message.getHeaders().get(KafkaConst.HEADER_RETRY_DUE_TIME);
+        return dueTime instanceof Number ? ((Number) dueTime).longValue() : 0;
+    }
+
+    /**
+     * 发送到下一级重试主题或死信主题
+     * @param originTopic 原主题
+     * @param message
+     * @return 是否发送成功
+     */
+    public boolean submit(String originTopic, DefaultMessage message) {
+        Object retryCountHeader = message.getHeaders() == null ? null
+            : message.getHeaders().get(KafkaConst.HEADER_RETRY_COUNT);
+        int retryCount = retryCountHeader instanceof Number
+            ? ((Number) retryCountHeader).intValue() : 0;
+
+        //在副本上修改消息头，发送失败时原消息不变（内存重试不会跳过重试级别）
+        Map<String, Object> headers = message.getHeaders() == null ? new HashMap<>()
+            : new HashMap<>(message.getHeaders());
+        String targetTopic;
+        if (retryCount < tierNames.length) {
+            targetTopic = originTopic + RETRY_TOPIC_INFIX + tierNames[retryCount];
+            headers.put(KafkaConst.HEADER_RETRY_DUE_TIME,
+                System.currentTimeMillis() + tierDelays[retryCount]);
+        } else {
+            targetTopic = originTopic + DLQ_TOPIC_SUFFIX;
+            headers.remove(KafkaConst.HEADER_RETRY_DUE_TIME);
+        }
+        headers.put(KafkaConst.HEADER_RETRY_COUNT, retryCount + 1);
+        headers.put(KafkaConst.HEADER_ORIGIN_TOPIC, originTopic);
+        DefaultMessage retryMessage = new DefaultMessage(message.getBody())
+            .partitionFactor(message.getPartitionFactor())
+            .ackRequired(message.isAckRequired());
+        retryMessage.setMsgId(message.getMsgId());
+        retryMessage.setHeaders(headers);
+        try {
+            //同步发送，确认写入后原消息才视为处理完成（可提交offset）
+            producer
+                .send(new ProducerRecord<String, Object>(targetTopic, message.getMsgId(), retryMessage))
+                .get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            logger.info("messageId[{}] retry[{}] send to topic[{}]", message.getMsgId(),
+                retryCount + 1, targetTopic);
+            return true;
+        } catch (Exception e) {
+            logger.warn("messageId[" + message.getMsgId() + "] send to topic[" + targetTopic
+                        + "] error",
+                e);
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        producer.close();
+    }
+
+    private static Properties buildProducerConfigs(Properties consumerConfigs) {
+        Properties configs = new Properties();
+        for (String name : consumerConfigs.stringPropertyNames()) {
+            if (name.startsWith("security.") || name.startsWith("ssl.")
+                || name.startsWith("sasl.")) {
+                configs.put(name, consumerConfigs.getProperty(name));
+            }
+        }
+        configs.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG,
+            consumerConfigs.getProperty("bootstrap.servers"));
+        configs.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        configs.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
+            KyroMessageSerializer.class.getName());
+        configs.put(ProducerConfig.ACKS_CONFIG, "all");
+        configs.put(ProducerConfig.RETRIES_CONFIG, "3");
+        return configs;
+    }
+
+    /**
+     * 解析延迟时间，如：500ms、15s、1m、2h
+     */
+    static long parseDelay(String tierName) {
+        String value = tierName.toLowerCase();
+        if (value.endsWith("ms"))
+            return Long.parseLong(value.substring(0, value.length() - 2));
+        long number = Long.parseLong(value.substring(0, value.length() - 1));
+        switch (value.charAt(value.length() - 1)) {
+            case 's':
+                return TimeUnit.SECONDS.toMillis(number);
+            case 'm':
+                return TimeUnit.MINUTES.toMillis(number);
+            case 'h':
+                return TimeUnit.HOURS.toMillis(number);
+            default:
+                throw new IllegalArgumentException("invalid retry tier:" + tierName);
+        }
+    }
+}
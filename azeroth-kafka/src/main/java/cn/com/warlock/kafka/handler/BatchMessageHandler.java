@@ -0,0 +1,35 @@
+package cn.com.warlock.kafka.handler;
+
+import java.util.Collections;
+import java.util.List;
+
+import cn.com.warlock.kafka.message.DefaultMessage;
+
+/**
+ * 批量消息处理器接口（仅new consumer api）<br>
+ * 同一分区（处理通道）的消息按数量、字节数或等待时间聚合后批量处理，批量处理成功后才提交offset；
+ * 批量处理失败时拆分为更小的批次重试，直到定位到出错的单条消息，再按onProcessError处理
+ */
+public interface BatchMessageHandler extends MessageHandler {
+
+    /**
+     * 批量处理
+     * @param messages 同一分区内按offset顺序排列的消息
+     */
+    void processBatch(List<DefaultMessage> messages);
+
+    /**
+     * 批量模式下不调用第一阶段处理
+     */
+    @Override
+    default void p1Process(DefaultMessage message) {
+    }
+
+    /**
+     * 单条处理（错误消息重试时调用）
+     */
+    @Override
+    default void p2Process(DefaultMessage message) {
+        processBatch(Collections.singletonList(message));
+    }
+}
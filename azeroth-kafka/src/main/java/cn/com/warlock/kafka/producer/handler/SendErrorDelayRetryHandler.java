@@ -1,11 +1,10 @@
 package cn.com.warlock.kafka.producer.handler;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.Vector;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.kafka.clients.producer.KafkaProducer;
@@ -15,23 +14,28 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import cn.com.warlock.kafka.message.DefaultMessage;
+import cn.com.warlock.kafka.thread.HashedWheelTimer;
+import cn.com.warlock.kafka.thread.HashedWheelTimer.Timeout;
 import cn.com.warlock.kafka.thread.StandardThreadExecutor.StandardThreadFactory;
 
 public class SendErrorDelayRetryHandler implements ProducerEventHandler {
 
-    private static final Logger                       logger            = LoggerFactory
+    private static final Logger                 logger         = LoggerFactory
         .getLogger(SendErrorDelayRetryHandler.class);
 
-    private final PriorityBlockingQueue<PriorityTask> taskQueue         = new PriorityBlockingQueue<PriorityTask>(
-        1000);
+    //到期由共用时间轮触发，发送在独立线程执行
+    private final HashedWheelTimer              timer          = HashedWheelTimer.getDefault();
 
-    private List<String>                              messageIdsInQueue = new Vector<>();
+    //等待重试的任务<msgId,task>
+    private final Map<String, RetryTask>        tasksInQueue   = new ConcurrentHashMap<>();
 
-    private ExecutorService                           executor;
+    private ExecutorService                     executor;
 
-    private KafkaProducer<String, Object>             topicProducer;
+    private KafkaProducer<String, Object>       topicProducer;
 
-    private int                                       retries           = 0;                                      //重试次数
+    private int                                 retries        = 0;                             //重试次数
+
+    private volatile boolean                    closed;
 
     public SendErrorDelayRetryHandler(String producerGroup,
                                       KafkaProducer<String, Object> topicProducer, int retries) {
@@ -39,28 +43,6 @@ public class SendErrorDelayRetryHandler implements ProducerEventHandler {
         this.retries = retries;
         executor = Executors.newFixedThreadPool(1,
             new StandardThreadFactory("ErrorMessageProcessor"));
-        executor.submit(new Runnable() {
-            @Override
-            public void run() {
-                long currentTimeMillis = System.currentTimeMillis();
-                while (true) {
-                    try {
-                        PriorityTask task = taskQueue.take();
-                        //空任务跳出循环
-                        if (task.message == null)
-                            break;
-                        if (task.nextFireTime < currentTimeMillis) {
-                            //重新放回去
-                            taskQueue.add(task);
-                            TimeUnit.MILLISECONDS.sleep(100);
-                            continue;
-                        }
-                        task.run();
-                    } catch (Exception e) {
-                    }
-                }
-            }
-        });
     }
 
     @Override
@@ -72,39 +54,58 @@ public class SendErrorDelayRetryHandler implements ProducerEventHandler {
         if (isAsynSend == false) {
             return;
         }
+        RetryTask task = new RetryTask(topicName, message);
         //在重试队列不处理
-        if (messageIdsInQueue.contains(message.getMsgId()))
+        if (tasksInQueue.putIfAbsent(message.getMsgId(), task) != null)
             return;
-        //
-        taskQueue.add(new PriorityTask(topicName, message));
-        messageIdsInQueue.add(message.getMsgId());
+        schedule(task);
+    }
+
+    /**
+     * @return 等待重试的消息数
+     */
+    public int getPendingCount() {
+        return tasksInQueue.size();
+    }
+
+    private void schedule(final RetryTask task) {
+        if (closed)
+            return;
+        task.timeout = timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                if (!closed)
+                    executor.execute(task);
+            }
+        }, task.nextFireTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void close() throws IOException {
-        // taskQueue里面没有任务会一直阻塞，所以先add一个新任务保证执行
-        taskQueue.add(new PriorityTask(null, null));
-        try {
-            Thread.sleep(1000);
-        } catch (Exception e) {
+        closed = true;
+        for (RetryTask task : tasksInQueue.values()) {
+            if (task.timeout != null)
+                task.timeout.cancel();
         }
+        tasksInQueue.clear();
         executor.shutdown();
         logger.info("KAFKA producer SendErrorDelayRetryHandler closed");
     }
 
-    class PriorityTask implements Runnable, Comparable<PriorityTask> {
+    class RetryTask implements Runnable {
 
         final String         topicName;
         final DefaultMessage message;
 
         int                  retryCount = 0;
         long                 nextFireTime;
+        volatile Timeout     timeout;
 
-        public PriorityTask(String topicName, DefaultMessage message) {
+        public RetryTask(String topicName, DefaultMessage message) {
             this(topicName, message, System.currentTimeMillis());
         }
 
-        public PriorityTask(String topicName, DefaultMessage message, long nextFireTime) {
+        public RetryTask(String topicName, DefaultMessage message, long nextFireTime) {
             super();
             this.topicName = topicName;
             this.message = message;
@@ -119,7 +120,7 @@ public class SendErrorDelayRetryHandler implements ProducerEventHandler {
                 topicProducer.send(
                     new ProducerRecord<String, Object>(topicName, message.getMsgId(), sendContent));
                 //处理成功移除
-                messageIdsInQueue.remove(message.getMsgId());
+                tasksInQueue.remove(message.getMsgId());
             } catch (Exception e) {
                 logger.warn("retry mssageId[{}] error", message.getMsgId(), e);
                 retry();
@@ -128,27 +129,23 @@ public class SendErrorDelayRetryHandler implements ProducerEventHandler {
 
         private void retry() {
             if (retryCount == retries) {
+                tasksInQueue.remove(message.getMsgId());
                 return;
             }
             nextFireTime = nextFireTime + retryCount * 30 * 1000;
-            //重新放入任务队列
-            taskQueue.add(this);
-            logger.debug("re submit mssageId[{}] task to queue,next fireTime:",
+            //重新加入定时器
+            schedule(this);
+            logger.debug("re submit mssageId[{}] task to queue,next fireTime:{}",
                 this.message.getMsgId(), nextFireTime);
             retryCount++;
         }
 
-        @Override
-        public int compareTo(PriorityTask o) {
-            return (int) (this.nextFireTime - o.nextFireTime);
-        }
-
         @Override
         public String toString() {
-            return "PriorityTask [message=" + message.getMsgId() + ", retryCount=" + retryCount
+            return "RetryTask [message=" + message.getMsgId() + ", retryCount=" + retryCount
                    + ", nextFireTime=" + nextFireTime + "]";
         }
 
     }
 
-}
\ No newline at end of file
+}
@@ -59,6 +59,25 @@ public class TopicConsumerSpringProvider implements InitializingBean, Disposable
 
     private OffsetLogHanlder            offsetLogHanlder;
 
+    // 每个分区的处理通道数（仅new api）
+    private int                         partitionLanes = 1;
+
+    // 单个分区最大积压消息数（仅new api）
+    private int                         maxPendingPerPartition = 1000;
+
+    // 批量处理（BatchMessageHandler）每批最大消息数、字节数及最长等待时间（仅new api）
+    private int                         batchMaxSize   = 500;
+
+    private int                         batchMaxBytes  = 1024 * 1024;
+
+    private long                        batchLingerMs  = 50;
+
+    // 是否使用延迟重试主题及死信主题处理失败消息（仅new api）
+    private boolean                     retryTopicEnabled;
+
+    // 延迟重试主题级别，如：15s,1m,10m
+    private String                      retryTiers     = "15s,1m,10m";
+
     @Override
     public void afterPropertiesSet() throws Exception {
 
@@ -168,6 +187,13 @@ public class TopicConsumerSpringProvider implements InitializingBean, Disposable
 
         ConsumerContext consumerContext = new ConsumerContext(configs, groupId, consumerId,
             topicHandlers, processThreads);
+        consumerContext.setPartitionLanes(partitionLanes);
+        consumerContext.setMaxPendingPerPartition(maxPendingPerPartition);
+        consumerContext.setBatchMaxSize(batchMaxSize);
+        consumerContext.setBatchMaxBytes(batchMaxBytes);
+        consumerContext.setBatchLingerMs(batchLingerMs);
+        consumerContext.setRetryTopicEnabled(retryTopicEnabled);
+        consumerContext.setRetryTiers(retryTiers);
         if (useNewAPI) {
             consumer = new NewApiTopicConsumer(consumerContext);
         } else {
@@ -211,6 +237,34 @@ public class TopicConsumerSpringProvider implements InitializingBean, Disposable
         this.offsetLogHanlder = offsetLogHanlder;
     }
 
+    public void setPartitionLanes(int partitionLanes) {
+        this.partitionLanes = partitionLanes;
+    }
+
+    public void setMaxPendingPerPartition(int maxPendingPerPartition) {
+        this.maxPendingPerPartition = maxPendingPerPartition;
+    }
+
+    public void setBatchMaxSize(int batchMaxSize) {
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    public void setBatchMaxBytes(int batchMaxBytes) {
+        this.batchMaxBytes = batchMaxBytes;
+    }
+
+    public void setBatchLingerMs(long batchLingerMs) {
+        this.batchLingerMs = batchLingerMs;
+    }
+
+    public void setRetryTopicEnabled(boolean retryTopicEnabled) {
+        this.retryTopicEnabled = retryTopicEnabled;
+    }
+
+    public void setRetryTiers(String retryTiers) {
+        this.retryTiers = retryTiers;
+    }
+
     @Override
     public void destroy() throws Exception {
         consumer.close();
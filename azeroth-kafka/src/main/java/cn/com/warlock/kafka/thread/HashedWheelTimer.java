@@ -0,0 +1,227 @@
+package cn.com.warlock.kafka.thread;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ClassName: HashedWheelTimer <br/>
+ * Function: 时间轮定时器，模块内延迟任务（消费重试、发送重试、批量等待等）共用. <br/>
+ * Reason:  <br/>
+ *
+ * <pre>
+ * 添加任务只入队（O(1)），由单个tick线程每个tick将新任务放入对应槽位并执行当前槽位到期任务
+ * 到期误差不超过一个tick（默认10ms）
+ * 任务在tick线程执行，耗时任务应自行提交到线程池
+ * </pre>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class HashedWheelTimer implements Closeable {
+
+    private static final Logger             logger             = LoggerFactory
+        .getLogger(HashedWheelTimer.class);
+
+    private static final long               DEFAULT_TICK_MS    = 10;
+    private static final int                DEFAULT_WHEEL_SIZE = 512;
+
+    private static volatile HashedWheelTimer defaultTimer;
+
+    private final long                      tickNanos;
+    private final Queue<Timeout>[]          wheel;
+    private final int                       mask;
+
+    //新添加的任务，tick线程每个tick转移到槽位
+    private final Queue<Timeout>            pendingAdds        = new ConcurrentLinkedQueue<>();
+
+    private final Thread                    worker;
+    private volatile boolean                stopped;
+    private long                            startTime;
+    //只在tick线程读写
+    private long                            tick;
+
+    private final AtomicLong                pendingCount       = new AtomicLong();
+    private final AtomicLong                scheduledCount     = new AtomicLong();
+    private final AtomicLong                expiredCount       = new AtomicLong();
+    private final AtomicLong                cancelledCount     = new AtomicLong();
+
+    /**
+     * 模块共用的定时器（守护线程，不需要关闭）
+     */
+    public static HashedWheelTimer getDefault() {
+        if (defaultTimer == null) {
+            synchronized (HashedWheelTimer.class) {
+                if (defaultTimer == null) {
+                    defaultTimer = new HashedWheelTimer("KafkaTimer", DEFAULT_TICK_MS,
+                        TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+                }
+            }
+        }
+        return defaultTimer;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int wheelSize) {
+        int size = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+        this.tickNanos = Math.max(unit.toNanos(tickDuration), TimeUnit.MILLISECONDS.toNanos(1));
+        this.wheel = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        this.mask = size - 1;
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runTicks();
+            }
+        }, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 添加延迟任务
+     * @param task 在tick线程执行
+     * @param delay
+     * @param unit
+     * @return
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (stopped)
+            throw new IllegalStateException("timer stopped");
+        long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay));
+        Timeout timeout = new Timeout(task, deadline);
+        pendingCount.incrementAndGet();
+        scheduledCount.incrementAndGet();
+        pendingAdds.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * @return 等待执行的任务数
+     */
+    public long getPendingTimeouts() {
+        return pendingCount.get();
+    }
+
+    public long getScheduledCount() {
+        return scheduledCount.get();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    public long getCancelledCount() {
+        return cancelledCount.get();
+    }
+
+    @Override
+    public void close() {
+        if (this == defaultTimer)
+            return;
+        stopped = true;
+        worker.interrupt();
+    }
+
+    private void runTicks() {
+        while (!stopped) {
+            long tickDeadline = startTime + tickNanos * (tick + 1);
+            long sleepNanos;
+            while ((sleepNanos = tickDeadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                if (stopped)
+                    return;
+            }
+            transferPendingAdds();
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferPendingAdds() {
+        Timeout timeout;
+        while ((timeout = pendingAdds.poll()) != null) {
+            if (timeout.state.get() != Timeout.ST_INIT)
+                continue;
+            long ticks = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (ticks - tick) / wheel.length;
+            //已过期的放入当前槽位
+            wheel[(int) (Math.max(ticks, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Queue<Timeout> bucket) {
+        for (int i = bucket.size(); i > 0; i--) {
+            Timeout timeout = bucket.poll();
+            if (timeout.state.get() != Timeout.ST_INIT)
+                continue;
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                bucket.add(timeout);
+                continue;
+            }
+            if (!timeout.state.compareAndSet(Timeout.ST_INIT, Timeout.ST_EXPIRED))
+                continue;
+            pendingCount.decrementAndGet();
+            expiredCount.incrementAndGet();
+            try {
+                timeout.task.run();
+            } catch (Throwable e) {
+                logger.warn("timer task error", e);
+            }
+        }
+    }
+
+    /**
+     * 延迟任务句柄
+     */
+    public class Timeout {
+
+        static final int            ST_INIT      = 0;
+        static final int            ST_CANCELLED = 1;
+        static final int            ST_EXPIRED   = 2;
+
+        private final Runnable      task;
+        private final long          deadline;
+        private final AtomicInteger state        = new AtomicInteger(ST_INIT);
+        //只在tick线程读写
+        private long                remainingRounds;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消任务（槽位中的任务在tick到达时移除）
+         * @return 是否取消成功（已执行或已取消返回false）
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(ST_INIT, ST_CANCELLED))
+                return false;
+            pendingCount.decrementAndGet();
+            cancelledCount.incrementAndGet();
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == ST_EXPIRED;
+        }
+    }
+}
@@ -20,4 +20,11 @@ public class KafkaConst {
     public final static String PROP_TOPIC_LAT_THRESHOLD = "topic.lat.threshold";
 
     public final static String PROP_ENV_ROUTE           = "topic.route.env";
+
+    //重试主题消息头：已重试次数、到期时间、原主题
+    public final static String HEADER_RETRY_COUNT       = "_retryCount";
+
+    public final static String HEADER_RETRY_DUE_TIME    = "_retryDueTime";
+
+    public final static String HEADER_ORIGIN_TOPIC      = "_originTopic";
 }
@@ -0,0 +1,94 @@
+package cn.com.warlock.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cn.com.warlock.kafka.thread.HashedWheelTimer;
+import cn.com.warlock.kafka.thread.HashedWheelTimer.Timeout;
+
+public class HashedWheelTimerTest {
+
+    private static final long TICK_MS = 10;
+
+    private HashedWheelTimer  timer;
+
+    @Before
+    public void setUp() {
+        //4个槽位，一圈40ms
+        timer = new HashedWheelTimer("TestTimer", TICK_MS, TimeUnit.MILLISECONDS, 4);
+    }
+
+    @After
+    public void tearDown() {
+        timer.close();
+    }
+
+    @Test
+    public void testMultiRoundDeadline() throws InterruptedException {
+        long[] delays = { 15, 95, 170 };
+        CountDownLatch latch = new CountDownLatch(delays.length);
+        AtomicLong early = new AtomicLong();
+        for (long delay : delays) {
+            long start = System.nanoTime();
+            timer.newTimeout(new Runnable() {
+                @Override
+                public void run() {
+                    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    if (elapsed < delay)
+                        early.incrementAndGet();
+                    latch.countDown();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        //跨多圈的任务不能在前几圈提前执行
+        assertEquals(0, early.get());
+        assertEquals(delays.length, timer.getExpiredCount());
+        assertEquals(0, timer.getPendingTimeouts());
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        AtomicBoolean executed = new AtomicBoolean();
+        Timeout timeout = timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                executed.set(true);
+            }
+        }, 60, TimeUnit.MILLISECONDS);
+        assertEquals(1, timer.getPendingTimeouts());
+        assertTrue(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.cancel());
+        assertEquals(0, timer.getPendingTimeouts());
+
+        Thread.sleep(150);
+        assertFalse(executed.get());
+        assertFalse(timeout.isExpired());
+        assertEquals(1, timer.getCancelledCount());
+    }
+
+    @Test
+    public void testCancelAfterExpired() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        Timeout timeout = timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+}
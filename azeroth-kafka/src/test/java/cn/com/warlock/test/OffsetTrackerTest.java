@@ -0,0 +1,67 @@
+package cn.com.warlock.test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import cn.com.warlock.kafka.consumer.OffsetTracker;
+
+public class OffsetTrackerTest {
+
+    @Test
+    public void testOutOfOrderComplete() {
+        OffsetTracker tracker = new OffsetTracker(16);
+        long s0 = tracker.track(100);
+        long s1 = tracker.track(101);
+        long s2 = tracker.track(105);
+        assertEquals(-1, tracker.getCommittableOffset());
+
+        //之前的消息未完成，低水位不前移
+        tracker.complete(s2);
+        tracker.complete(s1);
+        assertEquals(-1, tracker.getCommittableOffset());
+        assertEquals(3, tracker.getInflightCount());
+
+        tracker.complete(s0);
+        assertEquals(106, tracker.getCommittableOffset());
+        assertEquals(0, tracker.getInflightCount());
+    }
+
+    @Test
+    public void testRepeatedAndUnknownComplete() {
+        OffsetTracker tracker = new OffsetTracker(16);
+        long s0 = tracker.track(10);
+        long s1 = tracker.track(11);
+        tracker.complete(s0);
+        tracker.complete(s0);
+        tracker.complete(s1 + 1);
+        assertEquals(11, tracker.getCommittableOffset());
+        assertEquals(1, tracker.getInflightCount());
+    }
+
+    @Test
+    public void testGrowAcrossWrap() {
+        OffsetTracker tracker = new OffsetTracker(16);
+        //先前移head，使后续分发跨越环形数组末尾
+        for (int i = 0; i < 10; i++) {
+            tracker.complete(tracker.track(i));
+        }
+        assertEquals(10, tracker.getCommittableOffset());
+
+        //head停在未完成的消息上，继续分发超过容量触发扩容
+        long[] seqs = new long[40];
+        for (int i = 0; i < seqs.length; i++) {
+            seqs[i] = tracker.track(10 + i);
+        }
+        assertEquals(40, tracker.getInflightCount());
+
+        for (int i = seqs.length - 1; i > 0; i--) {
+            tracker.complete(seqs[i]);
+        }
+        assertEquals(10, tracker.getCommittableOffset());
+
+        tracker.complete(seqs[0]);
+        assertEquals(50, tracker.getCommittableOffset());
+        assertEquals(0, tracker.getInflightCount());
+    }
+}
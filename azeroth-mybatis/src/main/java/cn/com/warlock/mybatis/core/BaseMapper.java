@@ -1,6 +1,8 @@
 package cn.com.warlock.mybatis.core;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
 
 public abstract interface BaseMapper<T extends BaseEntity, ID extends Serializable> {
 
@@ -31,4 +33,29 @@ public abstract interface BaseMapper<T extends BaseEntity, ID extends Serializab
     public T getByKey(ID id);
 
     void deleteByKey(ID id);
+
+    /**
+     * 批量插入（多行VALUES，超过500条自动分批执行），自增主键会回写到实体
+     * @param entities
+     */
+    public void insertBatch(List<T> entities);
+
+    /**
+     * 按主键批量更新（JDBC batch执行）
+     * @param entities
+     */
+    public void updateByKeysBatch(List<T> entities);
+
+    /**
+     * 按主键批量查询（启用自动缓存时优先读取缓存，结果按ids顺序返回；否则顺序由数据库决定）
+     * @param ids
+     * @return
+     */
+    public List<T> getByKeys(Collection<ID> ids);
+
+    /**
+     * 按主键批量删除
+     * @param ids
+     */
+    void deleteByKeys(Collection<ID> ids);
 }
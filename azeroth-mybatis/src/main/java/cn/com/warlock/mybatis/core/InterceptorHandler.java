@@ -3,6 +3,7 @@ package cn.com.warlock.mybatis.core;
 import org.apache.ibatis.plugin.Invocation;
 
 import cn.com.warlock.mybatis.plugin.MybatisInterceptor;
+import cn.com.warlock.mybatis.plugin.StatementDescriptor;
 
 /**
  * mybatis插件拦截处理器接口
@@ -18,4 +19,13 @@ public interface InterceptorHandler {
     void onFinished(Invocation invocation, Object result);
 
     int interceptorOrder();
+
+    /**
+     * 是否需要处理该语句（每个MappedStatement只判断一次，不需要处理的语句不再调用该处理器）
+     * @param descriptor
+     * @return
+     */
+    default boolean isApplicable(StatementDescriptor descriptor) {
+        return true;
+    }
 }
@@ -0,0 +1,195 @@
+package cn.com.warlock.mybatis.crud;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Invocation;
+
+import cn.com.warlock.mybatis.crud.builder.SqlTemplate;
+
+/**
+ * ClassName: BatchCrudSupport <br/>
+ * Function: 通用批量方法执行. <br/>
+ * Reason:  <br/>
+ *
+ * <pre>
+ * insertBatch：多行VALUES，超过{@link #BATCH_SIZE}条分批执行
+ * updateByKeysBatch：复用同一事务连接，以JDBC batch逐个实体执行
+ * deleteByKeys：id IN (...)，超过{@link #BATCH_SIZE}条分批执行
+ * getByKeys：id IN (...)
+ * </pre>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class BatchCrudSupport {
+
+    /**
+     * 每批最大数量
+     */
+    public static final int BATCH_SIZE = 500;
+
+    public enum BatchType {
+                           INSERT, UPDATE, DELETE, SELECT
+    }
+
+    private static final String STR_LIST = "list";
+
+    private static Map<String, BatchType> batchStatements = new ConcurrentHashMap<>();
+
+    //当前线程最近一次updateByKeysBatch中未更新到记录的实体
+    private static final ThreadLocal<Set<Object>> unaffectedItems = new ThreadLocal<>();
+
+    public static void register(String msId, BatchType batchType) {
+        batchStatements.put(msId, batchType);
+    }
+
+    public static BatchType getBatchType(String msId) {
+        return batchStatements.get(msId);
+    }
+
+    public static boolean isBatchStatement(String msId) {
+        return batchStatements.containsKey(msId);
+    }
+
+    /**
+     * 获取并清除当前线程最近一次批量更新中未更新到记录（更新行数为0）的实体
+     * @return
+     */
+    public static Set<Object> pollUnaffectedItems() {
+        Set<Object> items = unaffectedItems.get();
+        unaffectedItems.remove();
+        return items == null ? Collections.emptySet() : items;
+    }
+
+    /**
+     * 获取批量方法的集合参数
+     * @param parameter
+     * @return 非批量参数返回null
+     */
+    @SuppressWarnings("unchecked")
+    public static Collection<Object> getCollection(Object parameter) {
+        if (parameter instanceof Map
+                && ((Map<String, Object>) parameter).containsKey(SqlTemplate.BATCH_COLLECTION)) {
+            return (Collection<Object>) ((Map<String, Object>) parameter)
+                    .get(SqlTemplate.BATCH_COLLECTION);
+        }
+        return null;
+    }
+
+    /**
+     * 执行批量方法
+     * @param invocation
+     * @return
+     * @throws Throwable
+     */
+    public static Object execute(Invocation invocation) throws Throwable {
+        Object[] args = invocation.getArgs();
+        MappedStatement ms = (MappedStatement) args[0];
+        BatchType batchType = batchStatements.get(ms.getId());
+        Collection<Object> items = getCollection(args[1]);
+        if (batchType == null || items == null) { return invocation.proceed(); }
+
+        //空集合生成的IN ()语法错误，直接返回
+        if (items.isEmpty()) { return batchType == BatchType.SELECT ? new ArrayList<>() : 0; }
+
+        Executor executor = (Executor) invocation.getTarget();
+        if (batchType == BatchType.UPDATE) {
+            return executeBatchUpdate(executor, ms, items);
+        }
+        if (batchType == BatchType.SELECT || items.size() <= BATCH_SIZE) {
+            return invocation.proceed();
+        }
+
+        List<Object> list = new ArrayList<>(items);
+        int updated = 0;
+        for (int from = 0; from < list.size(); from += BATCH_SIZE) {
+            List<Object> chunk = list.subList(from, Math.min(from + BATCH_SIZE, list.size()));
+            updated += executor.update(ms, wrapCollection(chunk));
+        }
+        return updated;
+    }
+
+    /**
+     * 共享当前事务连接，使用BatchExecutor逐个实体执行后一次提交
+     */
+    private static int executeBatchUpdate(Executor executor, MappedStatement ms,
+                                          Collection<Object> items) throws Exception {
+        executor.clearLocalCache();
+        unaffectedItems.remove();
+        //不能关闭该executor，否则会关闭共享的事务
+        BatchExecutor batchExecutor = new BatchExecutor(ms.getConfiguration(),
+                executor.getTransaction());
+        Set<Object> unaffected = Collections.newSetFromMap(new IdentityHashMap<>());
+        boolean success = false;
+        try {
+            int updated = 0;
+            int pending = 0;
+            for (Object item : items) {
+                batchExecutor.update(ms, item);
+                if (++pending == BATCH_SIZE) {
+                    updated += sumUpdateCounts(batchExecutor.flushStatements(), unaffected);
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                updated += sumUpdateCounts(batchExecutor.flushStatements(), unaffected);
+            }
+            success = true;
+            if (!unaffected.isEmpty()) { unaffectedItems.set(unaffected); }
+            return updated;
+        } finally {
+            if (!success) {
+                //关闭未执行的statement（rollback方式不执行），不关闭共享的事务
+                try {
+                    batchExecutor.flushStatements(true);
+                } catch (SQLException e) {
+                    //保留原异常
+                }
+            }
+        }
+    }
+
+    private static int sumUpdateCounts(List<BatchResult> results, Set<Object> unaffected) {
+        int updated = 0;
+        for (BatchResult result : results) {
+            int[] updateCounts = result.getUpdateCounts();
+            List<Object> parameterObjects = result.getParameterObjects();
+            for (int i = 0; i < updateCounts.length; i++) {
+                //部分驱动batch执行成功不返回行数
+                int count = updateCounts[i];
+                updated += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+                if (count == 0 && i < parameterObjects.size()) {
+                    unaffected.add(parameterObjects.get(i));
+                }
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * 包装为批量方法参数（与mybatis单个集合参数的包装一致）
+     * @param chunk
+     * @return
+     */
+    public static Map<String, Object> wrapCollection(List<Object> chunk) {
+        Map<String, Object> parameter = new HashMap<>(4);
+        parameter.put(SqlTemplate.BATCH_COLLECTION, chunk);
+        parameter.put(STR_LIST, chunk);
+        return parameter;
+    }
+}
@@ -13,6 +13,7 @@ import org.apache.ibatis.mapping.SqlSource;
 import org.apache.ibatis.scripting.LanguageDriver;
 import org.apache.ibatis.session.Configuration;
 
+import cn.com.warlock.mybatis.crud.BatchCrudSupport;
 import cn.com.warlock.mybatis.crud.GeneralSqlGenerator;
 import cn.com.warlock.mybatis.crud.helper.ColumnMapper;
 import cn.com.warlock.mybatis.crud.helper.EntityHelper;
@@ -40,6 +41,25 @@ public class DeleteBuilder {
 
         MappedStatement statement = statementBuilder.build();
         configuration.addMappedStatement(statement);
+
+        buildBatch(configuration, languageDriver, entity, entityMapper);
+    }
+
+    private static void buildBatch(Configuration configuration, LanguageDriver languageDriver,
+                                   EntityInfo entity, EntityMapper entityMapper) {
+        String msId = entity.getMapperClass().getName() + "." + GeneralSqlGenerator.methodDefines.batchDeleteName();
+
+        BEGIN();
+        DELETE_FROM(entityMapper.getTableMapper().getName());
+        WHERE(entityMapper.getIdColumn().getColumn() + " IN " + SqlTemplate.FOREACH_IN);
+        String sql = String.format(SqlTemplate.SCRIPT_TEMAPLATE, SQL());
+
+        SqlSource sqlSource = languageDriver.createSqlSource(configuration, sql, Object.class);
+
+        MappedStatement.Builder statementBuilder = new MappedStatement.Builder(configuration, msId, sqlSource, SqlCommandType.DELETE);
+
+        configuration.addMappedStatement(statementBuilder.build());
+        BatchCrudSupport.register(msId, BatchCrudSupport.BatchType.DELETE);
     }
 
     public static String buildDeleteSql(EntityMapper entityMapper) {
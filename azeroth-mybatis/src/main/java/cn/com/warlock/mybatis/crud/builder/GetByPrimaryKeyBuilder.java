@@ -22,6 +22,7 @@ import org.apache.ibatis.reflection.SystemMetaObject;
 import org.apache.ibatis.scripting.LanguageDriver;
 import org.apache.ibatis.session.Configuration;
 
+import cn.com.warlock.mybatis.crud.BatchCrudSupport;
 import cn.com.warlock.mybatis.crud.GeneralSqlGenerator;
 import cn.com.warlock.mybatis.crud.helper.ColumnMapper;
 import cn.com.warlock.mybatis.crud.helper.EntityHelper;
@@ -51,6 +52,33 @@ public class GetByPrimaryKeyBuilder {
         setResultType(configuration, statement, entity.getEntityClass());
 
         configuration.addMappedStatement(statement);
+
+        buildBatch(configuration, languageDriver, entity, entityMapper);
+    }
+
+    private static void buildBatch(Configuration configuration, LanguageDriver languageDriver,
+                                   EntityInfo entity, EntityMapper entityMapper) {
+        String msId = entity.getMapperClass().getName() + "." + GeneralSqlGenerator.methodDefines.selectByKeysName();
+
+        BEGIN();
+        FROM(entityMapper.getTableMapper().getName());
+        for (ColumnMapper columnMapper : entityMapper.getColumnsMapper()) {
+            if (columnMapper.isId()) {
+                WHERE(columnMapper.getColumn() + " IN " + SqlTemplate.FOREACH_IN);
+            }
+            SELECT(columnMapper.getColumn());
+        }
+        String sql = String.format(SqlTemplate.SCRIPT_TEMAPLATE, SQL());
+
+        SqlSource sqlSource = languageDriver.createSqlSource(configuration, sql, Object.class);
+
+        MappedStatement.Builder statementBuilder = new MappedStatement.Builder(configuration, msId, sqlSource, SqlCommandType.SELECT);
+
+        MappedStatement statement = statementBuilder.build();
+        setResultType(configuration, statement, entity.getEntityClass());
+
+        configuration.addMappedStatement(statement);
+        BatchCrudSupport.register(msId, BatchCrudSupport.BatchType.SELECT);
     }
 
     private static String buildGetByIdSql(EntityMapper entityMapper) {
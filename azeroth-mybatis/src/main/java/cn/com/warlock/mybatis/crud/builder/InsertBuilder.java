@@ -11,6 +11,7 @@ import org.apache.ibatis.mapping.SqlSource;
 import org.apache.ibatis.scripting.LanguageDriver;
 import org.apache.ibatis.session.Configuration;
 
+import cn.com.warlock.mybatis.crud.BatchCrudSupport;
 import cn.com.warlock.mybatis.crud.GeneralSqlGenerator;
 import cn.com.warlock.mybatis.crud.helper.ColumnMapper;
 import cn.com.warlock.mybatis.crud.helper.EntityHelper;
@@ -49,6 +50,60 @@ public class InsertBuilder {
             configuration.addMappedStatement(statement);
         }
 
+        buildBatch(configuration, languageDriver, entity);
+    }
+
+    private static void buildBatch(Configuration configuration, LanguageDriver languageDriver,
+                                   EntityInfo entity) {
+        String msId = entity.getMapperClass().getName() + "."
+                + GeneralSqlGenerator.methodDefines.batchInsertName();
+
+        EntityMapper entityMapper = EntityHelper.getEntityMapper(entity.getEntityClass());
+        String sql = buildBatchInsertSql(entityMapper);
+
+        SqlSource sqlSource = languageDriver.createSqlSource(configuration, sql, Object.class);
+
+        MappedStatement.Builder statementBuilder = new MappedStatement.Builder(configuration, msId, sqlSource, SqlCommandType.INSERT);
+
+        //参数为集合时Jdbc3KeyGenerator按顺序回写每个实体的主键
+        KeyGenerator keyGenerator = entityMapper.autoId() ? new Jdbc3KeyGenerator() : new NoKeyGenerator();
+        statementBuilder.keyGenerator(keyGenerator)//
+                .keyProperty(entityMapper.getIdColumn().getProperty())//
+                .keyColumn(entityMapper.getIdColumn().getColumn());
+
+        configuration.addMappedStatement(statementBuilder.build());
+        BatchCrudSupport.register(msId, BatchCrudSupport.BatchType.INSERT);
+    }
+
+    /**
+     * 多行VALUES插入语句
+     * @param entityMapper
+     * @return
+     */
+    public static String buildBatchInsertSql(EntityMapper entityMapper) {
+        TableMapper table = entityMapper.getTableMapper();
+        Set<ColumnMapper> columns = entityMapper.getColumnsMapper();
+
+        StringBuilder fieldBuilder = new StringBuilder("(");
+        StringBuilder prppertyBuilder = new StringBuilder("(");
+        if (!entityMapper.autoId()) {
+            fieldBuilder.append(entityMapper.getIdColumn().getColumn()).append(",");
+            prppertyBuilder.append("#{").append(SqlTemplate.BATCH_ITEM).append(".")
+                    .append(entityMapper.getIdColumn().getProperty()).append("},");
+        }
+        for (ColumnMapper column : columns) {
+            if (column.isId() || !column.isInsertable()) {
+                continue;
+            }
+            fieldBuilder.append(column.getColumn()).append(",");
+            prppertyBuilder.append("#{").append(SqlTemplate.BATCH_ITEM).append(".")
+                    .append(column.getProperty()).append("},");
+        }
+        fieldBuilder.setCharAt(fieldBuilder.length() - 1, ')');
+        prppertyBuilder.setCharAt(prppertyBuilder.length() - 1, ')');
+        String sql = String.format(SqlTemplate.INSERT, table.getName(), fieldBuilder.toString(),
+                String.format(SqlTemplate.FOREACH_VALUES, prppertyBuilder.toString()));
+        return String.format(SqlTemplate.SCRIPT_TEMAPLATE, sql);
     }
 
     public static String buildInsertSql(EntityMapper entityMapper, boolean selective) {
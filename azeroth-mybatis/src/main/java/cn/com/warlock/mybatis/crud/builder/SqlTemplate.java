@@ -10,6 +10,15 @@ public class SqlTemplate {
     public static final String INSERT        = "INSERT INTO %s \n %s \n VALUES \n %s";
     public static final String UPDATE_BY_KEY = "UPDATE %s %s \n WHERE %s = #{%s}";
 
+    //批量方法参数（单个集合参数时mybatis包装的名称）
+    public static final String BATCH_COLLECTION = "collection";
+    public static final String BATCH_ITEM       = "item";
+    public static final String FOREACH_VALUES   = "<foreach collection=\"" + BATCH_COLLECTION
+            + "\" item=\"" + BATCH_ITEM + "\" separator=\",\">%s</foreach>";
+    public static final String FOREACH_IN       = "<foreach collection=\"" + BATCH_COLLECTION
+            + "\" item=\"" + BATCH_ITEM + "\" open=\"(\" separator=\",\" close=\")\">#{"
+            + BATCH_ITEM + "}</foreach>";
+
     public static String wrapIfTag(String fieldName, String expr, boolean skip) {
         if (skip) { return expr; }
         return String.format(IF_TAG_TEAMPLATE, fieldName, expr);
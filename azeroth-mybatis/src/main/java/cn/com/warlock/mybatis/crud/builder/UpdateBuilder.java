@@ -8,6 +8,7 @@ import org.apache.ibatis.mapping.SqlSource;
 import org.apache.ibatis.scripting.LanguageDriver;
 import org.apache.ibatis.session.Configuration;
 
+import cn.com.warlock.mybatis.crud.BatchCrudSupport;
 import cn.com.warlock.mybatis.crud.GeneralSqlGenerator;
 import cn.com.warlock.mybatis.crud.helper.ColumnMapper;
 import cn.com.warlock.mybatis.crud.helper.EntityHelper;
@@ -41,6 +42,30 @@ public class UpdateBuilder {
 
             configuration.addMappedStatement(statement);
         }
+
+        buildBatch(configuration, languageDriver, entity);
+    }
+
+    /**
+     * 批量更新语句与updateByKey相同，由{@link BatchCrudSupport}逐个实体以JDBC batch方式执行
+     */
+    private static void buildBatch(Configuration configuration, LanguageDriver languageDriver,
+                                   EntityInfo entity) {
+        String msId = entity.getMapperClass().getName() + "."
+                + GeneralSqlGenerator.methodDefines.batchUpdateName();
+
+        EntityMapper entityMapper = EntityHelper.getEntityMapper(entity.getEntityClass());
+
+        String sql = buildUpdateSql(entityMapper, false);
+
+        SqlSource sqlSource = languageDriver.createSqlSource(configuration, sql,
+                entity.getEntityClass());
+
+        MappedStatement.Builder statementBuilder = new MappedStatement.Builder(configuration,
+                msId, sqlSource, SqlCommandType.UPDATE);
+
+        configuration.addMappedStatement(statementBuilder.build());
+        BatchCrudSupport.register(msId, BatchCrudSupport.BatchType.UPDATE);
     }
 
     public static String buildUpdateSql(EntityMapper entityMapper, boolean selective) {
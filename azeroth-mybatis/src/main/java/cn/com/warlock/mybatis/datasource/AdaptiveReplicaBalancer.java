@@ -0,0 +1,220 @@
+package cn.com.warlock.mybatis.datasource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.stat.JdbcStatementStat;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * ClassName: AdaptiveReplicaBalancer <br/>
+ * Function: 按负载、响应时间及复制延迟选择从库. <br/>
+ * Reason:  <br/>
+ *
+ * <pre>
+ * 选择：score = (活跃连接数 + 等待连接线程数 + 1) * (EWMA平均执行耗时ms + 1) / 权重，取最小
+ *      活跃连接数等实时取自druid连接池；执行耗时取自druid SQL统计（需开启stat filter，未开启时只按连接数）
+ * 探测：定时检查各从库，连接失败或复制延迟（Seconds_Behind_Master）超过阈值、复制中断时摘除，恢复后重新加入
+ * 所有从库均被摘除时使用主库
+ * </pre>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class AdaptiveReplicaBalancer implements ReplicaBalancer {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveReplicaBalancer.class);
+
+    private static final String LAG_PROBE_SQL = "SHOW SLAVE STATUS";
+    private static final String LAG_COLUMN    = "Seconds_Behind_Master";
+    private static final String PING_SQL      = "SELECT 1";
+
+    private static final double EWMA_ALPHA = 0.3;
+
+    private static final int PROBE_TIMEOUT_SECONDS = 2;
+
+    private long probeIntervalMillis = 5000;
+
+    //最大允许复制延迟（秒）
+    private long maxLagSeconds = 10;
+
+    //是否检查复制延迟（需要REPLICATION CLIENT权限），否则只检查连通性
+    private boolean lagProbeEnabled = true;
+
+    //从库权重<dsKey,weight>，默认1
+    private Map<String, Integer> weights = new HashMap<>();
+
+    private final Map<String, ReplicaState> states = new ConcurrentHashMap<>();
+
+    //分数相同时轮流选择
+    private final AtomicLong counter = new AtomicLong();
+
+    private ScheduledExecutorService probeExecutor;
+
+    public void setProbeIntervalMillis(long probeIntervalMillis) {
+        this.probeIntervalMillis = probeIntervalMillis;
+    }
+
+    public void setMaxLagSeconds(long maxLagSeconds) {
+        this.maxLagSeconds = maxLagSeconds;
+    }
+
+    public void setLagProbeEnabled(boolean lagProbeEnabled) {
+        this.lagProbeEnabled = lagProbeEnabled;
+    }
+
+    public void setWeights(Map<String, Integer> weights) {
+        this.weights = weights;
+    }
+
+    public void start() {
+        probeExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ReplicaProbe").setDaemon(true).build());
+        probeExecutor.scheduleWithFixedDelay(this::probeAll, probeIntervalMillis,
+                probeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String select(List<String> slaveKeys) {
+        int size = slaveKeys.size();
+        int start = (int) (counter.getAndIncrement() % size);
+        String selected = null;
+        double minScore = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            String dsKey = slaveKeys.get((start + i) % size);
+            ReplicaState state = states.computeIfAbsent(dsKey, k -> new ReplicaState());
+            if (state.ejected) { continue; }
+            double score = score(dsKey, state);
+            if (score < minScore) {
+                minScore = score;
+                selected = dsKey;
+            }
+        }
+        return selected;
+    }
+
+    private double score(String dsKey, ReplicaState state) {
+        int outstanding = 0;
+        DataSource dataSource = DataSourceContextHolder.getDataSource(dsKey);
+        if (dataSource instanceof DruidDataSource) {
+            DruidDataSource druidDataSource = (DruidDataSource) dataSource;
+            outstanding = druidDataSource.getActiveCount() + druidDataSource.getWaitThreadCount();
+        }
+        Integer weight = weights.get(dsKey);
+        return (outstanding + 1) * (state.ewmaMillis + 1) / (weight == null || weight <= 0 ? 1 : weight);
+    }
+
+    private void probeAll() {
+        for (Map.Entry<String, ReplicaState> entry : states.entrySet()) {
+            try {
+                probe(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                logger.warn("probe replica[{}] error", entry.getKey(), e);
+            }
+        }
+    }
+
+    private void probe(String dsKey, ReplicaState state) {
+        DataSource dataSource = DataSourceContextHolder.getDataSource(dsKey);
+        if (dataSource == null) { return; }
+        if (dataSource instanceof DruidDataSource) { updateLatency((DruidDataSource) dataSource, state); }
+
+        String reason = null;
+        try (Connection connection = dataSource instanceof DruidDataSource
+                ? ((DruidDataSource) dataSource).getConnection(PROBE_TIMEOUT_SECONDS * 1000L)
+                : dataSource.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(PROBE_TIMEOUT_SECONDS);
+            reason = lagProbeEnabled && state.lagProbeSupported ? probeLag(dsKey, state, statement)
+                    : ping(statement);
+        } catch (SQLException e) {
+            reason = "connect error:" + e.getMessage();
+        }
+
+        if (reason != null && !state.ejected) {
+            logger.warn("replica[{}] ejected,reason:{}", dsKey, reason);
+        } else if (reason == null && state.ejected) {
+            logger.info("replica[{}] recovered", dsKey);
+        }
+        state.ejected = reason != null;
+    }
+
+    /**
+     * @return 不可用原因，可用返回null
+     */
+    private String probeLag(String dsKey, ReplicaState state,
+                            Statement statement) throws SQLException {
+        ResultSet resultSet;
+        try {
+            resultSet = statement.executeQuery(LAG_PROBE_SQL);
+        } catch (SQLException e) {
+            //无权限等，之后只检查连通性
+            logger.warn("replica[{}] lag probe not supported:{}", dsKey, e.getMessage());
+            state.lagProbeSupported = false;
+            return ping(statement);
+        }
+        try {
+            //非复制节点
+            if (!resultSet.next()) { return null; }
+            long lag = resultSet.getLong(LAG_COLUMN);
+            if (resultSet.wasNull()) { return "replication stopped"; }
+            return lag > maxLagSeconds ? "replication lag " + lag + "s" : null;
+        } finally {
+            resultSet.close();
+        }
+    }
+
+    private static String ping(Statement statement) throws SQLException {
+        statement.execute(PING_SQL);
+        return null;
+    }
+
+    /**
+     * 按两次探测间的SQL执行统计更新EWMA平均耗时
+     */
+    private static void updateLatency(DruidDataSource dataSource, ReplicaState state) {
+        JdbcStatementStat stat = dataSource.getDataSourceStat() == null ? null
+                : dataSource.getDataSourceStat().getStatementStat();
+        if (stat == null) { return; }
+        long executeCount = stat.getExecuteCount();
+        long nanoTotal = stat.getNanoTotal();
+        long count = executeCount - state.lastExecuteCount;
+        if (count > 0 && state.lastExecuteCount >= 0) {
+            double sample = (nanoTotal - state.lastNanoTotal) / (double) count / 1000000;
+            state.ewmaMillis = state.ewmaMillis == 0 ? sample
+                    : EWMA_ALPHA * sample + (1 - EWMA_ALPHA) * state.ewmaMillis;
+        }
+        state.lastExecuteCount = executeCount;
+        state.lastNanoTotal = nanoTotal;
+    }
+
+    @Override
+    public void close() {
+        if (probeExecutor != null) { probeExecutor.shutdownNow(); }
+    }
+
+    private static class ReplicaState {
+        volatile boolean ejected;
+        volatile boolean lagProbeSupported = true;
+        volatile double  ewmaMillis;
+        long             lastExecuteCount  = -1;
+        long             lastNanoTotal;
+    }
+}
@@ -5,7 +5,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,13 +18,22 @@ public class DataSourceContextHolder {
     private static final Logger logger = LoggerFactory
             .getLogger(DataSourceContextHolder.class);
 
-    private final static AtomicLong counter = new AtomicLong(10);
-
     private static final Map<String, String>       masters = new HashMap<>();
     private static final Map<String, List<String>> slaves  = new HashMap<>();
 
+    private static final Map<String, DataSource> dataSources = new HashMap<>();
+
+    //从库选择策略
+    private static volatile ReplicaBalancer replicaBalancer = new RoundRobinReplicaBalancer();
+
+    //写操作后同一线程的读请求使用主库的时间窗口（毫秒），0不启用
+    private static volatile long readAfterWriteMillis = 0;
+
     private final ThreadLocal<DataSourceContextVals> contextVals = new ThreadLocal<DataSourceContextVals>();
 
+    //当前线程最近一次写操作时间
+    private final ThreadLocal<Long> lastWriteTime = new ThreadLocal<>();
+
     private static volatile DataSourceContextHolder holder = new DataSourceContextHolder();
 
     private DataSourceContextHolder() {
@@ -33,10 +43,16 @@ public class DataSourceContextHolder {
         return holder;
     }
 
+    protected void registerDataSource(String dsKey, DataSource dataSource) {
+        dataSources.put(dsKey, dataSource);
+        registerDataSourceKey(dsKey);
+    }
+
     protected void registerDataSourceKey(String dsKey) {
         String dbIndex = "0";
         if (dsKey.startsWith("group")) {
-            dbIndex = dsKey.split("\\_")[0].replace("group", "");
+            //group1.master,group1.slave1
+            dbIndex = dsKey.split("\\.|\\_")[0].replace("group", "");
         }
         if (dsKey.contains("master")) {
             masters.put(dbIndex, dsKey);
@@ -52,6 +68,46 @@ public class DataSourceContextHolder {
         }
     }
 
+    static DataSource getDataSource(String dsKey) {
+        return dataSources.get(dsKey);
+    }
+
+    static ReplicaBalancer getReplicaBalancer() {
+        return replicaBalancer;
+    }
+
+    protected void setReplicaBalancer(ReplicaBalancer replicaBalancer) {
+        DataSourceContextHolder.replicaBalancer = replicaBalancer;
+    }
+
+    protected void setReadAfterWriteMillis(long readAfterWriteMillis) {
+        DataSourceContextHolder.readAfterWriteMillis = readAfterWriteMillis;
+    }
+
+    /**
+     * 标记当前线程执行了写操作（时间窗口内的读请求使用主库）
+     */
+    public void markWrite() {
+        if (readAfterWriteMillis > 0) { lastWriteTime.set(System.currentTimeMillis()); }
+    }
+
+    private boolean inReadAfterWriteWindow() {
+        if (readAfterWriteMillis <= 0) { return false; }
+        Long writeTime = lastWriteTime.get();
+        if (writeTime == null) { return false; }
+        if (System.currentTimeMillis() - writeTime < readAfterWriteMillis) { return true; }
+        lastWriteTime.remove();
+        return false;
+    }
+
+    /**
+     * 已注册的分库组数
+     * @return
+     */
+    public int getDbGroupSize() {
+        return masters.size();
+    }
+
     /**
      * 设置分库使用数据库序列（groupId）
      * @param dbIndex
@@ -101,14 +157,15 @@ public class DataSourceContextHolder {
         int dbGoupId = vals.dbIndex;
         String dsKey = null;
 
-        if (vals.forceMaster || !vals.userSlave || !vals.routedBeforeGetConn) {
-            if (dbGoupId > 0 && masters.size() <= dbGoupId + 1) {
+        if (vals.forceMaster || !vals.userSlave || !vals.routedBeforeGetConn
+                || inReadAfterWriteWindow()) {
+            if (dbGoupId > 0 && masters.size() < dbGoupId + 1) {
                 throw new RuntimeException(
                         "expect db group number is :" + dbGoupId + ",actaul:" + (dbGoupId + 1));
             }
             dsKey = masters.get(String.valueOf(dbGoupId));
         } else {
-            if (dbGoupId > 0 && slaves.size() <= dbGoupId + 1) {
+            if (dbGoupId > 0 && masters.size() < dbGoupId + 1) {
                 throw new RuntimeException(
                         "expect db group number is :" + dbGoupId + ",actaul:" + (dbGoupId + 1));
             }
@@ -138,22 +195,20 @@ public class DataSourceContextHolder {
     }
 
     /**
-     * 轮循分配slave节点
+     * 按从库选择策略分配slave节点
      *
      * @return
      */
     private static String selectSlave(Serializable dbIndex) {
         List<String> sameDbSlaves = slaves.get(dbIndex.toString());
-        //  无从库则路由到主库
-        if (sameDbSlaves == null || sameDbSlaves.isEmpty()) {
+        String slaveKey = sameDbSlaves == null || sameDbSlaves.isEmpty() ? null
+                : replicaBalancer.select(sameDbSlaves);
+        //  无可用从库则路由到主库
+        if (slaveKey == null) {
             String masterKey = masters.get(dbIndex.toString());
-            logger.debug("current no slave found ,default use [{}]!", masterKey);
+            logger.debug("current no available slave found ,default use [{}]!", masterKey);
             return masterKey;
         }
-        if (sameDbSlaves.size() == 1) { return sameDbSlaves.get(0); }
-
-        int selectIndex = (int) (counter.getAndIncrement() % sameDbSlaves.size());
-        String slaveKey = sameDbSlaves.get(selectIndex);
         return slaveKey;
     }
 
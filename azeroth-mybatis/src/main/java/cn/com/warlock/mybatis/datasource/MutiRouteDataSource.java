@@ -14,6 +14,7 @@ import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
@@ -33,7 +34,7 @@ import cn.com.warlock.spring.SpringInstanceProvider;
 /**
  * 自动路由多数据源（读写分离 and 水平分库路由）
  */
-public class MutiRouteDataSource extends AbstractDataSource implements ApplicationContextAware, InitializingBean, EnvironmentAware {
+public class MutiRouteDataSource extends AbstractDataSource implements ApplicationContextAware, InitializingBean, DisposableBean, EnvironmentAware {
 
     private static final Logger logger = LoggerFactory.getLogger(MutiRouteDataSource.class);
 
@@ -83,6 +84,41 @@ public class MutiRouteDataSource extends AbstractDataSource implements Applicati
         if (this.defaultDataSource == null) {
             throw new IllegalArgumentException("Property 'defaultDataSource' is required");
         }
+
+        initReplicaBalancer(map);
+    }
+
+    /**
+     * 从库选择策略：db.replica.balancer=adaptive(默认)|roundRobin
+     * @param map
+     */
+    private void initReplicaBalancer(Map<String, DataSourceInfo> map) {
+        DataSourceContextHolder holder = DataSourceContextHolder.get();
+        holder.setReadAfterWriteMillis(
+                Long.parseLong(getProperty("db.replica.readAfterWriteMillis", "0")));
+
+        if ("roundRobin".equalsIgnoreCase(getProperty("db.replica.balancer", "adaptive"))) {
+            holder.setReplicaBalancer(new RoundRobinReplicaBalancer());
+            return;
+        }
+        Map<String, Integer> weights = new HashMap<>();
+        for (Map.Entry<String, DataSourceInfo> entry : map.entrySet()) {
+            weights.put(entry.getKey(), entry.getValue().weight);
+        }
+        AdaptiveReplicaBalancer balancer = new AdaptiveReplicaBalancer();
+        balancer.setWeights(weights);
+        balancer.setMaxLagSeconds(Long.parseLong(getProperty("db.replica.maxLagSeconds", "10")));
+        balancer.setProbeIntervalMillis(
+                Long.parseLong(getProperty("db.replica.probeIntervalMillis", "5000")));
+        balancer.setLagProbeEnabled(
+                Boolean.parseBoolean(getProperty("db.replica.lagProbeEnabled", "true")));
+        balancer.start();
+        holder.setReplicaBalancer(balancer);
+    }
+
+    @Override
+    public void destroy() {
+        DataSourceContextHolder.getReplicaBalancer().close();
     }
 
     protected Object resolveSpecifiedLookupKey(Object lookupKey) {
@@ -220,7 +256,7 @@ public class MutiRouteDataSource extends AbstractDataSource implements Applicati
             logger.info("bean[" + dsKey + "] has initialized! lookupKey:" + dsKey);
 
             //
-            DataSourceContextHolder.get().registerDataSourceKey(dsKey);
+            DataSourceContextHolder.get().registerDataSource(dsKey, ds);
         }
 
         addTargetDataSources(targetDataSources);
@@ -289,6 +325,8 @@ public class MutiRouteDataSource extends AbstractDataSource implements Applicati
         public    long    timeBetweenEvictionRunsMillis;
         public    boolean testOnBorrow;
         public    boolean testOnReturn;
+        //从库权重
+        public    int     weight;
 
         //根据全局配置构造方法
         public DataSourceInfo(int groupIndex, String keyPrefix) {
@@ -304,6 +342,7 @@ public class MutiRouteDataSource extends AbstractDataSource implements Applicati
             this.timeBetweenEvictionRunsMillis = Integer.parseInt(getProperty("db.timeBetweenEvictionRunsMillis", "60000"));
             this.testOnBorrow = Boolean.parseBoolean(getProperty("db.testOnBorrow", "false"));
             this.testOnReturn = Boolean.parseBoolean(getProperty("db.testOnReturn", "false"));
+            this.weight = Integer.parseInt(getProperty("db.weight", "1"));
 
             //私有配置
             this.master = keyPrefix.contains(MASTER_KEY);
@@ -345,6 +384,10 @@ public class MutiRouteDataSource extends AbstractDataSource implements Applicati
                 this.testOnReturn = Boolean.parseBoolean(tmpVal);
             }
 
+            if ((tmpVal = getProperty(keyPrefix + ".db.weight")) != null) {
+                this.weight = Integer.parseInt(tmpVal);
+            }
+
         }
 
         @Override
@@ -0,0 +1,27 @@
+package cn.com.warlock.mybatis.datasource;
+
+import java.util.List;
+
+/**
+ * ClassName: ReplicaBalancer <br/>
+ * Function: 从库选择策略. <br/>
+ * Reason:  <br/>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public interface ReplicaBalancer {
+
+    /**
+     * 从同组从库中选择一个
+     * @param slaveKeys 同组从库数据源key
+     * @return 无可用从库返回null（使用主库）
+     */
+    public String select(List<String> slaveKeys);
+
+    /**
+     * 释放资源
+     */
+    public void close();
+}
@@ -0,0 +1,29 @@
+package cn.com.warlock.mybatis.datasource;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ClassName: RoundRobinReplicaBalancer <br/>
+ * Function: 轮循选择从库. <br/>
+ * Reason:  <br/>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class RoundRobinReplicaBalancer implements ReplicaBalancer {
+
+    private final AtomicLong counter = new AtomicLong(10);
+
+    @Override
+    public String select(List<String> slaveKeys) {
+        if (slaveKeys.size() == 1) { return slaveKeys.get(0); }
+        int selectIndex = (int) (counter.getAndIncrement() % slaveKeys.size());
+        return slaveKeys.get(selectIndex);
+    }
+
+    @Override
+    public void close() {
+    }
+}
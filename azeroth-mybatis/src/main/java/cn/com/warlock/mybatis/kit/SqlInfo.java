@@ -0,0 +1,134 @@
+package cn.com.warlock.mybatis.kit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * ClassName: SqlInfo <br/>
+ * Function: SQL解析结果（同一SQL只解析一次）. <br/>
+ * Reason:  <br/>
+ *
+ * 解析失败时{@link #isParsed()}返回false，调用方需自行降级处理
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class SqlInfo {
+
+    private final String sql;
+
+    boolean parsed;
+
+    final Set<String> tables = new HashSet<>();
+
+    //WHERE/ON条件中出现的字段（小写）
+    final Set<String> conditionColumns = new HashSet<>();
+
+    //select：count sql
+    String countSql;
+
+    //select：最外层ORDER BY（仅字段排序）
+    final List<OrderBy> orderBys = new ArrayList<>();
+
+    //select：查询列全部为COUNT/SUM且无GROUP BY
+    boolean aggregateOnly;
+
+    //update/delete：where条件、其中的?数量及第一个?在整个SQL中的序号
+    String whereSql;
+
+    int whereParameterCount;
+
+    int whereParameterIndex;
+
+    //基于本SQL派生的结果（limit sql、seek sql等）
+    private final Map<Object, Object> derived = new ConcurrentHashMap<>();
+
+    SqlInfo(String sql) {
+        this.sql = sql;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public boolean isParsed() {
+        return parsed;
+    }
+
+    public Set<String> getTables() {
+        return Collections.unmodifiableSet(tables);
+    }
+
+    public Set<String> getConditionColumns() {
+        return Collections.unmodifiableSet(conditionColumns);
+    }
+
+    /**
+     * 条件中是否包含指定字段
+     * @param column
+     * @return
+     */
+    public boolean hasCondition(String column) {
+        return conditionColumns.contains(column.toLowerCase());
+    }
+
+    public String getCountSql() {
+        return countSql;
+    }
+
+    public List<OrderBy> getOrderBys() {
+        return Collections.unmodifiableList(orderBys);
+    }
+
+    public boolean isAggregateOnly() {
+        return aggregateOnly;
+    }
+
+    public String getWhereSql() {
+        return whereSql;
+    }
+
+    public int getWhereParameterCount() {
+        return whereParameterCount;
+    }
+
+    public int getWhereParameterIndex() {
+        return whereParameterIndex;
+    }
+
+    /**
+     * 获取基于本SQL派生的结果，首次调用时生成并缓存
+     * @param key 派生类型及参数
+     * @param builder
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T derive(Object key, Function<String, T> builder) {
+        return (T) derived.computeIfAbsent(key, k -> builder.apply(sql));
+    }
+
+    public static class OrderBy {
+        private final String  column;
+        private final boolean desc;
+
+        OrderBy(String column, boolean desc) {
+            this.column = column;
+            this.desc = desc;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public boolean isDesc() {
+            return desc;
+        }
+    }
+}
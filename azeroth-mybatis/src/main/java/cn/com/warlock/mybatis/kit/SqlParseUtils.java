@@ -1,27 +1,387 @@
 package cn.com.warlock.mybatis.kit;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLOrderBy;
+import com.alibaba.druid.sql.ast.SQLOrderingSpecification;
 import com.alibaba.druid.sql.ast.SQLStatement;
-import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
-import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlSchemaStatVisitor;
+import com.alibaba.druid.sql.ast.expr.SQLAggregateExpr;
+import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+import com.alibaba.druid.sql.ast.expr.SQLIntegerExpr;
+import com.alibaba.druid.sql.ast.expr.SQLPropertyExpr;
+import com.alibaba.druid.sql.ast.expr.SQLVariantRefExpr;
+import com.alibaba.druid.sql.ast.statement.SQLDeleteStatement;
+import com.alibaba.druid.sql.ast.statement.SQLExprTableSource;
+import com.alibaba.druid.sql.ast.statement.SQLSelect;
+import com.alibaba.druid.sql.ast.statement.SQLSelectItem;
+import com.alibaba.druid.sql.ast.statement.SQLSelectOrderByItem;
+import com.alibaba.druid.sql.ast.statement.SQLSelectQuery;
+import com.alibaba.druid.sql.ast.statement.SQLSelectQueryBlock;
+import com.alibaba.druid.sql.ast.statement.SQLSelectStatement;
+import com.alibaba.druid.sql.ast.statement.SQLUpdateStatement;
+import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
+import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlASTVisitorAdapter;
+import com.alibaba.druid.sql.visitor.SQLASTVisitor;
+import com.alibaba.druid.sql.visitor.SQLASTVisitorAdapter;
+import com.alibaba.druid.sql.visitor.SchemaStatVisitor;
+import com.alibaba.druid.stat.TableStat;
+import com.alibaba.druid.util.JdbcConstants;
+
+import cn.com.warlock.cache.local.LocalCache;
 
+/**
+ * ClassName: SqlParseUtils <br/>
+ * Function: SQL解析（druid AST），按SQL文本缓存解析结果. <br/>
+ * Reason:  <br/>
+ *
+ * 分页、分库、缓存插件共用，避免每次执行都做正则改写
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
 public class SqlParseUtils {
 
-    public static void main(String[] args) {
-        String sql = "DELETE a1, a2 FROM t1 AS a1 INNER JOIN t2 AS a2 WHERE a1.id=a2.id;";
+    private static final Logger logger = LoggerFactory.getLogger(SqlParseUtils.class);
+
+    private static final int CACHE_SIZE = 2048;
+
+    private static final String COUNT_WRAP_TEMPLATE = "SELECT count(1) FROM (%s) tmp_count";
+
+    private static final char PLACEHOLDER = '?';
+
+    private static final String REWRITE_TABLE = "rewriteTable";
+
+    //可按分库结果相加合并的聚合函数
+    private static final String[] MERGEABLE_AGGREGATES = {"COUNT", "SUM"};
+
+    //SQL模板数量有限，不设过期时间
+    private static final LocalCache<String, SqlInfo> sqlInfos = new LocalCache<>(CACHE_SIZE, 0,
+            TimeUnit.SECONDS);
+
+    private static volatile String dbType = JdbcConstants.MYSQL;
+
+    public static void setDbType(String dbType) {
+        if (StringUtils.isBlank(dbType)) { return; }
+        SqlParseUtils.dbType = dbType.toLowerCase();
+    }
+
+    public static String getDbType() {
+        return dbType;
+    }
+
+    /**
+     * 解析SQL（同一SQL只解析一次）
+     * @param sql
+     * @return
+     */
+    public static SqlInfo analyze(String sql) {
+        SqlInfo info = sqlInfos.get(sql);
+        if (info == null) {
+            info = parse(sql);
+            sqlInfos.put(sql, info);
+        }
+        return info;
+    }
+
+    private static SqlInfo parse(String sql) {
+        SqlInfo info = new SqlInfo(sql);
+        try {
+            List<SQLStatement> statements = SQLUtils.parseStatements(sql, dbType);
+            if (statements.size() != 1) { return info; }
+            SQLStatement statement = statements.get(0);
+
+            SchemaStatVisitor visitor = SQLUtils.createSchemaStatVisitor(dbType);
+            statement.accept(visitor);
+            for (TableStat.Name name : visitor.getTables().keySet()) {
+                info.tables.add(normalizeName(name.getName()));
+            }
+            for (TableStat.Condition condition : visitor.getConditions()) {
+                info.conditionColumns.add(normalizeName(condition.getColumn().getName()));
+            }
+
+            if (statement instanceof SQLSelectStatement) {
+                SQLSelect select = ((SQLSelectStatement) statement).getSelect();
+                //count sql会修改AST，先解析排序及聚合
+                parseSelect(info, select);
+                info.countSql = buildCountSql(sql, select);
+            } else if (statement instanceof SQLUpdateStatement) {
+                setWhere(info, ((SQLUpdateStatement) statement).getWhere());
+            } else if (statement instanceof SQLDeleteStatement) {
+                setWhere(info, ((SQLDeleteStatement) statement).getWhere());
+            }
+            info.parsed = true;
+        } catch (Exception e) {
+            //解析失败也缓存，调用方降级处理
+            logger.debug("parse sql error:{},sql:{}", e.getMessage(), sql);
+        }
+        return info;
+    }
+
+    private static void parseSelect(SqlInfo info, SQLSelect select) {
+        SQLOrderBy orderBy = select.getOrderBy();
+        SQLSelectQuery query = select.getQuery();
+        if (query instanceof MySqlSelectQueryBlock && orderBy == null) {
+            orderBy = ((MySqlSelectQueryBlock) query).getOrderBy();
+        }
+        if (orderBy != null) {
+            for (SQLSelectOrderByItem item : orderBy.getItems()) {
+                String column = null;
+                if (item.getExpr() instanceof SQLIdentifierExpr) {
+                    column = ((SQLIdentifierExpr) item.getExpr()).getName();
+                } else if (item.getExpr() instanceof SQLPropertyExpr) {
+                    column = ((SQLPropertyExpr) item.getExpr()).getName();
+                }
+                //表达式排序无法在内存归并，忽略后续排序字段
+                if (column == null) { break; }
+                info.orderBys.add(new SqlInfo.OrderBy(normalizeName(column),
+                        item.getType() == SQLOrderingSpecification.DESC));
+            }
+        }
+        if (query instanceof SQLSelectQueryBlock) {
+            SQLSelectQueryBlock block = (SQLSelectQueryBlock) query;
+            boolean aggregateOnly = block.getGroupBy() == null && !block.getSelectList().isEmpty();
+            for (SQLSelectItem item : block.getSelectList()) {
+                if (!aggregateOnly) { break; }
+                aggregateOnly = item.getExpr() instanceof SQLAggregateExpr
+                        && ((SQLAggregateExpr) item.getExpr()).getOption() == null
+                        && ArrayUtils.contains(MERGEABLE_AGGREGATES,
+                                ((SQLAggregateExpr) item.getExpr()).getMethodName().toUpperCase());
+            }
+            info.aggregateOnly = aggregateOnly;
+        }
+    }
+
+    /**
+     * 简单查询直接替换select列表并去掉order by，其他情况（group by、distinct、union等）外层包一层count
+     */
+    private static String buildCountSql(String sql, SQLSelect select) {
+        SQLSelectQuery query = select.getQuery();
+        if (query instanceof MySqlSelectQueryBlock) {
+            MySqlSelectQueryBlock block = (MySqlSelectQueryBlock) query;
+            //去掉的部分不能包含参数，否则参数位置对不上
+            boolean simple = block.getGroupBy() == null && block.getDistionOption() == 0
+                    && block.getLimit() == null && block.getInto() == null
+                    && select.getOrderBy() == null
+                    && (block.getOrderBy() == null
+                            || !containsPlaceholder(SQLUtils.toSQLString(block.getOrderBy(), dbType)));
+            for (SQLSelectItem item : block.getSelectList()) {
+                if (!simple) { break; }
+                simple = !containsPlaceholder(SQLUtils.toSQLString(item, dbType));
+            }
+            if (simple) {
+                SQLAggregateExpr count = new SQLAggregateExpr("count");
+                count.getArguments().add(new SQLIntegerExpr(1));
+                block.getSelectList().clear();
+                block.getSelectList().add(new SQLSelectItem(count));
+                block.setOrderBy(null);
+                return SQLUtils.toSQLString(select, dbType);
+            }
+        }
+        return String.format(COUNT_WRAP_TEMPLATE, trimSql(sql));
+    }
+
+    private static void setWhere(SqlInfo info, SQLExpr where) {
+        if (where == null) { return; }
+        info.whereSql = SQLUtils.toSQLString(where, dbType);
+        //按?在整个SQL中的序号定位（SET、ORDER BY、LIMIT中都可能有参数）
+        PlaceholderStat stat = new PlaceholderStat();
+        where.accept(JdbcConstants.MYSQL.equals(dbType) ? new MySqlPlaceholderVisitor(stat)
+                : new PlaceholderVisitor(stat));
+        info.whereParameterCount = stat.count;
+        info.whereParameterIndex = stat.count == 0 ? 0 : stat.minIndex;
+    }
+
+    private static boolean containsPlaceholder(String sql) {
+        return sql.indexOf(PLACEHOLDER) >= 0;
+    }
+
+    /**
+     * 将SQL中的逻辑表名替换为物理表名（按SQL及表名缓存改写结果）
+     * @param sql
+     * @param logicTable
+     * @param physicalTable
+     * @return
+     */
+    public static String rewriteTable(String sql, String logicTable, String physicalTable) {
+        return analyze(sql).derive(Arrays.asList(REWRITE_TABLE, logicTable, physicalTable),
+                s -> doRewriteTable(s, logicTable, physicalTable));
+    }
+
+    private static String doRewriteTable(String sql, String logicTable, String physicalTable) {
+        try {
+            List<SQLStatement> statements = SQLUtils.parseStatements(sql, dbType);
+            SQLASTVisitor visitor = JdbcConstants.MYSQL.equals(dbType)
+                    ? new MySqlTableRenameVisitor(logicTable, physicalTable)
+                    : new TableRenameVisitor(logicTable, physicalTable);
+            for (SQLStatement statement : statements) {
+                statement.accept(visitor);
+            }
+            return SQLUtils.toSQLString(statements, dbType);
+        } catch (Exception e) {
+            //无法解析时按标识符替换（跳过引号内的内容）
+            logger.debug("rewrite table by AST error:{},sql:{}", e.getMessage(), sql);
+            return replaceIdentifier(sql, logicTable, physicalTable);
+        }
+    }
+
+    private static String replaceIdentifier(String sql, String identifier, String replacement) {
+        StringBuilder builder = new StringBuilder(sql.length() + 8);
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) { quote = 0; }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (isKeywordAt(sql, i) && matchKeyword(sql, i, identifier)) {
+                builder.append(replacement);
+                i += identifier.length() - 1;
+                continue;
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static boolean isTable(SQLExpr expr, String logicTable) {
+        return expr instanceof SQLIdentifierExpr
+                && logicTable.equalsIgnoreCase(normalizeName(((SQLIdentifierExpr) expr).getName()));
+    }
+
+    private static void renameTable(SQLExprTableSource x, String logicTable, String physicalTable) {
+        if (isTable(x.getExpr(), logicTable)) {
+            x.setExpr(new SQLIdentifierExpr(physicalTable));
+        } else if (x.getExpr() instanceof SQLPropertyExpr) {
+            //schema.table
+            SQLPropertyExpr expr = (SQLPropertyExpr) x.getExpr();
+            if (logicTable.equalsIgnoreCase(normalizeName(expr.getName()))) {
+                x.setExpr(new SQLPropertyExpr(expr.getOwner(), physicalTable));
+            }
+        }
+    }
+
+    private static void renameOwner(SQLPropertyExpr x, String logicTable, String physicalTable) {
+        //未使用别名时的 table.column
+        if (isTable(x.getOwner(), logicTable)) {
+            x.setOwner(new SQLIdentifierExpr(physicalTable));
+        }
+    }
+
+    private static class TableRenameVisitor extends SQLASTVisitorAdapter {
+        private final String logicTable;
+        private final String physicalTable;
+
+        TableRenameVisitor(String logicTable, String physicalTable) {
+            this.logicTable = logicTable;
+            this.physicalTable = physicalTable;
+        }
+
+        @Override
+        public boolean visit(SQLExprTableSource x) {
+            renameTable(x, logicTable, physicalTable);
+            return true;
+        }
+
+        @Override
+        public boolean visit(SQLPropertyExpr x) {
+            renameOwner(x, logicTable, physicalTable);
+            return true;
+        }
+    }
+
+    private static class MySqlTableRenameVisitor extends MySqlASTVisitorAdapter {
+        private final String logicTable;
+        private final String physicalTable;
 
-        MySqlStatementParser parser = new MySqlStatementParser(sql);
-        List<SQLStatement> statementList = parser.parseStatementList();
-        SQLStatement statemen = statementList.get(0);
+        MySqlTableRenameVisitor(String logicTable, String physicalTable) {
+            this.logicTable = logicTable;
+            this.physicalTable = physicalTable;
+        }
 
-        MySqlSchemaStatVisitor visitor = new MySqlSchemaStatVisitor();
-        statemen.accept(visitor);
+        @Override
+        public boolean visit(SQLExprTableSource x) {
+            renameTable(x, logicTable, physicalTable);
+            return true;
+        }
+
+        @Override
+        public boolean visit(SQLPropertyExpr x) {
+            renameOwner(x, logicTable, physicalTable);
+            return true;
+        }
+    }
 
-        System.out.println(visitor.getTables());
+    //?的数量及最小序号
+    private static class PlaceholderStat {
+        private int count;
+        private int minIndex = Integer.MAX_VALUE;
 
-        System.out.println(visitor.getColumns());
+        void add(SQLVariantRefExpr x) {
+            if (!String.valueOf(PLACEHOLDER).equals(x.getName())) { return; }
+            count++;
+            minIndex = Math.min(minIndex, x.getIndex());
+        }
+    }
+
+    private static class PlaceholderVisitor extends SQLASTVisitorAdapter {
+        private final PlaceholderStat stat;
+
+        PlaceholderVisitor(PlaceholderStat stat) {
+            this.stat = stat;
+        }
+
+        @Override
+        public boolean visit(SQLVariantRefExpr x) {
+            stat.add(x);
+            return true;
+        }
+    }
+
+    private static class MySqlPlaceholderVisitor extends MySqlASTVisitorAdapter {
+        private final PlaceholderStat stat;
+
+        MySqlPlaceholderVisitor(PlaceholderStat stat) {
+            this.stat = stat;
+        }
+
+        @Override
+        public boolean visit(SQLVariantRefExpr x) {
+            stat.add(x);
+            return true;
+        }
+    }
+
+    private static String normalizeName(String name) {
+        return StringUtils.remove(name, '`').toLowerCase();
+    }
+
+    /**
+     * 去掉首尾空白及结尾的分号
+     * @param sql
+     * @return
+     */
+    public static String trimSql(String sql) {
+        sql = sql.trim();
+        return sql.endsWith(";") ? sql.substring(0, sql.length() - 1).trim() : sql;
+    }
+
+    public static boolean isKeywordAt(String sql, int index) {
+        return index == 0 || !Character.isJavaIdentifierPart(sql.charAt(index - 1));
+    }
 
-        System.out.println(visitor.getConditions());
+    public static boolean matchKeyword(String sql, int index, String keyword) {
+        int end = index + keyword.length();
+        return sql.regionMatches(true, index, keyword, 0, keyword.length())
+                && (end == sql.length() || !Character.isJavaIdentifierPart(sql.charAt(end)));
     }
 }
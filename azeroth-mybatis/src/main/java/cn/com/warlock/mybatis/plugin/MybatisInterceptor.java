@@ -1,11 +1,14 @@
 package cn.com.warlock.mybatis.plugin;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.mapping.MappedStatement;
@@ -16,6 +19,8 @@ import org.apache.ibatis.plugin.Plugin;
 import org.apache.ibatis.plugin.Signature;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
@@ -25,11 +30,19 @@ import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.util.StringUtils;
 
 import cn.com.warlock.mybatis.core.InterceptorHandler;
+import cn.com.warlock.mybatis.crud.BatchCrudSupport;
+import cn.com.warlock.mybatis.kit.SqlParseUtils;
 import cn.com.warlock.mybatis.parser.MybatisMapperParser;
 import cn.com.warlock.mybatis.plugin.cache.CacheHandler;
+import cn.com.warlock.mybatis.plugin.metrics.MybatisMetrics;
+import cn.com.warlock.mybatis.plugin.metrics.SlowQuery;
+import cn.com.warlock.mybatis.plugin.metrics.StatementMetrics;
+import cn.com.warlock.mybatis.plugin.pagination.PageExecutor;
 import cn.com.warlock.mybatis.plugin.pagination.PaginationHandler;
 import cn.com.warlock.mybatis.plugin.rwseparate.RwRouteHandler;
 import cn.com.warlock.mybatis.plugin.shard.DatabaseRouteHandler;
+import cn.com.warlock.mybatis.plugin.shard.ScatterGatherExecutor;
+import cn.com.warlock.mybatis.plugin.shard.TableRouteHandler;
 import cn.com.warlock.spring.InstanceFactory;
 import cn.com.warlock.spring.SpringInstanceProvider;
 
@@ -45,13 +58,24 @@ import cn.com.warlock.spring.SpringInstanceProvider;
                 ResultHandler.class})})
 public class MybatisInterceptor implements Interceptor, InitializingBean, DisposableBean, ApplicationContextAware {
 
+    private static final Logger logger = LoggerFactory.getLogger(MybatisInterceptor.class);
+
     private Properties properties;
     //CRUD框架驱动 default，mapper3
     private List<InterceptorHandler> interceptorHandlers = new ArrayList<>();
 
     private static boolean cacheEnabled, rwRouteEnabled, dbShardEnabled;
 
-    //cache,rwRoute,dbShard
+    //已启动的处理器（按顺序）
+    private InterceptorHandler[] activeHandlers = new InterceptorHandler[0];
+
+    //msId -> 语句预处理信息
+    private final Map<String, StatementDescriptor> statementDescriptors = new ConcurrentHashMap<>();
+
+    //本拦截器的执行统计
+    private MybatisMetrics mybatisMetrics;
+
+    //cache,rwRoute,dbShard,tableShard,page
     public void setInterceptorHandlers(String interceptorHandlers) {
         String[] handlerNames = StringUtils.tokenizeToStringArray(interceptorHandlers,
                 ConfigurableApplicationContext.CONFIG_LOCATION_DELIMITERS);
@@ -68,6 +92,8 @@ public class MybatisInterceptor implements Interceptor, InitializingBean, Dispos
                 dbShardEnabled = true;
             } else if (PaginationHandler.NAME.equals(name)) {
                 this.interceptorHandlers.add(new PaginationHandler());
+            } else if (TableRouteHandler.NAME.equals(name)) {
+                this.interceptorHandlers.add(new TableRouteHandler());
             }
         }
         //排序
@@ -86,26 +112,133 @@ public class MybatisInterceptor implements Interceptor, InitializingBean, Dispos
 
     @Override
     public Object intercept(Invocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        //分表路由后MappedStatement会被替换，先取原语句信息
+        StatementDescriptor descriptor = getStatementDescriptor(
+                (MappedStatement) invocation.getArgs()[0]);
+        StatementMetrics metrics = mybatisMetrics.getMetrics(descriptor.getId());
+        boolean error = true;
+        try {
+            Object result = intercept(invocation, descriptor, metrics);
+            if (metrics != null) {
+                recordRows(metrics, result);
+            }
+            error = false;
+            return result;
+        } finally {
+            //执行失败时DatabaseRouteHandler.onFinished不会执行，此处兜底清除跨库查询标记
+            ScatterGatherExecutor.reset();
+            //PaginationHandler只处理查询语句，非查询语句之前设置的分页参数也需清除，避免带到下一次查询
+            PageExecutor.clearPageParams();
+            if (metrics != null) {
+                recordLatency(invocation, metrics, start, error);
+            }
+        }
+    }
 
+    private Object intercept(Invocation invocation, StatementDescriptor descriptor,
+                             StatementMetrics metrics) throws Throwable {
+        InterceptorHandler[] handlers = descriptor.getHandlers();
+        int[] handlerIndexes = descriptor.getHandlerIndexes();
         Object result = null;
         boolean proceed = false;
-        for (InterceptorHandler handler : interceptorHandlers) {
-            result = handler.onInterceptor(invocation);
+        for (int i = 0; i < handlers.length; i++) {
+            long start = System.nanoTime();
+            result = handlers[i].onInterceptor(invocation);
+            if (metrics != null) {
+                metrics.recordHandler(handlerIndexes[i], System.nanoTime() - start);
+            }
             if (result != null) { break; }
         }
 
         if (result == null) {
-            result = invocation.proceed();
+            long start = System.nanoTime();
+            ScatterGatherExecutor scatterGatherExecutor = ScatterGatherExecutor.current();
+            if (descriptor.isBatch()) {
+                result = BatchCrudSupport.execute(invocation);
+            } else if (scatterGatherExecutor != null && descriptor.isSelect()) {
+                result = scatterGatherExecutor.query(invocation);
+            } else {
+                result = invocation.proceed();
+            }
+            if (metrics != null) {
+                metrics.recordExecute(System.nanoTime() - start);
+            }
             proceed = true;
         }
 
-        for (InterceptorHandler handler : interceptorHandlers) {
-            handler.onFinished(invocation, proceed ? result : null);
+        for (int i = 0; i < handlers.length; i++) {
+            long start = System.nanoTime();
+            handlers[i].onFinished(invocation, proceed ? result : null);
+            if (metrics != null) {
+                metrics.recordHandler(handlerIndexes[i], System.nanoTime() - start);
+            }
         }
 
         return result;
     }
 
+    /**
+     * 获取语句预处理信息（按id缓存，分表路由后的语句与原语句共用）
+     * @param ms
+     * @return
+     */
+    public StatementDescriptor getStatementDescriptor(MappedStatement ms) {
+        StatementDescriptor descriptor = statementDescriptors.get(ms.getId());
+        if (descriptor == null) {
+            descriptor = statementDescriptors.computeIfAbsent(ms.getId(),
+                    id -> buildStatementDescriptor(ms));
+        }
+        return descriptor;
+    }
+
+    private StatementDescriptor buildStatementDescriptor(MappedStatement ms) {
+        StatementDescriptor descriptor = new StatementDescriptor(ms);
+        List<InterceptorHandler> handlers = new ArrayList<>(activeHandlers.length);
+        int[] handlerIndexes = new int[activeHandlers.length];
+        for (int i = 0; i < activeHandlers.length; i++) {
+            if (!activeHandlers[i].isApplicable(descriptor)) {
+                continue;
+            }
+            handlerIndexes[handlers.size()] = i;
+            handlers.add(activeHandlers[i]);
+        }
+        descriptor.setHandlers(handlers.toArray(new InterceptorHandler[handlers.size()]),
+                Arrays.copyOf(handlerIndexes, handlers.size()));
+        return descriptor;
+    }
+
+    private static void recordRows(StatementMetrics metrics, Object result) {
+        if (result instanceof List) {
+            metrics.recordRows(((List<?>) result).size());
+        } else if (result instanceof Number) {
+            metrics.recordRows(((Number) result).longValue());
+        } else if (result != null) {
+            metrics.recordRows(1);
+        }
+    }
+
+    private void recordLatency(Invocation invocation, StatementMetrics metrics, long start,
+                               boolean error) {
+        long elapsed = System.nanoTime() - start;
+        metrics.recordLatency(elapsed, error);
+        long elapsedMillis = elapsed / 1000000;
+        if (elapsedMillis < mybatisMetrics.getSlowQueryMillis()) {
+            return;
+        }
+        //只有慢查询才重新生成BoundSql
+        String sql;
+        try {
+            Object[] args = invocation.getArgs();
+            sql = ((MappedStatement) args[0]).getBoundSql(args[1]).getSql();
+        } catch (Exception e) {
+            sql = null;
+        }
+        metrics.recordSlowQuery(new SlowQuery(metrics.getStatementId(), sql, elapsedMillis,
+                System.currentTimeMillis()));
+        logger.warn("slow query[{}] {}ms,sql:{}", metrics.getStatementId(), elapsedMillis, sql);
+    }
+
     @Override
     public Object plugin(Object target) {
         if (target instanceof Executor) {
@@ -123,20 +256,49 @@ public class MybatisInterceptor implements Interceptor, InitializingBean, Dispos
 
     @Override
     public void afterPropertiesSet() throws Exception {
+        SqlParseUtils.setDbType(getProperty(PluginConfig.DB_TYPE));
+        initMetrics();
         Iterator<InterceptorHandler> it = interceptorHandlers.iterator();
         while (it.hasNext()) {
             InterceptorHandler handler = it.next();
             handler.start(this);
         }
+        activeHandlers = interceptorHandlers.toArray(new InterceptorHandler[interceptorHandlers.size()]);
+        statementDescriptors.clear();
+    }
+
+    private void initMetrics() {
+        String[] handlerNames = new String[interceptorHandlers.size()];
+        for (int i = 0; i < handlerNames.length; i++) {
+            handlerNames[i] = interceptorHandlers.get(i).getClass().getSimpleName();
+        }
+        if (mybatisMetrics != null) {
+            mybatisMetrics.unregisterMBean();
+        }
+        MybatisMetrics metrics = new MybatisMetrics(handlerNames);
+        metrics.setEnabled(Boolean.parseBoolean(getProperty(PluginConfig.METRICS_ENABLED, "true")));
+        metrics.setSlowQueryMillis(
+                Long.parseLong(getProperty(PluginConfig.METRICS_SLOW_QUERY_MILLIS, "1000")));
+        if (metrics.isEnabled()) {
+            metrics.registerMBean();
+        }
+        mybatisMetrics = metrics;
     }
 
     @Override
     public void destroy() throws Exception {
+        if (mybatisMetrics != null) {
+            mybatisMetrics.unregisterMBean();
+        }
         for (InterceptorHandler handler : interceptorHandlers) {
             handler.close();
         }
     }
 
+    public MybatisMetrics getMetrics() {
+        return mybatisMetrics;
+    }
+
     public String getProperty(String key) {
         return properties == null ? null : properties.getProperty(key);
     }
@@ -5,4 +5,17 @@ public class PluginConfig {
     public static final String CRUD_DRIVER      = "crudDriver";
     public static final String DB_TYPE          = "dbType";
     public static final String CACHE_NULL_VALUE = "cache.nullValue";
+    //事务内缓存写入延迟到提交后，默认true
+    public static final String CACHE_TRANSACTIONAL = "cache.transactional";
+
+    public static final String PAGE_COUNT_MODE          = "page.countMode";
+    public static final String PAGE_COUNT_CACHE_SECONDS = "page.countCacheSeconds";
+    public static final String PAGE_COUNT_CACHE_SIZE    = "page.countCacheSize";
+
+    public static final String DB_SHARD_SCATTER_ENABLED = "dbShard.scatterEnabled";
+    public static final String DB_SHARD_SCATTER_THREADS = "dbShard.scatterThreads";
+    public static final String DB_SHARD_SCATTER_TIMEOUT = "dbShard.scatterTimeoutMillis";
+
+    public static final String METRICS_ENABLED           = "metrics.enabled";
+    public static final String METRICS_SLOW_QUERY_MILLIS = "metrics.slowQueryMillis";
 }
@@ -0,0 +1,99 @@
+package cn.com.warlock.mybatis.plugin;
+
+import org.apache.ibatis.executor.keygen.SelectKeyGenerator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+
+import cn.com.warlock.mybatis.core.InterceptorHandler;
+import cn.com.warlock.mybatis.crud.BatchCrudSupport;
+import cn.com.warlock.mybatis.parser.EntityInfo;
+import cn.com.warlock.mybatis.parser.MybatisMapperParser;
+
+/**
+ * ClassName: StatementDescriptor <br/>
+ * Function: MappedStatement预处理信息. <br/>
+ * Reason:  <br/>
+ *
+ * <pre>
+ * 每个MappedStatement首次执行时构建一次：namespace、实体信息、需要处理该语句的处理器
+ * 之后按id直接查找，处理器不再重复截取namespace、匹配配置
+ * </pre>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class StatementDescriptor {
+
+    private static final String SPLIT_POINT = ".";
+
+    private final String id;
+
+    private final String namespace;
+
+    private final SqlCommandType sqlCommandType;
+
+    //mapper对应实体，非实体mapper为null
+    private final EntityInfo entityInfo;
+
+    //自增主键查询（selectKey）
+    private final boolean selectKey;
+
+    private final boolean batch;
+
+    //需要处理该语句的处理器及其在全部处理器中的序号
+    private InterceptorHandler[] handlers;
+
+    private int[] handlerIndexes;
+
+    public StatementDescriptor(MappedStatement ms) {
+        this.id = ms.getId();
+        int index = id.lastIndexOf(SPLIT_POINT);
+        this.namespace = index > 0 ? id.substring(0, index) : id;
+        this.sqlCommandType = ms.getSqlCommandType();
+        this.entityInfo = MybatisMapperParser.getEntityInfoByMapper(namespace);
+        this.selectKey = id.endsWith(SelectKeyGenerator.SELECT_KEY_SUFFIX);
+        this.batch = BatchCrudSupport.isBatchStatement(id);
+    }
+
+    void setHandlers(InterceptorHandler[] handlers, int[] handlerIndexes) {
+        this.handlers = handlers;
+        this.handlerIndexes = handlerIndexes;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public SqlCommandType getSqlCommandType() {
+        return sqlCommandType;
+    }
+
+    public boolean isSelect() {
+        return SqlCommandType.SELECT.equals(sqlCommandType);
+    }
+
+    public EntityInfo getEntityInfo() {
+        return entityInfo;
+    }
+
+    public boolean isSelectKey() {
+        return selectKey;
+    }
+
+    public boolean isBatch() {
+        return batch;
+    }
+
+    public InterceptorHandler[] getHandlers() {
+        return handlers;
+    }
+
+    public int[] getHandlerIndexes() {
+        return handlerIndexes;
+    }
+}
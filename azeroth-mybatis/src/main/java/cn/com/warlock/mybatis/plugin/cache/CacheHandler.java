@@ -9,6 +9,8 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -26,6 +28,7 @@ import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.result.DefaultResultHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.mapping.SqlCommandType;
@@ -40,19 +43,25 @@ import org.slf4j.LoggerFactory;
 
 import cn.com.warlock.mybatis.core.BaseEntity;
 import cn.com.warlock.mybatis.core.InterceptorHandler;
+import cn.com.warlock.mybatis.crud.BatchCrudSupport;
 import cn.com.warlock.mybatis.crud.builder.SqlTemplate;
 import cn.com.warlock.mybatis.exception.MybatisHanlerInitException;
 import cn.com.warlock.mybatis.kit.CacheKeyUtils;
 import cn.com.warlock.mybatis.kit.ReflectUtils;
+import cn.com.warlock.mybatis.kit.SqlInfo;
+import cn.com.warlock.mybatis.kit.SqlParseUtils;
 import cn.com.warlock.mybatis.parser.EntityInfo;
 import cn.com.warlock.mybatis.parser.MybatisMapperParser;
 import cn.com.warlock.mybatis.plugin.MybatisInterceptor;
 import cn.com.warlock.mybatis.plugin.PluginConfig;
+import cn.com.warlock.mybatis.plugin.StatementDescriptor;
 import cn.com.warlock.mybatis.plugin.cache.annotation.Cache;
 import cn.com.warlock.mybatis.plugin.cache.annotation.CacheEvictCascade;
 import cn.com.warlock.mybatis.plugin.cache.name.DefaultCacheMethodDefine;
 import cn.com.warlock.mybatis.plugin.cache.name.Mapper3CacheMethodDefine;
 import cn.com.warlock.mybatis.plugin.cache.provider.DefaultCacheProvider;
+import cn.com.warlock.mybatis.plugin.cache.provider.TransactionalCacheProvider;
+import cn.com.warlock.mybatis.plugin.shard.TableRouteSqlSource;
 import cn.com.warlock.spring.InstanceFactory;
 
 /**
@@ -86,7 +95,7 @@ public class CacheHandler implements InterceptorHandler {
     public static final String  NULL_PLACEHOLDER = "~null";
 
     //需要缓存的所有mapper
-    private static List<String> cacheEnableMappers = new ArrayList<>();
+    private static Set<String> cacheEnableMappers = new HashSet<>();
 
     private static Map<String, String> mapperNameRalateEntityNames = new HashMap<>();
 
@@ -97,10 +106,16 @@ public class CacheHandler implements InterceptorHandler {
 
     private static Map<String, Map<String, QueryMethodCache>> queryCacheMethods = new HashMap<>();
 
+    //mapperNameSpace -> 按主键查询方法缓存配置
+    private static Map<String, QueryMethodCache> queryByPkCacheMethods = new HashMap<>();
+
     private static Map<String, UpdateByPkMethodCache> updateCacheMethods = new HashMap<>();
 
     private static List<String> groupKeys = new ArrayList<>();
 
+    //按主键批量查询：缓存命中部分，待db查询未命中部分后合并
+    private static ThreadLocal<MultiGetContext> multiGetContext = new ThreadLocal<>();
+
     //记录当前线程写入的所有缓存key
     private static ThreadLocal<List<String>> TransactionWriteCacheKeys = new ThreadLocal<>();
 
@@ -108,23 +123,29 @@ public class CacheHandler implements InterceptorHandler {
 
     private CacheMethodDefine methodDefine;
 
+    private String selectByKeysSuffix;
+
     private ScheduledExecutorService clearExpiredGroupKeysTimer;
 
+    private MybatisInterceptor interceptor;
+
     public void setCacheProvider(CacheProvider cacheProvider) {
-        CacheHandler.cacheProvider = cacheProvider;
+        CacheHandler.cacheProvider = new TransactionalCacheProvider(cacheProvider);
     }
 
     private static CacheProvider getCacheProvider() {
         if (cacheProvider == null) {
             synchronized (CacheHandler.class) {
                 if (cacheProvider == null) {
-                    cacheProvider = InstanceFactory.getInstance(CacheProvider.class);
-                }
-                if (cacheProvider == null) {
-                    cacheProvider = new DefaultCacheProvider();
+                    CacheProvider provider = InstanceFactory.getInstance(CacheProvider.class);
+                    if (provider == null) {
+                        provider = new DefaultCacheProvider();
+                    }
+                    //事务内的缓存写入延迟到提交后
+                    cacheProvider = new TransactionalCacheProvider(provider);
+                    logger.info("Initializing cacheProvider use:{} ",
+                            provider.getClass().getName());
                 }
-                logger.info("Initializing cacheProvider use:{} ",
-                        cacheProvider.getClass().getName());
             }
         }
         return cacheProvider;
@@ -137,9 +158,14 @@ public class CacheHandler implements InterceptorHandler {
         MappedStatement mt = (MappedStatement) args[0];
 
         if (mt.getSqlCommandType().equals(SqlCommandType.SELECT)) {
+            //按主键批量查询
+            if (isSelectByKeys(mt.getId())) { return getByKeysFromCache(mt, args); }
             //按主键查询
-            QueryMethodCache cacheInfo = getQueryMethodCache(mt.getId());
+            QueryMethodCache cacheInfo = getQueryMethodCache(mt);
             if (cacheInfo == null) { return null; }
+            //当前事务已更新该组，缓存中的结果已过时
+            if (cacheInfo.groupRalated && ((TransactionalCacheProvider) getCacheProvider())
+                    .isGroupCleared(cacheInfo.cacheGroupKey)) { return null; }
             final String cacheKey = genarateQueryCacheKey(cacheInfo.keyPattern, args[1]);
 
             Object cacheObject = null;
@@ -176,6 +202,9 @@ public class CacheHandler implements InterceptorHandler {
                 }
             }
 
+            boolean hit = nullPlaceholder || cacheObject != null;
+            interceptor.getMetrics().recordCache(mt.getId(), hit ? 1 : 0, hit ? 0 : 1);
+
             if (nullPlaceholder) {
                 cacheObject = new ArrayList<>();
             } else if (cacheObject != null && !(cacheObject instanceof Collection)) {
@@ -186,7 +215,7 @@ public class CacheHandler implements InterceptorHandler {
             //非按主键删除的方法需求先行查询出来并删除主键缓存
         } else if (mt.getSqlCommandType().equals(SqlCommandType.DELETE)
                 && !updateCacheMethods.containsKey(mt.getId())) {
-            String mapperNameSpace = mt.getId().substring(0, mt.getId().lastIndexOf(SPLIT_PONIT));
+            String mapperNameSpace = namespace(mt);
             Executor executor = (Executor) invocation.getTarget();
             removeCacheByUpdateConditon(executor, mt, mapperNameSpace, args);
         }
@@ -201,12 +230,16 @@ public class CacheHandler implements InterceptorHandler {
         Object[] args = invocation.getArgs();
         MappedStatement mt = (MappedStatement) args[0];
 
-        String mapperNameSpace = mt.getId().substring(0, mt.getId().lastIndexOf(SPLIT_PONIT));
+        String mapperNameSpace = namespace(mt);
 
         QueryMethodCache cacheInfo = null;
         if (mt.getSqlCommandType().equals(SqlCommandType.SELECT)) {
+            if (isSelectByKeys(mt.getId())) {
+                mergeByKeysResult(mt, result);
+                return;
+            }
             if (result == null) { return; }
-            if ((cacheInfo = getQueryMethodCache(mt.getId())) == null) { return; }
+            if ((cacheInfo = getQueryMethodCache(mt)) == null) { return; }
 
             final String cacheKey = genarateQueryCacheKey(cacheInfo.keyPattern, args[1]);
             if (result instanceof List) {
@@ -240,7 +273,7 @@ public class CacheHandler implements InterceptorHandler {
             } else {
                 //之前没有按主键的缓存，增加按主键缓存
                 String idCacheKey = genarateQueryCacheKey(
-                        getQueryByPkMethodCache(mt.getId()).keyPattern, result);
+                        getQueryByPkMethodCache(mt).keyPattern, result);
 
                 if (idCacheKey != null && cacheKey != null) {
                     //缓存idkey->实体
@@ -266,7 +299,9 @@ public class CacheHandler implements InterceptorHandler {
             if (updateCacheMethods.containsKey(mt.getId())) {
                 String idCacheKey = null;
                 UpdateByPkMethodCache updateMethodCache = updateCacheMethods.get(mt.getId());
-                if (deleteAcrion) {
+                if (updateMethodCache.batch) {
+                    updateCacheByBatch(mt, updateMethodCache, args[1], deleteAcrion);
+                } else if (deleteAcrion) {
                     idCacheKey = genarateQueryCacheKey(updateMethodCache.keyPattern, args[1]);
                     getCacheProvider().remove(idCacheKey);
                     if (logger.isDebugEnabled()) {
@@ -277,8 +312,7 @@ public class CacheHandler implements InterceptorHandler {
                     idCacheKey = genarateQueryCacheKey(updateMethodCache.keyPattern, args[1]);
                     if (insertAction || updateAction) {
                         if (result != null) {
-                            QueryMethodCache queryByPkMethodCache = getQueryByPkMethodCache(
-                                    mt.getId());
+                            QueryMethodCache queryByPkMethodCache = getQueryByPkMethodCache(mt);
                             getCacheProvider().set(idCacheKey, args[1],
                                     queryByPkMethodCache.getExpire());
                             if (logger.isDebugEnabled()) {
@@ -304,6 +338,97 @@ public class CacheHandler implements InterceptorHandler {
         }
     }
 
+    private boolean isSelectByKeys(String msId) {
+        return selectByKeysSuffix != null && msId.endsWith(selectByKeysSuffix)
+                && BatchCrudSupport.isBatchStatement(msId);
+    }
+
+    /**
+     * 按主键批量查询：一次MGET读取所有按ID缓存，全部命中直接返回，
+     * 否则将查询参数替换为未命中的主键继续执行db查询
+     * @param mt
+     * @param args
+     * @return
+     */
+    private Object getByKeysFromCache(MappedStatement mt, Object[] args) {
+        multiGetContext.remove();
+        QueryMethodCache queryByPkMethodCache = getQueryByPkMethodCache(mt);
+        Collection<Object> ids = BatchCrudSupport.getCollection(args[1]);
+        if (queryByPkMethodCache == null || ids == null || ids.isEmpty()) { return null; }
+
+        List<String> idCacheKeys = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            idCacheKeys.add(genarateQueryCacheKey(queryByPkMethodCache.keyPattern, id));
+        }
+        List<Object> cacheObjects;
+        try {
+            cacheObjects = getCacheProvider().getBatch(idCacheKeys);
+        } catch (Exception e) {
+            logger.warn("_autocache_ method[{}] read cache error,query from db", mt.getId(), e);
+            return null;
+        }
+
+        MultiGetContext context = new MultiGetContext(mt.getId(), idCacheKeys);
+        List<Object> missingIds = new ArrayList<>();
+        int index = 0;
+        for (Object id : ids) {
+            String idCacheKey = idCacheKeys.get(index);
+            Object cacheObject = cacheObjects == null ? null : cacheObjects.get(index);
+            index++;
+            if (cacheObject != null) {
+                context.values.put(idCacheKey, cacheObject);
+            } else if (context.missingKeys.add(idCacheKey)) {
+                missingIds.add(id);
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("_autocache_ method[{}] find {}/{} results from cache", mt.getId(),
+                    ids.size() - missingIds.size(), ids.size());
+        }
+        interceptor.getMetrics().recordCache(mt.getId(), ids.size() - missingIds.size(),
+                missingIds.size());
+        if (missingIds.isEmpty()) { return context.merge(); }
+
+        args[1] = BatchCrudSupport.wrapCollection(missingIds);
+        multiGetContext.set(context);
+        return null;
+    }
+
+    /**
+     * 按主键批量查询：db查询结果批量写入缓存，并与缓存命中部分按调用方顺序合并
+     * @param mt
+     * @param result
+     */
+    @SuppressWarnings("unchecked")
+    private void mergeByKeysResult(MappedStatement mt, Object result) {
+        MultiGetContext context = multiGetContext.get();
+        multiGetContext.remove();
+        if (context == null || !context.msId.equals(mt.getId()) || !(result instanceof List)) {
+            return;
+        }
+        QueryMethodCache queryByPkMethodCache = getQueryByPkMethodCache(mt);
+        List<Object> list = (List<Object>) result;
+
+        Map<String, Object> loaded = new LinkedHashMap<>(list.size());
+        for (Object entity : list) {
+            loaded.put(genarateQueryCacheKey(queryByPkMethodCache.keyPattern, entity), entity);
+        }
+        getCacheProvider().setBatch(loaded, queryByPkMethodCache.getExpire());
+        context.values.putAll(loaded);
+
+        if (nullValueCache) {
+            Map<String, Object> placeholders = new LinkedHashMap<>();
+            for (String key : context.missingKeys) {
+                if (!loaded.containsKey(key)) { placeholders.put(key, NULL_PLACEHOLDER); }
+            }
+            getCacheProvider().setBatch(placeholders, IN_1MINS);
+        }
+
+        List<Object> merged = context.merge();
+        list.clear();
+        list.addAll(merged);
+    }
+
     /**
      * 按更新的查询条件更新缓存
      * @param executor
@@ -322,13 +447,28 @@ public class CacheHandler implements InterceptorHandler {
             String querySql = statement.getSqlSource().getBoundSql(parameterObject).getSql();
 
             List<?> idsResult = null;
-            if (PARSE_SQL_ERROR_DEFAULT.equals(querySql)) {
+            //分表路由后按实际执行的SQL查询
+            boolean tableRouted = mt.getSqlSource() instanceof TableRouteSqlSource;
+            if (PARSE_SQL_ERROR_DEFAULT.equals(querySql) || tableRouted) {
                 BoundSql boundSql = mt.getBoundSql(parameterObject);
-                querySql = "select " + entityInfo.getIdColumn() + " from "
-                        + entityInfo.getTableName() + " WHERE "
-                        + boundSql.getSql().split(WHERE_REGEX)[1];
+                List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+                SqlInfo sqlInfo = SqlParseUtils.analyze(boundSql.getSql());
+                String whereSql;
+                if (sqlInfo.getWhereSql() != null) {
+                    whereSql = sqlInfo.getWhereSql();
+                    int whereStart = sqlInfo.getWhereParameterIndex();
+                    parameterMappings = parameterMappings.subList(whereStart,
+                            whereStart + sqlInfo.getWhereParameterCount());
+                } else {
+                    whereSql = boundSql.getSql().split(WHERE_REGEX)[1];
+                }
+                String tableName = tableRouted
+                        ? ((TableRouteSqlSource) mt.getSqlSource()).getPhysicalTable()
+                        : entityInfo.getTableName();
+                querySql = "select " + entityInfo.getIdColumn() + " from " + tableName
+                        + " WHERE " + whereSql;
                 BoundSql queryBoundSql = new BoundSql(statement.getConfiguration(), querySql,
-                        boundSql.getParameterMappings(), parameterObject);
+                        parameterMappings, parameterObject);
 
                 idsResult = executor.query(statement, parameterObject, RowBounds.DEFAULT,
                         new DefaultResultHandler(), null, queryBoundSql);
@@ -353,6 +493,47 @@ public class CacheHandler implements InterceptorHandler {
         }
     }
 
+    /**
+     * 批量方法：按主键批量写入或删除缓存
+     * @param mt
+     * @param updateMethodCache
+     * @param parameter
+     * @param deleteAcrion
+     */
+    private void updateCacheByBatch(MappedStatement mt, UpdateByPkMethodCache updateMethodCache,
+                                    Object parameter, boolean deleteAcrion) {
+        Collection<Object> items = BatchCrudSupport.getCollection(parameter);
+        if (items == null || items.isEmpty()) { return; }
+        if (deleteAcrion) {
+            List<String> idCacheKeys = new ArrayList<>(items.size());
+            for (Object id : items) {
+                idCacheKeys.add(genarateQueryCacheKey(updateMethodCache.keyPattern, id));
+            }
+            getCacheProvider().removeBatch(idCacheKeys);
+        } else {
+            //未更新到记录的（更新行数为0）不写入缓存，并清除可能存在的旧缓存
+            Set<Object> unaffected = BatchCrudSupport.pollUnaffectedItems();
+            Map<String, Object> keyValues = new LinkedHashMap<>(items.size());
+            List<String> removeKeys = new ArrayList<>(unaffected.size());
+            for (Object entity : items) {
+                String idCacheKey = genarateQueryCacheKey(updateMethodCache.keyPattern, entity);
+                if (unaffected.contains(entity)) {
+                    removeKeys.add(idCacheKey);
+                    continue;
+                }
+                keyValues.put(idCacheKey, entity);
+                addCurrentThreadCacheKey(idCacheKey);
+            }
+            if (!removeKeys.isEmpty()) { getCacheProvider().removeBatch(removeKeys); }
+            //唯一字段引用不批量写入，首次按字段查询时建立
+            getCacheProvider().setBatch(keyValues, getQueryByPkMethodCache(mt).getExpire());
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("_autocache_ method[{}] {} {} id cacheKeys", mt.getId(),
+                    deleteAcrion ? "remove" : "update", items.size());
+        }
+    }
+
     private MappedStatement getQueryIdsMappedStatementForUpdateCache(MappedStatement mt,
                                                                      EntityInfo entityInfo) {
         String msId = mt.getId() + QUERY_IDS_SUFFIX;
@@ -437,7 +618,7 @@ public class CacheHandler implements InterceptorHandler {
      */
     private void cacheUniqueSelectRef(Object object, MappedStatement mt, String cacheKey) {
         Collection<QueryMethodCache> mcs = queryCacheMethods
-                .get(mt.getId().substring(0, mt.getId().lastIndexOf(SPLIT_PONIT))).values();
+                .get(namespace(mt)).values();
         outter:
         for (QueryMethodCache methodCache : mcs) {
             if (methodCache.isPk || methodCache.groupRalated) { continue; }
@@ -512,27 +693,36 @@ public class CacheHandler implements InterceptorHandler {
         }
     }
 
-    private QueryMethodCache getQueryMethodCache(String mtId) {
-        String key1 = mtId.substring(0, mtId.lastIndexOf(SPLIT_PONIT));
-        if (queryCacheMethods.containsKey(key1)) {
-            return queryCacheMethods.get(key1).get(mtId);
-        }
-        return null;
+    private String namespace(MappedStatement mt) {
+        return interceptor.getStatementDescriptor(mt).getNamespace();
     }
 
-    private QueryMethodCache getQueryByPkMethodCache(String mtId) {
-        mtId = mtId.substring(0, mtId.lastIndexOf(SPLIT_PONIT));
-        if (queryCacheMethods.containsKey(mtId)) {
-            return queryCacheMethods.get(mtId).get(mtId + "." + methodDefine.selectName());
-        }
-        return null;
+    private QueryMethodCache getQueryMethodCache(MappedStatement mt) {
+        Map<String, QueryMethodCache> methodCaches = queryCacheMethods.get(namespace(mt));
+        return methodCaches == null ? null : methodCaches.get(mt.getId());
+    }
+
+    private QueryMethodCache getQueryByPkMethodCache(MappedStatement mt) {
+        return queryByPkCacheMethods.get(namespace(mt));
+    }
+
+    @Override
+    public boolean isApplicable(StatementDescriptor descriptor) {
+        if (!cacheEnableMappers.contains(descriptor.getNamespace())) { return false; }
+        if (!descriptor.isSelect()) { return true; }
+        Map<String, QueryMethodCache> methodCaches = queryCacheMethods
+                .get(descriptor.getNamespace());
+        return methodCaches.containsKey(descriptor.getId()) || isSelectByKeys(descriptor.getId());
     }
 
     @Override
     public void start(MybatisInterceptor context) {
+        this.interceptor = context;
 
         nullValueCache = Boolean
                 .parseBoolean(context.getProperty(PluginConfig.CACHE_NULL_VALUE, "false"));
+        TransactionalCacheProvider.setEnabled(Boolean
+                .parseBoolean(context.getProperty(PluginConfig.CACHE_TRANSACTIONAL, "true")));
 
         String crudDriver = context.getProperty(PluginConfig.CRUD_DRIVER, "default");
         if ("mapper3".equalsIgnoreCase(crudDriver)) {
@@ -542,6 +732,8 @@ public class CacheHandler implements InterceptorHandler {
         }
 
         logger.info("crudDriver use:{},nullValueCache:{}", crudDriver, nullValueCache);
+        selectByKeysSuffix = methodDefine.selectByKeysName() == null ? null
+                : SPLIT_PONIT + methodDefine.selectByKeysName();
 
         List<EntityInfo> entityInfos = MybatisMapperParser.getEntityInfos();
 
@@ -615,6 +807,7 @@ public class CacheHandler implements InterceptorHandler {
                     queryByPKMethod.keyPattern);
 
             queryCacheMethods.put(mapperClass.getName(), tmpMap);
+            queryByPkCacheMethods.put(mapperClass.getName(), queryByPKMethod);
 
             //更新缓存方法
             generateUpdateByPkCacheMethod(mapperClass, ei.getEntityClass(), keyPatternForPK);
@@ -700,6 +893,24 @@ public class CacheHandler implements InterceptorHandler {
         updateCacheMethods.put(methodName, new UpdateByPkMethodCache(entityClass, methodName,
                 keyPatternForPK, SqlCommandType.DELETE));
 
+        //批量方法
+        putBatchUpdateCacheMethod(mapperClass, entityClass, methodDefine.batchInsertName(),
+                keyPatternForPK, SqlCommandType.INSERT);
+        putBatchUpdateCacheMethod(mapperClass, entityClass, methodDefine.batchUpdateName(),
+                keyPatternForPK, SqlCommandType.UPDATE);
+        putBatchUpdateCacheMethod(mapperClass, entityClass, methodDefine.batchDeleteName(),
+                keyPatternForPK, SqlCommandType.DELETE);
+    }
+
+    private void putBatchUpdateCacheMethod(Class<?> mapperClass, Class<?> entityClass, String name,
+                                           String keyPatternForPK, SqlCommandType sqlCommandType) {
+        if (name == null) { return; }
+        String methodName = mapperClass.getName() + "." + name;
+        UpdateByPkMethodCache methodCache = new UpdateByPkMethodCache(entityClass, methodName,
+                keyPatternForPK, sqlCommandType);
+        methodCache.batch = true;
+        updateCacheMethods.put(methodName, methodCache);
+
     }
 
     /**
@@ -812,6 +1023,7 @@ public class CacheHandler implements InterceptorHandler {
     private class UpdateByPkMethodCache {
         public String         keyPattern;
         public SqlCommandType sqlCommandType;
+        public boolean        batch;                            //参数为主键或实体集合
 
         public UpdateByPkMethodCache(Class<?> entityClass, String methodName, String keyPattern,
                                      SqlCommandType sqlCommandType) {
@@ -820,7 +1032,34 @@ public class CacheHandler implements InterceptorHandler {
         }
     }
 
+    /**
+     * 按主键批量查询上下文
+     */
+    private class MultiGetContext {
+        public String              msId;
+        public List<String>        idCacheKeys;                       //调用方顺序
+        public Map<String, Object> values      = new HashMap<>();
+        public Set<String>         missingKeys = new HashSet<>();
+
+        public MultiGetContext(String msId, List<String> idCacheKeys) {
+            this.msId = msId;
+            this.idCacheKeys = idCacheKeys;
+        }
+
+        public List<Object> merge() {
+            List<Object> result = new ArrayList<>(idCacheKeys.size());
+            for (String key : idCacheKeys) {
+                Object value = values.get(key);
+                if (value == null || NULL_PLACEHOLDER.equals(value)) { continue; }
+                result.add(value);
+            }
+            return result;
+        }
+    }
+
     private void addCurrentThreadCacheKey(String key) {
+        //事务内的写入提交后才执行，回滚时直接丢弃
+        if (TransactionalCacheProvider.isDeferring()) { return; }
         List<String> keys = TransactionWriteCacheKeys.get();
         if (keys == null) {
             keys = new ArrayList<>();
@@ -830,7 +1069,7 @@ public class CacheHandler implements InterceptorHandler {
     }
 
     /**
-     * 回滚当前事务写入的缓存
+     * 回滚当前线程写入的缓存（未使用spring事务管理时）
      */
     public static void rollbackCache() {
         List<String> keys = TransactionWriteCacheKeys.get();
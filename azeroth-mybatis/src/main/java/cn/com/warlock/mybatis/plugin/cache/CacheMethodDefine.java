@@ -14,4 +14,24 @@ public interface CacheMethodDefine {
     String deleteName();
 
     String selectAllName();
+
+    /**
+     * 按主键批量查询，不支持返回null
+     */
+    String selectByKeysName();
+
+    /**
+     * 批量插入，不支持返回null
+     */
+    String batchInsertName();
+
+    /**
+     * 按主键批量更新，不支持返回null
+     */
+    String batchUpdateName();
+
+    /**
+     * 按主键批量删除，不支持返回null
+     */
+    String batchDeleteName();
 }
@@ -1,6 +1,9 @@
 package cn.com.warlock.mybatis.plugin.cache;
 
 import java.io.Closeable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * ClassName: CacheProvider <br/>
@@ -24,6 +27,51 @@ public interface CacheProvider extends Closeable {
 
     boolean remove(String key);
 
+    /**
+     * 批量读取（一次网络往返）
+     * @param keys
+     * @return 与keys顺序一致，不存在的key对应null
+     */
+    <T> List<T> getBatch(List<String> keys);
+
+    /**
+     * 批量写入（一次网络往返）
+     * @param keyValues
+     * @param expireSeconds
+     */
+    void setBatch(Map<String, Object> keyValues, long expireSeconds);
+
+    /**
+     * 批量删除（一次网络往返）
+     * @param keys
+     */
+    void removeBatch(Collection<String> keys);
+
+    /**
+     * 批量提交写入、删除、加入缓存组（每个操作单独指定过期时间），默认逐个执行
+     * @param writes
+     */
+    default void writeBatch(Collection<CacheWrite> writes) {
+        for (CacheWrite write : writes) {
+            switch (write.getType()) {
+                case SET:
+                    set(write.getKey(), write.getValue(), write.getExpireSeconds());
+                    break;
+                case SET_STR:
+                    setStr(write.getKey(), write.getValue(), write.getExpireSeconds());
+                    break;
+                case REMOVE:
+                    remove(write.getKey());
+                    break;
+                case PUT_GROUP:
+                    putGroup(write.getCacheGroupKey(), write.getKey(), write.getExpireSeconds());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
     void putGroup(String cacheGroupKey, String key, long expireSeconds);
 
     void removeFromGroup(String cacheGroupKey, String key);
@@ -0,0 +1,70 @@
+package cn.com.warlock.mybatis.plugin.cache;
+
+/**
+ * ClassName: CacheWrite <br/>
+ * Function: 批量提交的单个缓存写操作. <br/>
+ * Reason:  <br/>
+ *
+ * <pre>
+ * 每个操作单独指定过期时间，由{@link CacheProvider#writeBatch(java.util.Collection)}一次提交
+ * </pre>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class CacheWrite {
+
+    public enum Type {
+        SET, SET_STR, REMOVE, PUT_GROUP
+    }
+
+    private final Type   type;
+    private final String key;
+    //SET/SET_STR为缓存值，PUT_GROUP为缓存组key
+    private final Object value;
+    private final long   expireSeconds;
+
+    private CacheWrite(Type type, String key, Object value, long expireSeconds) {
+        this.type = type;
+        this.key = key;
+        this.value = value;
+        this.expireSeconds = expireSeconds;
+    }
+
+    public static CacheWrite set(String key, Object value, long expireSeconds) {
+        return new CacheWrite(Type.SET, key, value, expireSeconds);
+    }
+
+    public static CacheWrite setStr(String key, Object value, long expireSeconds) {
+        return new CacheWrite(Type.SET_STR, key, value, expireSeconds);
+    }
+
+    public static CacheWrite remove(String key) {
+        return new CacheWrite(Type.REMOVE, key, null, 0);
+    }
+
+    public static CacheWrite putGroup(String cacheGroupKey, String key, long expireSeconds) {
+        return new CacheWrite(Type.PUT_GROUP, key, cacheGroupKey, expireSeconds);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public String getCacheGroupKey() {
+        return type == Type.PUT_GROUP ? (String) value : null;
+    }
+
+    public long getExpireSeconds() {
+        return expireSeconds;
+    }
+}
@@ -29,4 +29,24 @@ public class DefaultCacheMethodDefine implements CacheMethodDefine {
         return "selectAll";
     }
 
+    @Override
+    public String selectByKeysName() {
+        return "getByKeys";
+    }
+
+    @Override
+    public String batchInsertName() {
+        return "insertBatch";
+    }
+
+    @Override
+    public String batchUpdateName() {
+        return "updateByKeysBatch";
+    }
+
+    @Override
+    public String batchDeleteName() {
+        return "deleteByKeys";
+    }
+
 }
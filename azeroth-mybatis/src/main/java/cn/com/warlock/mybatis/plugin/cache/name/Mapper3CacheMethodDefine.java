@@ -35,4 +35,26 @@ public class Mapper3CacheMethodDefine implements CacheMethodDefine {
         return "selectAll";
     }
 
+    //Mapper3 批量方法参数形式不同，不做自动缓存
+
+    @Override
+    public String selectByKeysName() {
+        return null;
+    }
+
+    @Override
+    public String batchInsertName() {
+        return null;
+    }
+
+    @Override
+    public String batchUpdateName() {
+        return null;
+    }
+
+    @Override
+    public String batchDeleteName() {
+        return null;
+    }
+
 }
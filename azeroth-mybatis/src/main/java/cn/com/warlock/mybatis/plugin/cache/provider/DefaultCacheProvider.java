@@ -1,22 +1,48 @@
 package cn.com.warlock.mybatis.plugin.cache.provider;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import cn.com.warlock.cache.command.RedisBase;
 import cn.com.warlock.cache.command.RedisBatchCommand;
 import cn.com.warlock.cache.command.RedisObject;
+import cn.com.warlock.cache.command.RedisPipeline;
 import cn.com.warlock.cache.command.RedisString;
 import cn.com.warlock.cache.redis.JedisProviderFactory;
 import cn.com.warlock.mybatis.plugin.cache.CacheHandler;
+import cn.com.warlock.mybatis.plugin.cache.CacheWrite;
 import redis.clients.jedis.JedisCommands;
+import redis.clients.util.SafeEncoder;
 
 public class DefaultCacheProvider extends AbstractCacheProvider {
 
     protected static final Logger logger = LoggerFactory.getLogger(DefaultCacheProvider.class);
 
+    //写入组索引并延长组过期时间（只延长不缩短），一次往返完成
+    private static final byte[] SCRIPT_PUT_GROUP = SafeEncoder
+            .encode("redis.call('ZADD', KEYS[1], ARGV[1], ARGV[2]) "
+                    + "if redis.call('PTTL', KEYS[1]) < tonumber(ARGV[3]) then "
+                    + "redis.call('PEXPIRE', KEYS[1], ARGV[3]) end return 1");
+
+    //按ID缓存的key后台增量清除
+    private final ExecutorService clearExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("CacheGroupCleaner").setDaemon(true).build());
+
+    //正在后台清除的组<groupName,清除期间是否有新的清除请求>，避免重复提交且不丢失清除期间的请求
+    private final Map<String, Boolean> clearingGroups = new ConcurrentHashMap<>();
+
     @Override
     public <T> T get(String key) {
         return new RedisObject(key).get();
@@ -44,16 +70,85 @@ public class DefaultCacheProvider extends AbstractCacheProvider {
         return new RedisObject(key).remove();
     }
 
+    @Override
+    public <T> List<T> getBatch(List<String> keys) {
+        return RedisBatchCommand.getObjects(keys.toArray(new String[keys.size()]));
+    }
+
+    @Override
+    public void setBatch(Map<String, Object> keyValues, long expireSeconds) {
+        if (keyValues == null || keyValues.isEmpty()) { return; }
+        RedisPipeline pipeline = new RedisPipeline();
+        for (Map.Entry<String, Object> entry : keyValues.entrySet()) {
+            if (entry.getValue() == null) { continue; }
+            pipeline.set(entry.getKey(), entry.getValue(), expireSeconds);
+        }
+        pipeline.sync();
+    }
+
+    @Override
+    public void removeBatch(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) { return; }
+        RedisPipeline pipeline = new RedisPipeline();
+        for (String key : keys) {
+            pipeline.remove(key);
+        }
+        pipeline.sync();
+    }
+
+    /**
+     * 所有操作一个pipeline提交（shard模式pipeline不支持脚本，加入缓存组在提交后逐个执行）
+     */
+    @Override
+    public void writeBatch(Collection<CacheWrite> writes) {
+        if (writes == null || writes.isEmpty()) { return; }
+        boolean shard = JedisProviderFactory.isShard(null);
+        List<CacheWrite> groupPuts = null;
+        RedisPipeline pipeline = new RedisPipeline();
+        for (CacheWrite write : writes) {
+            switch (write.getType()) {
+                case SET:
+                    if (write.getValue() == null) { break; }
+                    pipeline.set(write.getKey(), write.getValue(), write.getExpireSeconds());
+                    break;
+                case SET_STR:
+                    if (write.getValue() == null) { break; }
+                    pipeline.setString(write.getKey(), write.getValue().toString(),
+                            write.getExpireSeconds());
+                    break;
+                case REMOVE:
+                    pipeline.remove(write.getKey());
+                    break;
+                case PUT_GROUP:
+                    if (shard) {
+                        if (groupPuts == null) { groupPuts = new ArrayList<>(); }
+                        groupPuts.add(write);
+                    } else {
+                        pipeline.eval(write.getCacheGroupKey(), SCRIPT_PUT_GROUP,
+                                putGroupArgs(write.getKey(), write.getExpireSeconds()));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        pipeline.sync();
+        if (groupPuts == null) { return; }
+        for (CacheWrite write : groupPuts) {
+            putGroup(write.getCacheGroupKey(), write.getKey(), write.getExpireSeconds());
+        }
+    }
+
     @Override
     public void putGroup(String cacheGroupKey, String key, long expireSeconds) {
+        RedisBase.eval(null, SCRIPT_PUT_GROUP, SafeEncoder.encode(cacheGroupKey),
+                putGroupArgs(key, expireSeconds));
+    }
+
+    private byte[][] putGroupArgs(String key, long expireSeconds) {
         long score = calcScoreInRegionKeysSet(expireSeconds);
-        JedisCommands commands = JedisProviderFactory.getJedisCommands(null);
-        try {
-            commands.zadd(cacheGroupKey, score, key);
-            commands.pexpire(cacheGroupKey, expireSeconds * 1000);
-        } finally {
-            JedisProviderFactory.getJedisProvider(null).release();
-        }
+        return new byte[][] { SafeEncoder.encode(String.valueOf(score)), SafeEncoder.encode(key),
+                SafeEncoder.encode(String.valueOf(expireSeconds * 1000)) };
     }
 
     @Override
@@ -68,30 +163,59 @@ public class DefaultCacheProvider extends AbstractCacheProvider {
         }
     }
 
+    /**
+     * 清除缓存组
+     *
+     * 组索引中的查询缓存分批同步删除（保证清除后不再读到旧的查询结果），
+     * 按ID缓存的key由后台线程SCAN增量删除
+     */
     @Override
     public void clearGroup(final String groupName, final boolean containPkCache) {
-
         String cacheGroupKey = groupName + CacheHandler.GROUPKEY_SUFFIX;
-        JedisCommands commands = JedisProviderFactory.getJedisCommands(null);
-        try {
-            Set<String> keys = commands.zrange(cacheGroupKey, 0, -1);
-            //删除实际的缓存
-            if (keys != null && keys.size() > 0) {
-                RedisBatchCommand.removeObjects(keys.toArray(new String[0]));
+        while (true) {
+            //unlinkObjects会释放当前线程绑定的连接，每次操作重新获取
+            Set<String> keys;
+            try {
+                keys = JedisProviderFactory.getJedisCommands(null).zrange(cacheGroupKey, 0,
+                        RedisBatchCommand.CHUNK_SIZE - 1);
+            } finally {
+                JedisProviderFactory.getJedisProvider(null).release();
             }
-            commands.del(cacheGroupKey);
-            //删除按ID缓存的
-            if (containPkCache) {
-                keys = JedisProviderFactory.getMultiKeyCommands(null).keys(groupName + ".id:*");
-                if (keys != null && keys.size() > 0) {
-                    RedisBatchCommand.removeObjects(keys.toArray(new String[0]));
-                }
+            if (keys == null || keys.isEmpty()) { break; }
+            //删除实际的缓存
+            RedisBatchCommand.unlinkObjects(keys);
+            try {
+                JedisProviderFactory.getJedisCommands(null).zrem(cacheGroupKey,
+                        keys.toArray(new String[keys.size()]));
+            } finally {
+                JedisProviderFactory.getJedisProvider(null).release();
             }
-
-        } finally {
-            JedisProviderFactory.getJedisProvider(null).release();
         }
+        //删除按ID缓存的
+        if (containPkCache && requestPkCacheClear(groupName)) {
+            clearExecutor.execute(() -> clearPkCache(groupName));
+        }
+    }
 
+    /**
+     * @return 是否需要提交后台清除（已在清除中时标记为需要重新清除）
+     */
+    private boolean requestPkCacheClear(String groupName) {
+        return clearingGroups.compute(groupName,
+                (k, rerun) -> rerun == null ? Boolean.FALSE : Boolean.TRUE) == Boolean.FALSE;
+    }
+
+    private void clearPkCache(String groupName) {
+        do {
+            try {
+                RedisBatchCommand.scanKeysWithGroup(null, groupName + ".id:*",
+                        RedisBatchCommand::unlinkObjects);
+            } catch (Exception e) {
+                logger.warn("clear pk cache error,group:{}", groupName, e);
+            }
+            //清除期间有新的请求则重新SCAN（之前扫描过的slot可能写入了新key），否则结束
+        } while (clearingGroups.computeIfPresent(groupName,
+                (k, rerun) -> rerun ? Boolean.FALSE : null) != null);
     }
 
     @Override
@@ -107,6 +231,8 @@ public class DefaultCacheProvider extends AbstractCacheProvider {
     }
 
     @Override
-    public void close() throws IOException {}
+    public void close() throws IOException {
+        clearExecutor.shutdown();
+    }
 
 }
@@ -4,6 +4,9 @@
 package cn.com.warlock.mybatis.plugin.cache.provider;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -12,7 +15,9 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.serializer.RedisSerializer;
 
@@ -71,6 +76,33 @@ public class SpringRedisProvider extends AbstractCacheProvider implements Initia
         return true;
     }
 
+    @Override
+    public <T> List<T> getBatch(List<String> keys) {
+        return (List<T>) redisTemplate.opsForValue().multiGet(keys);
+    }
+
+    @Override
+    public void setBatch(final Map<String, Object> keyValues, final long expireSeconds) {
+        if (keyValues == null || keyValues.isEmpty()) { return; }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (Map.Entry<String, Object> entry : keyValues.entrySet()) {
+                    if (entry.getValue() == null) { continue; }
+                    ops.opsForValue().set(entry.getKey(), entry.getValue(), expireSeconds, TimeUnit.SECONDS);
+                }
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void removeBatch(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) { return; }
+        redisTemplate.delete(keys);
+    }
+
     @Override
     public void putGroup(String cacheGroupKey, String key, long expireSeconds) {
         long score = calcScoreInRegionKeysSet(expireSeconds);
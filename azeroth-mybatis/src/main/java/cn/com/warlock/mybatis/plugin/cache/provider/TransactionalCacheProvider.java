@@ -0,0 +1,343 @@
+package cn.com.warlock.mybatis.plugin.cache.provider;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import cn.com.warlock.mybatis.plugin.cache.CacheHandler;
+import cn.com.warlock.mybatis.plugin.cache.CacheProvider;
+import cn.com.warlock.mybatis.plugin.cache.CacheWrite;
+
+/**
+ * ClassName: TransactionalCacheProvider <br/>
+ * Function: 事务内缓存写入延迟到提交后执行. <br/>
+ * Reason:  <br/>
+ *
+ * <pre>
+ * 存在spring事务同步时：
+ * 1. 写入、删除按key去重（后一次操作覆盖前一次），缓存组操作按组去重，暂存在当前事务
+ * 2. 事务提交后一次性写入：写入、删除、加入缓存组合并为一次pipeline（各key保留自己的过期时间）
+ * 3. 事务回滚丢弃所有暂存操作，未提交的数据不会进入缓存
+ * 4. 事务内读取已暂存的key直接返回暂存结果（删除的返回null）
+ * 无事务时直接操作缓存
+ * </pre>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class TransactionalCacheProvider implements CacheProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionalCacheProvider.class);
+
+    private static volatile boolean enabled = true;
+
+    private final CacheProvider delegate;
+
+    public TransactionalCacheProvider(CacheProvider delegate) {
+        this.delegate = delegate;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        TransactionalCacheProvider.enabled = enabled;
+    }
+
+    /**
+     * 当前是否在事务内（缓存写入将延迟到提交后）
+     */
+    public static boolean isDeferring() {
+        return enabled && TransactionSynchronizationManager.isSynchronizationActive();
+    }
+
+    public CacheProvider getDelegate() {
+        return delegate;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T get(String key) {
+        CacheWrite write = getPendingWrite(key);
+        if (write == null) { return delegate.get(key); }
+        return write.getType() == CacheWrite.Type.SET ? (T) write.getValue() : null;
+    }
+
+    @Override
+    public String getStr(String key) {
+        CacheWrite write = getPendingWrite(key);
+        if (write == null) { return delegate.getStr(key); }
+        return write.getType() == CacheWrite.Type.SET_STR ? write.getValue().toString() : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> List<T> getBatch(List<String> keys) {
+        List<T> values = delegate.getBatch(keys);
+        PendingWrites pendingWrites = currentPendingWrites(false);
+        if (pendingWrites == null || pendingWrites.writes.isEmpty() || values == null) {
+            return values;
+        }
+        List<T> result = new ArrayList<>(values);
+        for (int i = 0; i < keys.size(); i++) {
+            CacheWrite write = pendingWrites.writes.get(keys.get(i));
+            if (write == null) { continue; }
+            result.set(i, write.getType() == CacheWrite.Type.SET ? (T) write.getValue() : null);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean set(String key, Object value, long expireSeconds) {
+        if (value == null) { return false; }
+        PendingWrites pendingWrites = currentPendingWrites(true);
+        if (pendingWrites == null) { return delegate.set(key, value, expireSeconds); }
+        pendingWrites.writes.put(key, CacheWrite.set(key, value, expireSeconds));
+        return true;
+    }
+
+    @Override
+    public boolean setStr(String key, Object value, long expireSeconds) {
+        if (value == null) { return false; }
+        PendingWrites pendingWrites = currentPendingWrites(true);
+        if (pendingWrites == null) { return delegate.setStr(key, value, expireSeconds); }
+        pendingWrites.writes.put(key, CacheWrite.setStr(key, value, expireSeconds));
+        return true;
+    }
+
+    @Override
+    public boolean remove(String key) {
+        PendingWrites pendingWrites = currentPendingWrites(true);
+        if (pendingWrites == null) { return delegate.remove(key); }
+        pendingWrites.writes.put(key, CacheWrite.remove(key));
+        return true;
+    }
+
+    @Override
+    public void setBatch(Map<String, Object> keyValues, long expireSeconds) {
+        PendingWrites pendingWrites = currentPendingWrites(true);
+        if (pendingWrites == null) {
+            delegate.setBatch(keyValues, expireSeconds);
+            return;
+        }
+        for (Map.Entry<String, Object> entry : keyValues.entrySet()) {
+            if (entry.getValue() == null) { continue; }
+            pendingWrites.writes.put(entry.getKey(),
+                    CacheWrite.set(entry.getKey(), entry.getValue(), expireSeconds));
+        }
+    }
+
+    @Override
+    public void removeBatch(Collection<String> keys) {
+        PendingWrites pendingWrites = currentPendingWrites(true);
+        if (pendingWrites == null) {
+            delegate.removeBatch(keys);
+            return;
+        }
+        for (String key : keys) {
+            pendingWrites.writes.put(key, CacheWrite.remove(key));
+        }
+    }
+
+    @Override
+    public void writeBatch(Collection<CacheWrite> writes) {
+        if (!isDeferring()) {
+            delegate.writeBatch(writes);
+            return;
+        }
+        CacheProvider.super.writeBatch(writes);
+    }
+
+    @Override
+    public void putGroup(String cacheGroupKey, String key, long expireSeconds) {
+        PendingWrites pendingWrites = currentPendingWrites(true);
+        if (pendingWrites == null) {
+            delegate.putGroup(cacheGroupKey, key, expireSeconds);
+            return;
+        }
+        pendingWrites.groupPuts.put(new GroupMember(cacheGroupKey, key),
+                CacheWrite.putGroup(cacheGroupKey, key, expireSeconds));
+    }
+
+    @Override
+    public void removeFromGroup(String cacheGroupKey, String key) {
+        PendingWrites pendingWrites = currentPendingWrites(true);
+        if (pendingWrites == null) {
+            delegate.removeFromGroup(cacheGroupKey, key);
+            return;
+        }
+        GroupMember member = new GroupMember(cacheGroupKey, key);
+        pendingWrites.groupPuts.remove(member);
+        pendingWrites.groupRemoves.add(member);
+        pendingWrites.writes.put(key, CacheWrite.remove(key));
+    }
+
+    @Override
+    public void clearExpiredGroupKeys(String cacheGroup) {
+        PendingWrites pendingWrites = currentPendingWrites(true);
+        if (pendingWrites == null) {
+            delegate.clearExpiredGroupKeys(cacheGroup);
+            return;
+        }
+        pendingWrites.expiredGroupClears.add(cacheGroup);
+    }
+
+    @Override
+    public void clearGroup(String groupName, boolean containPkCache) {
+        PendingWrites pendingWrites = currentPendingWrites(true);
+        if (pendingWrites == null) {
+            delegate.clearGroup(groupName, containPkCache);
+            return;
+        }
+        Boolean exists = pendingWrites.groupClears.get(groupName);
+        pendingWrites.groupClears.put(groupName, containPkCache || Boolean.TRUE.equals(exists));
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    /**
+     * 当前事务是否已清除该缓存组（事务内对该组的查询不再读缓存）
+     * @param cacheGroupKey
+     * @return
+     */
+    public boolean isGroupCleared(String cacheGroupKey) {
+        PendingWrites pendingWrites = currentPendingWrites(false);
+        if (pendingWrites == null) { return false; }
+        if (pendingWrites.expiredGroupClears.contains(cacheGroupKey)) { return true; }
+        for (String groupName : pendingWrites.groupClears.keySet()) {
+            if (cacheGroupKey.equals(groupName + CacheHandler.GROUPKEY_SUFFIX)) { return true; }
+        }
+        return false;
+    }
+
+    private CacheWrite getPendingWrite(String key) {
+        PendingWrites pendingWrites = currentPendingWrites(false);
+        return pendingWrites == null ? null : pendingWrites.writes.get(key);
+    }
+
+    /**
+     * 获取当前事务暂存的缓存操作
+     * @param create 不存在时是否创建并注册事务同步
+     * @return 不在事务内返回null
+     */
+    private PendingWrites currentPendingWrites(boolean create) {
+        if (!isDeferring()) { return null; }
+        PendingWrites pendingWrites = (PendingWrites) TransactionSynchronizationManager
+                .getResource(this);
+        if (pendingWrites == null && create) {
+            pendingWrites = new PendingWrites();
+            TransactionSynchronizationManager.bindResource(this, pendingWrites);
+            TransactionSynchronizationManager
+                    .registerSynchronization(new PendingWritesSynchronization(pendingWrites));
+        }
+        return pendingWrites;
+    }
+
+    /**
+     * 提交后写入：key的写入删除与加入缓存组一次提交（各key保留自己的过期时间），
+     * 再处理缓存组移除和清除（组清除放在最后，事务内查询放入组的缓存宁可多删）
+     */
+    private void flushPendingWrites(PendingWrites pendingWrites) {
+        List<CacheWrite> writes = new ArrayList<>(
+                pendingWrites.writes.size() + pendingWrites.groupPuts.size());
+        writes.addAll(pendingWrites.writes.values());
+        writes.addAll(pendingWrites.groupPuts.values());
+        if (!writes.isEmpty()) { delegate.writeBatch(writes); }
+        for (GroupMember member : pendingWrites.groupRemoves) {
+            delegate.removeFromGroup(member.group, member.key);
+        }
+        for (Map.Entry<String, Boolean> entry : pendingWrites.groupClears.entrySet()) {
+            delegate.clearGroup(entry.getKey(), entry.getValue());
+        }
+        for (String group : pendingWrites.expiredGroupClears) {
+            delegate.clearExpiredGroupKeys(group);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("_autocache_ transaction committed,flush {} keys,{} groups",
+                    pendingWrites.writes.size(), pendingWrites.groupClears.size());
+        }
+    }
+
+    private class PendingWritesSynchronization extends TransactionSynchronizationAdapter {
+
+        private final PendingWrites pendingWrites;
+
+        PendingWritesSynchronization(PendingWrites pendingWrites) {
+            this.pendingWrites = pendingWrites;
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(TransactionalCacheProvider.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(TransactionalCacheProvider.this,
+                    pendingWrites);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(TransactionalCacheProvider.this);
+            if (status != TransactionSynchronization.STATUS_COMMITTED) {
+                logger.debug("_autocache_ transaction rollback,discard {} keys",
+                        pendingWrites.writes.size());
+                return;
+            }
+            try {
+                flushPendingWrites(pendingWrites);
+            } catch (Exception e) {
+                //写入失败时尽量删除涉及的key，避免缓存与db不一致
+                logger.error("_autocache_ flush cache after commit error", e);
+                try {
+                    delegate.removeBatch(pendingWrites.writes.keySet());
+                } catch (Exception e2) {
+                    logger.error("_autocache_ remove cache after flush error", e2);
+                }
+            }
+        }
+    }
+
+    private static class GroupMember {
+        final String group;
+        final String key;
+
+        GroupMember(String group, String key) {
+            this.group = group;
+            this.key = key;
+        }
+
+        @Override
+        public int hashCode() {
+            return group.hashCode() * 31 + key.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof GroupMember)) { return false; }
+            GroupMember other = (GroupMember) obj;
+            return group.equals(other.group) && key.equals(other.key);
+        }
+    }
+
+    private static class PendingWrites {
+        final Map<String, CacheWrite>      writes             = new LinkedHashMap<>();
+        final Map<GroupMember, CacheWrite> groupPuts          = new LinkedHashMap<>();
+        final Set<GroupMember>             groupRemoves       = new LinkedHashSet<>();
+        final Map<String, Boolean>         groupClears        = new LinkedHashMap<>();
+        final Set<String>                  expiredGroupClears = new LinkedHashSet<>();
+    }
+}
@@ -0,0 +1,105 @@
+package cn.com.warlock.mybatis.plugin.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ClassName: LatencyHistogram <br/>
+ * Function: 耗时直方图（对数-线性分桶，记录时不分配对象）. <br/>
+ * Reason:  <br/>
+ *
+ * <pre>
+ * 0~15us每1us一个桶，之后每个2的幂区间分为8个桶，相对误差不超过12.5%
+ * 单位：微秒
+ * </pre>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR_BUCKETS = 16;
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    //最高位从4到62
+    private static final int BUCKETS = LINEAR_BUCKETS + (63 - 4) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder total = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long micros) {
+        if (micros < 0) { micros = 0; }
+        counts.incrementAndGet(bucketIndex(micros));
+        count.increment();
+        total.add(micros);
+        max.accumulate(micros);
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < LINEAR_BUCKETS) { return (int) value; }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (highestBit - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * 桶的上界
+     */
+    private static long bucketUpperBound(int index) {
+        if (index < LINEAR_BUCKETS) { return index; }
+        int highestBit = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+        int subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        int shift = highestBit - SUB_BUCKET_BITS;
+        return ((long) (subBucket + 1) << shift) - 1;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    /**
+     * 百分位耗时
+     * @param percentile 0~100
+     * @return 微秒
+     */
+    public long getPercentile(double percentile) {
+        long n = count.sum();
+        if (n == 0) { return 0; }
+        long target = Math.max(1, (long) Math.ceil(n * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) { return Math.min(bucketUpperBound(i), getMax()); }
+        }
+        return getMax();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+}
@@ -0,0 +1,160 @@
+package cn.com.warlock.mybatis.plugin.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ClassName: MybatisMetrics <br/>
+ * Function: 按MappedStatement id汇总的执行统计. <br/>
+ * Reason:  <br/>
+ *
+ * <pre>
+ * 每个MybatisInterceptor一份，处理器耗时与该拦截器的处理器一一对应
+ * 拉取：mybatisInterceptor.getMetrics().getStatementStats() / getStatementStats(msId) / getSlowQueries()
+ * JMX：cn.com.warlock.mybatis:type=MybatisMetrics,id=序号
+ * 分表路由后的语句与原语句id相同，统计合并
+ * </pre>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class MybatisMetrics implements MybatisMetricsMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(MybatisMetrics.class);
+
+    public static final String OBJECT_NAME_PREFIX = "cn.com.warlock.mybatis:type=MybatisMetrics,id=";
+
+    //多个拦截器（多数据源）时区分MBean
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final String objectName = OBJECT_NAME_PREFIX + SEQUENCE.incrementAndGet();
+
+    private final Map<String, StatementMetrics> statementMetrics = new ConcurrentHashMap<>();
+
+    //处理器名称，与所属拦截器的处理器顺序一致
+    private final String[] handlerNames;
+
+    private volatile boolean enabled = true;
+
+    private volatile long slowQueryMillis = 1000;
+
+    public MybatisMetrics(String[] handlerNames) {
+        this.handlerNames = handlerNames;
+    }
+
+    public String getObjectName() {
+        return objectName;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getSlowQueryMillis() {
+        return slowQueryMillis;
+    }
+
+    @Override
+    public void setSlowQueryMillis(long slowQueryMillis) {
+        this.slowQueryMillis = slowQueryMillis;
+    }
+
+    /**
+     * 获取语句统计，未启用时返回null
+     */
+    public StatementMetrics getMetrics(String statementId) {
+        if (!enabled) { return null; }
+        StatementMetrics metrics = statementMetrics.get(statementId);
+        if (metrics == null) {
+            metrics = statementMetrics.computeIfAbsent(statementId,
+                    id -> new StatementMetrics(id, handlerNames));
+        }
+        return metrics;
+    }
+
+    /**
+     * 记录缓存命中/未命中次数（按主键批量查询时按主键个数计）
+     */
+    public void recordCache(String statementId, long hits, long misses) {
+        StatementMetrics metrics = getMetrics(statementId);
+        if (metrics != null) { metrics.recordCache(hits, misses); }
+    }
+
+    public StatementStats getStatementStats(String statementId) {
+        StatementMetrics metrics = statementMetrics.get(statementId);
+        return metrics == null ? null : metrics.snapshot();
+    }
+
+    @Override
+    public List<StatementStats> getStatementStats() {
+        Collection<StatementMetrics> values = statementMetrics.values();
+        List<StatementStats> list = new ArrayList<>(values.size());
+        for (StatementMetrics metrics : values) {
+            list.add(metrics.snapshot());
+        }
+        return list;
+    }
+
+    @Override
+    public List<StatementStats> getTopStatements(int n) {
+        List<StatementStats> list = getStatementStats();
+        list.sort(Comparator.comparingLong(
+                (StatementStats stats) -> stats.getMeanMicros() * stats.getCount()).reversed());
+        return list.size() > n ? new ArrayList<>(list.subList(0, n)) : list;
+    }
+
+    @Override
+    public List<SlowQuery> getSlowQueries() {
+        List<SlowQuery> list = new ArrayList<>();
+        for (StatementMetrics metrics : statementMetrics.values()) {
+            list.addAll(metrics.getSlowQueries());
+        }
+        list.sort(Comparator.comparingLong(SlowQuery::getTimestamp).reversed());
+        return list;
+    }
+
+    @Override
+    public void reset() {
+        for (StatementMetrics metrics : statementMetrics.values()) {
+            metrics.reset();
+        }
+    }
+
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(objectName);
+            if (!server.isRegistered(name)) { server.registerMBean(this, name); }
+        } catch (Exception e) {
+            logger.warn("register MBean[{}] error", objectName, e);
+        }
+    }
+
+    public void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(objectName);
+            if (server.isRegistered(name)) { server.unregisterMBean(name); }
+        } catch (Exception e) {
+            logger.warn("unregister MBean[{}] error", objectName, e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package cn.com.warlock.mybatis.plugin.metrics;
+
+import java.util.List;
+
+/**
+ * ClassName: MybatisMetricsMXBean <br/>
+ * Function: mybatis执行统计JMX接口. <br/>
+ * Reason:  <br/>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public interface MybatisMetricsMXBean {
+
+    List<StatementStats> getStatementStats();
+
+    /**
+     * 按平均耗时*次数（总耗时）倒序的前N个语句
+     */
+    List<StatementStats> getTopStatements(int n);
+
+    List<SlowQuery> getSlowQueries();
+
+    long getSlowQueryMillis();
+
+    void setSlowQueryMillis(long slowQueryMillis);
+
+    void reset();
+}
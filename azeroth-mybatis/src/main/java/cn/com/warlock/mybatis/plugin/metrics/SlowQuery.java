@@ -0,0 +1,49 @@
+package cn.com.warlock.mybatis.plugin.metrics;
+
+/**
+ * ClassName: SlowQuery <br/>
+ * Function: 慢查询样本. <br/>
+ * Reason:  <br/>
+ *
+ * sql为实际执行的BoundSql（分表路由后），参数为占位符
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class SlowQuery {
+
+    private final String statementId;
+    private final String sql;
+    private final long   elapsedMillis;
+    private final long   timestamp;
+
+    public SlowQuery(String statementId, String sql, long elapsedMillis, long timestamp) {
+        this.statementId = statementId;
+        this.sql = sql;
+        this.elapsedMillis = elapsedMillis;
+        this.timestamp = timestamp;
+    }
+
+    public String getStatementId() {
+        return statementId;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "SlowQuery [statementId=" + statementId + ", elapsedMillis=" + elapsedMillis
+               + ", timestamp=" + timestamp + ", sql=" + sql + "]";
+    }
+}
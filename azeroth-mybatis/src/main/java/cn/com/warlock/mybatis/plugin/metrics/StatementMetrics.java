@@ -0,0 +1,140 @@
+package cn.com.warlock.mybatis.plugin.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ClassName: StatementMetrics <br/>
+ * Function: 单个MappedStatement的执行统计. <br/>
+ * Reason:  <br/>
+ *
+ * <pre>
+ * 总耗时直方图、执行次数、异常次数、返回行数、缓存命中/未命中、各处理器耗时及JDBC执行耗时、慢查询样本
+ * 记录时除慢查询外不分配对象
+ * </pre>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class StatementMetrics {
+
+    //每个语句保留的慢查询样本数
+    private static final int SLOW_SAMPLE_SIZE = 10;
+
+    private final String statementId;
+
+    //处理器名称，与所属MybatisMetrics的处理器顺序一致
+    private final String[] handlerNames;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder rows = new LongAdder();
+
+    private final LongAdder cacheHits = new LongAdder();
+
+    private final LongAdder cacheMisses = new LongAdder();
+
+    private final LongAdder executeNanos = new LongAdder();
+
+    //各处理器累计耗时（纳秒）
+    private final AtomicLongArray handlerNanos;
+
+    private final SlowQuery[] slowQueries = new SlowQuery[SLOW_SAMPLE_SIZE];
+
+    private int slowQueryIndex;
+
+    public StatementMetrics(String statementId, String[] handlerNames) {
+        this.statementId = statementId;
+        this.handlerNames = handlerNames;
+        this.handlerNanos = new AtomicLongArray(handlerNames.length);
+    }
+
+    public String getStatementId() {
+        return statementId;
+    }
+
+    public void recordHandler(int handlerIndex, long nanos) {
+        handlerNanos.addAndGet(handlerIndex, nanos);
+    }
+
+    public void recordExecute(long nanos) {
+        executeNanos.add(nanos);
+    }
+
+    public void recordLatency(long nanos, boolean error) {
+        latency.record(nanos / 1000);
+        if (error) { errors.increment(); }
+    }
+
+    public void recordRows(long count) {
+        rows.add(count);
+    }
+
+    public void recordCache(long hits, long misses) {
+        if (hits > 0) { cacheHits.add(hits); }
+        if (misses > 0) { cacheMisses.add(misses); }
+    }
+
+    public synchronized void recordSlowQuery(SlowQuery slowQuery) {
+        slowQueries[slowQueryIndex++ % SLOW_SAMPLE_SIZE] = slowQuery;
+    }
+
+    /**
+     * 慢查询样本（按时间倒序）
+     */
+    public synchronized List<SlowQuery> getSlowQueries() {
+        List<SlowQuery> list = new ArrayList<>(SLOW_SAMPLE_SIZE);
+        for (int i = 1; i <= SLOW_SAMPLE_SIZE; i++) {
+            SlowQuery slowQuery = slowQueries[Math.floorMod(slowQueryIndex - i, SLOW_SAMPLE_SIZE)];
+            if (slowQuery == null) { break; }
+            list.add(slowQuery);
+        }
+        return list;
+    }
+
+    public StatementStats snapshot() {
+        StatementStats stats = new StatementStats();
+        stats.setStatementId(statementId);
+        stats.setCount(latency.getCount());
+        stats.setErrors(errors.sum());
+        stats.setRows(rows.sum());
+        stats.setCacheHits(cacheHits.sum());
+        stats.setCacheMisses(cacheMisses.sum());
+        stats.setMeanMicros((long) latency.getMean());
+        stats.setP50Micros(latency.getPercentile(50));
+        stats.setP90Micros(latency.getPercentile(90));
+        stats.setP99Micros(latency.getPercentile(99));
+        stats.setP999Micros(latency.getPercentile(99.9));
+        stats.setMaxMicros(latency.getMax());
+        stats.setExecuteMicros(executeNanos.sum() / 1000);
+        Map<String, Long> handlerMicros = new LinkedHashMap<>();
+        for (int i = 0; i < handlerNames.length; i++) {
+            handlerMicros.put(handlerNames[i], handlerNanos.get(i) / 1000);
+        }
+        stats.setHandlerMicros(handlerMicros);
+        return stats;
+    }
+
+    public synchronized void reset() {
+        latency.reset();
+        errors.reset();
+        rows.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+        executeNanos.reset();
+        for (int i = 0; i < handlerNames.length; i++) {
+            handlerNanos.set(i, 0);
+        }
+        for (int i = 0; i < SLOW_SAMPLE_SIZE; i++) {
+            slowQueries[i] = null;
+        }
+        slowQueryIndex = 0;
+    }
+}
@@ -0,0 +1,155 @@
+package cn.com.warlock.mybatis.plugin.metrics;
+
+import java.util.Map;
+
+/**
+ * ClassName: StatementStats <br/>
+ * Function: MappedStatement执行统计快照. <br/>
+ * Reason:  <br/>
+ *
+ * 耗时单位均为微秒，executeMicros、handlerMicros为累计值
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class StatementStats {
+
+    private String            statementId;
+    private long              count;
+    private long              errors;
+    private long              rows;
+    private long              cacheHits;
+    private long              cacheMisses;
+    private long              meanMicros;
+    private long              p50Micros;
+    private long              p90Micros;
+    private long              p99Micros;
+    private long              p999Micros;
+    private long              maxMicros;
+    //JDBC执行（含批量、多库并行查询）累计耗时
+    private long              executeMicros;
+    //处理器名称 -> 累计耗时
+    private Map<String, Long> handlerMicros;
+
+    public String getStatementId() {
+        return statementId;
+    }
+
+    public void setStatementId(String statementId) {
+        this.statementId = statementId;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public void setErrors(long errors) {
+        this.errors = errors;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public void setCacheHits(long cacheHits) {
+        this.cacheHits = cacheHits;
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    public void setCacheMisses(long cacheMisses) {
+        this.cacheMisses = cacheMisses;
+    }
+
+    public long getMeanMicros() {
+        return meanMicros;
+    }
+
+    public void setMeanMicros(long meanMicros) {
+        this.meanMicros = meanMicros;
+    }
+
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    public void setP50Micros(long p50Micros) {
+        this.p50Micros = p50Micros;
+    }
+
+    public long getP90Micros() {
+        return p90Micros;
+    }
+
+    public void setP90Micros(long p90Micros) {
+        this.p90Micros = p90Micros;
+    }
+
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    public void setP99Micros(long p99Micros) {
+        this.p99Micros = p99Micros;
+    }
+
+    public long getP999Micros() {
+        return p999Micros;
+    }
+
+    public void setP999Micros(long p999Micros) {
+        this.p999Micros = p999Micros;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    public void setMaxMicros(long maxMicros) {
+        this.maxMicros = maxMicros;
+    }
+
+    public long getExecuteMicros() {
+        return executeMicros;
+    }
+
+    public void setExecuteMicros(long executeMicros) {
+        this.executeMicros = executeMicros;
+    }
+
+    public Map<String, Long> getHandlerMicros() {
+        return handlerMicros;
+    }
+
+    public void setHandlerMicros(Map<String, Long> handlerMicros) {
+        this.handlerMicros = handlerMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementStats [statementId=" + statementId + ", count=" + count + ", errors="
+               + errors + ", rows=" + rows + ", cacheHits=" + cacheHits + ", cacheMisses="
+               + cacheMisses + ", meanMicros=" + meanMicros + ", p99Micros=" + p99Micros
+               + ", maxMicros=" + maxMicros + ", executeMicros=" + executeMicros
+               + ", handlerMicros=" + handlerMicros + "]";
+    }
+}
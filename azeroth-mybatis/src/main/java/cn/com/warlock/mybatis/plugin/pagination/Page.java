@@ -13,12 +13,26 @@ public class Page<T> extends PageParams {
 
     public Page() {}
 
+    /**
+     * @param pageParams
+     * @param total 小于0表示未查询总数，此时pages为-1
+     * @param data
+     */
     public Page(PageParams pageParams, long total, List<T> data) {
         setPageNo(pageParams.getPageNo());
         setPageSize(pageParams.getPageSize());
+        setCountMode(pageParams.getCountMode());
+        setSeekColumn(pageParams.getSeekColumn());
+        setSeekProperty(pageParams.getSeekProperty());
+        setSeekTieColumn(pageParams.getSeekTieColumn());
+        setSeekTieProperty(pageParams.getSeekTieProperty());
+        setSeekDesc(pageParams.isSeekDesc());
+        setLastSortKey(pageParams.getLastSortKey());
+        setLastTieKey(pageParams.getLastTieKey());
         this.total = total;
         this.data = data;
-        this.pages = (int) ((this.total / this.getPageSize()) + (this.total % this.getPageSize() == 0 ? 0 : 1));
+        this.pages = total < 0 ? -1
+                : (int) ((this.total / this.getPageSize()) + (this.total % this.getPageSize() == 0 ? 0 : 1));
     }
 
     public long getTotal() {
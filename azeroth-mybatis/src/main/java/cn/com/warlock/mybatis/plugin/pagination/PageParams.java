@@ -2,11 +2,43 @@ package cn.com.warlock.mybatis.plugin.pagination;
 
 public class PageParams {
 
+    /**
+     * 总数查询方式
+     */
+    public static enum CountMode {
+                                  /** 每次精确查询 */
+                                  EXACT,
+                                  /** 精确查询，结果按SQL及参数缓存 */
+                                  CACHED,
+                                  /** 不查询，total为-1 */
+                                  SKIP,
+                                  /** 估算（mysql使用EXPLAIN的rows，其他数据库退化为精确查询） */
+                                  ESTIMATE
+    }
+
     //当前页
     private int pageNo   = 1;
     //每页的数量
     private int pageSize = 10;
 
+    //总数查询方式，为空使用插件配置的默认方式
+    private CountMode countMode;
+
+    //seek分页：排序字段（需有索引，且与查询的ORDER BY一致）
+    private String  seekColumn;
+    //seek分页：排序字段对应的结果属性名，为空与seekColumn相同
+    private String  seekProperty;
+    //seek分页：唯一字段（如主键），排序字段不唯一时必须指定，ORDER BY需为seekColumn, seekTieColumn
+    private String  seekTieColumn;
+    //seek分页：唯一字段对应的结果属性名，为空与seekTieColumn相同
+    private String  seekTieProperty;
+    //seek分页：是否降序
+    private boolean seekDesc;
+    //seek分页：上一页最后一条记录的排序值，为空表示第一页
+    private Object  lastSortKey;
+    //seek分页：上一页最后一条记录的唯一字段值
+    private Object  lastTieKey;
+
     public PageParams() {}
 
     public PageParams(int pageNo, int pageSize) {
@@ -34,4 +66,103 @@ public class PageParams {
     public int getOffset() {
         return (pageNo - 1) * pageSize;
     }
+
+    public CountMode getCountMode() {
+        return countMode;
+    }
+
+    public void setCountMode(CountMode countMode) {
+        this.countMode = countMode;
+    }
+
+    public String getSeekColumn() {
+        return seekColumn;
+    }
+
+    public void setSeekColumn(String seekColumn) {
+        this.seekColumn = seekColumn;
+    }
+
+    public String getSeekProperty() {
+        return seekProperty == null ? seekColumn : seekProperty;
+    }
+
+    public void setSeekProperty(String seekProperty) {
+        this.seekProperty = seekProperty;
+    }
+
+    public String getSeekTieColumn() {
+        return seekTieColumn;
+    }
+
+    public void setSeekTieColumn(String seekTieColumn) {
+        this.seekTieColumn = seekTieColumn;
+    }
+
+    public String getSeekTieProperty() {
+        return seekTieProperty == null ? seekTieColumn : seekTieProperty;
+    }
+
+    public void setSeekTieProperty(String seekTieProperty) {
+        this.seekTieProperty = seekTieProperty;
+    }
+
+    public boolean isSeekDesc() {
+        return seekDesc;
+    }
+
+    public void setSeekDesc(boolean seekDesc) {
+        this.seekDesc = seekDesc;
+    }
+
+    public Object getLastSortKey() {
+        return lastSortKey;
+    }
+
+    public void setLastSortKey(Object lastSortKey) {
+        this.lastSortKey = lastSortKey;
+    }
+
+    public Object getLastTieKey() {
+        return lastTieKey;
+    }
+
+    public void setLastTieKey(Object lastTieKey) {
+        this.lastTieKey = lastTieKey;
+    }
+
+    /**
+     * 使用seek分页（按排序字段定位代替offset，深度翻页不再扫描前面的记录）
+     * @param seekColumn 排序字段（必须唯一，不唯一时使用{@link #seek(String, String, boolean, Object, Object)}）
+     * @param seekDesc 是否降序
+     * @param lastSortKey 上一页最后一条记录的排序值（可从上一页{@link Page#getLastSortKey()}获取）
+     * @return
+     */
+    public PageParams seek(String seekColumn, boolean seekDesc, Object lastSortKey) {
+        this.seekColumn = seekColumn;
+        this.seekDesc = seekDesc;
+        this.lastSortKey = lastSortKey;
+        return this;
+    }
+
+    /**
+     * 使用seek分页，排序字段不唯一时以唯一字段区分排序值相同的记录
+     * @param seekColumn 排序字段
+     * @param seekTieColumn 唯一字段（如主键）
+     * @param seekDesc 是否降序（两个字段同向）
+     * @param lastSortKey 上一页最后一条记录的排序值
+     * @param lastTieKey 上一页最后一条记录的唯一字段值（可从上一页{@link Page#getLastTieKey()}获取）
+     * @return
+     */
+    public PageParams seek(String seekColumn, String seekTieColumn, boolean seekDesc,
+                           Object lastSortKey, Object lastTieKey) {
+        seek(seekColumn, seekDesc, lastSortKey);
+        this.seekTieColumn = seekTieColumn;
+        this.lastTieKey = lastTieKey;
+        return this;
+    }
+
+    public boolean isSeekMode() {
+        return seekColumn != null;
+    }
 }
@@ -1,7 +1,13 @@
 package cn.com.warlock.mybatis.plugin.pagination;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.apache.commons.lang3.StringUtils;
 
+import cn.com.warlock.mybatis.kit.SqlInfo;
+import cn.com.warlock.mybatis.kit.SqlParseUtils;
+
 public class PageSqlUtils {
 
     private static final String REGEX_N_T_S = "\\n+|\\t+\\s{2,}";
@@ -39,15 +45,126 @@ public class PageSqlUtils {
     }
 
     public static String getLimitSQL(DbType dbType, String sql, PageParams pageParams) {
-        return getLimitSQL(dbType, sql)//
+        //模板按SQL缓存，每次只替换分页参数
+        String template = SqlParseUtils.analyze(sql).derive(dbType,
+                s -> getLimitSQL(dbType, s).replaceAll(REGEX_N_T_S, StringUtils.SPACE));
+        return template//
                 .replace(OFFSET_PLACEHOLDER, String.valueOf(pageParams.getOffset()))//
-                .replace(PAGE_SIZE_PLACEHOLDER, String.valueOf(pageParams.getPageSize()))//
-                .replaceAll(REGEX_N_T_S, StringUtils.SPACE);
+                .replace(PAGE_SIZE_PLACEHOLDER, String.valueOf(pageParams.getPageSize()));
     }
 
     public static String getCountSql(String sql) {
-        sql = sql.replaceAll(REGEX_N_T_S, StringUtils.SPACE).split(SQL_ORDER_PATTERN)[0];
-        return sql.replaceFirst(SQL_SELECT_PATTERN, SQL_COUNT_PREFIX);
+        SqlInfo sqlInfo = SqlParseUtils.analyze(sql);
+        if (sqlInfo.getCountSql() != null) { return sqlInfo.getCountSql(); }
+        //无法解析的SQL沿用原正则处理
+        return sqlInfo.derive(SQL_COUNT_PREFIX, s -> {
+            s = SqlParseUtils.trimSql(s).replaceAll(REGEX_N_T_S, StringUtils.SPACE)
+                    .split(SQL_ORDER_PATTERN)[0];
+            return s.replaceFirst(SQL_SELECT_PATTERN, SQL_COUNT_PREFIX);
+        });
+    }
+
+    /**
+     * seek分页SQL：在最外层查询的WHERE追加排序字段条件（原条件加括号）
+     */
+    public static class SeekSql {
+        private final String  sql;
+        //追加条件的?在所有?中的位置
+        private final int     parameterIndex;
+        //是否带唯一字段条件，是则追加的?依次为：排序值、排序值、唯一字段值
+        private final boolean tieBreaker;
+
+        SeekSql(String sql, int parameterIndex, boolean tieBreaker) {
+            this.sql = sql;
+            this.parameterIndex = parameterIndex;
+            this.tieBreaker = tieBreaker;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public int getParameterIndex() {
+            return parameterIndex;
+        }
+
+        public boolean isTieBreaker() {
+            return tieBreaker;
+        }
+    }
+
+    private static final String[] SQL_TAIL_KEYWORDS = {"GROUP", "HAVING", "ORDER", "LIMIT", "FOR"};
+
+    /**
+     * 生成seek分页SQL，不支持最外层为UNION的查询
+     * <pre>
+     * 无唯一字段：seekColumn &gt; ?（seekColumn必须唯一，否则会跳过与上一页最后一条排序值相同的记录）
+     * 有唯一字段：(seekColumn &gt; ? OR (seekColumn = ? AND tieColumn &gt; ?))，ORDER BY需为seekColumn, tieColumn
+     * </pre>
+     * @param sql
+     * @param seekColumn
+     * @param tieColumn 唯一字段（如主键），可为空
+     * @param desc
+     * @return
+     */
+    public static SeekSql getSeekSql(String sql, String seekColumn, String tieColumn,
+                                     boolean desc) {
+        List<Object> key = Arrays.asList(SeekSql.class, seekColumn, tieColumn, desc);
+        return SqlParseUtils.analyze(sql)
+                .derive(key, s -> buildSeekSql(s, seekColumn, tieColumn, desc));
+    }
+
+    private static SeekSql buildSeekSql(String sql, String seekColumn, String tieColumn,
+                                        boolean desc) {
+        sql = SqlParseUtils.trimSql(sql);
+        int depth = 0;
+        int whereAt = -1;
+        int tailAt = sql.length();
+        int placeholders = 0;
+        char quote = 0;
+        for (int i = 0; i < sql.length() && tailAt == sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) { quote = 0; }
+                continue;
+            }
+            if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '?') {
+                placeholders++;
+            } else if (depth == 0 && SqlParseUtils.isKeywordAt(sql, i)) {
+                if (SqlParseUtils.matchKeyword(sql, i, "WHERE")) {
+                    whereAt = i;
+                } else if (SqlParseUtils.matchKeyword(sql, i, "UNION")) {
+                    throw new IllegalArgumentException("seek pagination not support UNION:" + sql);
+                } else {
+                    for (String keyword : SQL_TAIL_KEYWORDS) {
+                        if (SqlParseUtils.matchKeyword(sql, i, keyword)) {
+                            tailAt = i;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        String operator = desc ? " < ?" : " > ?";
+        String condition = tieColumn == null ? seekColumn + operator + " "
+                : "(" + seekColumn + operator + " OR (" + seekColumn + " = ? AND " + tieColumn
+                  + operator + ")) ";
+        StringBuilder builder = new StringBuilder(sql.length() + 32);
+        if (whereAt < 0) {
+            builder.append(sql, 0, tailAt).append(" WHERE ").append(condition);
+        } else {
+            int conditionStart = whereAt + "WHERE".length();
+            builder.append(sql, 0, conditionStart).append(" (")
+                    .append(sql, conditionStart, tailAt).append(") AND ").append(condition);
+        }
+        builder.append(sql, tailAt, sql.length());
+        return new SeekSql(builder.toString(), placeholders, tieColumn != null);
     }
 
     public static void main(String[] args) {
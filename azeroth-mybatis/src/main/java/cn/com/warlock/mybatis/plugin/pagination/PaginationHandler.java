@@ -1,38 +1,52 @@
 package cn.com.warlock.mybatis.plugin.pagination;
 
 import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.mapping.SqlSource;
 import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import cn.com.warlock.cache.local.LocalCache;
 import cn.com.warlock.mybatis.core.InterceptorHandler;
 import cn.com.warlock.mybatis.crud.builder.SqlTemplate;
 import cn.com.warlock.mybatis.exception.MybatisHanlerInitException;
+import cn.com.warlock.mybatis.kit.SqlParseUtils;
 import cn.com.warlock.mybatis.parser.EntityInfo;
 import cn.com.warlock.mybatis.parser.MybatisMapperParser;
 import cn.com.warlock.mybatis.plugin.MybatisInterceptor;
 import cn.com.warlock.mybatis.plugin.PluginConfig;
+import cn.com.warlock.mybatis.plugin.StatementDescriptor;
+import cn.com.warlock.mybatis.plugin.pagination.PageParams.CountMode;
 import cn.com.warlock.mybatis.plugin.pagination.PageSqlUtils.DbType;
+import cn.com.warlock.mybatis.plugin.pagination.PageSqlUtils.SeekSql;
 import cn.com.warlock.mybatis.plugin.pagination.annotation.Pageable;
+import cn.com.warlock.mybatis.plugin.shard.ScatterGatherExecutor;
+import cn.com.warlock.mybatis.plugin.shard.TableRouteSqlSource;
 
 public class PaginationHandler implements InterceptorHandler {
 
@@ -45,6 +59,10 @@ public class PaginationHandler implements InterceptorHandler {
     private static final String PARAMETER_OFFSET  = "offset";
     private static final String PAGE_LIMIT_SUFFIX = "_PageLimit";
     private static final String PAGE_COUNT_SUFFIX = "_PageCount";
+    private static final String PARAMETER_SEEK    = "_seekKey";
+    private static final String PARAMETER_SEEK_TIE = "_seekTieKey";
+    private static final String ADDITIONAL_PARAMETERS = "additionalParameters";
+    private static final String EXPLAIN_ROWS      = "rows";
 
     private Map<String, Boolean> pageMappedStatements = new HashMap<>();
 
@@ -52,6 +70,12 @@ public class PaginationHandler implements InterceptorHandler {
 
     private DbType dbType = DbType.MYSQL;
 
+    //默认总数查询方式
+    private CountMode defaultCountMode = CountMode.EXACT;
+
+    //总数缓存（key为count语句的CacheKey：SQL+参数）
+    private LocalCache<CacheKey, Long> countCache;
+
     public void setDbType(String dbType) {
         if (StringUtils.isBlank(dbType)) { return; }
         DbType[] dbTypes = DbType.values();
@@ -68,7 +92,18 @@ public class PaginationHandler implements InterceptorHandler {
 
         setDbType(context.getProperty(PluginConfig.DB_TYPE));
 
-        logger.info("dbType:{}", dbType.name());
+        String countMode = context.getProperty(PluginConfig.PAGE_COUNT_MODE);
+        if (StringUtils.isNotBlank(countMode)) {
+            defaultCountMode = CountMode.valueOf(countMode.trim().toUpperCase());
+        }
+        long countCacheSeconds = Long
+                .parseLong(context.getProperty(PluginConfig.PAGE_COUNT_CACHE_SECONDS, "60"));
+        long countCacheSize = Long
+                .parseLong(context.getProperty(PluginConfig.PAGE_COUNT_CACHE_SIZE, "10000"));
+        countCache = new LocalCache<>(countCacheSize, countCacheSeconds, TimeUnit.SECONDS);
+
+        logger.info("dbType:{},countMode:{},countCacheSeconds:{}", dbType.name(), defaultCountMode,
+                countCacheSeconds);
 
         List<EntityInfo> entityInfos = MybatisMapperParser.getEntityInfos();
         for (EntityInfo ei : entityInfos) {
@@ -110,11 +145,9 @@ public class PaginationHandler implements InterceptorHandler {
         final Object[] args = invocation.getArgs();
         final MappedStatement orignMappedStatement = (MappedStatement) args[0];
 
-        if (!orignMappedStatement.getSqlCommandType().equals(SqlCommandType.SELECT)) { return null; }
-
         PageParams pageParams = PageExecutor.getPageParams();
         if (pageParams == null
-                && !pageMappedStatements.keySet().contains(orignMappedStatement.getId())) { return null; }
+                && !pageMappedStatements.containsKey(orignMappedStatement.getId())) { return null; }
 
         final RowBounds rowBounds = (RowBounds) args[2];
         final ResultHandler resultHandler = (ResultHandler) args[3];
@@ -144,33 +177,65 @@ public class PaginationHandler implements InterceptorHandler {
         if (pageParams == null) { return null; }
 
         //查询总数
-        MappedStatement countMappedStatement = getCountMappedStatement(orignMappedStatement);
-        Long total = executeQueryCount(executor, countMappedStatement, parameter, boundSql,
-                rowBounds, resultHandler);
-
-        //按分页查询
-        MappedStatement limitMappedStatement = getLimitMappedStatementIfNotCreate(
-                orignMappedStatement);
+        CountMode countMode = pageParams.getCountMode() == null ? defaultCountMode
+                : pageParams.getCountMode();
+        Long total = -1L;
+        if (countMode != CountMode.SKIP) {
+            MappedStatement countMappedStatement = getCountMappedStatement(orignMappedStatement);
+            total = executeQueryCount(executor, countMappedStatement, parameter, boundSql,
+                    resultHandler, countMode);
+        }
 
         List<?> datas;
         BoundSql pageBoundSql;
-        if (limitMappedStatement == null) {
-            String pageSql = PageSqlUtils.getLimitSQL(dbType, boundSql.getSql(), pageParams);
-            pageBoundSql = new BoundSql(orignMappedStatement.getConfiguration(), pageSql,
-                    boundSql.getParameterMappings(), parameter);
-
-            datas = executor.query(orignMappedStatement, parameter, RowBounds.DEFAULT,
-                    resultHandler, null, pageBoundSql);
+        if (pageParams.isSeekMode()) {
+            //按排序字段定位，offset固定为0
+            datas = executeSeekQuery(executor, orignMappedStatement, parameter, boundSql,
+                    resultHandler, pageParams);
         } else {
-            pageBoundSql = limitMappedStatement.getBoundSql(parameter);
-            pageBoundSql.setAdditionalParameter(PARAMETER_OFFSET, pageParams.getOffset());
-            pageBoundSql.setAdditionalParameter(PARAMETER_SIZE, pageParams.getPageSize());
-            //
-            datas = executor.query(limitMappedStatement, parameter, RowBounds.DEFAULT,
-                    resultHandler, null, pageBoundSql);
+            //按分页查询
+            ScatterGatherExecutor scatterGatherExecutor = ScatterGatherExecutor.current();
+            //分表路由后的statement不能使用按原XML生成的分页statement
+            MappedStatement limitMappedStatement = scatterGatherExecutor == null
+                    && !(orignMappedStatement.getSqlSource() instanceof TableRouteSqlSource)
+                            ? getLimitMappedStatementIfNotCreate(orignMappedStatement) : null;
+            if (scatterGatherExecutor != null) {
+                //跨库分页：各分库取前offset+pageSize条，归并后截取
+                String pageSql = PageSqlUtils.getLimitSQL(dbType, boundSql.getSql(),
+                        new PageParams(1, pageParams.getOffset() + pageParams.getPageSize()));
+                pageBoundSql = new BoundSql(orignMappedStatement.getConfiguration(), pageSql,
+                        boundSql.getParameterMappings(), parameter);
+                copyAdditionalParameters(boundSql, pageBoundSql);
+
+                datas = scatterGatherExecutor.query(orignMappedStatement, parameter, pageBoundSql,
+                        boundSql.getSql(), pageParams.getOffset(), pageParams.getPageSize());
+            } else if (limitMappedStatement == null) {
+                String pageSql = PageSqlUtils.getLimitSQL(dbType, boundSql.getSql(), pageParams);
+                pageBoundSql = new BoundSql(orignMappedStatement.getConfiguration(), pageSql,
+                        boundSql.getParameterMappings(), parameter);
+                copyAdditionalParameters(boundSql, pageBoundSql);
+
+                datas = executor.query(orignMappedStatement, parameter, RowBounds.DEFAULT,
+                        resultHandler, null, pageBoundSql);
+            } else {
+                pageBoundSql = limitMappedStatement.getBoundSql(parameter);
+                pageBoundSql.setAdditionalParameter(PARAMETER_OFFSET, pageParams.getOffset());
+                pageBoundSql.setAdditionalParameter(PARAMETER_SIZE, pageParams.getPageSize());
+                //
+                datas = executor.query(limitMappedStatement, parameter, RowBounds.DEFAULT,
+                        resultHandler, null, pageBoundSql);
+            }
         }
 
         Page<Object> page = new Page<Object>(pageParams, total, (List<Object>) datas);
+        //seek分页：记录本页最后一条的排序值，作为下一页的lastSortKey
+        if (pageParams.isSeekMode() && !datas.isEmpty()) {
+            MetaObject last = SystemMetaObject.forObject(datas.get(datas.size() - 1));
+            page.setLastSortKey(last.getValue(pageParams.getSeekProperty()));
+            if (pageParams.getSeekTieColumn() != null) {
+                page.setLastTieKey(last.getValue(pageParams.getSeekTieProperty()));
+            }
+        }
 
         List<Page<?>> list = new ArrayList<Page<?>>(1);
         list.add(page);
@@ -178,27 +243,125 @@ public class PaginationHandler implements InterceptorHandler {
 
     }
 
+    @SuppressWarnings("rawtypes")
+    private List<?> executeSeekQuery(Executor executor, MappedStatement ms, Object parameter,
+                                     BoundSql boundSql, ResultHandler resultHandler,
+                                     PageParams pageParams) throws SQLException {
+        String sql = boundSql.getSql();
+        List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+        if (pageParams.getLastSortKey() != null) {
+            String tieColumn = pageParams.getSeekTieColumn();
+            if (tieColumn != null && pageParams.getLastTieKey() == null) {
+                throw new IllegalArgumentException(
+                        "seek pagination lastTieKey is required,seekTieColumn:" + tieColumn);
+            }
+            SeekSql seekSql = PageSqlUtils.getSeekSql(sql, pageParams.getSeekColumn(), tieColumn,
+                    pageParams.isSeekDesc());
+            sql = seekSql.getSql();
+            parameterMappings = new ArrayList<>(parameterMappings);
+            List<ParameterMapping> seekMappings = new ArrayList<>(3);
+            ParameterMapping sortKeyMapping = new ParameterMapping.Builder(ms.getConfiguration(),
+                    PARAMETER_SEEK, pageParams.getLastSortKey().getClass()).build();
+            seekMappings.add(sortKeyMapping);
+            if (seekSql.isTieBreaker()) {
+                seekMappings.add(sortKeyMapping);
+                seekMappings.add(new ParameterMapping.Builder(ms.getConfiguration(),
+                        PARAMETER_SEEK_TIE, pageParams.getLastTieKey().getClass()).build());
+            }
+            parameterMappings.addAll(seekSql.getParameterIndex(), seekMappings);
+        }
+        String pageSql = PageSqlUtils.getLimitSQL(dbType, sql,
+                new PageParams(1, pageParams.getPageSize()));
+        BoundSql pageBoundSql = new BoundSql(ms.getConfiguration(), pageSql, parameterMappings,
+                parameter);
+        copyAdditionalParameters(boundSql, pageBoundSql);
+        if (pageParams.getLastSortKey() != null) {
+            pageBoundSql.setAdditionalParameter(PARAMETER_SEEK, pageParams.getLastSortKey());
+            pageBoundSql.setAdditionalParameter(PARAMETER_SEEK_TIE, pageParams.getLastTieKey());
+        }
+        ScatterGatherExecutor scatterGatherExecutor = ScatterGatherExecutor.current();
+        if (scatterGatherExecutor != null) {
+            return scatterGatherExecutor.query(ms, parameter, pageBoundSql, sql, 0,
+                    pageParams.getPageSize());
+        }
+        return executor.query(ms, parameter, RowBounds.DEFAULT, resultHandler, null, pageBoundSql);
+    }
+
     @SuppressWarnings("rawtypes")
     private Long executeQueryCount(Executor executor, MappedStatement countMs, Object parameter,
-                                   BoundSql boundSql, RowBounds rowBounds,
-                                   ResultHandler resultHandler) throws IllegalAccessException,
-            SQLException {
-        CacheKey countKey = executor.createCacheKey(countMs, parameter, RowBounds.DEFAULT,
-                boundSql);
+                                   BoundSql boundSql, ResultHandler resultHandler,
+                                   CountMode countMode) throws SQLException {
+        String orignSql = SqlParseUtils.trimSql(boundSql.getSql());
+
+        ScatterGatherExecutor scatterGatherExecutor = ScatterGatherExecutor.current();
+        //跨库查询的估算行数无意义，按精确总数处理
+        if (countMode == CountMode.ESTIMATE && scatterGatherExecutor == null) {
+            Long rows = executeExplainRows(executor, countMs, parameter, boundSql, orignSql);
+            if (rows != null) { return rows; }
+        }
 
-        String orignSql = boundSql.getSql().replaceAll(";$", "");
         // count sql
         String countSql = PageSqlUtils.getCountSql(orignSql);
 
         BoundSql countBoundSql = new BoundSql(countMs.getConfiguration(), countSql,
                 boundSql.getParameterMappings(), parameter);
+        copyAdditionalParameters(boundSql, countBoundSql);
+        CacheKey countKey = executor.createCacheKey(countMs, parameter, RowBounds.DEFAULT,
+                countBoundSql);
+
+        if (countMode == CountMode.CACHED) {
+            Long count = countCache.get(countKey);
+            if (count != null) { return count; }
+        }
         // 执行 count 查询
-        Object countResultList = executor.query(countMs, parameter, RowBounds.DEFAULT,
-                resultHandler, countKey, countBoundSql);
-        Long count = (Long) ((List) countResultList).get(0);
+        Long count;
+        if (scatterGatherExecutor != null) {
+            count = scatterGatherExecutor.count(countMs, parameter, countBoundSql);
+        } else {
+            Object countResultList = executor.query(countMs, parameter, RowBounds.DEFAULT,
+                    resultHandler, countKey, countBoundSql);
+            count = (Long) ((List) countResultList).get(0);
+        }
+        if (countMode == CountMode.CACHED) {
+            countCache.put(countKey, count);
+        }
         return count;
     }
 
+    /**
+     * mysql：EXPLAIN 估算的扫描行数，其他数据库返回null
+     */
+    private Long executeExplainRows(Executor executor, MappedStatement countMs, Object parameter,
+                                    BoundSql boundSql, String orignSql) throws SQLException {
+        if (dbType != DbType.MYSQL) { return null; }
+        BoundSql explainBoundSql = new BoundSql(countMs.getConfiguration(), "EXPLAIN " + orignSql,
+                boundSql.getParameterMappings(), parameter);
+        copyAdditionalParameters(boundSql, explainBoundSql);
+        //连接由事务管理，不能关闭
+        Connection connection = executor.getTransaction().getConnection();
+        try (PreparedStatement statement = connection.prepareStatement(explainBoundSql.getSql())) {
+            countMs.getConfiguration().newParameterHandler(countMs, parameter, explainBoundSql)
+                    .setParameters(statement);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(EXPLAIN_ROWS) : 0L;
+            }
+        }
+    }
+
+    /**
+     * 复制动态SQL（如foreach）生成的附加参数
+     */
+    @SuppressWarnings("unchecked")
+    private static void copyAdditionalParameters(BoundSql from, BoundSql to) {
+        MetaObject metaObject = SystemMetaObject.forObject(from);
+        Map<String, Object> additionalParameters = (Map<String, Object>) metaObject
+                .getValue(ADDITIONAL_PARAMETERS);
+        if (additionalParameters == null) { return; }
+        for (Map.Entry<String, Object> entry : additionalParameters.entrySet()) {
+            to.setAdditionalParameter(entry.getKey(), entry.getValue());
+        }
+    }
+
     /**
      * 新建count查询的MappedStatement
      *
@@ -313,6 +476,12 @@ public class PaginationHandler implements InterceptorHandler {
         PageExecutor.clearPageParams();
     }
 
+    @Override
+    public boolean isApplicable(StatementDescriptor descriptor) {
+        //分页参数可通过PageExecutor在运行时指定，所有查询语句都需要处理
+        return descriptor.isSelect();
+    }
+
     @Override
     public void close() {
     }
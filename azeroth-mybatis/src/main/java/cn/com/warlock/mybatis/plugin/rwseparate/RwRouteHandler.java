@@ -1,6 +1,5 @@
 package cn.com.warlock.mybatis.plugin.rwseparate;
 
-import org.apache.ibatis.executor.keygen.SelectKeyGenerator;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.plugin.Invocation;
@@ -20,6 +19,8 @@ public class RwRouteHandler implements InterceptorHandler {
 
     public static final String NAME = "rwRoute";
 
+    private MybatisInterceptor interceptor;
+
     @Override
     public Object onInterceptor(Invocation invocation) throws Throwable {
 
@@ -34,13 +35,13 @@ public class RwRouteHandler implements InterceptorHandler {
         //读方法
         if (ms.getSqlCommandType().equals(SqlCommandType.SELECT)) {
             //!selectKey 为自增id查询主键(SELECT LAST_INSERT_ID() )方法，使用主库
-            if (!ms.getId().contains(SelectKeyGenerator.SELECT_KEY_SUFFIX)) {
+            if (!interceptor.getStatementDescriptor(ms).isSelectKey()) {
                 DataSourceContextHolder.get().useSlave(true);
                 logger.debug("Method[{} use Slave Strategy..", ms.getId());
             }
         } else {
             logger.debug("Method[{}] use Master Strategy..", ms.getId());
-            DataSourceContextHolder.get().useSlave(false);
+            DataSourceContextHolder.get().useSlave(false).markWrite();
         }
 
         return null;
@@ -52,6 +53,7 @@ public class RwRouteHandler implements InterceptorHandler {
 
     @Override
     public void start(MybatisInterceptor context) {
+        this.interceptor = context;
     }
 
     @Override
@@ -4,10 +4,13 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
+import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.SqlCommandType;
@@ -18,9 +21,13 @@ import org.slf4j.LoggerFactory;
 import cn.com.warlock.mybatis.core.InterceptorHandler;
 import cn.com.warlock.mybatis.datasource.DataSourceContextHolder;
 import cn.com.warlock.mybatis.kit.ReflectUtils;
+import cn.com.warlock.mybatis.kit.SqlInfo;
+import cn.com.warlock.mybatis.kit.SqlParseUtils;
 import cn.com.warlock.mybatis.parser.EntityInfo;
 import cn.com.warlock.mybatis.parser.MybatisMapperParser;
 import cn.com.warlock.mybatis.plugin.MybatisInterceptor;
+import cn.com.warlock.mybatis.plugin.PluginConfig;
+import cn.com.warlock.mybatis.plugin.StatementDescriptor;
 
 /**
  * 分库自动路由处理
@@ -32,7 +39,6 @@ public class DatabaseRouteHandler implements InterceptorHandler {
 
     public static final String NAME = "dbShard";
 
-    private static final String SPIT_POINT  = ".";
     private static final String REGEX_BLANK = "\\n+\\s+";
 
     //分库策略
@@ -41,13 +47,18 @@ public class DatabaseRouteHandler implements InterceptorHandler {
     private Pattern shardFieldAfterWherePattern;
 
     //忽略分库列表<mapperNameSpace>
-    private List<String> ignoreTablesMapperNameSpace = new ArrayList<>();
+    private Set<String> ignoreTablesMapperNameSpace = new HashSet<>();
 
-    private List<String> ignoreMappedStatementIds = new ArrayList<>();
+    private Set<String> ignoreMappedStatementIds = new HashSet<>();
 
     //xml定义sql分库字段对应的参数名<mappedStatementId,paramName>
     private Map<String, String> shardFieldRalateParamNames = new HashMap<>();
 
+    //无分库字段时的跨库查询，未启用为null
+    private ScatterGatherExecutor scatterGatherExecutor;
+
+    private MybatisInterceptor interceptor;
+
     public void setShardStrategy(ShardStrategy<?> shardStrategy) {
         this.shardStrategy = shardStrategy;
     }
@@ -55,6 +66,7 @@ public class DatabaseRouteHandler implements InterceptorHandler {
     @Override
     public Object onInterceptor(Invocation invocation) throws Throwable {
 
+        ScatterGatherExecutor.reset();
         Object[] objects = invocation.getArgs();
         MappedStatement ms = (MappedStatement) objects[0];
         Object parameterObject = objects[1];
@@ -62,20 +74,11 @@ public class DatabaseRouteHandler implements InterceptorHandler {
         // TypeHandlerRegistry typeHandlerRegistry =
         // ms.getConfiguration().getTypeHandlerRegistry();
 
-        if (ignoreMappedStatementIds.contains(ms.getId())) {
-            return null;
-        }
-        String namespace = ms.getId().substring(0, ms.getId().lastIndexOf(SPIT_POINT));
-        //策略配置忽略
-        if (ignoreTablesMapperNameSpace.contains(namespace)) {
-            return null;
-        }
+        //忽略的语句不会进入（见isApplicable）
+        String namespace = interceptor.getStatementDescriptor(ms).getNamespace();
 
         BoundSql boundSql = ms.getBoundSql(parameterObject);
 
-        Object parameterObject2 = boundSql.getParameterObject();
-        System.out.println(parameterObject2);
-
         //是否需要分库
         boolean requiredShard = isRequiredShard(boundSql.getSql(), ms.getSqlCommandType(),
                 namespace);
@@ -84,7 +87,16 @@ public class DatabaseRouteHandler implements InterceptorHandler {
             //先检查是否已经设置
             Object shardFieldValue = getShardFieldValue(ms.getId(), parameterObject);
             if (shardFieldValue == null) {
-                logger.error("方法{}无法获取分库字段{}的值", ms.getId(), shardStrategy.shardEntityField());
+                //查询分发到所有分库（自定义ResultHandler不支持）
+                if (scatterGatherExecutor != null && SqlCommandType.SELECT.equals(ms.getSqlCommandType())
+                        && objects.length > 3 && objects[3] == Executor.NO_RESULT_HANDLER) {
+                    logger.debug("方法{}无分库字段{}的值，查询所有分库", ms.getId(),
+                            shardStrategy.shardEntityField());
+                    scatterGatherExecutor.mark();
+                } else {
+                    logger.error("方法{}无法获取分库字段{}的值", ms.getId(),
+                            shardStrategy.shardEntityField());
+                }
             } else {
                 int dbIndex = shardStrategy.assigned(shardFieldValue);
                 //指定数据库分库序列
@@ -96,7 +108,13 @@ public class DatabaseRouteHandler implements InterceptorHandler {
 
     @Override
     public void onFinished(Invocation invocation, Object result) {
+        ScatterGatherExecutor.reset();
+    }
 
+    @Override
+    public boolean isApplicable(StatementDescriptor descriptor) {
+        return !ignoreMappedStatementIds.contains(descriptor.getId())
+                && !ignoreTablesMapperNameSpace.contains(descriptor.getNamespace());
     }
 
     /**
@@ -110,8 +128,13 @@ public class DatabaseRouteHandler implements InterceptorHandler {
                 shardStrategy.shardDbField());
         //select方法 检查查询条件
         if (!isRequired && SqlCommandType.SELECT.equals(cmdType)) {
-            sql = sql.replaceAll(REGEX_BLANK, "").toLowerCase();
-            isRequired = shardFieldAfterWherePattern.matcher(sql).matches();
+            SqlInfo sqlInfo = SqlParseUtils.analyze(sql);
+            if (sqlInfo.isParsed()) {
+                isRequired = sqlInfo.hasCondition(shardStrategy.shardDbField());
+            } else {
+                sql = sql.replaceAll(REGEX_BLANK, "").toLowerCase();
+                isRequired = shardFieldAfterWherePattern.matcher(sql).matches();
+            }
         }
 
         return isRequired;
@@ -154,6 +177,17 @@ public class DatabaseRouteHandler implements InterceptorHandler {
 
     @Override
     public void start(MybatisInterceptor context) {
+        this.interceptor = context;
+
+        if (Boolean.parseBoolean(
+                context.getProperty(PluginConfig.DB_SHARD_SCATTER_ENABLED, "true"))) {
+            int threads = Integer
+                    .parseInt(context.getProperty(PluginConfig.DB_SHARD_SCATTER_THREADS, "16"));
+            long timeoutMillis = Long
+                    .parseLong(context.getProperty(PluginConfig.DB_SHARD_SCATTER_TIMEOUT, "10000"));
+            scatterGatherExecutor = new ScatterGatherExecutor(threads, threads * 64, timeoutMillis);
+            logger.info("scatter query enabled,threads:{},timeoutMillis:{}", threads, timeoutMillis);
+        }
 
         List<EntityInfo> entityInfos = MybatisMapperParser.getEntityInfos();
 
@@ -212,7 +246,7 @@ public class DatabaseRouteHandler implements InterceptorHandler {
 
     @Override
     public void close() {
-
+        if (scatterGatherExecutor != null) { scatterGatherExecutor.close(); }
     }
 
     @Override
@@ -0,0 +1,39 @@
+package cn.com.warlock.mybatis.plugin.shard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ClassName: ModuloTableShardStrategy <br/>
+ * Function: 按分表字段取模分表. <br/>
+ * Reason:  <br/>
+ *
+ * 数值取模，其他类型按hashCode取模
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class ModuloTableShardStrategy extends TableShardStrategy {
+
+    private int tableCount;
+
+    public void setTableCount(int tableCount) {
+        this.tableCount = tableCount;
+    }
+
+    @Override
+    public int assigned(Object value) {
+        long hash = value instanceof Number ? ((Number) value).longValue() : value.hashCode();
+        return (int) Math.floorMod(hash, (long) tableCount);
+    }
+
+    @Override
+    public List<String> getTableNames() {
+        List<String> tableNames = new ArrayList<>(tableCount);
+        for (int i = 0; i < tableCount; i++) {
+            tableNames.add(tableName(i));
+        }
+        return tableNames;
+    }
+}
@@ -0,0 +1,52 @@
+package cn.com.warlock.mybatis.plugin.shard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ClassName: RangeTableShardStrategy <br/>
+ * Function: 按分表字段（数值）区间分表. <br/>
+ * Reason:  <br/>
+ *
+ * rangeSize=10000000时：[0,10000000) 路由到 xxx_0，[10000000,20000000) 路由到 xxx_1 ...
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class RangeTableShardStrategy extends TableShardStrategy {
+
+    //每张表的区间大小
+    private long rangeSize;
+
+    private int tableCount;
+
+    public void setRangeSize(long rangeSize) {
+        this.rangeSize = rangeSize;
+    }
+
+    public void setTableCount(int tableCount) {
+        this.tableCount = tableCount;
+    }
+
+    @Override
+    public int assigned(Object value) {
+        long longValue = value instanceof Number ? ((Number) value).longValue()
+                : Long.parseLong(value.toString());
+        long index = longValue / rangeSize;
+        if (longValue < 0 || index >= tableCount) {
+            throw new RuntimeException(String.format("value[%s] out of range,table:%s,max:%s",
+                    value, getLogicTable(), rangeSize * tableCount - 1));
+        }
+        return (int) index;
+    }
+
+    @Override
+    public List<String> getTableNames() {
+        List<String> tableNames = new ArrayList<>(tableCount);
+        for (int i = 0; i < tableCount; i++) {
+            tableNames.add(tableName(i));
+        }
+        return tableNames;
+    }
+}
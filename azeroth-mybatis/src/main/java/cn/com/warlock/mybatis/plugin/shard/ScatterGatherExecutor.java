@@ -0,0 +1,318 @@
+package cn.com.warlock.mybatis.plugin.shard;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import cn.com.warlock.mybatis.datasource.DataSourceContextHolder;
+import cn.com.warlock.mybatis.kit.SqlInfo;
+import cn.com.warlock.mybatis.kit.SqlParseUtils;
+import cn.com.warlock.mybatis.plugin.MybatisInterceptor;
+
+/**
+ * ClassName: ScatterGatherExecutor <br/>
+ * Function: 无分库字段的查询并行分发到所有分库后合并结果. <br/>
+ * Reason:  <br/>
+ *
+ * <pre>
+ * 每个分库使用独立连接（不参与当前事务）在有界线程池中执行，整体耗时约为最慢分库的耗时
+ * 合并规则：
+ *   COUNT/SUM聚合查询（无GROUP BY）：各分库结果相加
+ *   其他查询：按最外层ORDER BY字段归并排序后按offset/limit截取（分页时各分库查询前offset+limit条）
+ * 任一分库失败或超时则整体失败，不返回部分数据
+ * </pre>
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class ScatterGatherExecutor {
+
+    protected static final Logger logger = LoggerFactory.getLogger(ScatterGatherExecutor.class);
+
+    //当前线程待执行跨库查询的执行器（由DatabaseRouteHandler标记）
+    private static final ThreadLocal<ScatterGatherExecutor> context = new ThreadLocal<>();
+
+    private final ThreadPoolExecutor pool;
+
+    //单次查询等待所有分库的超时时间
+    private final long timeoutMillis;
+
+    public ScatterGatherExecutor(int threads, int queueSize, long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueSize),
+                new ThreadFactoryBuilder().setNameFormat("ShardScatter-%d").setDaemon(true).build());
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 当前线程是否需要跨库查询
+     * @return 不需要返回null
+     */
+    public static ScatterGatherExecutor current() {
+        return context.get();
+    }
+
+    void mark() {
+        context.set(this);
+    }
+
+    /**
+     * 清除当前线程的跨库查询标记
+     */
+    public static void reset() {
+        context.remove();
+    }
+
+    /**
+     * 执行拦截的查询
+     * @param invocation
+     * @return
+     * @throws Throwable
+     */
+    public List<Object> query(Invocation invocation) throws Throwable {
+        Object[] args = invocation.getArgs();
+        MappedStatement ms = (MappedStatement) args[0];
+        Object parameter = args[1];
+        RowBounds rowBounds = (RowBounds) args[2];
+        BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : ms.getBoundSql(parameter);
+        int limit = rowBounds.getLimit() == RowBounds.NO_ROW_LIMIT ? -1 : rowBounds.getLimit();
+        return query(ms, parameter, boundSql, boundSql.getSql(), rowBounds.getOffset(), limit);
+    }
+
+    /**
+     * 各分库执行并合并
+     * @param ms
+     * @param parameter
+     * @param boundSql 各分库执行的SQL（分页时为前offset+limit条）
+     * @param sourceSql 用于解析排序及聚合的原SQL
+     * @param offset
+     * @param limit 小于0不限制
+     * @return
+     * @throws SQLException
+     */
+    public List<Object> query(MappedStatement ms, Object parameter, BoundSql boundSql,
+                              String sourceSql, int offset, int limit) throws SQLException {
+        List<List<Object>> shardResults = scatter(ms, parameter, boundSql);
+        SqlInfo sqlInfo = SqlParseUtils.analyze(sourceSql);
+        if (sqlInfo.isAggregateOnly()) { return mergeAggregate(shardResults); }
+
+        List<Object> merged = new ArrayList<>();
+        for (List<Object> shardResult : shardResults) {
+            merged.addAll(shardResult);
+        }
+        if (!sqlInfo.getOrderBys().isEmpty() && shardResults.size() > 1) {
+            //各分库已有序，稳定排序保持同值时的分库顺序
+            Comparator<Object> comparator = buildComparator(ms, sqlInfo.getOrderBys(), merged);
+            if (comparator != null) { Collections.sort(merged, comparator); }
+        }
+        if (offset <= 0 && (limit < 0 || merged.size() <= limit)) { return merged; }
+        if (offset >= merged.size()) { return new ArrayList<>(); }
+        int end = limit < 0 ? merged.size() : Math.min(merged.size(), offset + limit);
+        return new ArrayList<>(merged.subList(offset, end));
+    }
+
+    /**
+     * 各分库执行count查询并求和
+     * @param countMs
+     * @param parameter
+     * @param countBoundSql
+     * @return
+     * @throws SQLException
+     */
+    public Long count(MappedStatement countMs, Object parameter,
+                      BoundSql countBoundSql) throws SQLException {
+        long total = 0;
+        for (List<Object> shardResult : scatter(countMs, parameter, countBoundSql)) {
+            if (!shardResult.isEmpty() && shardResult.get(0) != null) {
+                total += ((Number) shardResult.get(0)).longValue();
+            }
+        }
+        return total;
+    }
+
+    private List<List<Object>> scatter(MappedStatement ms, Object parameter,
+                                       BoundSql boundSql) throws SQLException {
+        int dbGroupSize = Math.max(1, DataSourceContextHolder.get().getDbGroupSize());
+        List<Future<List<Object>>> futures = new ArrayList<>(dbGroupSize);
+        try {
+            for (int dbIndex = 0; dbIndex < dbGroupSize; dbIndex++) {
+                final int index = dbIndex;
+                futures.add(pool.submit(() -> queryShard(index, ms, parameter, boundSql)));
+            }
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            List<List<Object>> results = new ArrayList<>(dbGroupSize);
+            for (int dbIndex = 0; dbIndex < futures.size(); dbIndex++) {
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                results.add(waitShard(ms, dbIndex, futures.get(dbIndex), remaining));
+            }
+            return results;
+        } catch (RuntimeException | SQLException e) {
+            for (Future<List<Object>> future : futures) {
+                future.cancel(true);
+            }
+            throw e;
+        }
+    }
+
+    private List<Object> waitShard(MappedStatement ms, int dbIndex, Future<List<Object>> future,
+                                   long remaining) throws SQLException {
+        try {
+            return future.get(remaining, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RuntimeException(String.format("scatter query[%s] timeout on db group[%s] after %sms",
+                    ms.getId(), dbIndex, timeoutMillis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("scatter query[" + ms.getId() + "] interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) { throw (SQLException) e.getCause(); }
+            if (e.getCause() instanceof RuntimeException) { throw (RuntimeException) e.getCause(); }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * 在指定分库上执行（新建executor避免再次进入插件）
+     */
+    private static List<Object> queryShard(int dbIndex, MappedStatement ms, Object parameter,
+                                           BoundSql boundSql) throws SQLException {
+        DataSourceContextHolder.get().setDbIndex(dbIndex);
+        DataSourceContextHolder.get().useSlave(MybatisInterceptor.isRwRouteEnabled());
+        Configuration configuration = ms.getConfiguration();
+        Executor executor = new SimpleExecutor(configuration,
+                new JdbcTransaction(configuration.getEnvironment().getDataSource(), null, true));
+        try {
+            return executor.query(ms, parameter, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER,
+                    executor.createCacheKey(ms, parameter, RowBounds.DEFAULT, boundSql), boundSql);
+        } finally {
+            executor.close(false);
+            DataSourceContextHolder.get().clear();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> mergeAggregate(List<List<Object>> shardResults) {
+        Object merged = null;
+        for (List<Object> shardResult : shardResults) {
+            if (shardResult.isEmpty() || shardResult.get(0) == null) { continue; }
+            Object row = shardResult.get(0);
+            if (merged == null) {
+                merged = row instanceof Map ? new LinkedHashMap<>((Map<String, Object>) row) : row;
+            } else if (row instanceof Number) {
+                merged = add((Number) merged, (Number) row);
+            } else if (row instanceof Map) {
+                Map<String, Object> mergedMap = (Map<String, Object>) merged;
+                for (Map.Entry<String, Object> entry : ((Map<String, Object>) row).entrySet()) {
+                    Object value = mergedMap.get(entry.getKey());
+                    if (entry.getValue() instanceof Number) {
+                        mergedMap.put(entry.getKey(), value == null ? entry.getValue()
+                                : add((Number) value, (Number) entry.getValue()));
+                    }
+                }
+            } else {
+                logger.warn("unsupported aggregate result type:{}", row.getClass().getName());
+            }
+        }
+        List<Object> result = new ArrayList<>(1);
+        if (merged != null) { result.add(merged); }
+        return result;
+    }
+
+    private static Number add(Number a, Number b) {
+        if (a instanceof BigDecimal || b instanceof BigDecimal || a instanceof Double
+                || b instanceof Double) {
+            return new BigDecimal(a.toString()).add(new BigDecimal(b.toString()));
+        }
+        long sum = a.longValue() + b.longValue();
+        return a instanceof Integer && b instanceof Integer && sum == (int) sum ? (Number) (int) sum
+                : (Number) sum;
+    }
+
+    /**
+     * 按ORDER BY字段比较（null值最小，与mysql一致）
+     * @return 无法确定排序属性时返回null
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<Object> buildComparator(MappedStatement ms,
+                                                      List<SqlInfo.OrderBy> orderBys,
+                                                      List<Object> rows) {
+        if (rows.isEmpty() || rows.get(0) == null) { return null; }
+        Configuration configuration = ms.getConfiguration();
+        MetaObject sample = configuration.newMetaObject(rows.get(0));
+        List<String> properties = new ArrayList<>(orderBys.size());
+        for (SqlInfo.OrderBy orderBy : orderBys) {
+            String property = resolveProperty(ms, sample, orderBy.getColumn());
+            if (property == null) { break; }
+            properties.add(property);
+        }
+        if (properties.isEmpty()) {
+            logger.warn("scatter query[{}] can't resolve order by property,result unsorted",
+                    ms.getId());
+            return null;
+        }
+        return (o1, o2) -> {
+            MetaObject m1 = configuration.newMetaObject(o1);
+            MetaObject m2 = configuration.newMetaObject(o2);
+            for (int i = 0; i < properties.size(); i++) {
+                Comparable v1 = (Comparable) m1.getValue(properties.get(i));
+                Comparable v2 = (Comparable) m2.getValue(properties.get(i));
+                int compare = v1 == null ? (v2 == null ? 0 : -1) : (v2 == null ? 1 : v1.compareTo(v2));
+                if (compare != 0) { return orderBys.get(i).isDesc() ? -compare : compare; }
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * 排序字段对应的结果属性：resultMap映射 &gt; Map的key &gt; 驼峰属性
+     */
+    @SuppressWarnings("unchecked")
+    private static String resolveProperty(MappedStatement ms, MetaObject metaObject,
+                                          String column) {
+        for (ResultMap resultMap : ms.getResultMaps()) {
+            for (ResultMapping mapping : resultMap.getResultMappings()) {
+                if (column.equalsIgnoreCase(mapping.getColumn())) { return mapping.getProperty(); }
+            }
+        }
+        if (metaObject.getOriginalObject() instanceof Map) {
+            for (String key : ((Map<String, Object>) metaObject.getOriginalObject()).keySet()) {
+                if (column.equalsIgnoreCase(key)) { return key; }
+            }
+            return null;
+        }
+        return metaObject.findProperty(column, true);
+    }
+
+    public void close() {
+        pool.shutdown();
+    }
+}
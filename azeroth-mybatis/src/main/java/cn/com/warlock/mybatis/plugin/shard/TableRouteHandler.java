@@ -1,53 +1,191 @@
 package cn.com.warlock.mybatis.plugin.shard;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.InitializingBean;
 
 import cn.com.warlock.mybatis.core.InterceptorHandler;
+import cn.com.warlock.mybatis.parser.EntityInfo;
+import cn.com.warlock.mybatis.parser.MybatisMapperParser;
 import cn.com.warlock.mybatis.plugin.MybatisInterceptor;
+import cn.com.warlock.mybatis.plugin.StatementDescriptor;
+import cn.com.warlock.spring.InstanceFactory;
 
 /**
- * 分库自动路由处理
+ * 分表自动路由处理
+ *
+ * <pre>
+ * 1. 启动时按实体表名匹配分表策略（{@link TableShardStrategy}，取spring容器中的bean或手动设置）
+ * 2. 执行时根据分表字段的值确定物理表，替换为对应物理表的MappedStatement（id不变，不注册到Configuration）
+ * 3. 每个MappedStatement的物理表版本只构建一次，可确定的物理表在首次路由时一次性构建
+ * </pre>
  */
-public class TableRouteHandler implements InterceptorHandler, InitializingBean {
+public class TableRouteHandler implements InterceptorHandler {
 
     protected static final Logger logger = LoggerFactory.getLogger(TableRouteHandler.class);
 
+    public static final String NAME = "tableShard";
+
+    //逻辑表名（小写） -> 分表策略
+    private Map<String, TableShardStrategy> shardStrategies = new HashMap<>();
+
+    //mapperNameSpace -> 分表策略
+    private Map<String, TableShardStrategy> mapperShardStrategies = new HashMap<>();
+
+    //mapperNameSpace -> 实体主键属性
+    private Map<String, String> mapperIdProperties = new HashMap<>();
+
+    //msId -> 物理表名 -> MappedStatement
+    private Map<String, Map<String, MappedStatement>> tableMappedStatements = new ConcurrentHashMap<>();
+
+    private MybatisInterceptor interceptor;
+
+    public void setShardStrategies(List<TableShardStrategy> shardStrategies) {
+        for (TableShardStrategy strategy : shardStrategies) {
+            this.shardStrategies.put(strategy.getLogicTable().toLowerCase(), strategy);
+        }
+    }
+
     @Override
-    public void afterPropertiesSet() throws Exception {
-        // TODO Auto-generated method stub
+    public void start(MybatisInterceptor context) {
+        this.interceptor = context;
+        if (shardStrategies.isEmpty() && InstanceFactory.getInstanceProvider() != null) {
+            Map<String, TableShardStrategy> beans = InstanceFactory.getInstanceProvider()
+                    .getInterfaces(TableShardStrategy.class);
+            for (TableShardStrategy strategy : beans.values()) {
+                shardStrategies.put(strategy.getLogicTable().toLowerCase(), strategy);
+            }
+        }
 
+        for (EntityInfo entityInfo : MybatisMapperParser.getEntityInfos()) {
+            if (entityInfo.getTableName() == null) { continue; }
+            TableShardStrategy strategy = shardStrategies
+                    .get(entityInfo.getTableName().toLowerCase());
+            if (strategy == null) { continue; }
+            String namespace = entityInfo.getMapperClass().getName();
+            mapperShardStrategies.put(namespace, strategy);
+            mapperIdProperties.put(namespace, entityInfo.getIdProperty());
+            logger.info("table shard:{} -> {}[{}]", entityInfo.getTableName(),
+                    strategy.getClass().getSimpleName(), strategy.shardEntityField());
+        }
     }
 
     @Override
     public Object onInterceptor(Invocation invocation) throws Throwable {
-        // TODO Auto-generated method stub
+        Object[] args = invocation.getArgs();
+        MappedStatement ms = (MappedStatement) args[0];
+        String namespace = interceptor.getStatementDescriptor(ms).getNamespace();
+        TableShardStrategy strategy = mapperShardStrategies.get(namespace);
+        if (strategy == null) { return null; }
+
+        Object shardFieldValue = getShardFieldValue(ms.getConfiguration(), namespace, strategy,
+                args[1]);
+        if (shardFieldValue == null) {
+            logger.error("方法{}无法获取分表字段{}的值", ms.getId(), strategy.shardEntityField());
+            return null;
+        }
+        args[0] = getTableMappedStatement(ms, strategy, strategy.tableName(shardFieldValue));
         return null;
     }
 
     @Override
     public void onFinished(Invocation invocation, Object result) {
-        // TODO Auto-generated method stub
 
     }
 
     @Override
-    public void start(MybatisInterceptor context) {
-        // TODO Auto-generated method stub
+    public boolean isApplicable(StatementDescriptor descriptor) {
+        return mapperShardStrategies.containsKey(descriptor.getNamespace());
+    }
+
+    /**
+     * 获取分表字段的值（按主键分表时支持直接传主键）
+     */
+    @SuppressWarnings("unchecked")
+    private Object getShardFieldValue(Configuration configuration, String namespace,
+                                      TableShardStrategy strategy, Object parameterObject) {
+        if (parameterObject == null) { return null; }
+        String field = strategy.shardEntityField();
+        if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+            return field.equals(mapperIdProperties.get(namespace)) ? parameterObject : null;
+        }
+        if (parameterObject instanceof Map) {
+            return ((Map<String, Object>) parameterObject).get(field);
+        }
+        MetaObject metaObject = configuration.newMetaObject(parameterObject);
+        return metaObject.hasGetter(field) ? metaObject.getValue(field) : null;
+    }
+
+    private MappedStatement getTableMappedStatement(MappedStatement ms,
+                                                    TableShardStrategy strategy,
+                                                    String tableName) {
+        Map<String, MappedStatement> statements = tableMappedStatements.get(ms.getId());
+        if (statements == null) {
+            statements = tableMappedStatements.computeIfAbsent(ms.getId(), id -> {
+                Map<String, MappedStatement> map = new ConcurrentHashMap<>();
+                for (String table : strategy.getTableNames()) {
+                    map.put(table, buildTableMappedStatement(ms, strategy.getLogicTable(), table));
+                }
+                return map;
+            });
+        }
+        MappedStatement statement = statements.get(tableName);
+        if (statement == null) {
+            statement = statements.computeIfAbsent(tableName,
+                    table -> buildTableMappedStatement(ms, strategy.getLogicTable(), table));
+        }
+        return statement;
+    }
 
+    /**
+     * 复制MappedStatement，sqlSource替换为指定物理表
+     */
+    private static MappedStatement buildTableMappedStatement(MappedStatement ms, String logicTable,
+                                                             String tableName) {
+        Configuration configuration = ms.getConfiguration();
+        MappedStatement.Builder builder = new MappedStatement.Builder(configuration, ms.getId(),
+                new TableRouteSqlSource(configuration, ms.getSqlSource(), logicTable, tableName),
+                ms.getSqlCommandType());
+        builder.resource(ms.getResource());
+        builder.fetchSize(ms.getFetchSize());
+        builder.statementType(ms.getStatementType());
+        builder.keyGenerator(ms.getKeyGenerator());
+        if (ms.getKeyProperties() != null && ms.getKeyProperties().length != 0) {
+            builder.keyProperty(StringUtils.join(ms.getKeyProperties(), ","));
+        }
+        if (ms.getKeyColumns() != null && ms.getKeyColumns().length != 0) {
+            builder.keyColumn(StringUtils.join(ms.getKeyColumns(), ","));
+        }
+        builder.databaseId(ms.getDatabaseId());
+        builder.lang(ms.getLang());
+        builder.timeout(ms.getTimeout());
+        builder.parameterMap(ms.getParameterMap());
+        builder.resultMaps(ms.getResultMaps());
+        builder.resultSetType(ms.getResultSetType());
+        builder.resultOrdered(ms.isResultOrdered());
+        builder.cache(ms.getCache());
+        builder.flushCacheRequired(ms.isFlushCacheRequired());
+        builder.useCache(ms.isUseCache());
+        return builder.build();
     }
 
     @Override
     public void close() {
-        // TODO Auto-generated method stub
 
     }
 
     @Override
     public int interceptorOrder() {
-        // TODO Auto-generated method stub
-        return 0;
+        //先于其他处理器，后续处理器拿到的都是路由后的MappedStatement
+        return -1;
     }
 }
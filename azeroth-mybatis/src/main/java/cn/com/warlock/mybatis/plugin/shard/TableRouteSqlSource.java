@@ -0,0 +1,63 @@
+package cn.com.warlock.mybatis.plugin.shard;
+
+import java.util.Map;
+
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
+
+import cn.com.warlock.mybatis.kit.SqlParseUtils;
+
+/**
+ * ClassName: TableRouteSqlSource <br/>
+ * Function: 将原SQL的逻辑表名替换为指定物理表名. <br/>
+ * Reason:  <br/>
+ *
+ * 改写结果按SQL缓存，同一SQL只解析改写一次
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class TableRouteSqlSource implements SqlSource {
+
+    private static final String ADDITIONAL_PARAMETERS = "additionalParameters";
+
+    private final Configuration configuration;
+    private final SqlSource     delegate;
+    private final String        logicTable;
+    private final String        physicalTable;
+
+    public TableRouteSqlSource(Configuration configuration, SqlSource delegate, String logicTable,
+                               String physicalTable) {
+        this.configuration = configuration;
+        this.delegate = delegate;
+        this.logicTable = logicTable;
+        this.physicalTable = physicalTable;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public BoundSql getBoundSql(Object parameterObject) {
+        BoundSql boundSql = delegate.getBoundSql(parameterObject);
+        String sql = SqlParseUtils.rewriteTable(boundSql.getSql(), logicTable, physicalTable);
+        BoundSql routedBoundSql = new BoundSql(configuration, sql, boundSql.getParameterMappings(),
+                parameterObject);
+        //动态SQL（如foreach）生成的附加参数
+        MetaObject metaObject = SystemMetaObject.forObject(boundSql);
+        Map<String, Object> additionalParameters = (Map<String, Object>) metaObject
+                .getValue(ADDITIONAL_PARAMETERS);
+        if (additionalParameters != null) {
+            for (Map.Entry<String, Object> entry : additionalParameters.entrySet()) {
+                routedBoundSql.setAdditionalParameter(entry.getKey(), entry.getValue());
+            }
+        }
+        return routedBoundSql;
+    }
+
+    public String getPhysicalTable() {
+        return physicalTable;
+    }
+}
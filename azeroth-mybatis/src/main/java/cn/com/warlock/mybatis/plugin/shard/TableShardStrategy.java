@@ -0,0 +1,94 @@
+package cn.com.warlock.mybatis.plugin.shard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ClassName: TableShardStrategy <br/>
+ * Function: 分表策略（同一数据库内水平拆分）. <br/>
+ * Reason:  <br/>
+ *
+ * 物理表名为：逻辑表名_{@link #assigned(Object)}，如orders_3、events_201810
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public abstract class TableShardStrategy implements ShardStrategy<Object> {
+
+    private static final String TABLE_JOIN = "_";
+
+    //逻辑表名
+    private String logicTable;
+
+    //分表字段
+    private String shardDbField;
+
+    //分表字段对应实体属性名
+    private String shardEntityField;
+
+    public String getLogicTable() {
+        return logicTable;
+    }
+
+    public void setLogicTable(String logicTable) {
+        this.logicTable = logicTable;
+    }
+
+    public void setShardDbField(String shardDbField) {
+        this.shardDbField = shardDbField;
+    }
+
+    public void setShardEntityField(String shardEntityField) {
+        this.shardEntityField = shardEntityField;
+    }
+
+    @Override
+    public String shardDbField() {
+        return shardDbField;
+    }
+
+    @Override
+    public String shardEntityField() {
+        return shardEntityField;
+    }
+
+    /**
+     * 分配逻辑
+     * @param value
+     * @return 物理表后缀
+     */
+    @Override
+    public abstract int assigned(Object value);
+
+    /**
+     * 物理表名
+     * @param value 分表字段的值
+     * @return
+     */
+    public String tableName(Object value) {
+        return tableName(assigned(value));
+    }
+
+    protected String tableName(int suffix) {
+        return logicTable + TABLE_JOIN + suffix;
+    }
+
+    /**
+     * 可预先确定的所有物理表（启动后首次路由时一次性构建），无法确定返回空
+     * @return
+     */
+    public List<String> getTableNames() {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public List<String> ignoreTables() {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public boolean isGlobal() {
+        return false;
+    }
+}
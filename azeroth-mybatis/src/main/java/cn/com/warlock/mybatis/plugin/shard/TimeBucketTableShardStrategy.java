@@ -0,0 +1,55 @@
+package cn.com.warlock.mybatis.plugin.shard;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.Date;
+
+/**
+ * ClassName: TimeBucketTableShardStrategy <br/>
+ * Function: 按时间分表（按月、按天等）. <br/>
+ * Reason:  <br/>
+ *
+ * pattern=yyyyMM时：2018-10-08 路由到 xxx_201810。分表字段支持Date、时间戳（毫秒）、java.time日期类型
+ *
+ * @author warlock
+ * @version
+ * @since JDK 1.8
+ */
+public class TimeBucketTableShardStrategy extends TableShardStrategy {
+
+    private DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private ZoneId zoneId = ZoneId.systemDefault();
+
+    /**
+     * 时间格式（结果需为数字），默认yyyyMM
+     * @param pattern
+     */
+    public void setPattern(String pattern) {
+        this.formatter = DateTimeFormatter.ofPattern(pattern);
+    }
+
+    public void setZoneId(String zoneId) {
+        this.zoneId = ZoneId.of(zoneId);
+    }
+
+    @Override
+    public int assigned(Object value) {
+        return Integer.parseInt(formatter.format(toTemporal(value)));
+    }
+
+    private TemporalAccessor toTemporal(Object value) {
+        if (value instanceof Date) {
+            return Instant.ofEpochMilli(((Date) value).getTime()).atZone(zoneId);
+        }
+        if (value instanceof Number) {
+            return Instant.ofEpochMilli(((Number) value).longValue()).atZone(zoneId);
+        }
+        if (value instanceof Instant) { return ((Instant) value).atZone(zoneId); }
+        if (value instanceof TemporalAccessor) { return (TemporalAccessor) value; }
+        return LocalDate.parse(value.toString().substring(0, 10));
+    }
+}
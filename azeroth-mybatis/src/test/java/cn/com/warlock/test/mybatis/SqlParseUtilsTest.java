@@ -0,0 +1,100 @@
+package cn.com.warlock.test.mybatis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import cn.com.warlock.mybatis.kit.SqlInfo;
+import cn.com.warlock.mybatis.kit.SqlParseUtils;
+
+public class SqlParseUtilsTest {
+
+    private static String compact(String sql) {
+        return sql.replaceAll("\\s+", " ").trim();
+    }
+
+    @Test
+    public void testSelect() {
+        SqlInfo info = SqlParseUtils.analyze(
+            "select a.* from audited_policy a where a.status=? and title like CONCAT('%',?,'%') order by updated_at desc");
+        assertTrue(info.isParsed());
+        assertEquals(new HashSet<>(Arrays.asList("audited_policy")), info.getTables());
+        assertTrue(info.hasCondition("STATUS"));
+        assertTrue(info.hasCondition("title"));
+        assertEquals(1, info.getOrderBys().size());
+        assertEquals("updated_at", info.getOrderBys().get(0).getColumn());
+        assertTrue(info.getOrderBys().get(0).isDesc());
+        //简单查询直接替换select列表并去掉order by
+        assertEquals(
+            "SELECT count(1) FROM audited_policy a WHERE a.status = ? AND title LIKE CONCAT('%', ?, '%')",
+            compact(info.getCountSql()));
+    }
+
+    @Test
+    public void testCountSqlWrapped() {
+        String sql = "select distinct user_id from orders where device_id = ? order by user_id";
+        SqlInfo info = SqlParseUtils.analyze(sql);
+        assertTrue(info.hasCondition("device_id"));
+        assertEquals("SELECT count(1) FROM (" + sql + ") tmp_count", info.getCountSql());
+    }
+
+    @Test
+    public void testAggregateOnly() {
+        assertTrue(SqlParseUtils.analyze("select count(*),sum(amount) from orders").isAggregateOnly());
+        assertFalse(SqlParseUtils.analyze("select count(distinct user_id) from orders")
+            .isAggregateOnly());
+        assertFalse(SqlParseUtils.analyze("select user_id,count(*) from orders group by user_id")
+            .isAggregateOnly());
+    }
+
+    @Test
+    public void testParseError() {
+        SqlInfo info = SqlParseUtils.analyze("select * from orders where");
+        assertFalse(info.isParsed());
+        //同一SQL只解析一次
+        assertTrue(info == SqlParseUtils.analyze("select * from orders where"));
+    }
+
+    @Test
+    public void testWhereParameters() {
+        SqlInfo info = SqlParseUtils.analyze("update users set name=? where id=? and version=?");
+        assertEquals("id = ? AND version = ?", compact(info.getWhereSql()));
+        assertEquals(1, info.getWhereParameterIndex());
+        assertEquals(2, info.getWhereParameterCount());
+
+        //where之后还有参数
+        info = SqlParseUtils
+            .analyze("update users set name=?, age=? where id=? and version=? order by id limit ?");
+        assertEquals(2, info.getWhereParameterIndex());
+        assertEquals(2, info.getWhereParameterCount());
+
+        //字符串中的?不是参数
+        info = SqlParseUtils.analyze("delete from orders where remark='x?' and user_id=? limit ?");
+        assertEquals(0, info.getWhereParameterIndex());
+        assertEquals(1, info.getWhereParameterCount());
+
+        assertNull(SqlParseUtils.analyze("update users set status=0").getWhereSql());
+    }
+
+    @Test
+    public void testRewriteTable() {
+        assertEquals(
+            "SELECT orders_3.id FROM orders_3 JOIN users u ON u.id = orders_3.user_id WHERE orders_3.id = ?",
+            compact(SqlParseUtils.rewriteTable(
+                "select orders.id from orders join users u on u.id=orders.user_id where orders.id=?",
+                "orders", "orders_3")));
+        assertEquals("INSERT INTO orders_3 (id, name) VALUES (?, ?)", compact(SqlParseUtils
+            .rewriteTable("insert into orders (id,name) values (?,?)", "orders", "orders_3")));
+        assertEquals("UPDATE orders_3 SET name = ? WHERE id = ?", compact(SqlParseUtils
+            .rewriteTable("update `orders` set name=? where id=?", "orders", "orders_3")));
+        //字符串中的表名不替换
+        assertEquals("DELETE FROM orders_3 WHERE remark = 'orders'", compact(SqlParseUtils
+            .rewriteTable("delete from orders where remark='orders'", "orders", "orders_3")));
+    }
+}